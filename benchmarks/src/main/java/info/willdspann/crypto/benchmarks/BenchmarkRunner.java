@@ -0,0 +1,149 @@
+package info.willdspann.crypto.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>
+ * Runs the benchmarks with the GC profiler enabled, so that each benchmark's allocation rate (bytes per operation)
+ * is reported alongside its average time per operation. </p>
+ * <p>
+ * Usage: {@code java -jar benchmarks.jar [-o results.csv] [-b baseline.csv] [-t tolerance] [includeRegex...]}
+ * <ul>
+ *   <li>{@code -o}: writes each benchmark's average time and allocation rate, for use as a later baseline.</li>
+ *   <li>{@code -b}: compares against a baseline written by {@code -o}, and exits with status 1 if any benchmark's
+ *       time or allocation rate per operation regressed by more than the tolerance.</li>
+ *   <li>{@code -t}: relative regression tolerance (default 0.10, i.e. 10%).</li>
+ * </ul>
+ * </p>
+ */
+public final class BenchmarkRunner {
+    private static final String ALLOC_RATE_NORM_LABEL = "gc.alloc.rate.norm";
+    private static final double DEFAULT_TOLERANCE = 0.10;
+    /** Allocation changes below this many bytes per operation are ignored, as noise. */
+    private static final double ALLOC_NOISE_FLOOR = 16.0;
+
+    private BenchmarkRunner() {}
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Path outputPath = null;
+        Path baselinePath = null;
+        double tolerance = DEFAULT_TOLERANCE;
+        final List<String> includes = new ArrayList<>();
+
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "-o":
+                    outputPath = Paths.get(args[++i]);
+                    break;
+                case "-b":
+                    baselinePath = Paths.get(args[++i]);
+                    break;
+                case "-t":
+                    tolerance = Double.parseDouble(args[++i]);
+                    break;
+                default:
+                    includes.add(args[i]);
+            }
+        }
+
+        final ChainedOptionsBuilder options = new OptionsBuilder().addProfiler(GCProfiler.class);
+        if (includes.isEmpty()) {
+            options.include(BenchmarkRunner.class.getPackageName() + ".*");
+        } else {
+            includes.forEach(options::include);
+        }
+        final Map<String, double[]> results = summarize(new Runner(options.build()).run());
+
+        if (outputPath != null) {
+            write(results, outputPath);
+        }
+        if (baselinePath != null && !compare(read(baselinePath), results, tolerance)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns each benchmark's average time and allocation rate per operation, keyed by benchmark name and params.
+     */
+    private static Map<String, double[]> summarize(Collection<RunResult> runResults) {
+        final Map<String, double[]> results = new LinkedHashMap<>();
+        for (RunResult runResult : runResults) {
+            // JMH declares secondary results with the raw Result type, so look them up by label, typed as Result<?>.
+            final Result<?> allocRateNorm = runResult.getSecondaryResults().keySet().stream()
+                    .filter(label -> label.endsWith(ALLOC_RATE_NORM_LABEL))
+                    .findFirst()
+                    .<Result<?>>map(runResult.getSecondaryResults()::get)
+                    .orElse(null);
+            results.put(
+                    resultKey(runResult.getParams()),
+                    new double[] {
+                            runResult.getPrimaryResult().getScore(),
+                            (allocRateNorm != null) ? allocRateNorm.getScore() : Double.NaN
+                    }
+            );
+        }
+        return results;
+    }
+
+    private static String resultKey(BenchmarkParams params) {
+        final StringBuilder key = new StringBuilder(params.getBenchmark());
+        for (String paramKey : new TreeSet<>(params.getParamsKeys())) {
+            key.append(';').append(paramKey).append('=').append(params.getParam(paramKey));
+        }
+        return key.toString();
+    }
+
+    private static boolean compare(Map<String, double[]> baseline, Map<String, double[]> results, double tolerance) {
+        boolean passed = true;
+        for (Map.Entry<String, double[]> entry : results.entrySet()) {
+            final double[] before = baseline.get(entry.getKey());
+            if (before == null) {
+                continue;
+            }
+            final double[] after = entry.getValue();
+            if (after[0] > before[0] * (1.0 + tolerance)) {
+                System.err.printf("REGRESSION %s: %.1f ns/op -> %.1f ns/op%n", entry.getKey(), before[0], after[0]);
+                passed = false;
+            }
+            if (after[1] > before[1] * (1.0 + tolerance) + ALLOC_NOISE_FLOOR) {
+                System.err.printf("REGRESSION %s: %.1f B/op -> %.1f B/op%n", entry.getKey(), before[1], after[1]);
+                passed = false;
+            }
+        }
+        return passed;
+    }
+
+    private static void write(Map<String, double[]> results, Path path) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        results.forEach((key, scores) -> lines.add(String.format("%s,%s,%s", key, scores[0], scores[1])));
+        Files.write(path, lines, StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, double[]> read(Path path) throws IOException {
+        final Map<String, double[]> results = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            final String[] fields = line.split(",");
+            results.put(fields[0], new double[] {Double.parseDouble(fields[1]), Double.parseDouble(fields[2])});
+        }
+        return results;
+    }
+}
@@ -0,0 +1,56 @@
+package info.willdspann.crypto.benchmarks;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import info.willdspann.crypto.enums.CryptoHashAlgorithm;
+import info.willdspann.crypto.util.hashing.HashingUtils;
+
+/**
+ * Benchmarks unsalted hashing with each supported {@link CryptoHashAlgorithm}, for short and long inputs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashAlgorithmBenchmark {
+
+    @Param({"MD5", "SHA_1", "SHA_224", "SHA_256", "SHA_384", "SHA_512", "SHA_512_224", "SHA_512_256",
+            "SHA3_224", "SHA3_256", "SHA3_384", "SHA3_512", "SHAKE_128", "SHAKE_256",
+            "RIPEMD_128", "RIPEMD_160", "RIPEMD_256", "RIPEMD_320", "BLAKE2S_224", "BLAKE2S_256",
+            "BLAKE2B_384", "BLAKE2B_512", "WHIRLPOOL", "TIGER_128", "TIGER_160", "TIGER_192",
+            "STREEBOG_256", "STREEBOG_512"})
+    public CryptoHashAlgorithm algorithm;
+
+    @Param({"32", "1024"})
+    public int inputLength;
+
+    private byte[] input;
+
+    @Setup
+    public void setUp() throws NoSuchAlgorithmException {
+        this.input = new byte[inputLength];
+        new SecureRandom().nextBytes(input);
+        HashingUtils.unsaltedHash(input, algorithm);  // fail fast if unsupported
+    }
+
+    @Benchmark
+    public byte[] calculateHash() throws NoSuchAlgorithmException {
+        return HashingUtils.unsaltedHash(input, algorithm);
+    }
+}
@@ -0,0 +1,71 @@
+package info.willdspann.crypto.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.binary.Hex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import info.willdspann.crypto.entities.hashing.UsedDistinctHash;
+import info.willdspann.crypto.repositories.hashing.UsedDistinctHashesInMemoryRepository;
+
+/**
+ * Benchmarks recording used hashes in the in-memory repository ({@code MapInMemoryRepository.saveIfAbsent}) from
+ * several threads at once. Each iteration starts from a repository holding only a small set of hot hashes. Each
+ * operation either saves a new random salted hash string in the {@code salt:saltedHash} hex. form, or attempts to
+ * save one of the hot hashes again (i.e., a duplicate).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class MapInMemoryRepositoryBenchmark {
+
+    private static final int HOT_HASH_COUNT = 1024;
+
+    private final UsedDistinctHash[] hotHashes = new UsedDistinctHash[HOT_HASH_COUNT];
+    private UsedDistinctHashesInMemoryRepository repository;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        this.repository = new UsedDistinctHashesInMemoryRepository();
+        for (int i = 0; i < HOT_HASH_COUNT; ++i) {
+            hotHashes[i] = new UsedDistinctHash(randomUsedHash());
+            repository.saveIfAbsent(hotHashes[i]);
+        }
+    }
+
+    @Benchmark
+    public boolean saveIfAbsentDistinct() {
+        return repository.saveIfAbsent(new UsedDistinctHash(randomUsedHash()));
+    }
+
+    @Benchmark
+    public boolean saveIfAbsentDuplicate() {
+        return repository.saveIfAbsent(hotHashes[ThreadLocalRandom.current().nextInt(HOT_HASH_COUNT)]);
+    }
+
+    private static String randomUsedHash() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final byte[] salt = new byte[16];
+        final byte[] saltedHash = new byte[32];
+        random.nextBytes(salt);
+        random.nextBytes(saltedHash);
+
+        return Hex.encodeHexString(salt) + ':' + Hex.encodeHexString(saltedHash);
+    }
+}
@@ -0,0 +1,68 @@
+package info.willdspann.crypto.benchmarks;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import info.willdspann.crypto.util.hashing.HashingUtils;
+import info.willdspann.crypto.util.hashing.MultiBufferSha256;
+
+/**
+ * Compares salting one cleartext with a batch of salts via {@link MultiBufferSha256} against one JDK SHA-256 digest
+ * per salt, to decide whether to enable the multi-buffer engine on a given CPU.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiBufferSha256Benchmark {
+    private static final int BATCH_SIZE = 64;
+
+    @Param({"16", "100"})
+    public int cleartextLength;
+
+    private byte[] cleartext;
+    private byte[][] salts;
+
+    @Setup
+    public void setUp() {
+        final SecureRandom random = new SecureRandom();
+        this.cleartext = new byte[cleartextLength];
+        random.nextBytes(cleartext);
+        this.salts = new byte[BATCH_SIZE][16];
+        for (byte[] salt : salts) {
+            random.nextBytes(salt);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public byte[][] multiBuffer() {
+        return MultiBufferSha256.digest(cleartext, salts);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void perSalt(Blackhole blackhole) {
+        final byte[] output = new byte[HashingUtils.saltedHashLength()];
+        for (byte[] salt : salts) {
+            HashingUtils.saltedHash(cleartext, salt, output, 0);
+            blackhole.consume(output);
+        }
+    }
+}
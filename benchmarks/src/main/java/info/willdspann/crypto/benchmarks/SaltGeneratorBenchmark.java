@@ -0,0 +1,64 @@
+package info.willdspann.crypto.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import info.willdspann.crypto.enums.SaltSequenceVersion;
+import info.willdspann.crypto.hashing.ReproducibleSaltGenerator;
+
+/**
+ * Benchmarks looking up the salt at several indices of a value's salt sequence, both by indexed lookup and by
+ * iterating the salt sequence up to that index, for each salt sequence version.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SaltGeneratorBenchmark {
+
+    @Param({"0", "10", "100", "1000"})
+    public int saltIndex;
+
+    @Param({"V1_HASH_DRBG", "V2_COUNTER_HMAC", "V3_HMAC_DRBG", "V4_CTR_DRBG"})
+    public SaltSequenceVersion version;
+
+    private byte[] cleartext;
+    private byte[] secretSeed;
+
+    @Setup
+    public void setUp() {
+        this.cleartext = "spamandeggs@example.com".getBytes(StandardCharsets.UTF_8);
+        this.secretSeed = new byte[64];
+        new SecureRandom().nextBytes(secretSeed);
+    }
+
+    @Benchmark
+    public byte[] generateSaltForValue() {
+        return ReproducibleSaltGenerator.generateSaltForValue(cleartext, secretSeed, saltIndex, version);
+    }
+
+    @Benchmark
+    public void iterateSaltsForValue(Blackhole blackhole) {
+        final Iterator<byte[]> saltIter = ReproducibleSaltGenerator.iteratorForValue(cleartext, secretSeed, version);
+        for (int i = 0; i <= saltIndex; ++i) {
+            blackhole.consume(saltIter.next());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package info.willdspann.crypto.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import info.willdspann.crypto.util.hashing.HashingUtils;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+/**
+ * Benchmarks salted hash generation, i.e., {@code sha256( cleartext | salt )}, both returning a new
+ * {@code SaltedHash} and writing into caller-supplied buffers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SaltedHashBenchmark {
+
+    @Param({"16", "256", "4096"})
+    public int cleartextLength;
+
+    private byte[] cleartext;
+    private byte[] salt;
+    private byte[] output;
+    private ByteBuffer directOutput;
+
+    @Setup
+    public void setUp() {
+        this.cleartext = "x".repeat(cleartextLength).getBytes(StandardCharsets.UTF_8);
+        this.salt = new byte[16];
+        new SecureRandom().nextBytes(salt);
+        this.output = new byte[HashingUtils.saltedHashLength()];
+        this.directOutput = ByteBuffer.allocateDirect(HashingUtils.saltedHashLength());
+    }
+
+    @Benchmark
+    public SaltedHash saltedHash() {
+        return HashingUtils.saltedHash(cleartext, salt);
+    }
+
+    @Benchmark
+    public byte[] saltedHashIntoArray() {
+        HashingUtils.saltedHash(cleartext, salt, output, 0);
+        return output;
+    }
+
+    @Benchmark
+    public ByteBuffer saltedHashIntoDirectBuffer() {
+        directOutput.clear();
+        HashingUtils.saltedHash(cleartext, salt, directOutput);
+        return directOutput;
+    }
+}
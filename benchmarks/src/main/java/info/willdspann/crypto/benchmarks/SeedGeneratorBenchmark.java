@@ -0,0 +1,49 @@
+package info.willdspann.crypto.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import info.willdspann.crypto.hashing.ReproducibleSeedGenerator;
+
+/**
+ * Benchmarks associated seed generation, i.e., {@code sha512( sha512( associatedValue ) | secretSeed )}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeedGeneratorBenchmark {
+
+    @Param({"16", "256", "4096"})
+    public int cleartextLength;
+
+    private byte[] cleartext;
+    private byte[] secretSeed;
+
+    @Setup
+    public void setUp() {
+        this.cleartext = "x".repeat(cleartextLength).getBytes(StandardCharsets.UTF_8);
+        this.secretSeed = new byte[64];
+        new SecureRandom().nextBytes(secretSeed);
+    }
+
+    @Benchmark
+    public byte[] generateSeedForValue() {
+        return ReproducibleSeedGenerator.generateSeedForValue(cleartext, secretSeed);
+    }
+}
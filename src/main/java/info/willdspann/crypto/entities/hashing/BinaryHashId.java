@@ -0,0 +1,73 @@
+package info.willdspann.crypto.entities.hashing;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+import org.apache.commons.codec.binary.Hex;
+
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+/**
+ * <p>
+ * Embeddable ID of the binary hash entities, holding a salted hash in compact binary form (see
+ * {@link SaltedHash#toBinary()}). A {@code byte[]} can't be used as an {@code @Id} directly, since arrays have
+ * identity-based {@code equals()} and {@code hashCode()}, so the persistence context and {@code findById()} would
+ * never match an ID read back from the DB with the one looked up. This compares IDs by content instead. </p>
+ * <p>
+ * Each entity maps the {@code hash} attribute to its own column with {@code @AttributeOverride}. </p>
+ */
+@Embeddable
+public class BinaryHashId implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @NotNull
+    @Size(min = 2, max = 129)
+    @Column(nullable = false)
+    private byte[] hash;
+
+    /** No-argument constructor needed by JPA. */
+    BinaryHashId() { }
+
+    public BinaryHashId(@NotNull final byte[] hash) {
+        this.hash = Arrays.copyOf(hash, hash.length);
+    }
+
+    public static BinaryHashId of(@NotNull final SaltedHash saltedHash) {
+        final BinaryHashId id = new BinaryHashId();
+        id.hash = saltedHash.toBinary();
+        return id;
+    }
+
+    public byte[] getHash() {
+        return Arrays.copyOf(hash, hash.length);
+    }
+
+    public SaltedHash getSaltedHash() {
+        return SaltedHash.fromBinary(hash);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(hash);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj instanceof BinaryHashId) {
+            return Arrays.equals(this.hash, ((BinaryHashId) obj).hash);
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return Hex.encodeHexString(hash);
+    }
+}
@@ -32,6 +32,14 @@ public class HashUsageCount {
     /** No-argument constructor needed by JPA. */
     private HashUsageCount() { }
 
+    public HashUsageCount(@NotNull final String usedHash, int usageCount) {
+        final Timestamp now = new Timestamp(System.currentTimeMillis());
+        this.usedHash = usedHash;
+        this.usageCount = usageCount;
+        this.createdAt = now;
+        this.lastUpdatedAt = now;
+    }
+
     public String getUsedHash() {
         return usedHash;
     }
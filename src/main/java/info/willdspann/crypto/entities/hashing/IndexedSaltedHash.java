@@ -0,0 +1,74 @@
+package info.willdspann.crypto.entities.hashing;
+
+import java.sql.Timestamp;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+/**
+ * JPA entity for entries in a DB table that indexes the salted hashes of each cleartext value by its unsalted hash,
+ * and marks those that have been orphaned (moved to the hash graveyard) as buried.
+ */
+@Entity
+@Table(name = "secure_hashing.salted_hash_index")
+public class IndexedSaltedHash {
+
+    @Id
+    @NotNull
+    @Size(min = 64, max = 255)
+    private String saltedHash;
+
+    @NotNull
+    @Size(min = 64, max = 64)
+    private String usedHash;
+
+    private boolean buried;
+
+    @NotNull
+    private Timestamp createdAt;
+
+    /** No-argument constructor needed by JPA. */
+    IndexedSaltedHash() { }
+
+    public IndexedSaltedHash(@NotNull final String saltedHash, @NotNull final String usedHash, boolean buried) {
+        this.saltedHash = saltedHash;
+        this.usedHash = usedHash;
+        this.buried = buried;
+        this.createdAt = new Timestamp(System.currentTimeMillis());
+    }
+
+    public String getSaltedHash() {
+        return saltedHash;
+    }
+
+    public void setSaltedHash(String saltedHash) {
+        this.saltedHash = saltedHash;
+    }
+
+    public String getUsedHash() {
+        return usedHash;
+    }
+
+    public void setUsedHash(String usedHash) {
+        this.usedHash = usedHash;
+    }
+
+    public boolean isBuried() {
+        return buried;
+    }
+
+    public void setBuried(boolean buried) {
+        this.buried = buried;
+    }
+
+    public Timestamp getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Timestamp createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,63 @@
+package info.willdspann.crypto.entities.hashing;
+
+import java.sql.Timestamp;
+
+import javax.persistence.AttributeOverride;
+import javax.persistence.Column;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+/**
+ * JPA entity for entries in a DB table that keeps track of no longer used salted hashes, in compact binary form (see
+ * {@link SaltedHash#toBinary()}).
+ */
+@Entity
+@Table(name = "secure_hashing.binary_hash_graveyard")
+public class UnusedBinaryHash {
+
+    @EmbeddedId
+    @AttributeOverride(name = "hash", column = @Column(name = "unused_hash", nullable = false))
+    @NotNull
+    @Valid
+    private BinaryHashId unusedHash;
+
+    @NotNull
+    private Timestamp createdAt;
+
+    /** No-argument constructor needed by JPA. */
+    UnusedBinaryHash() { }
+
+    public UnusedBinaryHash(@NotNull final SaltedHash saltedHash) {
+        this.unusedHash = BinaryHashId.of(saltedHash);
+        this.createdAt = new Timestamp(System.currentTimeMillis());
+    }
+
+    public BinaryHashId getId() {
+        return unusedHash;
+    }
+
+    public byte[] getUnusedHash() {
+        return unusedHash.getHash();
+    }
+
+    public void setUnusedHash(byte[] unusedHash) {
+        this.unusedHash = new BinaryHashId(unusedHash);
+    }
+
+    public SaltedHash getSaltedHash() {
+        return unusedHash.getSaltedHash();
+    }
+
+    public Timestamp getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Timestamp createdAt) {
+        this.createdAt = createdAt;
+    }
+}
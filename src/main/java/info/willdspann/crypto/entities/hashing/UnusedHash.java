@@ -17,7 +17,7 @@ public class UnusedHash {
 
     @Id
     @NotNull
-    @Size(min = 64, max = 97)
+    @Size(min = 64, max = 255)
     private String unusedHash;
 
     @NotNull
@@ -26,6 +26,11 @@ public class UnusedHash {
     /** No-argument constructor needed by JPA. */
     UnusedHash() { }
 
+    public UnusedHash(@NotNull final String unusedHash) {
+        this.unusedHash = unusedHash;
+        this.createdAt = new Timestamp(System.currentTimeMillis());
+    }
+
     public String getUnusedHash() {
         return unusedHash;
     }
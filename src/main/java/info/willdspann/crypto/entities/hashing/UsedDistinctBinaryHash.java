@@ -0,0 +1,65 @@
+package info.willdspann.crypto.entities.hashing;
+
+import java.sql.Timestamp;
+
+import javax.persistence.AttributeOverride;
+import javax.persistence.Column;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+/**
+ * JPA entity for entries in a DB table that keeps track of used salted hashes, in compact binary form (see
+ * {@link SaltedHash#toBinary()}).
+ */
+@Entity
+@Table(name = "secure_hashing.used_distinct_binary_hashes")
+public class UsedDistinctBinaryHash {
+
+    @EmbeddedId
+    @AttributeOverride(name = "hash", column = @Column(name = "used_hash", nullable = false))
+    @NotNull
+    @Valid
+    private BinaryHashId usedHash;
+
+    @NotNull
+    private Timestamp createdAt;
+
+    /**
+     * No-argument constructor needed by JPA.
+     */
+    UsedDistinctBinaryHash() { }
+
+    public UsedDistinctBinaryHash(@NotNull final SaltedHash saltedHash) {
+        this.usedHash = BinaryHashId.of(saltedHash);
+        this.createdAt = new Timestamp(System.currentTimeMillis());
+    }
+
+    public BinaryHashId getId() {
+        return usedHash;
+    }
+
+    public byte[] getUsedHash() {
+        return usedHash.getHash();
+    }
+
+    public void setUsedHash(byte[] usedHash) {
+        this.usedHash = new BinaryHashId(usedHash);
+    }
+
+    public SaltedHash getSaltedHash() {
+        return usedHash.getSaltedHash();
+    }
+
+    public Timestamp getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Timestamp createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -17,7 +17,7 @@ public class UsedDistinctHash {
 
     @Id
     @NotNull
-    @Size(min = 64, max = 97)
+    @Size(min = 64, max = 255)
     private String usedHash;
 
     @NotNull
@@ -28,6 +28,11 @@ public class UsedDistinctHash {
      */
     UsedDistinctHash() { }
 
+    public UsedDistinctHash(@NotNull final String usedHash) {
+        this.usedHash = usedHash;
+        this.createdAt = new Timestamp(System.currentTimeMillis());
+    }
+
     public String getUsedHash() {
         return usedHash;
     }
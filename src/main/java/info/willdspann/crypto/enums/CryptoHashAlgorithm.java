@@ -2,57 +2,84 @@ package info.willdspann.crypto.enums;
 
 /**
  * Enumerated type representing a cryptographic hash algorithm, including its short algorithm name, digest length in
- * bits, and a summary description.
+ * bits, and a summary description. Each algorithm also has a stable one-byte tag, which identifies it in persisted
+ * binary hashes, and so must never be changed or reused.
  */
 public enum CryptoHashAlgorithm {
-    MD5("MD5", 128, "MD5 Message-Digest Algorithm 128-bit digest"),
-    MD6("MD6", -1, "MD6 Message-Digest Algorithm variable-length (1-512 bits) digest"),
-    SHA_1("SHA-1", 160, "Secure Hash Algorithm 1 (SHA-1) 160-bit digest"),
-    SHA_224("SHA-224", 224, "Secure Hash Algorithm 2 (SHA-2) 224-bit digest"),
-    SHA_256("SHA-256", 256, "Secure Hash Algorithm 2 (SHA-2) 256-bit digest"),
-    SHA_384("SHA-384", 384, "Secure Hash Algorithm 2 (SHA-2) 384-bit digest"),
-    SHA_512("SHA-512", 512, "Secure Hash Algorithm 2 (SHA-2) 512-bit digest"),
-    SHA_512_224("SHA-512/224", 224, "Secure Hash Algorithm 2 (SHA-2) truncated 224-bit SHA-512 digest"),
-    SHA_512_256("SHA-512/256", 256, "Secure Hash Algorithm 2 (SHA-2) truncated 256-bit SHA-512 digest"),
-    SHA3_224("SHA3-224", 224, "Secure Hash Algorithm 3 (SHA-3) Keccak-based (Keccak[448]) 224-bit digest"),
-    SHA3_256("SHA3-256", 256, "Secure Hash Algorithm 3 (SHA-3) Keccak-based (Keccak[512]) 256-bit digest"),
-    SHA3_384("SHA3-384", 384, "Secure Hash Algorithm 3 (SHA-3) Keccak-based (Keccak[768]) 384-bit digest"),
-    SHA3_512("SHA3-512", 512, "Secure Hash Algorithm 3 (SHA-3) Keccak-based (Keccak[1024]) 512-bit digest"),
-    SHAKE_128("SHAKE128", -1, "Secure Hash Algorithm 3 (SHA-3) Keccak-based (Keccak[256]) arbitrary-length digest"),
-    SHAKE_256("SHAKE256", -1, "Secure Hash Algorithm 3 (SHA-3) Keccak-based (Keccak[512]) arbitrary-length digest"),
-    KANGAROO_TWELVE("KangarooTwelve", -1, "Keccak-p based (Keccak-p[1600, 12]) arbitrary-length digest"),
-    MARSUPILAMI_FOURTEEN("MarsupilamiFourteen", -1, "Keccak-p based (Keccak-p[1600, 14]) arbitrary-length digest"),
-    RIPEMD_128("RIPEMD-128", 128, "RIPE Message Digest (RIPEMD) 128-bit digest"),
-    RIPEMD_256("RIPEMD-256", 256, "RIPE Message Digest (RIPEMD) 256-bit digest"),
-    RIPEMD_160("RIPEMD-160", 160, "RIPE Message Digest (RIPEMD) 160-bit digest"),
-    RIPEMD_320("RIPEMD-320", 320, "RIPE Message Digest (RIPEMD) 320-bit digest"),
-    BLAKE_224("BLAKE-224", 224, "BLAKE 224-bit digest"),
-    BLAKE_256("BLAKE-256", 256, "BLAKE 256-bit digest"),
-    BLAKE_384("BLAKE-384", 384, "BLAKE 384-bit digest"),
-    BLAKE_512("BLAKE-512", 512, "BLAKE 512-bit digest"),
-    BLAKE2S_224("BLAKE2s-224", 224, "BLAKE2s 224-bit digest"),
-    BLAKE2S_256("BLAKE2s-256", 256, "BLAKE2s 256-bit digest"),
-    BLAKE2B_384("BLAKE2b-384", 384, "BLAKE2b 384-bit digest"),
-    BLAKE2B_512("BLAKE2b-512", 512, "BLAKE2b 512-bit digest"),
-    WHIRLPOOL("Whirlpool", 512, "Whirlpool 512-bit digest"),
-    TIGER_128("Tiger-128", 128, "Tiger 128-bit digest"),
-    TIGER_160("Tiger-160", 160, "Tiger 160-bit digest"),
-    TIGER_192("Tiger-192", 192, "Tiger 192-bit digest"),
-    STREEBOG_256("GOST3411_2012_256Digest", 256, "GOST R 34.11-2012 (Streebog) 256-bit digest"),
-    STREEBOG_512("GOST3411_2012_256Digest", 512, "GOST R 34.11-2012 (Streebog) 512-bit digest");
+    MD5(1, "MD5", 128, "MD5 Message-Digest Algorithm 128-bit digest"),
+    MD6(2, "MD6", -1, "MD6 Message-Digest Algorithm variable-length (1-512 bits) digest"),
+    SHA_1(3, "SHA-1", 160, "Secure Hash Algorithm 1 (SHA-1) 160-bit digest"),
+    SHA_224(4, "SHA-224", 224, "Secure Hash Algorithm 2 (SHA-2) 224-bit digest"),
+    SHA_256(5, "SHA-256", 256, "Secure Hash Algorithm 2 (SHA-2) 256-bit digest"),
+    SHA_384(6, "SHA-384", 384, "Secure Hash Algorithm 2 (SHA-2) 384-bit digest"),
+    SHA_512(7, "SHA-512", 512, "Secure Hash Algorithm 2 (SHA-2) 512-bit digest"),
+    SHA_512_224(8, "SHA-512/224", 224, "Secure Hash Algorithm 2 (SHA-2) truncated 224-bit SHA-512 digest"),
+    SHA_512_256(9, "SHA-512/256", 256, "Secure Hash Algorithm 2 (SHA-2) truncated 256-bit SHA-512 digest"),
+    SHA3_224(10, "SHA3-224", 224, "Secure Hash Algorithm 3 (SHA-3) Keccak-based (Keccak[448]) 224-bit digest"),
+    SHA3_256(11, "SHA3-256", 256, "Secure Hash Algorithm 3 (SHA-3) Keccak-based (Keccak[512]) 256-bit digest"),
+    SHA3_384(12, "SHA3-384", 384, "Secure Hash Algorithm 3 (SHA-3) Keccak-based (Keccak[768]) 384-bit digest"),
+    SHA3_512(13, "SHA3-512", 512, "Secure Hash Algorithm 3 (SHA-3) Keccak-based (Keccak[1024]) 512-bit digest"),
+    SHAKE_128(14, "SHAKE128", -1, "Secure Hash Algorithm 3 (SHA-3) Keccak-based (Keccak[256]) arbitrary-length digest"),
+    SHAKE_256(15, "SHAKE256", -1, "Secure Hash Algorithm 3 (SHA-3) Keccak-based (Keccak[512]) arbitrary-length digest"),
+    KANGAROO_TWELVE(16, "KangarooTwelve", -1, "Keccak-p based (Keccak-p[1600, 12]) arbitrary-length digest"),
+    MARSUPILAMI_FOURTEEN(17, "MarsupilamiFourteen", -1, "Keccak-p based (Keccak-p[1600, 14]) arbitrary-length digest"),
+    RIPEMD_128(18, "RIPEMD-128", 128, "RIPE Message Digest (RIPEMD) 128-bit digest"),
+    RIPEMD_256(19, "RIPEMD-256", 256, "RIPE Message Digest (RIPEMD) 256-bit digest"),
+    RIPEMD_160(20, "RIPEMD-160", 160, "RIPE Message Digest (RIPEMD) 160-bit digest"),
+    RIPEMD_320(21, "RIPEMD-320", 320, "RIPE Message Digest (RIPEMD) 320-bit digest"),
+    BLAKE_224(22, "BLAKE-224", 224, "BLAKE 224-bit digest"),
+    BLAKE_256(23, "BLAKE-256", 256, "BLAKE 256-bit digest"),
+    BLAKE_384(24, "BLAKE-384", 384, "BLAKE 384-bit digest"),
+    BLAKE_512(25, "BLAKE-512", 512, "BLAKE 512-bit digest"),
+    BLAKE2S_224(26, "BLAKE2s-224", 224, "BLAKE2s 224-bit digest"),
+    BLAKE2S_256(27, "BLAKE2s-256", 256, "BLAKE2s 256-bit digest"),
+    BLAKE2B_384(28, "BLAKE2b-384", 384, "BLAKE2b 384-bit digest"),
+    BLAKE2B_512(29, "BLAKE2b-512", 512, "BLAKE2b 512-bit digest"),
+    WHIRLPOOL(30, "Whirlpool", 512, "Whirlpool 512-bit digest"),
+    TIGER_128(31, "Tiger-128", 128, "Tiger 128-bit digest"),
+    TIGER_160(32, "Tiger-160", 160, "Tiger 160-bit digest"),
+    TIGER_192(33, "Tiger-192", 192, "Tiger 192-bit digest"),
+    STREEBOG_256(34, "GOST3411-2012-256", 256, "GOST R 34.11-2012 (Streebog) 256-bit digest"),
+    STREEBOG_512(35, "GOST3411-2012-512", 512, "GOST R 34.11-2012 (Streebog) 512-bit digest");
 
+    private final int tag;
     private final String algorithm;
     private final int digestLength;  // digest length (bits)
     private final String description;
 
     public static final int CUSTOM_LENGTH = -1;
 
-    CryptoHashAlgorithm(String algorithm, int digestLength, String description) {
+    CryptoHashAlgorithm(int tag, String algorithm, int digestLength, String description) {
+        this.tag = tag;
         this.algorithm = algorithm;
         this.digestLength = digestLength;
         this.description = description;
     }
 
+    /**
+     * Returns the stable one-byte tag identifying this algorithm in persisted binary hashes.
+     * @return this algorithm's tag, in the range [1, 255].
+     */
+    public int getTag() {
+        return tag;
+    }
+
+    /**
+     * Returns the algorithm identified by the given tag.
+     *
+     * @param tag one-byte tag identifying an algorithm in persisted binary hashes.
+     * @return the algorithm identified by the given tag.
+     * @throws IllegalArgumentException if no algorithm is identified by the given tag.
+     */
+    public static CryptoHashAlgorithm fromTag(int tag) {
+        for (CryptoHashAlgorithm hashAlgorithm : values()) {
+            if (hashAlgorithm.tag == tag) {
+                return hashAlgorithm;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown cryptographic hash algorithm tag: %d", tag));
+    }
+
     public String getAlgorithm() {
         return algorithm;
     }
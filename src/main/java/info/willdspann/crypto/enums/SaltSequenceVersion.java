@@ -0,0 +1,68 @@
+package info.willdspann.crypto.enums;
+
+/**
+ * Enumerated type representing a version of the scheme used to derive the reproducible sequence of salt values
+ * associated with a given cleartext value, from its associated seed. Existing salted hashes can only be reproduced
+ * with the version they were generated with, so a version must never be changed once in use.
+ * <p>
+ * The version isn't persisted with each salted hash. It is fixed per {@code SaltedHashGenerator}, so it must be
+ * configured alongside the secret seed, and a new version adopted only together with a new seed (e.g., by rotating
+ * to it in a {@code SaltedHashGeneratorRegistry}). </p>
+ */
+public enum SaltSequenceVersion {
+    V1_HASH_DRBG(1, false,
+            "Hash_DRBG (NIST SP 800-90A) over SHA-256 seeded with the associated seed, replayed sequentially"),
+    V2_COUNTER_HMAC(2, true,
+            "Counter-based PRF: salt_i = HMAC-SHA-256( associatedSeed, i ), truncated to the salt length"),
+    V3_HMAC_DRBG(3, false,
+            "HMAC_DRBG (NIST SP 800-90A) over HMAC-SHA-512 seeded with the associated seed, generating 16 salts per "
+                    + "request, replayed sequentially"),
+    V4_CTR_DRBG(4, false,
+            "CTR_DRBG (NIST SP 800-90A) over AES-256 with a derivation function, seeded with the associated seed, "
+                    + "generating 16 salts per request, replayed sequentially");
+
+    private final int version;
+    private final boolean randomAccess;
+    private final String description;
+
+    public static final SaltSequenceVersion DEFAULT_VERSION = V1_HASH_DRBG;
+
+    SaltSequenceVersion(int version, boolean randomAccess, String description) {
+        this.version = version;
+        this.randomAccess = randomAccess;
+        this.description = description;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the salt sequence version with the given version number, e.g. as configured alongside a secret seed.
+     *
+     * @param version version number of a salt sequence version.
+     * @return the salt sequence version with the given version number.
+     * @throws IllegalArgumentException if there is no salt sequence version with the given version number.
+     */
+    public static SaltSequenceVersion fromVersion(int version) {
+        for (SaltSequenceVersion saltSequenceVersion : values()) {
+            if (saltSequenceVersion.version == version) {
+                return saltSequenceVersion;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown salt sequence version: %d", version));
+    }
+
+    /**
+     * Returns whether the salt at any given index can be derived directly, at constant cost, without generating
+     * every preceding salt in the sequence.
+     * @return whether this salt sequence supports constant-time random access by salt index.
+     */
+    public boolean isRandomAccess() {
+        return randomAccess;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
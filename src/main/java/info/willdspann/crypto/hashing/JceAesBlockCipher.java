@@ -0,0 +1,76 @@
+package info.willdspann.crypto.hashing;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import javax.validation.constraints.NotNull;
+
+import org.bouncycastle.crypto.BlockCipher;
+import org.bouncycastle.crypto.CipherParameters;
+import org.bouncycastle.crypto.DataLengthException;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+/**
+ * Adapts the JDK's AES implementation (i.e., "AES/ECB/NoPadding"), which is intrinsified with AES-NI on CPUs that
+ * support it, to BouncyCastle's {@link BlockCipher} interface, so that BouncyCastle's CTR_DRBG can run over it rather
+ * than over its pure-Java {@code AESEngine}. Only encryption is supported, as CTR_DRBG never decrypts.
+ */
+class JceAesBlockCipher implements BlockCipher {
+    private static final String CIPHER_TRANSFORMATION = "AES/ECB/NoPadding";
+    private static final int BLOCK_SIZE = 16;  // bytes
+
+    private final Cipher cipher;
+
+    JceAesBlockCipher() {
+        try {
+            this.cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+        } catch (GeneralSecurityException gse) {
+            // Every JDK is required to support AES/ECB/NoPadding.
+            throw new IllegalStateException(gse);
+        }
+    }
+
+    @Override
+    public void init(boolean forEncryption, @NotNull final CipherParameters params) {
+        if (!forEncryption) {
+            throw new IllegalArgumentException("Only AES encryption is supported.");
+        }
+        if (!(params instanceof KeyParameter)) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid parameters passed to AES init: %s", params.getClass().getName()));
+        }
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(((KeyParameter) params).getKey(), "AES"));
+        } catch (GeneralSecurityException gse) {
+            throw new IllegalArgumentException("Invalid AES key.", gse);
+        }
+    }
+
+    @Override
+    public String getAlgorithmName() {
+        return "AES";
+    }
+
+    @Override
+    public int getBlockSize() {
+        return BLOCK_SIZE;
+    }
+
+    @Override
+    public int processBlock(@NotNull final byte[] in, int inOff, @NotNull final byte[] out, int outOff) {
+        if (inOff + BLOCK_SIZE > in.length || outOff + BLOCK_SIZE > out.length) {
+            throw new DataLengthException("AES block out of range.");
+        }
+        try {
+            return cipher.update(in, inOff, BLOCK_SIZE, out, outOff);
+        } catch (GeneralSecurityException gse) {
+            throw new IllegalStateException(gse);
+        }
+    }
+
+    @Override
+    public void reset() {
+        // ECB mode without padding keeps no state between blocks.
+    }
+}
@@ -0,0 +1,242 @@
+package info.willdspann.crypto.hashing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+import javax.validation.constraints.NotNull;
+
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+/**
+ * <p>
+ * Bulk salted hash generator, which splits the hashing of many cleartext values across a {@link ForkJoinPool}, and
+ * returns results in the same order as the given cleartexts. Each cleartext is hashed via a shared
+ * {@link SaltedHashGenerator}, so sharing a {@link SaltSequenceCache} through it also benefits bulk hashing. </p>
+ * <p>
+ * For inputs that are too large to materialize, {@link #generateNthSaltedHashes(Iterator, int, Consumer)} consumes
+ * cleartexts in batches and delivers results in order, while bounding the number of batches in flight. The calling
+ * thread blocks once this bound is reached, which applies backpressure to the producer of cleartexts. </p>
+ */
+public class ParallelSaltedHashGenerator {
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final int DEFAULT_MAX_IN_FLIGHT_BATCHES = 4 * Runtime.getRuntime().availableProcessors();
+
+    private final SaltedHashGenerator saltedHashGenerator;
+    private final ForkJoinPool pool;
+    private final int batchSize;
+    private final int maxInFlightBatches;
+
+    public ParallelSaltedHashGenerator(@NotNull final SaltedHashGenerator saltedHashGenerator) {
+        this(saltedHashGenerator, ForkJoinPool.commonPool());
+    }
+
+    public ParallelSaltedHashGenerator(@NotNull final SaltedHashGenerator saltedHashGenerator,
+                                       @NotNull final ForkJoinPool pool)
+    {
+        this(saltedHashGenerator, pool, DEFAULT_BATCH_SIZE, DEFAULT_MAX_IN_FLIGHT_BATCHES);
+    }
+
+    /**
+     * @param saltedHashGenerator generator used to produce each salted hash.
+     * @param pool fork-join pool across which hashing is split.
+     * @param batchSize maximum number of cleartexts hashed sequentially by a single task.
+     * @param maxInFlightBatches maximum number of batches submitted but not yet delivered, when hashing an
+     *                           {@code Iterator} of cleartexts.
+     */
+    public ParallelSaltedHashGenerator(@NotNull final SaltedHashGenerator saltedHashGenerator,
+                                       @NotNull final ForkJoinPool pool,
+                                       int batchSize,
+                                       int maxInFlightBatches)
+    {
+        if (batchSize <= 0 || maxInFlightBatches <= 0) {
+            throw new IllegalArgumentException("Batch size and maximum in-flight batches must be positive.");
+        }
+        this.saltedHashGenerator = saltedHashGenerator;
+        this.pool = pool;
+        this.batchSize = batchSize;
+        this.maxInFlightBatches = maxInFlightBatches;
+    }
+
+    /**
+     * Generates the salted hash at index {@code saltIndex} of each given cleartext, in parallel.
+     *
+     * @param cleartexts cleartext values for which to generate salted hashes.
+     * @param saltIndex salt index at which to generate each salted hash.
+     * @return each cleartext's salted hash, in the same order as {@code cleartexts}.
+     */
+    public List<SaltedHash> getNthSaltedHashes(@NotNull final List<byte[]> cleartexts, int saltIndex) {
+        return Arrays.asList(getNthSaltedHashes(cleartexts.toArray(new byte[0][]), saltIndex));
+    }
+
+    /**
+     * Generates the salted hash at index {@code saltIndex} of each given cleartext, in parallel.
+     *
+     * @param cleartexts cleartext values for which to generate salted hashes.
+     * @param saltIndex salt index at which to generate each salted hash.
+     * @return each cleartext's salted hash, in the same order as {@code cleartexts}.
+     */
+    public SaltedHash[] getNthSaltedHashes(@NotNull final byte[][] cleartexts, int saltIndex) {
+        final int[] saltIndices = new int[cleartexts.length];
+        Arrays.fill(saltIndices, saltIndex);
+
+        return getNthSaltedHashes(cleartexts, saltIndices);
+    }
+
+    /**
+     * Generates the salted hash of each given cleartext at its corresponding salt index, in parallel.
+     *
+     * @param cleartexts cleartext values for which to generate salted hashes.
+     * @param saltIndices salt index at which to generate each cleartext's salted hash.
+     * @return each cleartext's salted hash, in the same order as {@code cleartexts}.
+     */
+    public List<SaltedHash> getNthSaltedHashes(@NotNull final List<byte[]> cleartexts, @NotNull final int[] saltIndices) {
+        return Arrays.asList(getNthSaltedHashes(cleartexts.toArray(new byte[0][]), saltIndices));
+    }
+
+    /**
+     * Generates the salted hash of each given cleartext at its corresponding salt index, in parallel.
+     *
+     * @param cleartexts cleartext values for which to generate salted hashes.
+     * @param saltIndices salt index at which to generate each cleartext's salted hash.
+     * @return each cleartext's salted hash, in the same order as {@code cleartexts}.
+     */
+    public SaltedHash[] getNthSaltedHashes(@NotNull final byte[][] cleartexts, @NotNull final int[] saltIndices) {
+        if (cleartexts.length != saltIndices.length) {
+            throw new IllegalArgumentException("Expected exactly one salt index per cleartext.");
+        }
+        final SaltedHash[] results = new SaltedHash[cleartexts.length];
+        pool.invoke(new RangeTask(0, cleartexts.length, (from, to) -> {
+            for (int i = from; i < to; ++i) {
+                results[i] = saltedHashGenerator.getNthSaltedHash(cleartexts[i], saltIndices[i]);
+            }
+        }));
+
+        return results;
+    }
+
+    /**
+     * Generates the first {@code counts[i]} salted hashes of each given cleartext, in parallel.
+     *
+     * @param cleartexts cleartext values for which to generate salted hashes.
+     * @param counts number of salted hashes to generate for each cleartext.
+     * @return each cleartext's set of salted hashes, in the same order as {@code cleartexts}.
+     */
+    public List<Set<SaltedHash>> getSaltedHashes(@NotNull final List<byte[]> cleartexts, @NotNull final int[] counts) {
+        if (cleartexts.size() != counts.length) {
+            throw new IllegalArgumentException("Expected exactly one count per cleartext.");
+        }
+        final byte[][] cleartextArray = cleartexts.toArray(new byte[0][]);
+        @SuppressWarnings("unchecked")
+        final Set<SaltedHash>[] results = (Set<SaltedHash>[]) new Set<?>[cleartextArray.length];
+
+        pool.invoke(new RangeTask(0, cleartextArray.length, (from, to) -> {
+            for (int i = from; i < to; ++i) {
+                results[i] = saltedHashGenerator.getSaltedHashes(cleartextArray[i], counts[i]);
+            }
+        }));
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Generates the salted hash at index {@code saltIndex} of each cleartext produced by the given iterator, and
+     * passes each to {@code resultConsumer} on the calling thread, in the same order as the cleartexts. At most
+     * {@code maxInFlightBatches} batches are hashed ahead of the consumer; once this bound is reached, no further
+     * cleartexts are read until the oldest batch has been delivered.
+     *
+     * @param cleartexts iterator of cleartext values for which to generate salted hashes.
+     * @param saltIndex salt index at which to generate each salted hash.
+     * @param resultConsumer consumer of each salted hash, in cleartext order.
+     * @return the number of salted hashes generated.
+     */
+    public long generateNthSaltedHashes(@NotNull final Iterator<byte[]> cleartexts,
+                                        int saltIndex,
+                                        @NotNull final Consumer<SaltedHash> resultConsumer)
+    {
+        final Deque<ForkJoinTask<SaltedHash[]>> inFlight = new ArrayDeque<>(maxInFlightBatches);
+        long generatedCount = 0;
+
+        try {
+            while (cleartexts.hasNext()) {
+                final List<byte[]> batch = new ArrayList<>(batchSize);
+                while (batch.size() < batchSize && cleartexts.hasNext()) {
+                    batch.add(cleartexts.next());
+                }
+                if (inFlight.size() == maxInFlightBatches) {
+                    generatedCount += deliver(inFlight.removeFirst(), resultConsumer);
+                }
+                final byte[][] batchArray = batch.toArray(new byte[0][]);
+                inFlight.addLast(pool.submit(() -> getNthSaltedHashesSequentially(batchArray, saltIndex)));
+            }
+            while (!inFlight.isEmpty()) {
+                generatedCount += deliver(inFlight.removeFirst(), resultConsumer);
+            }
+        } finally {
+            inFlight.forEach(task -> task.cancel(false));
+        }
+        return generatedCount;
+    }
+
+    private SaltedHash[] getNthSaltedHashesSequentially(@NotNull final byte[][] cleartexts, int saltIndex) {
+        final SaltedHash[] results = new SaltedHash[cleartexts.length];
+        for (int i = 0; i < cleartexts.length; ++i) {
+            results[i] = saltedHashGenerator.getNthSaltedHash(cleartexts[i], saltIndex);
+        }
+        return results;
+    }
+
+    private static int deliver(@NotNull final ForkJoinTask<SaltedHash[]> batchTask,
+                               @NotNull final Consumer<SaltedHash> resultConsumer)
+    {
+        final SaltedHash[] results = batchTask.join();
+        for (SaltedHash result : results) {
+            resultConsumer.accept(result);
+        }
+        return results.length;
+    }
+
+
+    /**
+     * Work to be performed sequentially over the index range [{@code from}, {@code to}).
+     */
+    @FunctionalInterface
+    private interface RangeBody {
+        void compute(int from, int to);
+    }
+
+    /**
+     * A fork-join task that recursively splits an index range in half, until it is no larger than the batch size.
+     */
+    private final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final RangeBody body;
+
+        private RangeTask(int from, int to, @NotNull final RangeBody body) {
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= batchSize) {
+                body.compute(from, to);
+            } else {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new RangeTask(from, mid, body), new RangeTask(mid, to, body));
+            }
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package info.willdspann.crypto.hashing;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -11,19 +13,32 @@ import javax.validation.constraints.NotNull;
 
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.HmacAlgorithms;
+import org.apache.commons.codec.digest.HmacUtils;
 
 import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.digests.SHA512Digest;
+import org.bouncycastle.crypto.macs.HMac;
 import org.bouncycastle.crypto.prng.BasicEntropySourceProvider;
 import org.bouncycastle.crypto.prng.EntropySourceProvider;
 import org.bouncycastle.crypto.prng.FixedSecureRandom;
+import org.bouncycastle.crypto.prng.drbg.CTRSP800DRBG;
+import org.bouncycastle.crypto.prng.drbg.HMacSP800DRBG;
 import org.bouncycastle.crypto.prng.drbg.HashSP800DRBG;
 import org.bouncycastle.crypto.prng.drbg.SP80090DRBG;
 
+import info.willdspann.crypto.enums.SaltSequenceVersion;
+import info.willdspann.crypto.util.MemoryUtils;
+
 import static info.willdspann.crypto.hashing.ReproducibleSeedGenerator.NULL_STRING_MARKER;
 
 /**
  * Utility class that supports generating a reproducible yet unpredictable sequence of salt values associated with a
  * given cleartext value and secret seed.
+ * <p>
+ * Every method accepts an optional {@link SaltSequenceVersion}, which selects how the salt sequence is derived from
+ * the associated seed. Methods without a version argument use {@link SaltSequenceVersion#DEFAULT_VERSION}, so that
+ * previously generated salted hashes remain reproducible. </p>
  *
  * @see ReproducibleSeedGenerator
  * @see SaltedHashGenerator
@@ -32,33 +47,80 @@ public final class ReproducibleSaltGenerator {
     static final int DEFAULT_SALT_LENGTH = 16;     // bytes
     private static final String DRBG_ALGORITHM = "DRBG";
     private static final int DRBG_SECURITY_STRENGTH = 256; // highest security strength (should be >= the largest random value requested at a time)
+    private static final int AES_KEY_SIZE = 256;  // bits
+    /** Salts generated per DRBG request by the buffered DRBG versions (V3 and later), amortizing each request. */
+    private static final int SALTS_PER_DRBG_REQUEST = 16;
 
     private ReproducibleSaltGenerator() { }
 
     public static byte[] generateSaltForValue(@NotNull final byte[] associatedBytes, @NotNull final byte[] secretSeed, int saltIndex) {
+        return generateSaltForValue(associatedBytes, secretSeed, saltIndex, SaltSequenceVersion.DEFAULT_VERSION);
+    }
+
+    /**
+     * Calculates the salt value at index {@code saltIndex} for the given associated data value and secret seed, using
+     * the given salt sequence version. For random-access versions this costs the same for any index, whereas
+     * sequential versions must generate every preceding salt.
+     *
+     * @param associatedBytes associated data value for which to generate a salt.
+     * @param secretSeed secret seed value used to generate the associated seed.
+     * @param saltIndex zero-based index of the salt value in the associated salt sequence.
+     * @param version salt sequence version with which to derive the salt value.
+     * @return the salt value at index {@code saltIndex}.
+     */
+    public static byte[] generateSaltForValue(@NotNull final byte[] associatedBytes,
+                                              @NotNull final byte[] secretSeed,
+                                              int saltIndex,
+                                              @NotNull final SaltSequenceVersion version)
+    {
         assert saltIndex >= 0;
 
-        final Iterator<byte[]> saltIter = iteratorForValue(associatedBytes, secretSeed);
+        final byte[] associatedSeed = ReproducibleSeedGenerator.generateSeedForValue(associatedBytes, secretSeed);
+        try {
+            return generateSaltForSeed(associatedSeed, saltIndex, version);
+        } finally {
+            MemoryUtils.clearBuffer(associatedSeed);
+        }
+    }
 
-        byte[] salt = null;
-        for (int i = 0; i <= saltIndex; ++i) {
-            salt = saltIter.next();
+    /**
+     * Calculates the salt value at index {@code saltIndex} of the salt sequence derived from the given associated seed
+     * (see {@link ReproducibleSeedGenerator}), using the given salt sequence version.
+     */
+    static byte[] generateSaltForSeed(@NotNull final byte[] associatedSeed,
+                                      int saltIndex,
+                                      @NotNull final SaltSequenceVersion version)
+    {
+        if (version.isRandomAccess()) {
+            return deriveCounterSalt(associatedSeed, saltIndex);
         }
-        return salt;
+
+        final Iterator<byte[]> saltIter = newSaltIterator(associatedSeed, version);
+        for (int i = 0; i < saltIndex; ++i) {
+            MemoryUtils.clearBuffer(saltIter.next());
+        }
+        return saltIter.next();
     }
 
     public static String generateSaltForValue(@Nullable final String associatedValue,
                                               @NotNull final String secretSeedHex,
                                               int saltIndex) throws DecoderException {
+        return generateSaltForValue(associatedValue, secretSeedHex, saltIndex, SaltSequenceVersion.DEFAULT_VERSION);
+    }
+
+    public static String generateSaltForValue(@Nullable final String associatedValue,
+                                              @NotNull final String secretSeedHex,
+                                              int saltIndex,
+                                              @NotNull final SaltSequenceVersion version) throws DecoderException
+    {
         assert saltIndex >= 0;
 
-        final Iterator<String> saltIter = iteratorForValue(associatedValue, secretSeedHex);
+        final byte[] secretSeedBytes = Hex.decodeHex(secretSeedHex);
+        final byte[] salt = generateSaltForValue(
+                toAssociatedBytes(associatedValue), secretSeedBytes, saltIndex, version);
+        MemoryUtils.clearBuffer(secretSeedBytes);
 
-        String saltHex = null;
-        for (int i = 0; i <= saltIndex; ++i) {
-            saltHex = saltIter.next();
-        }
-        return saltHex;
+        return Hex.encodeHexString(salt);
     }
 
     /**
@@ -72,9 +134,17 @@ public final class ReproducibleSaltGenerator {
     public static List<byte[]> generateSaltsForValue(@NotNull final byte[] associatedBytes,
                                                      @NotNull final byte[] secretSeedBytes,
                                                      int count) {
+        return generateSaltsForValue(associatedBytes, secretSeedBytes, count, SaltSequenceVersion.DEFAULT_VERSION);
+    }
+
+    public static List<byte[]> generateSaltsForValue(@NotNull final byte[] associatedBytes,
+                                                     @NotNull final byte[] secretSeedBytes,
+                                                     int count,
+                                                     @NotNull final SaltSequenceVersion version)
+    {
         assert count > 0;
 
-        final Iterator<byte[]> saltIter = iteratorForValue(associatedBytes, secretSeedBytes);
+        final Iterator<byte[]> saltIter = iteratorForValue(associatedBytes, secretSeedBytes, version);
         final List<byte[]> salts = new ArrayList<>(count);
 
         for (int i = 0; i < count; ++i) {
@@ -96,9 +166,18 @@ public final class ReproducibleSaltGenerator {
     public static List<String> generateSaltsForValue(@Nullable final String associatedValue,
                                                      @NotNull final String secretSeedHex,
                                                      int count) throws DecoderException {
+        return generateSaltsForValue(associatedValue, secretSeedHex, count, SaltSequenceVersion.DEFAULT_VERSION);
+    }
+
+    public static List<String> generateSaltsForValue(@Nullable final String associatedValue,
+                                                     @NotNull final String secretSeedHex,
+                                                     int count,
+                                                     @NotNull final SaltSequenceVersion version)
+            throws DecoderException
+    {
         assert count > 0;
 
-        final Iterator<String> saltIter = iteratorForValue(associatedValue, secretSeedHex);
+        final Iterator<String> saltIter = iteratorForValue(associatedValue, secretSeedHex, version);
         final List<String> salts = new ArrayList<>(count);
 
         for (int i = 0; i < count; ++i) {
@@ -109,55 +188,150 @@ public final class ReproducibleSaltGenerator {
 
     public static Iterator<byte[]> iteratorForValue(@NotNull final byte[] associatedBytes,
                                                     @NotNull final byte[] secretSeedBytes
+    ) {
+        return iteratorForValue(associatedBytes, secretSeedBytes, SaltSequenceVersion.DEFAULT_VERSION);
+    }
+
+    public static Iterator<byte[]> iteratorForValue(@NotNull final byte[] associatedBytes,
+                                                    @NotNull final byte[] secretSeedBytes,
+                                                    @NotNull final SaltSequenceVersion version
     ) {
         final byte[] associatedSeed = ReproducibleSeedGenerator.generateSeedForValue(associatedBytes, secretSeedBytes);
 
-        return new SaltIterator(associatedSeed);
+        return newSaltIterator(associatedSeed, version);
     }
 
     public static Iterator<String> iteratorForValue(@Nullable final String associatedValue, @NotNull final String secretSeedHex) throws DecoderException {
-        byte[] associatedBytes;
-        if (associatedValue != null) {
-            associatedBytes = associatedValue.getBytes(StandardCharsets.UTF_8);
-        } else {
-            associatedBytes = NULL_STRING_MARKER.getBytes(StandardCharsets.UTF_8);
-        }
+        return iteratorForValue(associatedValue, secretSeedHex, SaltSequenceVersion.DEFAULT_VERSION);
+    }
 
+    public static Iterator<String> iteratorForValue(@Nullable final String associatedValue,
+                                                    @NotNull final String secretSeedHex,
+                                                    @NotNull final SaltSequenceVersion version)
+            throws DecoderException
+    {
         final byte[] secretSeedBytes = Hex.decodeHex(secretSeedHex);
-        final byte[] associatedSeed = ReproducibleSeedGenerator.generateSeedForValue(associatedBytes, secretSeedBytes);
+        final byte[] associatedSeed = ReproducibleSeedGenerator.generateSeedForValue(
+                toAssociatedBytes(associatedValue), secretSeedBytes);
+        MemoryUtils.clearBuffer(secretSeedBytes);
+
+        return new HexSaltIterator(newSaltIterator(associatedSeed, version));
+    }
+
+    /**
+     * Creates an iterator over the salt sequence of the given version, starting from the given associated seed.
+     *
+     * @param associatedSeed associated seed from which to derive the salt sequence.
+     * @param version salt sequence version with which to derive the salt sequence.
+     * @return an iterator producing the associated salt sequence, starting from index 0.
+     */
+    static Iterator<byte[]> newSaltIterator(@NotNull final byte[] associatedSeed,
+                                            @NotNull final SaltSequenceVersion version)
+    {
+        switch (version) {
+            case V1_HASH_DRBG:
+                return new SaltIterator(associatedSeed);
+            case V2_COUNTER_HMAC:
+                return new CounterSaltIterator(associatedSeed);
+            case V3_HMAC_DRBG:
+            case V4_CTR_DRBG:
+                return new BufferedSaltIterator(initDRBG(associatedSeed, version));
+            default:
+                throw new IllegalArgumentException(
+                        String.format("Unsupported salt sequence version: %d", version.getVersion())
+                );
+        }
+    }
+
+    /**
+     * <p>Derives the salt value at index {@code saltIndex} directly from the associated seed, for the counter-based
+     * salt sequence ({@link SaltSequenceVersion#V2_COUNTER_HMAC}), where '|' represents concatenation.</p>
+     * <pre>
+     *     salt_i = truncate( hmacSha256( associatedSeed, uint64BE( i ) ), DEFAULT_SALT_LENGTH )
+     * </pre>
+     *
+     * @param associatedSeed associated seed, used as the HMAC key.
+     * @param saltIndex zero-based index of the salt value to derive.
+     * @return the salt value at index {@code saltIndex}.
+     */
+    static byte[] deriveCounterSalt(@NotNull final byte[] associatedSeed, long saltIndex) {
+        return deriveCounterSalt(new HmacUtils(HmacAlgorithms.HMAC_SHA_256, associatedSeed), saltIndex);
+    }
+
+    private static byte[] deriveCounterSalt(@NotNull final HmacUtils prf, long saltIndex) {
+        final byte[] counter = ByteBuffer.allocate(Long.BYTES).putLong(saltIndex).array();
+        final byte[] mac = prf.hmac(counter);
+        final byte[] salt = Arrays.copyOf(mac, DEFAULT_SALT_LENGTH);
+        MemoryUtils.clearBuffer(mac);
+
+        return salt;
+    }
 
-        return new HexSaltIterator(associatedSeed);
+    private static byte[] toAssociatedBytes(@Nullable final String associatedValue) {
+        if (associatedValue != null) {
+            return associatedValue.getBytes(StandardCharsets.UTF_8);
+        } else {
+            return NULL_STRING_MARKER.getBytes(StandardCharsets.UTF_8);
+        }
     }
 
     /**
      * Creates a Deterministic Random Bit Generator (DRBG), used to generate a reproducible yet unpredictable sequence
-     * of salt values, from the given starting seed value.
+     * of salt values, of the given salt sequence version from the given associated seed. The V3 and later DRBGs are
+     * instantiated with the first half of the (64 B) associated seed as entropy input, and its second half as nonce,
+     * whereas V1's Hash_DRBG takes only the entropy input.
      *
-     * @param seedBytes
-     * @return
+     * @param seedBytes associated seed from which to instantiate the DRBG.
+     * @param version salt sequence version, which determines the DRBG mechanism.
+     * @return a DRBG producing the salt sequence's pseudo-random bits.
      */
-    private static SP80090DRBG initDRBG(byte[] seedBytes) {
+    private static SP80090DRBG initDRBG(byte[] seedBytes, @NotNull final SaltSequenceVersion version) {
         final SecureRandom preSeededFixedPRNG = new FixedSecureRandom(true, seedBytes);
         final EntropySourceProvider seedSource = new BasicEntropySourceProvider(preSeededFixedPRNG, false);
 
-        return new HashSP800DRBG(
-                new SHA256Digest(),
-                DRBG_SECURITY_STRENGTH,
-                seedSource.get(DRBG_SECURITY_STRENGTH),
-                null,
-                null
-        );
+        final byte[] nonce = Arrays.copyOfRange(seedBytes, DRBG_SECURITY_STRENGTH / 8, seedBytes.length);
+        try {
+            switch (version) {
+                case V1_HASH_DRBG:
+                    return new HashSP800DRBG(
+                            new SHA256Digest(),
+                            DRBG_SECURITY_STRENGTH,
+                            seedSource.get(DRBG_SECURITY_STRENGTH),
+                            null,
+                            null
+                    );
+                case V3_HMAC_DRBG:
+                    return new HMacSP800DRBG(
+                            new HMac(new SHA512Digest()),
+                            DRBG_SECURITY_STRENGTH,
+                            seedSource.get(DRBG_SECURITY_STRENGTH),
+                            null,
+                            nonce
+                    );
+                case V4_CTR_DRBG:
+                    return new CTRSP800DRBG(
+                            new JceAesBlockCipher(),
+                            AES_KEY_SIZE,
+                            DRBG_SECURITY_STRENGTH,
+                            seedSource.get(DRBG_SECURITY_STRENGTH),
+                            null,
+                            nonce
+                    );
+                default:
+                    throw new IllegalArgumentException(
+                            String.format("Salt sequence version %d isn't DRBG-based.", version.getVersion())
+                    );
+            }
+        } finally {
+            MemoryUtils.clearBuffer(nonce);
+        }
     }
 
 
     private static class HexSaltIterator implements Iterator<String> {
-        private SaltIterator iter;
+        private Iterator<byte[]> iter;
 
-        private HexSaltIterator(@NotNull final byte[] associatedSeed) {
-            this.iter = new SaltIterator(associatedSeed);
-        }
-
-        private HexSaltIterator(@NotNull final SaltIterator saltIterator) {
+        private HexSaltIterator(@NotNull final Iterator<byte[]> saltIterator) {
             this.iter = saltIterator;
         }
 
@@ -188,7 +362,7 @@ public final class ReproducibleSaltGenerator {
          *                       value for which salts will be generated.
          */
         private SaltIterator(@NotNull final byte[] associatedSeed) {
-            this.drbg = initDRBG(associatedSeed);
+            this.drbg = initDRBG(associatedSeed, SaltSequenceVersion.V1_HASH_DRBG);
         }
 
         @Override
@@ -204,4 +378,60 @@ public final class ReproducibleSaltGenerator {
             return nextSalt;
         }
     }
+
+    /**
+     * An iterator that produces each pseudo-random salt value from a DRBG, requesting
+     * {@value #SALTS_PER_DRBG_REQUEST} salts' worth of bits at a time, so that the DRBG's per-request state update is
+     * amortized over them.
+     */
+    private static class BufferedSaltIterator implements Iterator<byte[]> {
+        private final SP80090DRBG drbg;
+        private final byte[] buffer = new byte[SALTS_PER_DRBG_REQUEST * DEFAULT_SALT_LENGTH];
+        private int bufferOffset = buffer.length;
+
+        private BufferedSaltIterator(@NotNull final SP80090DRBG drbg) {
+            this.drbg = drbg;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return true;
+        }
+
+        @Override
+        public byte[] next() {
+            if (bufferOffset == buffer.length) {
+                drbg.generate(buffer, null, false);
+                bufferOffset = 0;
+            }
+            final byte[] nextSalt = Arrays.copyOfRange(buffer, bufferOffset, bufferOffset + DEFAULT_SALT_LENGTH);
+            Arrays.fill(buffer, bufferOffset, bufferOffset + DEFAULT_SALT_LENGTH, (byte) 0);
+            bufferOffset += DEFAULT_SALT_LENGTH;
+
+            return nextSalt;
+        }
+    }
+
+    /**
+     * An iterator that produces each salt value of the counter-based salt sequence
+     * ({@link SaltSequenceVersion#V2_COUNTER_HMAC}) for a given associated data value's associated seed.
+     */
+    private static class CounterSaltIterator implements Iterator<byte[]> {
+        private final HmacUtils prf;
+        private long nextIndex = 0;
+
+        private CounterSaltIterator(@NotNull final byte[] associatedSeed) {
+            this.prf = new HmacUtils(HmacAlgorithms.HMAC_SHA_256, associatedSeed);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return true;
+        }
+
+        @Override
+        public byte[] next() {
+            return deriveCounterSalt(prf, nextIndex++);
+        }
+    }
 }
@@ -1,12 +1,20 @@
 package info.willdspann.crypto.hashing;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Hex;
-import org.apache.commons.codec.digest.DigestUtils;
 
+import info.willdspann.crypto.enums.CryptoHashAlgorithm;
 import info.willdspann.crypto.util.MemoryUtils;
+import info.willdspann.crypto.util.OffHeapSecret;
+import info.willdspann.crypto.util.hashing.CleartextDigests;
+import info.willdspann.crypto.util.hashing.DigestRegistry;
 
 /**
  * Utility class that generates associated seed values, which use a secret seed value to produce a specially-constructed
@@ -18,6 +26,13 @@ import info.willdspann.crypto.util.MemoryUtils;
  */
 public class ReproducibleSeedGenerator {
     public static final String NULL_STRING_MARKER = "";
+    private static final int SHA512_LEN = 64;  // bytes
+    /**
+     * Per-thread scratch buffers for the inner SHA-512 hash, which is fed straight into the outer one. Each buffer is
+     * cleared as soon as the outer hash has consumed it, so no cleartext hash lingers between calls.
+     */
+    static final ThreadLocal<byte[]> INNER_HASH_SCRATCH_BUFFERS =
+            ThreadLocal.withInitial(() -> new byte[SHA512_LEN]);
 
     /**
      * <p>
@@ -38,10 +53,81 @@ public class ReproducibleSeedGenerator {
      *   and secret seed value.
      */
     public static byte[] generateSeedForValue(byte[] associatedValue, byte[] secretSeed) {
-        final byte[] unsaltedHash = DigestUtils.sha512(associatedValue);
-        final byte[] unsaltedHashAndSeed = MemoryUtils.concatenateBuffers(unsaltedHash, secretSeed);
+        final MessageDigest digest = threadLocalSha512Digest();
+        final byte[] unsaltedHash = INNER_HASH_SCRATCH_BUFFERS.get();
+        try {
+            digestInto(digest, associatedValue, unsaltedHash);
+            return generateSeedForUnsaltedHash(unsaltedHash, secretSeed);
+        } finally {
+            MemoryUtils.clearBuffer(unsaltedHash);
+        }
+    }
+
+    /**
+     * Generates a reproducible yet unpredictable seed value (64 B) associated with the given {@code associatedValue},
+     * reading the secret seed straight from off-heap memory, without copying it onto the heap.
+     *
+     * @param associatedValue value to which the generated seed will be associated.
+     * @param secretSeed off-heap secret seed value used to ensure the generated associated seed is unpredictable.
+     * @return a reproducible yet unpredictable seed value (64 B) associated with the given {@code associatedValue}.
+     * @see #generateSeedForValue(byte[], byte[])
+     */
+    public static byte[] generateSeedForValue(byte[] associatedValue, OffHeapSecret secretSeed) {
+        final MessageDigest digest = threadLocalSha512Digest();
+        final byte[] unsaltedHash = INNER_HASH_SCRATCH_BUFFERS.get();
+        try {
+            digestInto(digest, associatedValue, unsaltedHash);
+            digest.update(unsaltedHash);
+            secretSeed.updateDigest(digest);
+
+            return digest.digest();
+        } finally {
+            MemoryUtils.clearBuffer(unsaltedHash);
+        }
+    }
+
+    /**
+     * Generates a reproducible yet unpredictable seed value (64 B) associated with the value from which the given
+     * digests were computed, reading the secret seed straight from off-heap memory.
+     *
+     * @param associatedValueDigests digests of the value to which the generated seed will be associated.
+     * @param secretSeed off-heap secret seed value used to ensure the generated associated seed is unpredictable.
+     * @return a reproducible yet unpredictable seed value (64 B) associated with the digested value.
+     * @see #generateSeedForValue(CleartextDigests, byte[])
+     */
+    public static byte[] generateSeedForValue(CleartextDigests associatedValueDigests, OffHeapSecret secretSeed) {
+        final MessageDigest digest = threadLocalSha512Digest();
+        digest.update(associatedValueDigests.getSha512Hash());
+        secretSeed.updateDigest(digest);
 
-        return DigestUtils.sha512(unsaltedHashAndSeed);
+        return digest.digest();
+    }
+
+    /**
+     * Generates a reproducible yet unpredictable seed value (64 B) associated with the value read from the given
+     * stream until its end, in constant memory. The stream is not closed.
+     *
+     * @param associatedValue stream of the value to which the generated seed will be associated.
+     * @param secretSeed secret seed value used to ensure the generated associated seed is unpredictable.
+     * @return a reproducible yet unpredictable seed value (64 B) associated with the streamed value.
+     * @throws IOException if unable to read from the stream.
+     * @see #generateSeedForValue(byte[], byte[])
+     */
+    public static byte[] generateSeedForValue(InputStream associatedValue, byte[] secretSeed) throws IOException {
+        return generateSeedForValue(CleartextDigests.of(associatedValue), secretSeed);
+    }
+
+    /**
+     * Generates a reproducible yet unpredictable seed value (64 B) associated with the value from which the given
+     * digests were computed, without reading the value again.
+     *
+     * @param associatedValueDigests digests of the value to which the generated seed will be associated.
+     * @param secretSeed secret seed value used to ensure the generated associated seed is unpredictable.
+     * @return a reproducible yet unpredictable seed value (64 B) associated with the digested value.
+     * @see #generateSeedForValue(byte[], byte[])
+     */
+    public static byte[] generateSeedForValue(CleartextDigests associatedValueDigests, byte[] secretSeed) {
+        return generateSeedForUnsaltedHash(associatedValueDigests.getSha512Hash(), secretSeed);
     }
 
     /**
@@ -79,4 +165,37 @@ public class ReproducibleSeedGenerator {
 
         return Hex.encodeHexString(associatedSeed);
     }
+
+    /**
+     * Computes {@code sha512( unsaltedHash | secretSeed )}, feeding both parts into the digest rather than
+     * concatenating them into a new buffer first.
+     */
+    private static byte[] generateSeedForUnsaltedHash(byte[] unsaltedHash, byte[] secretSeed) {
+        final MessageDigest digest = threadLocalSha512Digest();
+        digest.update(unsaltedHash);
+        digest.update(secretSeed);
+
+        return digest.digest();
+    }
+
+    /** Computes the SHA-512 hash of the given value into the given scratch buffer, leaving the digest reset. */
+    private static void digestInto(MessageDigest digest, byte[] value, byte[] scratchBuffer) {
+        digest.update(value);
+        try {
+            digest.digest(scratchBuffer, 0, SHA512_LEN);
+        } catch (DigestException de) {
+            // Unreachable, since the scratch buffer fits a SHA-512 hash.
+            throw new IllegalStateException(de);
+        }
+    }
+
+    /** Returns this thread's reset SHA-512 digest, rather than looking up a new one per associated seed. */
+    private static MessageDigest threadLocalSha512Digest() {
+        try {
+            return DigestRegistry.threadLocalDigest(CryptoHashAlgorithm.SHA_512);
+        } catch (NoSuchAlgorithmException nsae) {
+            // Every JDK is required to support SHA-512.
+            throw new IllegalStateException(nsae);
+        }
+    }
 }
@@ -0,0 +1,341 @@
+package info.willdspann.crypto.hashing;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.validation.constraints.NotNull;
+
+import info.willdspann.crypto.enums.SaltSequenceVersion;
+import info.willdspann.crypto.util.MemoryUtils;
+
+/**
+ * <p>
+ * Bounded cache of per-value salt sequences, keyed by associated seed (see {@link ReproducibleSeedGenerator}) and
+ * salt sequence version. Each cached sequence retains the salts generated so far along with its generator state
+ * (e.g., DRBG), so that a later lookup or iteration resumes where the last one stopped, instead of reinstantiating
+ * the generator and regenerating every salt from index 0. </p>
+ * <p>
+ * Sequences are evicted least-recently-used first once more than {@code maxSequences} are cached, and whenever they
+ * have been idle for longer than {@code maxIdle}. Evicted sequences have their associated seed and salts cleared via
+ * {@link MemoryUtils#clearBuffer(byte[])}. At most {@code maxSaltsPerSequence} salts are retained per sequence;
+ * salts beyond that index are still served, but are regenerated on each lookup. </p>
+ * <p>
+ * This class is thread-safe, and may be shared across {@link SaltedHashGenerator} instances, including ones created
+ * with different secret seeds. </p>
+ */
+public class SaltSequenceCache {
+    public static final int DEFAULT_MAX_SEQUENCES = 10_000;
+    public static final int DEFAULT_MAX_SALTS_PER_SEQUENCE = 1_024;
+    public static final Duration DEFAULT_MAX_IDLE = Duration.ofMinutes(10);
+
+    private final int maxSequences;
+    private final int maxSaltsPerSequence;
+    private final long maxIdleNanos;
+
+    /** Access-ordered map of cached salt sequences, guarded by its own monitor. */
+    private final LinkedHashMap<SequenceKey, CachedSaltSequence> sequences;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    public SaltSequenceCache() {
+        this(DEFAULT_MAX_SEQUENCES, DEFAULT_MAX_SALTS_PER_SEQUENCE, DEFAULT_MAX_IDLE);
+    }
+
+    public SaltSequenceCache(int maxSequences, int maxSaltsPerSequence, @NotNull final Duration maxIdle) {
+        if (maxSequences <= 0 || maxSaltsPerSequence <= 0) {
+            throw new IllegalArgumentException("Cache bounds must be positive.");
+        }
+        this.maxSequences = maxSequences;
+        this.maxSaltsPerSequence = maxSaltsPerSequence;
+        this.maxIdleNanos = maxIdle.toNanos();
+        this.sequences = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SequenceKey, CachedSaltSequence> eldest) {
+                if (size() > SaltSequenceCache.this.maxSequences) {
+                    evict(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the salt at index {@code saltIndex} of the sequence derived from the given associated seed.
+     *
+     * @param associatedSeed associated seed from which the salt sequence is derived (not retained by reference).
+     * @param version salt sequence version with which the salt sequence is derived.
+     * @param saltIndex zero-based index of the salt to return.
+     * @return a new copy of the salt at index {@code saltIndex}.
+     */
+    public byte[] getSalt(@NotNull final byte[] associatedSeed,
+                          @NotNull final SaltSequenceVersion version,
+                          int saltIndex)
+    {
+        assert saltIndex >= 0;
+
+        byte[] salt;
+        do {
+            // Retry in the unlikely case the sequence is evicted between lookup and use.
+            salt = sequenceFor(associatedSeed, version).saltAt(saltIndex);
+        } while (salt == null);
+
+        return salt;
+    }
+
+    /**
+     * Returns an iterator over the sequence derived from the given associated seed, starting from index 0, which
+     * resumes generation from (and extends) the cached sequence. The iterator retains a copy of the associated seed,
+     * so that it can continue if its sequence is evicted while in use.
+     *
+     * @param associatedSeed associated seed from which the salt sequence is derived (not retained by reference).
+     * @param version salt sequence version with which the salt sequence is derived.
+     * @return an iterator producing new copies of each salt in the associated salt sequence.
+     */
+    public Iterator<byte[]> iterator(@NotNull final byte[] associatedSeed, @NotNull final SaltSequenceVersion version) {
+        final byte[] associatedSeedCopy = Arrays.copyOf(associatedSeed, associatedSeed.length);
+
+        return new Iterator<>() {
+            private CachedSaltSequence sequence = sequenceFor(associatedSeedCopy, version);
+            private int nextIndex = 0;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public byte[] next() {
+                byte[] salt;
+                while ((salt = sequence.saltAt(nextIndex)) == null) {
+                    sequence = sequenceFor(associatedSeedCopy, version);
+                }
+                ++nextIndex;
+
+                return salt;
+            }
+        };
+    }
+
+    /**
+     * Evicts every cached sequence that has been idle for longer than the configured maximum idle time. This also
+     * happens incrementally on each lookup, so calling it is only needed to release idle sequences promptly while
+     * the cache is not in use.
+     */
+    public void evictIdle() {
+        synchronized (sequences) {
+            evictIdle(System.nanoTime());
+        }
+    }
+
+    /**
+     * Evicts and clears every cached sequence.
+     */
+    public void clear() {
+        synchronized (sequences) {
+            sequences.values().forEach(this::evict);
+            sequences.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (sequences) {
+            return sequences.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Returns the fraction of lookups that found their salt sequence already cached, or {@code 0.0} if there have
+     * been no lookups.
+     * @return the cache hit rate, in the range [0.0, 1.0].
+     */
+    public double getHitRate() {
+        final long hits = hitCount.sum();
+        final long lookups = hits + missCount.sum();
+
+        return (lookups == 0) ? 0.0 : (double) hits / lookups;
+    }
+
+    /**
+     * Returns the buffers holding the cached sequence's copy of the associated seed and its retained salts, by
+     * reference, or an empty list if the sequence isn't cached. This does not count as an access of the sequence.
+     */
+    List<byte[]> retainedBuffers(@NotNull final byte[] associatedSeed, @NotNull final SaltSequenceVersion version) {
+        final SequenceKey lookupKey = new SequenceKey(associatedSeed, version);
+        synchronized (sequences) {
+            for (CachedSaltSequence sequence : sequences.values()) {
+                if (sequence.key.equals(lookupKey)) {
+                    return sequence.retainedBuffers();
+                }
+            }
+            return List.of();
+        }
+    }
+
+    private CachedSaltSequence sequenceFor(@NotNull final byte[] associatedSeed,
+                                           @NotNull final SaltSequenceVersion version)
+    {
+        final SequenceKey lookupKey = new SequenceKey(associatedSeed, version);
+        final long now = System.nanoTime();
+
+        synchronized (sequences) {
+            evictIdle(now);
+
+            CachedSaltSequence sequence = sequences.get(lookupKey);
+            if (sequence != null) {
+                hitCount.increment();
+            } else {
+                missCount.increment();
+                sequence = new CachedSaltSequence(
+                        new SequenceKey(Arrays.copyOf(associatedSeed, associatedSeed.length), version)
+                );
+                sequences.put(sequence.key, sequence);
+            }
+            sequence.lastAccessedAt = now;
+
+            return sequence;
+        }
+    }
+
+    /** Must be called while holding the {@code sequences} monitor. */
+    private void evictIdle(long now) {
+        final Iterator<CachedSaltSequence> iter = sequences.values().iterator();
+        while (iter.hasNext()) {
+            final CachedSaltSequence eldest = iter.next();
+            if (now - eldest.lastAccessedAt <= maxIdleNanos) {
+                break;  // access-ordered, so every later sequence has been accessed more recently
+            }
+            iter.remove();
+            evict(eldest);
+        }
+    }
+
+    private void evict(@NotNull final CachedSaltSequence sequence) {
+        sequence.clear();
+        evictionCount.increment();
+    }
+
+
+    private static final class SequenceKey {
+        private final byte[] associatedSeed;
+        private final SaltSequenceVersion version;
+        private final int hashCode;
+
+        private SequenceKey(@NotNull final byte[] associatedSeed, @NotNull final SaltSequenceVersion version) {
+            this.associatedSeed = associatedSeed;
+            this.version = version;
+            this.hashCode = 31 * version.hashCode() + Arrays.hashCode(associatedSeed);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj instanceof SequenceKey) {
+                SequenceKey that = (SequenceKey) obj;
+                return this.version == that.version && Arrays.equals(this.associatedSeed, that.associatedSeed);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A cached salt sequence, holding the salts generated so far (up to {@code maxSaltsPerSequence}) and the salt
+     * generator positioned just after the last generated salt.
+     */
+    private final class CachedSaltSequence {
+        private final SequenceKey key;
+        private final List<byte[]> salts = new ArrayList<>();
+        private Iterator<byte[]> generator;
+        private int generatedCount = 0;
+        private boolean cleared = false;
+        private volatile long lastAccessedAt;
+
+        private CachedSaltSequence(@NotNull final SequenceKey key) {
+            this.key = key;
+            this.generator = ReproducibleSaltGenerator.newSaltIterator(key.associatedSeed, key.version);
+        }
+
+        /**
+         * Returns a new copy of the salt at index {@code saltIndex}, or {@code null} if this sequence has been evicted.
+         */
+        private synchronized byte[] saltAt(int saltIndex) {
+            if (cleared) {
+                return null;
+            }
+            if (saltIndex < salts.size()) {
+                final byte[] salt = salts.get(saltIndex);
+                return Arrays.copyOf(salt, salt.length);
+            }
+            if (saltIndex < generatedCount || (saltIndex >= maxSaltsPerSequence && key.version.isRandomAccess())) {
+                // Beyond the retained salts, and either behind the generator or directly derivable.
+                return regenerateSalt(saltIndex);
+            }
+
+            byte[] salt = null;
+            while (generatedCount <= saltIndex) {
+                if (salt != null) {
+                    MemoryUtils.clearBuffer(salt);
+                }
+                salt = generator.next();
+                if (generatedCount++ < maxSaltsPerSequence) {
+                    salts.add(salt);
+                    salt = Arrays.copyOf(salt, salt.length);
+                }
+            }
+            return salt;
+        }
+
+        private byte[] regenerateSalt(int saltIndex) {
+            if (key.version.isRandomAccess()) {
+                return ReproducibleSaltGenerator.deriveCounterSalt(key.associatedSeed, saltIndex);
+            }
+            final Iterator<byte[]> regenerator = ReproducibleSaltGenerator.newSaltIterator(
+                    key.associatedSeed, key.version);
+            for (int i = 0; i < saltIndex; ++i) {
+                MemoryUtils.clearBuffer(regenerator.next());
+            }
+            return regenerator.next();
+        }
+
+        private synchronized List<byte[]> retainedBuffers() {
+            final List<byte[]> buffers = new ArrayList<>(salts.size() + 1);
+            buffers.add(key.associatedSeed);
+            buffers.addAll(salts);
+            return buffers;
+        }
+
+        private synchronized void clear() {
+            salts.forEach(MemoryUtils::clearBuffer);
+            salts.clear();
+            MemoryUtils.clearBuffer(key.associatedSeed);
+            generator = null;
+            cleared = true;
+        }
+    }
+}
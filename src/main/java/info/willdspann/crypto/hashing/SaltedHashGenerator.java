@@ -1,17 +1,27 @@
 package info.willdspann.crypto.hashing;
 
-import java.util.Arrays;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.annotation.Nullable;
 import javax.security.auth.Destroyable;
 import javax.validation.constraints.NotNull;
 
 import org.springframework.data.util.StreamUtils;
 
+import info.willdspann.crypto.enums.CryptoHashAlgorithm;
+import info.willdspann.crypto.enums.SaltSequenceVersion;
 import info.willdspann.crypto.util.MemoryUtils;
+import info.willdspann.crypto.util.OffHeapSecret;
+import info.willdspann.crypto.util.hashing.CleartextDigests;
 import info.willdspann.crypto.util.hashing.HashingUtils;
+import info.willdspann.crypto.util.hashing.SaltedHashMidstate;
 import info.willdspann.crypto.valueobjects.SaltedHash;
 
 import static java.util.stream.Collectors.toSet;
@@ -19,21 +29,134 @@ import static java.util.stream.Collectors.toSet;
 /**
  * This salted hash generator creates a reproducible yet unpredictable sequence of seed values associated to a given
  * cleartext value. It uses an associated seed generator to seed a Deterministic Random Bit Generator (DRBG), which is
- * used to produce the sequence of associated salt values each of which is used to produce a salted (SHA-256) hash.
+ * used to produce the sequence of associated salt values each of which is used to produce a salted hash.
+ * <p>
+ * The hash algorithm is fixed per generator, and recorded on each {@link SaltedHash} it produces. It defaults to
+ * SHA-256, so that salted hashes generated before it became selectable remain reproducible. </p>
+ * <p>
+ * The salt sequence version is fixed per generator. With a random-access version (e.g.,
+ * {@link SaltSequenceVersion#V2_COUNTER_HMAC}), {@link #getNthSaltedHash(byte[], int)} costs the same for any salt
+ * index, rather than growing linearly with it. </p>
+ * <p>
+ * An optional {@link SaltSequenceCache} may be shared by generators, in which case each value's salt sequence is
+ * resumed from the cache rather than regenerated from index 0 on every call. </p>
+ * <p>
+ * Generators are thread-safe, so a single instance per secret seed may be shared by every request thread (e.g., via a
+ * {@link SaltedHashGeneratorRegistry}), rather than copying the secret seed into a new generator per request.
+ * {@link #destroy()} may be called concurrently with hashing: calls already in flight finish with the secret seed
+ * intact, later calls fail with an {@code IllegalStateException}, and the secret seed is cleared once the last
+ * in-flight call has finished. </p>
+ * <p>
+ * The secret seed is held off-heap (see {@link OffHeapSecret}), where the garbage collector never copies it, so a
+ * long-lived generator is as safe as a short-lived one, and {@link #destroy()} wipes its only copy. </p>
  */
 public class SaltedHashGenerator implements Destroyable {
     static final int DEFAULT_SEED_LEN = 64;  // bytes
+    private static final int DESTROYED_FLAG = Integer.MIN_VALUE;
 
-    private final byte[] secretSeed;
-    private boolean destroyed = false;
+    private final OffHeapSecret secretSeed;
+    private final SaltSequenceVersion saltSequenceVersion;
+    @Nullable
+    private final SaltSequenceCache saltSequenceCache;
+    private final CryptoHashAlgorithm hashAlgorithm;
+    /**
+     * Number of calls in flight using the secret seed, with the sign bit set ({@link #DESTROYED_FLAG}) once
+     * {@link #destroy()} has been called.
+     */
+    private final AtomicInteger useState = new AtomicInteger();
 
     public SaltedHashGenerator(@NotNull final byte[] secretSeed) {
-        this.secretSeed = Arrays.copyOf(secretSeed, secretSeed.length);
+        this(secretSeed, SaltSequenceVersion.DEFAULT_VERSION);
+    }
+
+    public SaltedHashGenerator(@NotNull final byte[] secretSeed,
+                               @NotNull final SaltSequenceVersion saltSequenceVersion)
+    {
+        this(secretSeed, saltSequenceVersion, null);
+    }
+
+    public SaltedHashGenerator(@NotNull final byte[] secretSeed,
+                               @NotNull final SaltSequenceVersion saltSequenceVersion,
+                               @Nullable final SaltSequenceCache saltSequenceCache)
+    {
+        this(secretSeed, saltSequenceVersion, saltSequenceCache, HashingUtils.DEFAULT_HASH_ALGORITHM);
+    }
+
+    /**
+     * @param secretSeed secret seed from which each value's salt sequence is derived.
+     * @param saltSequenceVersion version of the salt sequence derivation.
+     * @param saltSequenceCache cache of salt sequences, optionally shared with other generators.
+     * @param hashAlgorithm fixed-length hash algorithm with which to generate salted hashes.
+     * @throws IllegalArgumentException if the hash algorithm is unsupported, or has no fixed digest length.
+     */
+    public SaltedHashGenerator(@NotNull final byte[] secretSeed,
+                               @NotNull final SaltSequenceVersion saltSequenceVersion,
+                               @Nullable final SaltSequenceCache saltSequenceCache,
+                               @NotNull final CryptoHashAlgorithm hashAlgorithm)
+    {
+        this(copySecretSeed(secretSeed, hashAlgorithm), saltSequenceVersion, saltSequenceCache, hashAlgorithm);
+    }
+
+    /**
+     * Creates a generator over a secret seed already held off-heap (e.g., read straight into an
+     * {@link OffHeapSecret}, without a long-lived heap copy), which the generator takes ownership of, and wipes on
+     * {@link #destroy()}.
+     *
+     * @param secretSeed off-heap secret seed from which each value's salt sequence is derived.
+     * @param saltSequenceVersion version of the salt sequence derivation.
+     * @param saltSequenceCache cache of salt sequences, optionally shared with other generators.
+     * @param hashAlgorithm fixed-length hash algorithm with which to generate salted hashes.
+     * @throws IllegalArgumentException if the hash algorithm is unsupported, or has no fixed digest length.
+     */
+    public SaltedHashGenerator(@NotNull final OffHeapSecret secretSeed,
+                               @NotNull final SaltSequenceVersion saltSequenceVersion,
+                               @Nullable final SaltSequenceCache saltSequenceCache,
+                               @NotNull final CryptoHashAlgorithm hashAlgorithm)
+    {
+        checkHashAlgorithm(hashAlgorithm);
+        this.secretSeed = secretSeed;
+        this.saltSequenceVersion = saltSequenceVersion;
+        this.saltSequenceCache = saltSequenceCache;
+        this.hashAlgorithm = hashAlgorithm;
+    }
+
+    /**
+     * Copies the secret seed off-heap only once the hash algorithm has been checked, so that a rejected algorithm
+     * doesn't leave behind a locked, never-wiped copy of the seed.
+     */
+    private static OffHeapSecret copySecretSeed(final byte[] secretSeed, final CryptoHashAlgorithm hashAlgorithm) {
+        checkHashAlgorithm(hashAlgorithm);
+        return OffHeapSecret.copyOf(secretSeed);
+    }
+
+    private static void checkHashAlgorithm(final CryptoHashAlgorithm hashAlgorithm) {
+        if (hashAlgorithm.getDigestLength() == CryptoHashAlgorithm.CUSTOM_LENGTH) {
+            throw new IllegalArgumentException(String.format(
+                    "Salted hashes require a fixed-length hash algorithm, but got %s.", hashAlgorithm.getAlgorithm()));
+        }
+        try {
+            HashingUtils.unsaltedHash(new byte[0], hashAlgorithm);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalArgumentException(String.format(
+                    "Unsupported salted hash algorithm: %s", hashAlgorithm.getAlgorithm()), nsae);
+        }
+    }
+
+    public SaltSequenceVersion getSaltSequenceVersion() {
+        return saltSequenceVersion;
+    }
+
+    public CryptoHashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm;
     }
 
     public Iterator<SaltedHash> saltedHashIterator(@NotNull final byte[] cleartextBytes) {
-        if (!destroyed) {
-            return new SaltedHashIterator(cleartextBytes);
+        if (tryAcquire()) {
+            try {
+                return new SaltedHashIterator(cleartextBytes);
+            } finally {
+                release();
+            }
         }
         else {
             throw new IllegalStateException(
@@ -43,9 +166,56 @@ public class SaltedHashGenerator implements Destroyable {
     }
 
     public SaltedHash getNthSaltedHash(@NotNull final byte[] cleartextBytes, int saltIndex) {
-        if (!destroyed) {
-            final byte[] salt = ReproducibleSaltGenerator.generateSaltForValue(cleartextBytes, secretSeed, saltIndex);
-            return HashingUtils.saltedHash(cleartextBytes, salt);
+        if (tryAcquire()) {
+            try {
+                final byte[] associatedSeed =
+                        ReproducibleSeedGenerator.generateSeedForValue(cleartextBytes, secretSeed);
+                final byte[] salt = (saltSequenceCache != null)
+                        ? saltSequenceCache.getSalt(associatedSeed, saltSequenceVersion, saltIndex)
+                        : ReproducibleSaltGenerator.generateSaltForSeed(associatedSeed, saltIndex, saltSequenceVersion);
+                MemoryUtils.clearBuffer(associatedSeed);
+
+                return saltedHash(cleartextBytes, salt);
+            } finally {
+                release();
+            }
+        }
+        else {
+            throw new IllegalStateException(
+                    "Unable to create salted hash -- Secret seed has been cleared with destroy()."
+            );
+        }
+    }
+
+    /**
+     * Generates the salted hash at index {@code saltIndex} of the cleartext from which the given digests were
+     * computed, without reading the cleartext again. This suits large cleartexts, which can be digested in a single
+     * streaming pass (e.g., via {@link CleartextDigests#of(java.io.InputStream)}). Since {@code CleartextDigests}
+     * holds a SHA-256 digest of the cleartext, this is only supported by SHA-256 generators.
+     *
+     * @param cleartextDigests digests of the cleartext value.
+     * @param saltIndex zero-based index of the salt with which to generate the salted hash.
+     * @return the salted hash at index {@code saltIndex}.
+     * @throws UnsupportedOperationException if this generator's hash algorithm isn't SHA-256.
+     */
+    public SaltedHash getNthSaltedHash(@NotNull final CleartextDigests cleartextDigests, int saltIndex) {
+        if (hashAlgorithm != HashingUtils.DEFAULT_HASH_ALGORITHM) {
+            throw new UnsupportedOperationException(String.format(
+                    "Unable to create salted hash from cleartext digests with %s.", hashAlgorithm.getAlgorithm()));
+        }
+        if (tryAcquire()) {
+            try {
+                final byte[] associatedSeed =
+                        ReproducibleSeedGenerator.generateSeedForValue(cleartextDigests, secretSeed);
+                final byte[] salt = (saltSequenceCache != null)
+                        ? saltSequenceCache.getSalt(associatedSeed, saltSequenceVersion, saltIndex)
+                        : ReproducibleSaltGenerator.generateSaltForSeed(associatedSeed, saltIndex, saltSequenceVersion);
+                MemoryUtils.clearBuffer(associatedSeed);
+
+                return cleartextDigests.saltedHash(salt);
+            } finally {
+                release();
+            }
         }
         else {
             throw new IllegalStateException(
@@ -54,12 +224,40 @@ public class SaltedHashGenerator implements Destroyable {
         }
     }
 
+    /**
+     * Generates the first {@code count} salted hashes of the given cleartext value. With SHA-256, these are generated
+     * as a batch (see {@link HashingUtils#saltedHashes}).
+     *
+     * @param cleartextBytes cleartext value for which to generate salted hashes.
+     * @param count number of salted hashes to generate.
+     * @return the salted hashes at salt indices [0, {@code count}).
+     */
     public Set<SaltedHash> getSaltedHashes(@NotNull final byte[] cleartextBytes, int count) {
-        if (!destroyed) {
-            final Iterator<SaltedHash> iter = new SaltedHashIterator(cleartextBytes);
-            return StreamUtils.createStreamFromIterator(iter)
-                    .limit(count)
-                    .collect(toSet());
+        if (tryAcquire()) {
+            try {
+                if (hashAlgorithm == HashingUtils.DEFAULT_HASH_ALGORITHM) {
+                    final Iterator<byte[]> saltIter = newSaltIterator(cleartextBytes);
+                    final List<byte[]> salts = new ArrayList<>(count);
+                    for (int i = 0; i < count; ++i) {
+                        salts.add(saltIter.next());
+                    }
+                    final Set<SaltedHash> saltedHashes =
+                            new HashSet<>(HashingUtils.saltedHashes(cleartextBytes, salts));
+                    salts.forEach(MemoryUtils::clearBuffer);
+
+                    return saltedHashes;
+                }
+                final SaltedHashIterator iter = new SaltedHashIterator(cleartextBytes);
+                try {
+                    return StreamUtils.createStreamFromIterator(iter)
+                            .limit(count)
+                            .collect(toSet());
+                } finally {
+                    iter.destroy();
+                }
+            } finally {
+                release();
+            }
         }
         else {
             throw new IllegalStateException(
@@ -68,26 +266,93 @@ public class SaltedHashGenerator implements Destroyable {
         }
     }
 
+    private Iterator<byte[]> newSaltIterator(@NotNull final byte[] cleartextBytes) {
+        final byte[] associatedSeed = ReproducibleSeedGenerator.generateSeedForValue(cleartextBytes, secretSeed);
+        if (saltSequenceCache != null) {
+            final Iterator<byte[]> saltIter = saltSequenceCache.iterator(associatedSeed, saltSequenceVersion);
+            MemoryUtils.clearBuffer(associatedSeed);
+
+            return saltIter;
+        }
+        return ReproducibleSaltGenerator.newSaltIterator(associatedSeed, saltSequenceVersion);
+    }
+
+    private SaltedHashMidstate newMidstate(@NotNull final byte[] cleartextBytes) {
+        try {
+            return SaltedHashMidstate.of(cleartextBytes, hashAlgorithm);
+        } catch (NoSuchAlgorithmException nsae) {
+            // Unreachable, since the hash algorithm was checked on construction.
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    private SaltedHash saltedHash(@NotNull final byte[] cleartextBytes, @NotNull final byte[] salt) {
+        try {
+            return HashingUtils.saltedHash(cleartextBytes, salt, hashAlgorithm);
+        } catch (NoSuchAlgorithmException nsae) {
+            // Unreachable, since the hash algorithm was checked on construction.
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    /**
+     * Marks this generator destroyed, so that no further salted hashes may be generated, and clears the secret seed as
+     * soon as no calls are in flight (i.e., either now, or once the last one finishes).
+     */
     @Override
     public void destroy() {
-        MemoryUtils.clearBuffer(this.secretSeed);
-        this.destroyed = true;
+        int state;
+        do {
+            state = useState.get();
+            if ((state & DESTROYED_FLAG) != 0) {
+                return;
+            }
+        } while (!useState.compareAndSet(state, state | DESTROYED_FLAG));
+
+        if (state == 0) {
+            secretSeed.destroy();
+        }
     }
 
     @Override
     public boolean isDestroyed() {
-        return destroyed;
+        return (useState.get() & DESTROYED_FLAG) != 0;
+    }
+
+    /** Registers a call in flight, unless this generator has been destroyed. */
+    private boolean tryAcquire() {
+        int state;
+        do {
+            state = useState.get();
+            if ((state & DESTROYED_FLAG) != 0) {
+                return false;
+            }
+        } while (!useState.compareAndSet(state, state + 1));
+
+        return true;
+    }
+
+    /** Deregisters a call in flight, clearing the secret seed if it was the last one after {@link #destroy()}. */
+    private void release() {
+        if (useState.decrementAndGet() == DESTROYED_FLAG) {
+            secretSeed.destroy();
+        }
     }
 
 
     private class SaltedHashIterator implements Iterator<SaltedHash>, Destroyable {
-        private final byte[] cleartext;
+        /**
+         * Digest state after the cleartext, from which each salted hash is finished with just its salt. This holds
+         * (at least) the cleartext's last partial block on the heap until {@link #destroy()} (see
+         * {@link SaltedHashMidstate}).
+         */
+        private final SaltedHashMidstate cleartextMidstate;
         private final Iterator<byte[]> saltIter;
         private boolean destroyed = false;
 
         private SaltedHashIterator(@NotNull final byte[] cleartextBytes) {
-            this.cleartext = Arrays.copyOf(cleartextBytes, cleartextBytes.length);
-            this.saltIter = ReproducibleSaltGenerator.iteratorForValue(cleartextBytes, secretSeed);
+            this.cleartextMidstate = newMidstate(cleartextBytes);
+            this.saltIter = newSaltIterator(cleartextBytes);
         }
 
         @Override
@@ -99,7 +364,7 @@ public class SaltedHashGenerator implements Destroyable {
         public SaltedHash next() {
             if (!destroyed) {
                 final byte[] nextSalt = saltIter.next();
-                return HashingUtils.saltedHash(cleartext, nextSalt);
+                return cleartextMidstate.saltedHash(nextSalt);
             }
             else {
                 throw new NoSuchElementException(
@@ -111,7 +376,7 @@ public class SaltedHashGenerator implements Destroyable {
 
         @Override
         public void destroy() {
-            MemoryUtils.clearBuffer(this.cleartext);
+            cleartextMidstate.destroy();
             this.destroyed = true;
         }
 
@@ -0,0 +1,159 @@
+package info.willdspann.crypto.hashing;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.security.auth.Destroyable;
+import javax.validation.constraints.NotNull;
+
+/**
+ * <p>
+ * Thread-safe registry of {@link SaltedHashGenerator}s keyed by secret seed ID, which lets every request thread share
+ * a single generator (and so a single copy of the secret seed) per seed, and supports seed rotation. </p>
+ * <p>
+ * The current seed's generator is used to generate new salted hashes, whereas generators of previous seeds are kept,
+ * after {@link #rotate rotation}, for looking up salted hashes generated with them, until {@link #retire retired}. </p>
+ * <p>
+ * Reads are lock-free, from an immutable snapshot of the registered generators, which writers (i.e., registration,
+ * rotation, and retirement, all of which are rare) replace under a lock. Retiring a seed destroys its generator, which
+ * lets hashing calls already in flight on it finish, whereas later calls on it fail with an
+ * {@code IllegalStateException}. Callers should thus look a generator up per request, rather than holding on to
+ * it. </p>
+ */
+public class SaltedHashGeneratorRegistry implements Destroyable {
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private boolean destroyed = false;  // guarded by this
+
+    /**
+     * Registers the generator of a seed, which becomes the current seed if none has been registered yet.
+     *
+     * @param seedId ID of the generator's secret seed.
+     * @param generator generator to register.
+     * @throws IllegalArgumentException if a generator is already registered for the seed ID.
+     */
+    public synchronized void register(@NotNull final String seedId, @NotNull final SaltedHashGenerator generator) {
+        final Snapshot current = checkWritable(seedId);
+        this.snapshot = current.with(
+                seedId, generator, (current.currentSeedId != null) ? current.currentSeedId : seedId);
+    }
+
+    /**
+     * Registers the generator of a new seed, and makes it the current seed. The previous seed's generator remains
+     * registered until retired.
+     *
+     * @param seedId ID of the new secret seed.
+     * @param generator generator of the new secret seed.
+     * @throws IllegalArgumentException if a generator is already registered for the seed ID.
+     */
+    public synchronized void rotate(@NotNull final String seedId, @NotNull final SaltedHashGenerator generator) {
+        this.snapshot = checkWritable(seedId).with(seedId, generator, seedId);
+    }
+
+    /**
+     * Deregisters and destroys the generator of a previous seed, once salted hashes generated with it are no longer
+     * looked up.
+     *
+     * @param seedId ID of the secret seed to retire.
+     * @throws IllegalArgumentException if the seed ID is the current seed's.
+     */
+    public synchronized void retire(@NotNull final String seedId) {
+        final Snapshot current = this.snapshot;
+        if (seedId.equals(current.currentSeedId)) {
+            throw new IllegalArgumentException(String.format(
+                    "Unable to retire current seed %s -- Rotate to a new seed first.", seedId));
+        }
+        final SaltedHashGenerator generator = current.generators.get(seedId);
+        if (generator != null) {
+            final Map<String, SaltedHashGenerator> generators = new HashMap<>(current.generators);
+            generators.remove(seedId);
+            this.snapshot = new Snapshot(generators, current.currentSeedId);
+            generator.destroy();
+        }
+    }
+
+    /**
+     * Returns the current seed's generator.
+     *
+     * @return the current generator.
+     * @throws IllegalStateException if no generator is registered.
+     */
+    public SaltedHashGenerator getCurrent() {
+        final Snapshot current = this.snapshot;
+        if (current.currentSeedId == null) {
+            throw new IllegalStateException("Unable to get current generator -- No seed has been registered.");
+        }
+        return current.generators.get(current.currentSeedId);
+    }
+
+    @Nullable
+    public String getCurrentSeedId() {
+        return snapshot.currentSeedId;
+    }
+
+    public Optional<SaltedHashGenerator> get(@NotNull final String seedId) {
+        return Optional.ofNullable(snapshot.generators.get(seedId));
+    }
+
+    public Set<String> getSeedIds() {
+        return snapshot.generators.keySet();
+    }
+
+    /**
+     * Deregisters and destroys every generator. Further registrations fail with an {@code IllegalStateException}.
+     */
+    @Override
+    public synchronized void destroy() {
+        final Snapshot current = this.snapshot;
+        this.snapshot = Snapshot.EMPTY;
+        this.destroyed = true;
+        current.generators.values().forEach(SaltedHashGenerator::destroy);
+    }
+
+    @Override
+    public synchronized boolean isDestroyed() {
+        return destroyed;
+    }
+
+    /** Returns the current snapshot, if the registry is writable and the seed ID isn't registered yet. */
+    private Snapshot checkWritable(@NotNull final String seedId) {
+        if (destroyed) {
+            throw new IllegalStateException(
+                    "Unable to register generator -- Registry has been cleared with destroy()."
+            );
+        }
+        final Snapshot current = this.snapshot;
+        if (current.generators.containsKey(seedId)) {
+            throw new IllegalArgumentException(String.format("A generator is already registered for seed %s.", seedId));
+        }
+        return current;
+    }
+
+
+    /** Immutable view of the registered generators and the current seed ID. */
+    private static final class Snapshot {
+        private static final Snapshot EMPTY = new Snapshot(Map.of(), null);
+
+        private final Map<String, SaltedHashGenerator> generators;
+        @Nullable
+        private final String currentSeedId;
+
+        private Snapshot(@NotNull final Map<String, SaltedHashGenerator> generators,
+                         @Nullable final String currentSeedId)
+        {
+            this.generators = Map.copyOf(generators);
+            this.currentSeedId = currentSeedId;
+        }
+
+        private Snapshot with(@NotNull final String seedId,
+                              @NotNull final SaltedHashGenerator generator,
+                              @NotNull final String newCurrentSeedId)
+        {
+            final Map<String, SaltedHashGenerator> newGenerators = new HashMap<>(generators);
+            newGenerators.put(seedId, generator);
+            return new Snapshot(newGenerators, newCurrentSeedId);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package info.willdspann.crypto.repositories;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Local append-only journal of records, in a memory-mapped file, for repositories that must survive restarts without
+ * a DB. Each record is framed by its length and CRC-32C, so a record torn by a crash mid-append is detected and
+ * dropped (along with anything after it) when the journal is reopened. </p>
+ * <p>
+ * Appending only copies the record into the mapped file, whereas {@link #awaitDurable(long)} waits until it has been
+ * flushed to disk. Flushes are grouped: the first waiting thread flushes every record appended so far in one
+ * {@code msync}, and threads waiting meanwhile find their records already flushed, so the number of flushes doesn't
+ * grow with the number of concurrent writers. </p>
+ * <p>
+ * On opening, every intact record is replayed to a consumer, in order, so that the owner can rebuild its in-memory
+ * state in a single sequential pass over the mapped file. Owners whose records supersede earlier ones (e.g., counters)
+ * should {@link #compact} the journal from time to time, which atomically replaces it with just their live records,
+ * to keep both the file and the replay short. </p>
+ * <p>
+ * A journal holds up to its maximum size (at most {@link #MAX_SIZE}, i.e. 2 GiB) of records, and is grown by
+ * remapping a larger region of the file. Once full, appends fail with an {@link IllegalStateException} until the
+ * journal is compacted, so owners whose records are never superseded must bound what they append. On Java 11,
+ * superseded mappings are only released once garbage collected. </p>
+ */
+public class AppendOnlyJournal implements AutoCloseable {
+    public static final int DEFAULT_INITIAL_SIZE = 1 << 20;  // bytes
+    /** Largest size a journal can have, as its records are mapped into a single buffer. */
+    public static final int MAX_SIZE = Integer.MAX_VALUE;  // bytes
+    private static final int HEADER_LEN = 8;  // bytes: record length, then CRC-32C of the record
+    private static final Logger logger = LoggerFactory.getLogger(AppendOnlyJournal.class);
+
+    private final Path file;
+    private final int initialSize;
+    private final int maxSize;
+    private final Object flushLock = new Object();
+
+    // The following are guarded by this.
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private int writePosition;
+    private long recordCount;
+    /** Number of records appended since opening, including those since compacted away. */
+    private long appendedSequence;
+    private boolean closed = false;
+
+    private volatile long durableSequence;
+
+    public AppendOnlyJournal(@NotNull final Path file, @NotNull final Consumer<ByteBuffer> replayer)
+            throws IOException
+    {
+        this(file, DEFAULT_INITIAL_SIZE, replayer);
+    }
+
+    /**
+     * Opens (or creates) the journal in the given file, and replays its intact records.
+     *
+     * @param file file holding the journal.
+     * @param initialSize number of bytes to map initially (and to grow by, at least).
+     * @param replayer consumer of each intact record (as a read-only buffer), in the order appended.
+     * @throws IOException if unable to open or map the file.
+     */
+    public AppendOnlyJournal(@NotNull final Path file,
+                             int initialSize,
+                             @NotNull final Consumer<ByteBuffer> replayer) throws IOException
+    {
+        this(file, initialSize, MAX_SIZE, replayer);
+    }
+
+    /**
+     * Opens (or creates) the journal in the given file, and replays its intact records.
+     *
+     * @param file file holding the journal.
+     * @param initialSize number of bytes to map initially (and to grow by, at least).
+     * @param maxSize number of bytes beyond which the journal won't grow, at most {@link #MAX_SIZE}.
+     * @param replayer consumer of each intact record (as a read-only buffer), in the order appended.
+     * @throws IOException if unable to open or map the file.
+     */
+    public AppendOnlyJournal(@NotNull final Path file,
+                             int initialSize,
+                             int maxSize,
+                             @NotNull final Consumer<ByteBuffer> replayer) throws IOException
+    {
+        if (initialSize < HEADER_LEN) {
+            throw new IllegalArgumentException("Initial journal size is too small.");
+        }
+        if (maxSize < initialSize) {
+            throw new IllegalArgumentException("Maximum journal size is smaller than its initial size.");
+        }
+        this.file = file;
+        this.initialSize = initialSize;
+        this.maxSize = maxSize;
+        synchronized (this) {
+            openAndMap();
+            replay(replayer);
+        }
+    }
+
+    /**
+     * Appends a record to the journal. It is only guaranteed to survive a crash once {@link #awaitDurable(long)}
+     * returns for the returned sequence number.
+     *
+     * @param record record to append.
+     * @return the record's sequence number.
+     * @throws IllegalStateException if the journal is full, i.e. would grow beyond its maximum size.
+     * @throws UncheckedIOException if unable to grow the journal.
+     */
+    public synchronized long append(@NotNull final byte[] record) {
+        if (closed) {
+            throw new IllegalStateException("Unable to append record -- Journal has been closed.");
+        }
+        ensureCapacity(HEADER_LEN + record.length);
+        mapped.putInt(writePosition + 4, crc32c(record));
+        mapped.position(writePosition + HEADER_LEN);
+        mapped.put(record);
+        // Written last, so that a record is never found with a valid length but a missing CRC.
+        mapped.putInt(writePosition, record.length);
+
+        writePosition += HEADER_LEN + record.length;
+        ++recordCount;
+        return ++appendedSequence;
+    }
+
+    /**
+     * Waits until the record with the given sequence number (and every one before it) has been flushed to disk,
+     * flushing every record appended so far if no other thread is already doing so.
+     *
+     * @param sequence sequence number returned by {@link #append(byte[])}.
+     */
+    public void awaitDurable(long sequence) {
+        if (durableSequence >= sequence) {
+            return;
+        }
+        synchronized (flushLock) {
+            if (durableSequence >= sequence) {
+                return;
+            }
+            final long flushedSequence;
+            final MappedByteBuffer toFlush;
+            synchronized (this) {
+                flushedSequence = appendedSequence;
+                toFlush = mapped;
+            }
+            toFlush.force();
+            if (flushedSequence > durableSequence) {
+                durableSequence = flushedSequence;
+            }
+        }
+    }
+
+    /**
+     * Atomically replaces the journal with the given live records, which must carry all the state of the records
+     * appended so far. Appends are blocked meanwhile, so the supplier sees the state as of the last append.
+     *
+     * @param liveRecords supplier of the records with which to replace the journal.
+     * @throws UncheckedIOException if unable to write or swap in the compacted journal, in which case the journal is
+     *                              left as is.
+     */
+    public synchronized void compact(@NotNull final Supplier<? extends Iterable<byte[]>> liveRecords) {
+        if (closed) {
+            throw new IllegalStateException("Unable to compact journal -- Journal has been closed.");
+        }
+        final Path compactedFile = file.resolveSibling(file.getFileName() + ".compact");
+        long liveRecordCount = 0;
+        long compactedBytes = 0;
+        try {
+            try (FileChannel out = FileChannel.open(compactedFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (byte[] record : liveRecords.get()) {
+                    final ByteBuffer framed = ByteBuffer.allocate(HEADER_LEN + record.length);
+                    framed.putInt(record.length).putInt(crc32c(record)).put(record).flip();
+                    while (framed.hasRemaining()) {
+                        out.write(framed);
+                    }
+                    ++liveRecordCount;
+                    compactedBytes += framed.capacity();
+                }
+                out.force(true);
+            }
+            if (compactedBytes > maxSize - HEADER_LEN) {
+                throw new IOException("Live records don't fit in a journal.");
+            }
+            mapped.force();
+            channel.close();
+            Files.move(compactedFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(file.toAbsolutePath().getParent());
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to compact journal " + file, ioe);
+        } finally {
+            // Reopens whichever file is now in place: the compacted one, or else the intact original.
+            reopenIfClosed();
+        }
+        logger.info("Compacted journal {} from {} to {} records.", file, recordCount, liveRecordCount);
+        this.writePosition = (int) compactedBytes;
+        this.recordCount = liveRecordCount;
+        this.durableSequence = appendedSequence;
+    }
+
+    /**
+     * Returns the number of records in the journal, including those superseded but not yet compacted away.
+     * @return the number of records.
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Flushes every appended record to disk, and closes the journal.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            this.closed = true;
+            mapped.force();
+            channel.close();
+        }
+    }
+
+    private void openAndMap() throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(initialSize, channel.size()));
+    }
+
+    /** Replays intact records, and positions appends after the last of them, clearing any torn tail. */
+    private void replay(@NotNull final Consumer<ByteBuffer> replayer) {
+        int position = 0;
+        long records = 0;
+        while (position + HEADER_LEN <= mapped.capacity()) {
+            final int length = mapped.getInt(position);
+            if (length <= 0 || length > mapped.capacity() - position - HEADER_LEN) {
+                break;
+            }
+            final ByteBuffer record = mapped.duplicate();
+            record.position(position + HEADER_LEN).limit(position + HEADER_LEN + length);
+            if (crc32c(record.duplicate()) != mapped.getInt(position + 4)) {
+                break;
+            }
+            replayer.accept(record.asReadOnlyBuffer());
+            position += HEADER_LEN + length;
+            ++records;
+        }
+        if (position + HEADER_LEN <= mapped.capacity() && mapped.getInt(position) != 0) {
+            logger.warn("Dropping torn record at offset {} of journal {}.", position, file);
+            for (int i = position; i < mapped.capacity(); ++i) {
+                mapped.put(i, (byte) 0);
+            }
+            mapped.force();
+        }
+        this.writePosition = position;
+        this.recordCount = records;
+    }
+
+    private void reopenIfClosed() {
+        if (channel.isOpen()) {
+            return;
+        }
+        try {
+            openAndMap();
+        } catch (IOException ioe) {
+            this.closed = true;
+            throw new UncheckedIOException("Unable to reopen journal " + file, ioe);
+        }
+    }
+
+    /**
+     * Flushes the given directory's entries to disk, so that a file just renamed into it survives a crash under its
+     * new name. Some platforms (e.g., Windows) can't open a directory, in which case the rename is left to the file
+     * system to persist.
+     */
+    private static void syncDirectory(@NotNull final Path directory) {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.debug("Unable to sync directory {} -- {}", directory, e.toString());
+        }
+    }
+
+    /** Remaps a larger region of the file, if fewer than {@code needed} bytes are left after the write position. */
+    private void ensureCapacity(int needed) {
+        // Leaves room for the zero length that marks the end of the records.
+        final long required = (long) writePosition + needed + HEADER_LEN;
+        if (required <= mapped.capacity()) {
+            return;
+        }
+        if (required > maxSize) {
+            throw new IllegalStateException(String.format(
+                    "Unable to append record -- Journal %s is full (%d bytes).", file, maxSize));
+        }
+        final long newSize = Math.min(Math.max(required, Math.max(2L * mapped.capacity(), initialSize)), maxSize);
+        try {
+            mapped.force();
+            this.mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to grow journal " + file, ioe);
+        }
+    }
+
+    private static int crc32c(@NotNull final byte[] record) {
+        final CRC32C crc = new CRC32C();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    private static int crc32c(@NotNull final ByteBuffer record) {
+        final CRC32C crc = new CRC32C();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+}
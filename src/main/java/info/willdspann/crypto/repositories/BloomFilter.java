@@ -0,0 +1,236 @@
+package info.willdspann.crypto.repositories;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * <p>
+ * Concurrent Bloom filter over binary keys, which answers "definitely absent" or "maybe present". Bit positions are
+ * derived by double hashing from a single 64-bit hash of each key, where '+' and '*' are modulo 2^64:</p>
+ * <pre>
+ *     bit_i = ( h1 + i * h2 ) mod numBits,  for i in [0, numHashFunctions)
+ * </pre>
+ * <p>
+ * Bits are set with compare-and-set, so {@link #put(byte[])} and {@link #mightContain(byte[])} may be called
+ * concurrently without locking. A filter can be written to a stream with {@link #writeTo(OutputStream)}, and read back
+ * with {@link #readFrom(InputStream)}, so that it need not be rebuilt at startup. </p>
+ */
+public class BloomFilter {
+    private static final int SERIAL_FORMAT_VERSION = 1;
+    private static final double LN_2 = Math.log(2);
+
+    private final AtomicLongArray words;
+    private final long numBits;
+    private final int numHashFunctions;
+    private final AtomicLong bitCount;
+    private final AtomicLong insertionCount;
+
+    private BloomFilter(long numBits, int numHashFunctions) {
+        this(new AtomicLongArray((int) ((numBits + 63) >>> 6)), numBits, numHashFunctions, 0, 0);
+    }
+
+    private BloomFilter(@NotNull final AtomicLongArray words,
+                        long numBits,
+                        int numHashFunctions,
+                        long bitCount,
+                        long insertionCount)
+    {
+        this.words = words;
+        this.numBits = numBits;
+        this.numHashFunctions = numHashFunctions;
+        this.bitCount = new AtomicLong(bitCount);
+        this.insertionCount = new AtomicLong(insertionCount);
+    }
+
+    /**
+     * Creates a filter sized to have a false-positive probability of at most {@code falsePositiveRate} once
+     * {@code expectedInsertions} distinct keys have been put into it, where:
+     * <pre>
+     *     numBits = ceil( -n * ln(p) / ln(2)^2 ),  numHashFunctions = round( numBits / n * ln(2) )
+     * </pre>
+     *
+     * @param expectedInsertions expected number of distinct keys (n).
+     * @param falsePositiveRate target false-positive probability (p), in the range (0.0, 1.0).
+     * @return a new, empty Bloom filter.
+     */
+    public static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("Expected insertions must be positive.");
+        }
+        if (falsePositiveRate <= 0.0 || falsePositiveRate >= 1.0) {
+            throw new IllegalArgumentException("False-positive rate must be in the range (0.0, 1.0).");
+        }
+        final long numBits = Math.max(64,
+                (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (LN_2 * LN_2)));
+        if (numBits > 64L * Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format(
+                    "Bloom filter for %d insertions at a false-positive rate of %f is too large.",
+                    expectedInsertions, falsePositiveRate));
+        }
+        final int numHashFunctions = Math.max(1, (int) Math.round((double) numBits / expectedInsertions * LN_2));
+
+        return new BloomFilter(numBits, numHashFunctions);
+    }
+
+    /**
+     * Puts the given key into this filter.
+     *
+     * @param key key to put.
+     * @return whether any bit changed (i.e., whether the key was definitely absent before).
+     */
+    public boolean put(@NotNull final byte[] key) {
+        final long h1 = hash(key);
+        final long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+
+        boolean changed = false;
+        for (int i = 0; i < numHashFunctions; ++i) {
+            final long bitIndex = Long.remainderUnsigned(h1 + i * h2, numBits);
+            if (setBit(bitIndex)) {
+                changed = true;
+            }
+        }
+        if (changed) {
+            insertionCount.incrementAndGet();
+        }
+        return changed;
+    }
+
+    /**
+     * Returns whether the given key might have been put into this filter. A {@code false} result is definite, while
+     * a {@code true} result is wrong with a probability of about {@link #expectedFalsePositiveRate()}.
+     *
+     * @param key key for which to check.
+     * @return {@code false} if the key is definitely absent, or {@code true} if it may be present.
+     */
+    public boolean mightContain(@NotNull final byte[] key) {
+        final long h1 = hash(key);
+        final long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+
+        for (int i = 0; i < numHashFunctions; ++i) {
+            final long bitIndex = Long.remainderUnsigned(h1 + i * h2, numBits);
+            if ((words.get((int) (bitIndex >>> 6)) & (1L << bitIndex)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the current false-positive probability, estimated from the fraction of bits that are set:
+     * <pre>
+     *     ( bitCount / numBits ) ^ numHashFunctions
+     * </pre>
+     * @return the expected false-positive rate, in the range [0.0, 1.0].
+     */
+    public double expectedFalsePositiveRate() {
+        return Math.pow((double) bitCount.get() / numBits, numHashFunctions);
+    }
+
+    /**
+     * Returns the number of puts that changed this filter, which (barring false positives among them) is the number
+     * of distinct keys put into it.
+     * @return the approximate number of distinct keys in this filter.
+     */
+    public long getInsertionCount() {
+        return insertionCount.get();
+    }
+
+    public long getNumBits() {
+        return numBits;
+    }
+
+    public int getNumHashFunctions() {
+        return numHashFunctions;
+    }
+
+    /**
+     * Writes this filter to the given stream. Keys put concurrently with this call may or may not be included.
+     *
+     * @param out stream to which to write this filter (not closed).
+     * @throws IOException if unable to write to the stream.
+     */
+    public void writeTo(@NotNull final OutputStream out) throws IOException {
+        final DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(SERIAL_FORMAT_VERSION);
+        dataOut.writeLong(numBits);
+        dataOut.writeInt(numHashFunctions);
+        dataOut.writeLong(bitCount.get());
+        dataOut.writeLong(insertionCount.get());
+        dataOut.writeInt(words.length());
+        for (int i = 0; i < words.length(); ++i) {
+            dataOut.writeLong(words.get(i));
+        }
+        dataOut.flush();
+    }
+
+    /**
+     * Reads a filter previously written by {@link #writeTo(OutputStream)}.
+     *
+     * @param in stream from which to read a filter (not closed).
+     * @return the filter read.
+     * @throws IOException if unable to read from the stream, or if it doesn't hold a filter in a supported format.
+     */
+    public static BloomFilter readFrom(@NotNull final InputStream in) throws IOException {
+        final DataInputStream dataIn = new DataInputStream(in);
+        final int formatVersion = dataIn.readInt();
+        if (formatVersion != SERIAL_FORMAT_VERSION) {
+            throw new IOException(String.format("Unsupported Bloom filter format version: %d", formatVersion));
+        }
+        final long numBits = dataIn.readLong();
+        final int numHashFunctions = dataIn.readInt();
+        final long bitCount = dataIn.readLong();
+        final long insertionCount = dataIn.readLong();
+        final int wordCount = dataIn.readInt();
+        if (numBits <= 0 || numHashFunctions <= 0 || wordCount != (int) ((numBits + 63) >>> 6)) {
+            throw new IOException("Malformed Bloom filter header.");
+        }
+
+        final AtomicLongArray words = new AtomicLongArray(wordCount);
+        for (int i = 0; i < wordCount; ++i) {
+            words.set(i, dataIn.readLong());
+        }
+        return new BloomFilter(words, numBits, numHashFunctions, bitCount, insertionCount);
+    }
+
+    private boolean setBit(long bitIndex) {
+        final int wordIndex = (int) (bitIndex >>> 6);
+        final long mask = 1L << bitIndex;
+
+        long word;
+        do {
+            word = words.get(wordIndex);
+            if ((word & mask) != 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(wordIndex, word, word | mask));
+
+        bitCount.incrementAndGet();
+        return true;
+    }
+
+    /** 64-bit FNV-1a hash of the key, followed by a MurmurHash3 finalizer. */
+    private static long hash(@NotNull final byte[] key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            h = (h ^ (b & 0xFF)) * 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+
+        return h;
+    }
+}
@@ -5,6 +5,8 @@ import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.StreamSupport;
 
@@ -68,4 +70,26 @@ public class MapInMemoryRepository<T, ID> implements BaseRepository<T, ID> {
 
         return prev == null;
     }
+
+    /**
+     * Atomically computes a new entity for the given ID from its current entity (or {@code null} if absent), saves
+     * it, and returns it.
+     *
+     * @param entityId ID of the entity to compute.
+     * @param remappingFunction function computing the new entity from the ID and current entity.
+     * @return the newly saved entity.
+     */
+    protected T compute(ID entityId, BiFunction<? super ID, ? super T, ? extends T> remappingFunction) {
+        return entitiesById.compute(entityId, remappingFunction);
+    }
+
+    /**
+     * Passes the ID of every saved entity to the given action, in no particular order. IDs of entities saved
+     * concurrently may or may not be included.
+     *
+     * @param action action to apply to each entity ID.
+     */
+    protected void forEachId(Consumer<? super ID> action) {
+        entitiesById.keySet().forEach(action);
+    }
 }
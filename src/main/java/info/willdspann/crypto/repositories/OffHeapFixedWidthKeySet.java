@@ -0,0 +1,258 @@
+package info.willdspann.crypto.repositories;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * <p>
+ * Concurrent, insert-only set of fixed-width binary keys (e.g., salted hashes), stored by open addressing with linear
+ * probing in off-heap memory (direct {@link ByteBuffer}s). Unlike a {@code ConcurrentHashMap}, no objects are
+ * allocated per key, so the set can hold hundreds of millions of keys without adding to GC pressure or pause times. </p>
+ * <p>
+ * Each slot holds a 4-byte state followed by the key, padded to a multiple of 8 bytes:</p>
+ * <pre>
+ *     state (4 B) | key (keyWidth B) | padding
+ * </pre>
+ * <p>
+ * The state is {@code EMPTY} (0), {@code WRITING} (1), or else a fingerprint (&gt;= 2) of the key held in the slot.
+ * {@link #add(byte[])} claims an empty slot by compare-and-set from {@code EMPTY} to {@code WRITING}, writes the key,
+ * then publishes the fingerprint with release semantics. Threads that probe a slot in the {@code WRITING} state wait
+ * for it to be published, so concurrent adds of the same key never both succeed. Fingerprints let probes skip
+ * most non-matching slots without comparing keys. </p>
+ * <p>
+ * The capacity is fixed at construction, and keys cannot be removed. Adding beyond {@code maxKeys} throws an
+ * {@link IllegalStateException}, which bounds the load factor and hence probe lengths. Off-heap memory is allocated up
+ * front, and is released once the set is garbage collected. </p>
+ */
+public class OffHeapFixedWidthKeySet {
+    public static final double DEFAULT_MAX_LOAD_FACTOR = 0.8;
+
+    private static final int STATE_LENGTH = 4;
+    private static final int EMPTY = 0;
+    private static final int WRITING = 1;
+
+    private static final VarHandle INT_VIEW =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final int keyWidth;
+    private final int slotSize;
+    /** Slots per direct buffer are a power of 2, keeping each buffer's size within {@code Integer.MAX_VALUE}. */
+    private final int segmentShift;
+    private final long segmentMask;
+    private final long capacity;
+    private final long maxKeys;
+    private final ByteBuffer[] segments;
+    private final AtomicLong size = new AtomicLong();
+
+    /**
+     * Creates a set able to hold {@code maxKeys} keys, at a load factor of at most
+     * {@value #DEFAULT_MAX_LOAD_FACTOR}.
+     *
+     * @param keyWidth width in bytes of every key.
+     * @param maxKeys maximum number of keys the set can hold.
+     */
+    public OffHeapFixedWidthKeySet(int keyWidth, long maxKeys) {
+        this(keyWidth, maxKeys, DEFAULT_MAX_LOAD_FACTOR);
+    }
+
+    /**
+     * @param keyWidth width in bytes of every key.
+     * @param maxKeys maximum number of keys the set can hold.
+     * @param maxLoadFactor maximum fraction of slots occupied once the set holds {@code maxKeys} keys.
+     */
+    public OffHeapFixedWidthKeySet(int keyWidth, long maxKeys, double maxLoadFactor) {
+        if (keyWidth <= 0 || maxKeys <= 0) {
+            throw new IllegalArgumentException("Key width and maximum keys must be positive.");
+        }
+        if (maxLoadFactor <= 0.0 || maxLoadFactor >= 1.0) {
+            throw new IllegalArgumentException("Maximum load factor must be in the range (0.0, 1.0).");
+        }
+        this.keyWidth = keyWidth;
+        this.slotSize = (STATE_LENGTH + keyWidth + 7) & ~7;
+        this.segmentShift = Integer.numberOfLeadingZeros(slotSize - 1) - 2;
+        this.segmentMask = (1L << segmentShift) - 1;
+        this.maxKeys = maxKeys;
+        this.capacity = Math.max(maxKeys + 1, (long) Math.ceil(maxKeys / maxLoadFactor));
+
+        final int segmentCount = (int) ((capacity + segmentMask) >>> segmentShift);
+        this.segments = new ByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; ++i) {
+            final long segmentSlots = Math.min(segmentMask + 1, capacity - ((long) i << segmentShift));
+            segments[i] = ByteBuffer.allocateDirect((int) segmentSlots * slotSize);
+        }
+    }
+
+    /**
+     * Adds the given key if it is absent, and returns whether it was added. This is atomic with respect to
+     * concurrent calls to {@code add()} and {@link #contains(byte[])}.
+     *
+     * @param key key to add, of exactly {@code keyWidth} bytes.
+     * @return whether the given key was added (i.e., whether it was absent).
+     * @throws IllegalStateException if the key is absent, but the set already holds {@code maxKeys} keys.
+     */
+    public boolean add(@NotNull final byte[] key) {
+        checkKeyWidth(key);
+        final long keyHash = hash(key);
+        final int fingerprint = fingerprint(keyHash);
+
+        for (long slot = Long.remainderUnsigned(keyHash, capacity); ; slot = nextSlot(slot)) {
+            final ByteBuffer segment = segments[(int) (slot >>> segmentShift)];
+            final int offset = (int) (slot & segmentMask) * slotSize;
+
+            int state = awaitPublished(segment, offset);
+            while (state == EMPTY) {
+                if (INT_VIEW.compareAndSet(segment, offset, EMPTY, WRITING)) {
+                    // Capacity is only reserved once the slot is won, so that losing a race to add the same key
+                    // never reports the set as full.
+                    if (!reserveKey()) {
+                        INT_VIEW.setRelease(segment, offset, EMPTY);
+                        throw new IllegalStateException(String.format(
+                                "Unable to add key -- Set is full (%d keys).", maxKeys));
+                    }
+                    for (int i = 0; i < keyWidth; ++i) {
+                        segment.put(offset + STATE_LENGTH + i, key[i]);
+                    }
+                    INT_VIEW.setRelease(segment, offset, fingerprint);
+                    return true;
+                }
+                // Lost the race for this slot, so re-examine it once its key is published (or its claim undone).
+                state = awaitPublished(segment, offset);
+            }
+            if (state == fingerprint && keyEquals(segment, offset, key)) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Returns whether the given key is in this set.
+     *
+     * @param key key for which to check, of exactly {@code keyWidth} bytes.
+     * @return whether the given key is in this set.
+     */
+    public boolean contains(@NotNull final byte[] key) {
+        checkKeyWidth(key);
+        final long keyHash = hash(key);
+        final int fingerprint = fingerprint(keyHash);
+
+        for (long slot = Long.remainderUnsigned(keyHash, capacity); ; slot = nextSlot(slot)) {
+            final ByteBuffer segment = segments[(int) (slot >>> segmentShift)];
+            final int offset = (int) (slot & segmentMask) * slotSize;
+
+            final int state = awaitPublished(segment, offset);
+            if (state == EMPTY) {
+                return false;
+            }
+            if (state == fingerprint && keyEquals(segment, offset, key)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Passes a copy of every key in this set to the given consumer, in slot order. Keys added concurrently may or may
+     * not be included.
+     *
+     * @param consumer consumer of each key.
+     */
+    public void forEach(@NotNull final Consumer<byte[]> consumer) {
+        for (long slot = 0; slot < capacity; ++slot) {
+            final ByteBuffer segment = segments[(int) (slot >>> segmentShift)];
+            final int offset = (int) (slot & segmentMask) * slotSize;
+
+            if (awaitPublished(segment, offset) != EMPTY) {
+                final byte[] key = new byte[keyWidth];
+                for (int i = 0; i < keyWidth; ++i) {
+                    key[i] = segment.get(offset + STATE_LENGTH + i);
+                }
+                consumer.accept(key);
+            }
+        }
+    }
+
+    public long size() {
+        return size.get();
+    }
+
+    public int getKeyWidth() {
+        return keyWidth;
+    }
+
+    public long getMaxKeys() {
+        return maxKeys;
+    }
+
+    /**
+     * Returns the number of bytes of off-heap memory allocated by this set.
+     * @return the off-heap memory footprint of this set, in bytes.
+     */
+    public long getOffHeapBytes() {
+        return capacity * slotSize;
+    }
+
+    private boolean reserveKey() {
+        if (size.incrementAndGet() > maxKeys) {
+            size.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private long nextSlot(long slot) {
+        return (slot + 1 == capacity) ? 0 : slot + 1;
+    }
+
+    private void checkKeyWidth(@NotNull final byte[] key) {
+        if (key.length != keyWidth) {
+            throw new IllegalArgumentException(String.format(
+                    "Expected a %d-byte key, but got %d bytes.", keyWidth, key.length));
+        }
+    }
+
+    private static int awaitPublished(@NotNull final ByteBuffer segment, int offset) {
+        int state;
+        while ((state = (int) INT_VIEW.getAcquire(segment, offset)) == WRITING) {
+            Thread.onSpinWait();
+        }
+        return state;
+    }
+
+    private boolean keyEquals(@NotNull final ByteBuffer segment, int offset, @NotNull final byte[] key) {
+        final int keyOffset = offset + STATE_LENGTH;
+        for (int i = 0; i < keyWidth; ++i) {
+            if (segment.get(keyOffset + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the key, followed by a MurmurHash3 finalizer so that every bit of the key affects the
+     * slot index and fingerprint.
+     */
+    private static long hash(@NotNull final byte[] key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            h = (h ^ (b & 0xFF)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+
+        return h;
+    }
+
+    /** Derives a fingerprint (&gt;= 2) from the high bits of the key's hash. */
+    private static int fingerprint(long keyHash) {
+        return (int) (keyHash >>> 33) | 2;
+    }
+}
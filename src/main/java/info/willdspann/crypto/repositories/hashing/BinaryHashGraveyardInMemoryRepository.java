@@ -0,0 +1,16 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import org.springframework.stereotype.Repository;
+
+import info.willdspann.crypto.entities.hashing.BinaryHashId;
+import info.willdspann.crypto.entities.hashing.UnusedBinaryHash;
+import info.willdspann.crypto.repositories.MapInMemoryRepository;
+
+@Repository
+public class BinaryHashGraveyardInMemoryRepository extends MapInMemoryRepository<UnusedBinaryHash, BinaryHashId>
+        implements BinaryHashGraveyardRepository
+{
+    public BinaryHashGraveyardInMemoryRepository() {
+        super(UnusedBinaryHash::getId);
+    }
+}
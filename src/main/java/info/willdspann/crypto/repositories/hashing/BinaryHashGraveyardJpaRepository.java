@@ -0,0 +1,43 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import info.willdspann.crypto.entities.hashing.BinaryHashId;
+import info.willdspann.crypto.entities.hashing.UnusedBinaryHash;
+
+@Repository
+public interface BinaryHashGraveyardJpaRepository
+        extends BinaryHashGraveyardRepository, JpaRepository<UnusedBinaryHash, BinaryHashId>
+{
+    int IN_PREDICATE_BATCH_SIZE = 1000;
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Implemented as one {@code WHERE unused_hash IN (...)} query per batch of up to
+     * {@value #IN_PREDICATE_BATCH_SIZE} hashes. </p>
+     */
+    @Override
+    default List<byte[]> findBuried(@NotNull final Collection<byte[]> hashes) {
+        final List<byte[]> hashList = new ArrayList<>(hashes);
+        final List<byte[]> buriedHashes = new ArrayList<>();
+
+        for (int from = 0; from < hashList.size(); from += IN_PREDICATE_BATCH_SIZE) {
+            buriedHashes.addAll(findBuriedIn(
+                    hashList.subList(from, Math.min(from + IN_PREDICATE_BATCH_SIZE, hashList.size()))));
+        }
+        return buriedHashes;
+    }
+
+    @Query("SELECT u.unusedHash.hash FROM UnusedBinaryHash u WHERE u.unusedHash.hash IN :hashes")
+    List<byte[]> findBuriedIn(@NotNull @Param("hashes") final Collection<byte[]> hashes);
+}
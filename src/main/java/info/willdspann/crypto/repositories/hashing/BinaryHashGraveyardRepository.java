@@ -0,0 +1,49 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.data.repository.NoRepositoryBean;
+
+import info.willdspann.crypto.entities.hashing.BinaryHashId;
+import info.willdspann.crypto.entities.hashing.UnusedBinaryHash;
+import info.willdspann.crypto.repositories.BaseRepository;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+/**
+ * Repository of orphaned (no longer used) salted hashes in compact binary form (see {@link SaltedHash#toBinary()}).
+ */
+@NoRepositoryBean
+public interface BinaryHashGraveyardRepository extends BaseRepository<UnusedBinaryHash, BinaryHashId> {
+
+    /**
+     * Returns whether the given hash has been orphaned (i.e., whether it exists in the {@code UnusedBinaryHash}
+     * entity's backing DB table).
+     *
+     * @param saltedHash a salted hash for which to check for existence.
+     * @return whether the given hash has been orphaned.
+     */
+    default boolean isBuried(@NotNull final SaltedHash saltedHash) {
+        return existsById(BinaryHashId.of(saltedHash));
+    }
+
+    /**
+     * Returns the subset of the given hashes (in compact binary form) that have been orphaned. Implementations should
+     * override this to check the given hashes in as few round trips as possible.
+     *
+     * @param hashes salted hashes, in compact binary form, for which to check for existence.
+     * @return those given hashes that have been orphaned, in no particular order.
+     */
+    default List<byte[]> findBuried(@NotNull final Collection<byte[]> hashes) {
+        final List<byte[]> buriedHashes = new ArrayList<>();
+        for (byte[] hash : hashes) {
+            if (existsById(new BinaryHashId(hash))) {
+                buriedHashes.add(hash);
+            }
+        }
+        return buriedHashes;
+    }
+}
@@ -0,0 +1,120 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.StreamSupport;
+
+import javax.validation.constraints.NotNull;
+
+import info.willdspann.crypto.entities.hashing.BinaryHashId;
+import info.willdspann.crypto.entities.hashing.UnusedBinaryHash;
+import info.willdspann.crypto.entities.hashing.UnusedHash;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Adapter that stores the orphaned hashes of a {@link HashGraveyardRepository} (i.e., hex. encoded
+ * {@code salt:saltedHash} strings, as looked up by the hashing services) in a {@link BinaryHashGraveyardRepository},
+ * in compact binary form. This is the graveyard counterpart of {@link BinaryStoredUsedDistinctHashesRepository}.
+ */
+public class BinaryStoredHashGraveyardRepository implements HashGraveyardRepository {
+    private final BinaryHashGraveyardRepository repository;
+
+    /**
+     * @param repository repository in which orphaned hashes are stored in binary form.
+     */
+    public BinaryStoredHashGraveyardRepository(@NotNull final BinaryHashGraveyardRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public boolean isBuried(@NotNull final String hash) {
+        return repository.isBuried(toSaltedHash(hash));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Checked with a single {@link BinaryHashGraveyardRepository#findBuried(Collection)} call, so that the binary
+     * repository can batch its round trips. </p>
+     */
+    @Override
+    public Set<String> findBuriedHashes(@NotNull final Collection<String> hashes) {
+        final Map<BinaryHashId, String> hashesByBinaryHash = new HashMap<>();
+        for (String hash : hashes) {
+            hashesByBinaryHash.put(BinaryHashId.of(toSaltedHash(hash)), hash);
+        }
+        final List<byte[]> binaryHashes = hashesByBinaryHash.keySet().stream()
+                .map(BinaryHashId::getHash)
+                .collect(toList());
+
+        final Set<String> buriedHashes = new HashSet<>();
+        for (byte[] buriedHash : repository.findBuried(binaryHashes)) {
+            final String hash = hashesByBinaryHash.get(new BinaryHashId(buriedHash));
+            if (hash != null) {
+                buriedHashes.add(hash);
+            }
+        }
+        return buriedHashes;
+    }
+
+    @Override
+    public long count() {
+        return repository.count();
+    }
+
+    @Override
+    public boolean existsById(String entityId) {
+        return isBuried(entityId);
+    }
+
+    @Override
+    public Optional<UnusedHash> findById(String entityId) {
+        return repository.findById(BinaryHashId.of(toSaltedHash(entityId))).map(this::toUnusedHash);
+    }
+
+    @Override
+    public List<UnusedHash> findAllById(String entityId) {
+        return repository.findAllById(BinaryHashId.of(toSaltedHash(entityId))).stream()
+                .map(this::toUnusedHash)
+                .collect(toList());
+    }
+
+    /**
+     * Saves the given orphaned hash in binary form, and returns the given entity.
+     */
+    @Override
+    public <S extends UnusedHash> S save(S entity) {
+        repository.save(toBinaryHash(entity));
+        return entity;
+    }
+
+    @Override
+    public <S extends UnusedHash> List<S> saveAll(Iterable<S> entities) {
+        final List<S> entityList = StreamSupport.stream(entities.spliterator(), false).collect(toList());
+        repository.saveAll(entityList.stream().map(this::toBinaryHash).collect(toList()));
+        return entityList;
+    }
+
+    private SaltedHash toSaltedHash(@NotNull final String hash) {
+        return SaltedHash.fromString(hash);
+    }
+
+    private UnusedBinaryHash toBinaryHash(@NotNull final UnusedHash unusedHash) {
+        final UnusedBinaryHash binaryHash = new UnusedBinaryHash(toSaltedHash(unusedHash.getUnusedHash()));
+        binaryHash.setCreatedAt(unusedHash.getCreatedAt());
+        return binaryHash;
+    }
+
+    private UnusedHash toUnusedHash(@NotNull final UnusedBinaryHash binaryHash) {
+        final UnusedHash unusedHash = new UnusedHash(binaryHash.getSaltedHash().toString());
+        unusedHash.setCreatedAt(binaryHash.getCreatedAt());
+        return unusedHash;
+    }
+}
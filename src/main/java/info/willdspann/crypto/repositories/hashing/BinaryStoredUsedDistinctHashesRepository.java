@@ -0,0 +1,119 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.StreamSupport;
+
+import javax.validation.constraints.NotNull;
+
+import info.willdspann.crypto.entities.hashing.BinaryHashId;
+import info.willdspann.crypto.entities.hashing.UsedDistinctBinaryHash;
+import info.willdspann.crypto.entities.hashing.UsedDistinctHash;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * <p>
+ * Adapter that stores the used hashes of a {@link UsedDistinctHashesRepository} (i.e., hex. encoded
+ * {@code salt:saltedHash} strings, as saved by the hashing services) in a {@link UsedDistinctBinaryHashesRepository},
+ * in compact binary form. This lets the hashing services switch to binary storage (e.g., once the
+ * {@code hex_to_binary_hashes} migration has run) without any change to how they record used hashes. </p>
+ * <p>
+ * Used hashes are converted with {@link SaltedHash#fromString(String)}, which reads the hash algorithm from their
+ * hex. encoded form, and back with {@link SaltedHash#toString()}. </p>
+ */
+public class BinaryStoredUsedDistinctHashesRepository implements UsedDistinctHashesRepository {
+    private final UsedDistinctBinaryHashesRepository repository;
+
+    /**
+     * @param repository repository in which to store used hashes in binary form.
+     */
+    public BinaryStoredUsedDistinctHashesRepository(@NotNull final UsedDistinctBinaryHashesRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public boolean saveUsedHash(@NotNull final UsedDistinctHash usedHash) {
+        return repository.saveUsedHash(toSaltedHash(usedHash.getUsedHash()));
+    }
+
+    @Override
+    public Set<String> saveUsedHashes(@NotNull final Collection<UsedDistinctHash> usedHashes) {
+        final Set<SaltedHash> distinctHashes = repository.saveUsedHashes(usedHashes.stream()
+                .map(usedHash -> toSaltedHash(usedHash.getUsedHash()))
+                .collect(toList()));
+
+        final Set<String> distinctUsedHashes = new HashSet<>(2 * distinctHashes.size());
+        distinctHashes.forEach(saltedHash -> distinctUsedHashes.add(saltedHash.toString()));
+        return distinctUsedHashes;
+    }
+
+    @Override
+    public boolean hashExists(@NotNull final String hash) {
+        return repository.hashExists(toSaltedHash(hash));
+    }
+
+    @Override
+    public void forEachUsedHash(@NotNull final Consumer<String> consumer) {
+        repository.forEachUsedHash(saltedHash -> consumer.accept(saltedHash.toString()));
+    }
+
+    @Override
+    public long count() {
+        return repository.count();
+    }
+
+    @Override
+    public boolean existsById(String entityId) {
+        return hashExists(entityId);
+    }
+
+    @Override
+    public Optional<UsedDistinctHash> findById(String entityId) {
+        return repository.findById(BinaryHashId.of(toSaltedHash(entityId))).map(this::toUsedHash);
+    }
+
+    @Override
+    public List<UsedDistinctHash> findAllById(String entityId) {
+        return repository.findAllById(BinaryHashId.of(toSaltedHash(entityId))).stream()
+                .map(this::toUsedHash)
+                .collect(toList());
+    }
+
+    /**
+     * Saves the given used hash in binary form, and returns the given entity.
+     */
+    @Override
+    public <S extends UsedDistinctHash> S save(S entity) {
+        repository.save(toBinaryHash(entity));
+        return entity;
+    }
+
+    @Override
+    public <S extends UsedDistinctHash> List<S> saveAll(Iterable<S> entities) {
+        final List<S> entityList = StreamSupport.stream(entities.spliterator(), false).collect(toList());
+        repository.saveAll(entityList.stream().map(this::toBinaryHash).collect(toList()));
+        return entityList;
+    }
+
+    private SaltedHash toSaltedHash(@NotNull final String usedHash) {
+        return SaltedHash.fromString(usedHash);
+    }
+
+    private UsedDistinctBinaryHash toBinaryHash(@NotNull final UsedDistinctHash usedHash) {
+        final UsedDistinctBinaryHash binaryHash = new UsedDistinctBinaryHash(toSaltedHash(usedHash.getUsedHash()));
+        binaryHash.setCreatedAt(usedHash.getCreatedAt());
+        return binaryHash;
+    }
+
+    private UsedDistinctHash toUsedHash(@NotNull final UsedDistinctBinaryHash binaryHash) {
+        final UsedDistinctHash usedHash = new UsedDistinctHash(binaryHash.getSaltedHash().toString());
+        usedHash.setCreatedAt(binaryHash.getCreatedAt());
+        return usedHash;
+    }
+}
@@ -0,0 +1,317 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import info.willdspann.crypto.entities.hashing.HashUsageCount;
+
+/**
+ * <p>
+ * Decorator for a {@link HashUsageCountsRepository}, which reserves salt indices from the underlying repository in
+ * blocks of {@code blockSize} per unsalted hash, like a hi/lo sequence allocator, and hands them out from in-memory
+ * atomic counters. Each node (i.e., each instance over a shared DB) thus only updates a popular value's
+ * {@code hash_usage_counts} row once per block, rather than once per salted hash, so the row stops being a hot spot
+ * serializing every increment on its lock. </p>
+ * <p>
+ * Since every block is reserved by an atomic add to the underlying usage count, blocks reserved by different nodes
+ * never overlap, and salt indices are never reused. Indices of a block that aren't handed out (e.g., once its counter
+ * is evicted, or on shutdown) are skipped rather than returned, so the underlying usage count is an upper bound on
+ * the indices in use. {@link #getUsageCount} excludes this node's indices not yet handed out, when they are the
+ * highest reserved, so that on a single node it returns exactly the number of indices handed out. Indices reserved
+ * but not handed out by other nodes (or abandoned) are still included, so lookups over salt indices
+ * [0, usage count) may include salted hashes that were never used. </p>
+ * <p>
+ * A background task runs every {@code flushInterval}, which reserves the next block of every counter that is running
+ * low (at most a quarter of its block left) in a single bulk upsert via
+ * {@link HashUsageCountsRepository#addAndGetUsageCounts}, so that hot values rarely wait on the underlying repository,
+ * and evicts counters idle for longer than {@code maxIdle}. </p>
+ */
+public class BlockReservingHashUsageCountsRepository implements HashUsageCountsRepository, AutoCloseable {
+    public static final int DEFAULT_BLOCK_SIZE = 64;
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(100);
+    public static final Duration DEFAULT_MAX_IDLE = Duration.ofMinutes(1);
+    private static final Logger logger = LoggerFactory.getLogger(BlockReservingHashUsageCountsRepository.class);
+
+    private final HashUsageCountsRepository repository;
+    private final int blockSize;
+    private final long maxIdleNanos;
+    private final ConcurrentHashMap<String, UsageCounter> counters = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    private final LongAdder localReservationCount = new LongAdder();
+    private final LongAdder blockReservationCount = new LongAdder();
+
+    public BlockReservingHashUsageCountsRepository(@NotNull final HashUsageCountsRepository repository) {
+        this(repository, DEFAULT_BLOCK_SIZE, DEFAULT_FLUSH_INTERVAL, DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * @param repository underlying repository of usage counts, shared by every node.
+     * @param blockSize number of salt indices reserved per unsalted hash at a time.
+     * @param flushInterval interval between runs of the background task, which reserves the next block of counters
+     *                      running low and evicts idle counters.
+     * @param maxIdle time after which an unused counter is evicted, abandoning the rest of its block.
+     */
+    public BlockReservingHashUsageCountsRepository(@NotNull final HashUsageCountsRepository repository,
+                                                   int blockSize,
+                                                   @NotNull final Duration flushInterval,
+                                                   @NotNull final Duration maxIdle)
+    {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive.");
+        }
+        this.repository = repository;
+        this.blockSize = blockSize;
+        this.maxIdleNanos = maxIdle.toNanos();
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            final Thread thread = new Thread(task, "hash-usage-counts-block-reserver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long flushIntervalNanos = flushInterval.toNanos();
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalNanos, flushIntervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The {@code delta} salt indices are handed out from this node's current block for the unsalted hash, if it has
+     * enough left, and otherwise from a new block of {@code max(blockSize, delta)} indices. </p>
+     */
+    @Override
+    public int addAndGetUsageCount(@NotNull final String usedHash, final int delta) {
+        if (delta <= 0) {
+            throw new IllegalArgumentException("Usage count delta must be positive.");
+        }
+        return counters.computeIfAbsent(usedHash, UsageCounter::new).reserve(delta);
+    }
+
+    /**
+     * Stops the background task. Any indices left in this node's blocks are abandoned. If interrupted while waiting
+     * for the background task to stop, this returns early with the thread's interrupt status set.
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warn("Timed out waiting for the block reserver to stop.");
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } finally {
+            counters.clear();
+        }
+    }
+
+    /**
+     * Returns the number of reservations served from an in-memory block (i.e., without a round trip).
+     * @return the number of local reservations.
+     */
+    public long getLocalReservationCount() {
+        return localReservationCount.sum();
+    }
+
+    /**
+     * Returns the number of blocks reserved from the underlying repository, whether on demand or in the background.
+     * @return the number of block reservations.
+     */
+    public long getBlockReservationCount() {
+        return blockReservationCount.sum();
+    }
+
+    /**
+     * Returns the usage count in the underlying repository, less this node's indices not yet handed out, if they are
+     * the highest reserved. Indices reserved by other nodes are included, whether handed out yet or not, since this
+     * node can't tell which of them are.
+     */
+    @Override
+    public int getUsageCount(@NotNull final String usedHash) {
+        final int usageCount = repository.getUsageCount(usedHash);
+        final UsageCounter counter = counters.get(usedHash);
+
+        return (counter != null) ? counter.handedOutBound(usageCount) : usageCount;
+    }
+
+    @Override
+    public long count() {
+        return repository.count();
+    }
+
+    @Override
+    public boolean existsById(String entityId) {
+        return repository.existsById(entityId);
+    }
+
+    @Override
+    public Optional<HashUsageCount> findById(String entityId) {
+        return repository.findById(entityId);
+    }
+
+    @Override
+    public List<HashUsageCount> findAllById(String entityId) {
+        return repository.findAllById(entityId);
+    }
+
+    @Override
+    public <S extends HashUsageCount> S save(S entity) {
+        return repository.save(entity);
+    }
+
+    @Override
+    public <S extends HashUsageCount> List<S> saveAll(Iterable<S> entities) {
+        return repository.saveAll(entities);
+    }
+
+    /**
+     * Evicts idle counters, then reserves the next block of every counter running low in one bulk upsert.
+     */
+    void flush() {
+        final long now = System.nanoTime();
+        final Map<String, UsageCounter> lowCounters = new HashMap<>();
+        counters.forEach((usedHash, counter) -> {
+            if (now - counter.lastUsedNanos > maxIdleNanos) {
+                counters.remove(usedHash, counter);
+            } else if (counter.needsNextBlock()) {
+                lowCounters.put(usedHash, counter);
+            }
+        });
+        if (lowCounters.isEmpty()) {
+            return;
+        }
+
+        final Map<String, Integer> deltasByUsedHash = new HashMap<>(2 * lowCounters.size());
+        lowCounters.keySet().forEach(usedHash -> deltasByUsedHash.put(usedHash, blockSize));
+        final Map<String, Integer> usageCounts;
+        try {
+            usageCounts = repository.addAndGetUsageCounts(deltasByUsedHash);
+        } catch (Throwable t) {
+            // Errors too are only logged, since any throwable escaping this task would cancel every later run of it,
+            // leaving hot values to wait on the underlying repository for each block from then on.
+            logger.warn("Unable to reserve next blocks for {} unsalted hashes.", lowCounters.size(), t);
+            return;
+        }
+        blockReservationCount.add(usageCounts.size());
+        usageCounts.forEach((usedHash, usageCount) ->
+                lowCounters.get(usedHash).offerNextBlock(new IndexBlock(usageCount - blockSize, usageCount)));
+    }
+
+
+    /** Contiguous range of reserved salt indices [start, end), handed out from {@code next}. */
+    private static final class IndexBlock {
+        private static final IndexBlock EXHAUSTED = new IndexBlock(0, 0);
+
+        private final int start;
+        private final int end;
+        private final AtomicInteger next;
+
+        private IndexBlock(int start, int end) {
+            this.start = start;
+            this.end = end;
+            this.next = new AtomicInteger(start);
+        }
+
+        /** Hands out {@code delta} indices, returning the end of their range, or -1 if fewer are left. */
+        private int reserve(int delta) {
+            int from;
+            do {
+                from = next.get();
+                if (end - from < delta) {
+                    return -1;
+                }
+            } while (!next.compareAndSet(from, from + delta));
+
+            return from + delta;
+        }
+
+        private int remaining() {
+            return Math.max(0, end - next.get());
+        }
+    }
+
+    /** This node's blocks of salt indices for one unsalted hash. */
+    private final class UsageCounter {
+        private final String usedHash;
+        private volatile IndexBlock current = IndexBlock.EXHAUSTED;
+        /** Block reserved ahead of time by {@link #flush()}, guarded by {@code this}. */
+        private IndexBlock nextBlock;
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        private UsageCounter(@NotNull final String usedHash) {
+            this.usedHash = usedHash;
+        }
+
+        private int reserve(int delta) {
+            lastUsedNanos = System.nanoTime();
+            while (true) {
+                final IndexBlock block = current;
+                final int usageCount = block.reserve(delta);
+                if (usageCount >= 0) {
+                    localReservationCount.increment();
+                    return usageCount;
+                }
+                synchronized (this) {
+                    if (current == block) {
+                        current = takeNextBlock(delta);
+                    }
+                }
+            }
+        }
+
+        /** Takes the block reserved ahead of time, if large enough, or else reserves one on demand. */
+        private IndexBlock takeNextBlock(int delta) {
+            final IndexBlock block = nextBlock;
+            nextBlock = null;
+            if (block != null && block.remaining() >= delta) {
+                return block;
+            }
+            final int size = Math.max(blockSize, delta);
+            final int usageCount = repository.addAndGetUsageCount(usedHash, size);
+            blockReservationCount.increment();
+
+            return new IndexBlock(usageCount - size, usageCount);
+        }
+
+        /**
+         * Returns the given usage count, lowered past this node's indices not yet handed out, as long as they are the
+         * highest below it (i.e., no other node has reserved a block since).
+         */
+        private synchronized int handedOutBound(int usageCount) {
+            int bound = usageCount;
+            // The block reserved ahead is only handed out from once it becomes the current block.
+            if (nextBlock != null && nextBlock.end == bound) {
+                bound = nextBlock.start;
+            }
+            final IndexBlock block = current;
+            if (block.end == bound) {
+                bound = block.next.get();
+            }
+            return bound;
+        }
+
+        private synchronized boolean needsNextBlock() {
+            return nextBlock == null && 4 * current.remaining() <= blockSize;
+        }
+
+        private synchronized void offerNextBlock(@NotNull final IndexBlock block) {
+            if (nextBlock == null) {
+                nextBlock = block;
+            }
+        }
+    }
+}
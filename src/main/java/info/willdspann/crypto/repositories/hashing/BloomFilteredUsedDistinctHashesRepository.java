@@ -0,0 +1,272 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import info.willdspann.crypto.entities.hashing.UsedDistinctHash;
+import info.willdspann.crypto.repositories.BloomFilter;
+
+/**
+ * <p>
+ * Decorator for a {@link UsedDistinctHashesRepository}, which answers {@link #hashExists(String)},
+ * {@link #existsById(String)} and {@link #findById(String)} from an in-memory {@link BloomFilter} when the filter
+ * rules out the used hash, and only falls through to the underlying repository (e.g., a DB round trip) when the filter
+ * says it may exist. Since most existence checks are for hashes that were never used, most checks never reach the
+ * underlying repository. </p>
+ * <p>
+ * Every used hash saved through this decorator is put into the filter before being saved, so the filter never rules
+ * out a saved hash. Hashes saved to the underlying repository by other means (e.g., other instances sharing its DB)
+ * are only reflected once the filter is rebuilt, so the underlying repository must not be written to around this
+ * decorator while it is in use. </p>
+ * <p>
+ * The filter is sized from the underlying repository's {@code count()} and populated via
+ * {@link UsedDistinctHashesRepository#forEachUsedHash(Consumer)} by {@link #rebuild}, or reloaded from a file written
+ * by {@link #persist(Path)} via {@link #load}. The file also records the underlying repository's count when it was
+ * written, and a reloaded filter is only used if that count still matches, and is otherwise rebuilt. (The filter's
+ * own insertion count can't be compared, since it counts neither repeated puts nor puts whose bits were all already
+ * set, and does count puts whose save then failed.) </p>
+ */
+public class BloomFilteredUsedDistinctHashesRepository implements UsedDistinctHashesRepository {
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+    /** Filters are sized for this many times the current used hash count, to leave room for growth. */
+    public static final int DEFAULT_GROWTH_FACTOR = 2;
+    public static final long MIN_EXPECTED_INSERTIONS = 1 << 16;
+    /** Identifies files written by {@link #persist(Path)}, ahead of the used hash count and the filter. */
+    private static final int FILE_MAGIC = 0x55484246;  // "UHBF"
+    private static final Logger logger = LoggerFactory.getLogger(BloomFilteredUsedDistinctHashesRepository.class);
+
+    private final UsedDistinctHashesRepository repository;
+    private final BloomFilter filter;
+
+    private final LongAdder definiteMissCount = new LongAdder();
+    private final LongAdder truePositiveCount = new LongAdder();
+    private final LongAdder falsePositiveCount = new LongAdder();
+
+    /**
+     * @param repository underlying repository of used hashes.
+     * @param filter filter holding (at least) every used hash in the underlying repository.
+     */
+    public BloomFilteredUsedDistinctHashesRepository(@NotNull final UsedDistinctHashesRepository repository,
+                                                     @NotNull final BloomFilter filter)
+    {
+        this.repository = repository;
+        this.filter = filter;
+    }
+
+    /**
+     * Creates a decorator whose filter is sized for {@value #DEFAULT_GROWTH_FACTOR} times the underlying repository's
+     * current count at a false-positive rate of {@code falsePositiveRate}, and populated with every used hash in
+     * the underlying repository.
+     *
+     * @param repository underlying repository of used hashes.
+     * @param falsePositiveRate target false-positive rate of the filter.
+     * @return a new decorator over the given repository.
+     */
+    public static BloomFilteredUsedDistinctHashesRepository rebuild(
+            @NotNull final UsedDistinctHashesRepository repository,
+            double falsePositiveRate)
+    {
+        final long expectedInsertions = Math.max(MIN_EXPECTED_INSERTIONS, DEFAULT_GROWTH_FACTOR * repository.count());
+        final BloomFilter filter = BloomFilter.create(expectedInsertions, falsePositiveRate);
+        repository.forEachUsedHash(usedHash -> filter.put(toKey(usedHash)));
+
+        logger.info("Rebuilt Bloom filter of {} bits over {} used hashes.",
+                filter.getNumBits(), filter.getInsertionCount());
+        return new BloomFilteredUsedDistinctHashesRepository(repository, filter);
+    }
+
+    /**
+     * Creates a decorator whose filter is reloaded from the given file, if it exists and is up to date with the
+     * underlying repository, or else is rebuilt (see {@link #rebuild}).
+     *
+     * @param repository underlying repository of used hashes.
+     * @param filterFile file written by {@link #persist(Path)}.
+     * @param falsePositiveRate target false-positive rate of the filter, if rebuilt.
+     * @return a new decorator over the given repository.
+     */
+    public static BloomFilteredUsedDistinctHashesRepository load(
+            @NotNull final UsedDistinctHashesRepository repository,
+            @NotNull final Path filterFile,
+            double falsePositiveRate)
+    {
+        if (Files.isRegularFile(filterFile)) {
+            try (InputStream in = Files.newInputStream(filterFile)) {
+                final DataInputStream dataIn = new DataInputStream(in);
+                if (dataIn.readInt() != FILE_MAGIC) {
+                    throw new IOException("Not a used hashes Bloom filter file.");
+                }
+                final long persistedUsedHashCount = dataIn.readLong();
+                final BloomFilter filter = BloomFilter.readFrom(dataIn);
+                final long usedHashCount = repository.count();
+                if (persistedUsedHashCount == usedHashCount) {
+                    return new BloomFilteredUsedDistinctHashesRepository(repository, filter);
+                }
+                logger.info("Bloom filter in {} is stale ({} of {} used hashes) -- Rebuilding it.",
+                        filterFile, persistedUsedHashCount, usedHashCount);
+            } catch (IOException ioe) {
+                logger.warn("Unable to load Bloom filter from {} -- Rebuilding it.", filterFile, ioe);
+            }
+        }
+        return rebuild(repository, falsePositiveRate);
+    }
+
+    /**
+     * Writes this decorator's filter, along with the underlying repository's current count, to the given file,
+     * replacing it atomically. This should be called once no further used hashes will be saved (e.g., at shutdown), so
+     * that the file is up to date when reloaded.
+     *
+     * @param filterFile file to which to write the filter.
+     * @throws IOException if unable to write the file.
+     */
+    public void persist(@NotNull final Path filterFile) throws IOException {
+        final Path tempFile = filterFile.resolveSibling(filterFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempFile)) {
+            final DataOutputStream dataOut = new DataOutputStream(out);
+            dataOut.writeInt(FILE_MAGIC);
+            dataOut.writeLong(repository.count());
+            filter.writeTo(dataOut);
+        }
+        Files.move(tempFile, filterFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public boolean hashExists(@NotNull final String hash) {
+        return existsById(hash);
+    }
+
+    @Override
+    public boolean existsById(String entityId) {
+        if (!filter.mightContain(toKey(entityId))) {
+            definiteMissCount.increment();
+            return false;
+        }
+        return recordFallThrough(repository.existsById(entityId));
+    }
+
+    @Override
+    public Optional<UsedDistinctHash> findById(String entityId) {
+        if (!filter.mightContain(toKey(entityId))) {
+            definiteMissCount.increment();
+            return Optional.empty();
+        }
+        final Optional<UsedDistinctHash> usedHash = repository.findById(entityId);
+        recordFallThrough(usedHash.isPresent());
+
+        return usedHash;
+    }
+
+    @Override
+    public List<UsedDistinctHash> findAllById(String entityId) {
+        return repository.findAllById(entityId);
+    }
+
+    @Override
+    public boolean saveUsedHash(@NotNull final UsedDistinctHash usedHash) {
+        filter.put(toKey(usedHash.getUsedHash()));
+        return repository.saveUsedHash(usedHash);
+    }
+
+    @Override
+    public Set<String> saveUsedHashes(@NotNull final Collection<UsedDistinctHash> usedHashes) {
+        usedHashes.forEach(usedHash -> filter.put(toKey(usedHash.getUsedHash())));
+        return repository.saveUsedHashes(usedHashes);
+    }
+
+    @Override
+    public <S extends UsedDistinctHash> S save(S entity) {
+        filter.put(toKey(entity.getUsedHash()));
+        return repository.save(entity);
+    }
+
+    @Override
+    public <S extends UsedDistinctHash> List<S> saveAll(Iterable<S> entities) {
+        entities.forEach(entity -> filter.put(toKey(entity.getUsedHash())));
+        return repository.saveAll(entities);
+    }
+
+    @Override
+    public long count() {
+        return repository.count();
+    }
+
+    @Override
+    public void forEachUsedHash(@NotNull final Consumer<String> consumer) {
+        repository.forEachUsedHash(consumer);
+    }
+
+    /**
+     * Returns the number of existence checks answered by the filter alone (i.e., without a lookup).
+     * @return the number of lookups avoided.
+     */
+    public long getDefiniteMissCount() {
+        return definiteMissCount.sum();
+    }
+
+    /**
+     * Returns the number of existence checks that fell through to the underlying repository and found the hash.
+     * @return the number of true positives.
+     */
+    public long getTruePositiveCount() {
+        return truePositiveCount.sum();
+    }
+
+    /**
+     * Returns the number of existence checks that fell through to the underlying repository, but didn't find the
+     * hash (i.e., wasted lookups).
+     * @return the number of false positives.
+     */
+    public long getFalsePositiveCount() {
+        return falsePositiveCount.sum();
+    }
+
+    /**
+     * Returns the observed false-positive rate, i.e. the fraction of checks for absent hashes that nonetheless fell
+     * through to the underlying repository, or {@code 0.0} if there have been no checks for absent hashes.
+     * @return the observed false-positive rate, in the range [0.0, 1.0].
+     */
+    public double getObservedFalsePositiveRate() {
+        final long falsePositives = falsePositiveCount.sum();
+        final long absentChecks = falsePositives + definiteMissCount.sum();
+
+        return (absentChecks == 0) ? 0.0 : (double) falsePositives / absentChecks;
+    }
+
+    /**
+     * Returns the false-positive rate expected from the filter's current fill ratio.
+     * @return the expected false-positive rate, in the range [0.0, 1.0].
+     */
+    public double getExpectedFalsePositiveRate() {
+        return filter.expectedFalsePositiveRate();
+    }
+
+    private boolean recordFallThrough(boolean found) {
+        if (found) {
+            truePositiveCount.increment();
+        } else {
+            falsePositiveCount.increment();
+        }
+        return found;
+    }
+
+    private static byte[] toKey(@NotNull final String usedHash) {
+        return usedHash.getBytes(StandardCharsets.US_ASCII);
+    }
+}
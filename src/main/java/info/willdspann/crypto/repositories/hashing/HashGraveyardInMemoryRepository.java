@@ -0,0 +1,15 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import org.springframework.stereotype.Repository;
+
+import info.willdspann.crypto.entities.hashing.UnusedHash;
+import info.willdspann.crypto.repositories.MapInMemoryRepository;
+
+@Repository
+public class HashGraveyardInMemoryRepository extends MapInMemoryRepository<UnusedHash, String>
+        implements HashGraveyardRepository
+{
+    public HashGraveyardInMemoryRepository() {
+        super(UnusedHash::getUnusedHash);
+    }
+}
@@ -0,0 +1,42 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import info.willdspann.crypto.entities.hashing.UnusedHash;
+
+@Repository
+public interface HashGraveyardJpaRepository extends HashGraveyardRepository, JpaRepository<UnusedHash, String> {
+    int IN_PREDICATE_BATCH_SIZE = 1000;
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Implemented as one {@code WHERE unused_hash IN (...)} query per batch of up to
+     * {@value #IN_PREDICATE_BATCH_SIZE} hashes. </p>
+     */
+    @Override
+    default Set<String> findBuriedHashes(@NotNull final Collection<String> hashes) {
+        final List<String> hashList = new ArrayList<>(hashes);
+        final Set<String> buriedHashes = new HashSet<>();
+
+        for (int from = 0; from < hashList.size(); from += IN_PREDICATE_BATCH_SIZE) {
+            buriedHashes.addAll(findBuriedHashesIn(
+                    hashList.subList(from, Math.min(from + IN_PREDICATE_BATCH_SIZE, hashList.size()))));
+        }
+        return buriedHashes;
+    }
+
+    @Query("SELECT u.unusedHash FROM UnusedHash u WHERE u.unusedHash IN :hashes")
+    List<String> findBuriedHashesIn(@NotNull @Param("hashes") final Collection<String> hashes);
+}
@@ -0,0 +1,44 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.data.repository.NoRepositoryBean;
+
+import info.willdspann.crypto.entities.hashing.UnusedHash;
+import info.willdspann.crypto.repositories.BaseRepository;
+
+@NoRepositoryBean
+public interface HashGraveyardRepository extends BaseRepository<UnusedHash, String> {
+
+    /**
+     * Returns whether the given hash has been orphaned (i.e., whether it exists in the {@code UnusedHash} entity's
+     * backing DB table).
+     *
+     * @param hash a salted hash for which to check for existence.
+     * @return whether the given hash has been orphaned.
+     */
+    default boolean isBuried(@NotNull final String hash) {
+        return existsById(hash);
+    }
+
+    /**
+     * Returns the subset of the given hashes that have been orphaned. Implementations should override this to check
+     * the given hashes in as few round trips as possible.
+     *
+     * @param hashes salted hashes for which to check for existence.
+     * @return those given hashes that have been orphaned.
+     */
+    default Set<String> findBuriedHashes(@NotNull final Collection<String> hashes) {
+        final Set<String> buriedHashes = new HashSet<>();
+        for (String hash : hashes) {
+            if (isBuried(hash)) {
+                buriedHashes.add(hash);
+            }
+        }
+        return buriedHashes;
+    }
+}
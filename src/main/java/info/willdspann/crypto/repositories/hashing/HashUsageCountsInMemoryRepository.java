@@ -0,0 +1,33 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.stereotype.Repository;
+
+import info.willdspann.crypto.entities.hashing.HashUsageCount;
+import info.willdspann.crypto.repositories.MapInMemoryRepository;
+
+@Repository
+public class HashUsageCountsInMemoryRepository extends MapInMemoryRepository<HashUsageCount, String>
+        implements HashUsageCountsRepository
+{
+    public HashUsageCountsInMemoryRepository() {
+        super(HashUsageCount::getUsedHash);
+    }
+
+    @Override
+    public int addAndGetUsageCount(@NotNull String usedHash, int delta) {
+        assert delta > 0;
+
+        final HashUsageCount usageCount = compute(usedHash, (hash, existing) -> {
+            if (existing == null) {
+                return new HashUsageCount(hash, delta);
+            }
+            // Replace rather than mutate, since the previous instance may have been returned by findById().
+            final HashUsageCount updated = new HashUsageCount(hash, existing.getUsageCount() + delta);
+            updated.setCreatedAt(existing.getCreatedAt());
+            return updated;
+        });
+        return usageCount.getUsageCount();
+    }
+}
@@ -0,0 +1,84 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import info.willdspann.crypto.entities.hashing.HashUsageCount;
+
+import static java.util.stream.Collectors.joining;
+
+@Repository
+public interface HashUsageCountsJpaRepository extends HashUsageCountsRepository, JpaRepository<HashUsageCount, String> {
+    int BULK_UPSERT_BATCH_SIZE = 1000;
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Implemented as a single upsert (see {@code sql/queries/addAndGetHashUsageCount.SELECT.sql}). </p>
+     */
+    @Override
+    @Transactional
+    @Query(nativeQuery = true, value =
+            "INSERT INTO secure_hashing.hash_usage_counts AS counts (used_hash, usage_count) " +
+            "    VALUES (:hash, :delta) " +
+            "ON CONFLICT (used_hash) DO " +
+            "    UPDATE SET (usage_count, last_updated_at) = (counts.usage_count + EXCLUDED.usage_count, now()) " +
+            "    RETURNING usage_count")
+    int addAndGetUsageCount(@NotNull @Param("hash") final String usedHash, @Param("delta") final int delta);
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Implemented as one multi-row upsert per batch of up to {@value #BULK_UPSERT_BATCH_SIZE} unsalted hashes (see
+     * {@code sql/queries/addAndGetHashUsageCounts.SELECT.sql}). Each batch's unsalted hashes are upserted in sorted
+     * order, so that concurrent batches lock shared rows in the same order and can't deadlock. </p>
+     */
+    @Override
+    @Transactional
+    default Map<String, Integer> addAndGetUsageCounts(@NotNull final Map<String, Integer> deltasByUsedHash) {
+        final List<String> sortedUsedHashes = new ArrayList<>(new TreeSet<>(deltasByUsedHash.keySet()));
+        final Map<String, Integer> usageCounts = new HashMap<>(2 * sortedUsedHashes.size());
+
+        for (int from = 0; from < sortedUsedHashes.size(); from += BULK_UPSERT_BATCH_SIZE) {
+            final List<String> batch = sortedUsedHashes.subList(
+                    from, Math.min(from + BULK_UPSERT_BATCH_SIZE, sortedUsedHashes.size()));
+            final String deltas = batch.stream()
+                    .map(usedHash -> deltasByUsedHash.get(usedHash).toString())
+                    .collect(joining(","));
+
+            for (Object[] row : bulkAddAndGetUsageCounts(String.join(",", batch), deltas)) {
+                usageCounts.put((String) row[0], ((Number) row[1]).intValue());
+            }
+        }
+        return usageCounts;
+    }
+
+    /**
+     * Adds each delta to the usage count of its corresponding unsalted hash, in a single multi-row upsert. The
+     * unsalted hashes (hex. encoded, so never containing commas) and deltas are each passed as a comma-separated
+     * list, and must not contain duplicates.
+     *
+     * @param usedHashes comma-separated unsalted hashes (hex. encoded).
+     * @param deltas comma-separated deltas, one per unsalted hash.
+     * @return a {@code [used_hash, usage_count]} row for each unsalted hash, with its new usage count.
+     */
+    @Query(nativeQuery = true, value =
+            "INSERT INTO secure_hashing.hash_usage_counts AS counts (used_hash, usage_count) " +
+            "    SELECT * FROM unnest(string_to_array(:hashes, ','), CAST(string_to_array(:deltas, ',') AS int[])) " +
+            "ON CONFLICT (used_hash) DO " +
+            "    UPDATE SET (usage_count, last_updated_at) = (counts.usage_count + EXCLUDED.usage_count, now()) " +
+            "    RETURNING used_hash, usage_count")
+    List<Object[]> bulkAddAndGetUsageCounts(@NotNull @Param("hashes") final String usedHashes,
+                                            @NotNull @Param("deltas") final String deltas);
+}
@@ -0,0 +1,82 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.data.repository.NoRepositoryBean;
+
+import info.willdspann.crypto.entities.hashing.HashUsageCount;
+import info.willdspann.crypto.repositories.BaseRepository;
+
+@NoRepositoryBean
+public interface HashUsageCountsRepository extends BaseRepository<HashUsageCount, String> {
+
+    /**
+     * Atomically adds {@code delta} to the usage count of the given unsalted hash, inserting a new entry with a
+     * count of {@code delta} if none yet exists, and returns the new usage count. The salt indices reserved by this
+     * call are therefore {@code [newCount - delta, newCount)}.
+     *
+     * @param usedHash unsalted hash (hex. encoded) of a cleartext value.
+     * @param delta positive number of salted hashes to reserve for the cleartext value.
+     * @return the new usage count for the given unsalted hash.
+     */
+    int addAndGetUsageCount(@NotNull final String usedHash, final int delta);
+
+    /**
+     * Atomically increments the usage count of the given unsalted hash, inserting a new entry with a count of 1 if
+     * none yet exists, and returns the new usage count.
+     *
+     * @param usedHash unsalted hash (hex. encoded) of a cleartext value.
+     * @return the new usage count for the given unsalted hash.
+     */
+    default int incrementAndGetUsageCount(@NotNull final String usedHash) {
+        return addAndGetUsageCount(usedHash, 1);
+    }
+
+    /**
+     * Atomically adds each given delta to the usage count of its unsalted hash, inserting new entries as needed, and
+     * returns the new usage count of each unsalted hash. Implementations should override this to apply the given
+     * deltas in as few round trips as possible.
+     *
+     * @param deltasByUsedHash positive number of salted hashes to reserve, by unsalted hash (hex. encoded).
+     * @return the new usage count, by unsalted hash.
+     */
+    default Map<String, Integer> addAndGetUsageCounts(@NotNull final Map<String, Integer> deltasByUsedHash) {
+        final Map<String, Integer> usageCounts = new HashMap<>(2 * deltasByUsedHash.size());
+        deltasByUsedHash.forEach((usedHash, delta) ->
+                usageCounts.put(usedHash, addAndGetUsageCount(usedHash, delta))
+        );
+        return usageCounts;
+    }
+
+    /**
+     * Atomically increments the usage count of each given unsalted hash, once per occurrence, and returns the new
+     * usage count of each distinct unsalted hash. Duplicates are collapsed in memory, so each distinct unsalted hash
+     * is updated only once.
+     *
+     * @param usedHashes unsalted hashes (hex. encoded) of cleartext values, possibly including duplicates.
+     * @return the new usage count, by distinct unsalted hash.
+     */
+    default Map<String, Integer> incrementAndGetUsageCounts(@NotNull final Collection<String> usedHashes) {
+        final Map<String, Integer> deltasByUsedHash = new HashMap<>();
+        for (String usedHash : usedHashes) {
+            deltasByUsedHash.merge(usedHash, 1, Integer::sum);
+        }
+        return addAndGetUsageCounts(deltasByUsedHash);
+    }
+
+    /**
+     * Returns the usage count of the given unsalted hash, or 0 if it has never been used.
+     *
+     * @param usedHash unsalted hash (hex. encoded) of a cleartext value.
+     * @return the usage count for the given unsalted hash.
+     */
+    default int getUsageCount(@NotNull final String usedHash) {
+        return findById(usedHash)
+                .map(HashUsageCount::getUsageCount)
+                .orElse(0);
+    }
+}
@@ -0,0 +1,148 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+import info.willdspann.crypto.entities.hashing.HashUsageCount;
+import info.willdspann.crypto.repositories.AppendOnlyJournal;
+
+/**
+ * <p>
+ * In-memory repository of usage counts, which records every new usage count in a local {@link AppendOnlyJournal}, so
+ * that usage counts survive restarts of deployments without a DB, and salt indices are never handed out twice. </p>
+ * <p>
+ * A reservation only returns once its new usage count has been flushed to the journal, with concurrent reservations
+ * sharing flushes. On startup, usage counts are rebuilt by replaying the journal, keeping the highest count recorded
+ * per unsalted hash (since concurrent reservations may be journaled out of order). Since each reservation supersedes
+ * the unsalted hash's previous record, the journal is compacted to one record per unsalted hash once it holds
+ * {@code compactionFactor} times as many records as there are unsalted hashes. </p>
+ */
+public class JournaledHashUsageCountsRepository extends HashUsageCountsInMemoryRepository implements AutoCloseable {
+    public static final int DEFAULT_COMPACTION_FACTOR = 4;
+    /** Journals are not compacted below this many records, so that small journals aren't compacted over and over. */
+    private static final long MIN_COMPACTION_RECORDS = 1 << 16;
+
+    private final AppendOnlyJournal journal;
+    private final int compactionFactor;
+
+    public JournaledHashUsageCountsRepository(@NotNull final Path journalFile) throws IOException {
+        this(journalFile, DEFAULT_COMPACTION_FACTOR);
+    }
+
+    /**
+     * Opens (or creates) the journal in the given file, and rebuilds the usage counts recorded in it.
+     *
+     * @param journalFile file holding the journal.
+     * @param compactionFactor ratio of journal records to unsalted hashes at which the journal is compacted.
+     * @throws IOException if unable to open the journal.
+     */
+    public JournaledHashUsageCountsRepository(@NotNull final Path journalFile, int compactionFactor)
+            throws IOException
+    {
+        if (compactionFactor < 2) {
+            throw new IllegalArgumentException("Compaction factor must be at least 2.");
+        }
+        this.compactionFactor = compactionFactor;
+        this.journal = new AppendOnlyJournal(journalFile, this::replay);
+    }
+
+    @Override
+    public int addAndGetUsageCount(@NotNull final String usedHash, int delta) {
+        final int usageCount = super.addAndGetUsageCount(usedHash, delta);
+        journal.awaitDurable(journal.append(toRecord(usedHash, usageCount)));
+        compactIfNeeded();
+
+        return usageCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Every new usage count is journaled before waiting for any of them to be flushed, so that all share one
+     * flush. </p>
+     */
+    @Override
+    public Map<String, Integer> addAndGetUsageCounts(@NotNull final Map<String, Integer> deltasByUsedHash) {
+        final Map<String, Integer> usageCounts = new HashMap<>(2 * deltasByUsedHash.size());
+        long lastSequence = 0;
+        for (Map.Entry<String, Integer> entry : deltasByUsedHash.entrySet()) {
+            final int usageCount = super.addAndGetUsageCount(entry.getKey(), entry.getValue());
+            usageCounts.put(entry.getKey(), usageCount);
+            lastSequence = journal.append(toRecord(entry.getKey(), usageCount));
+        }
+        journal.awaitDurable(lastSequence);
+        compactIfNeeded();
+
+        return usageCounts;
+    }
+
+    @Override
+    public <S extends HashUsageCount> S save(S entity) {
+        final S saved = super.save(entity);
+        journal.awaitDurable(journal.append(toRecord(entity.getUsedHash(), entity.getUsageCount())));
+
+        return saved;
+    }
+
+    /**
+     * Flushes and closes the journal.
+     */
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    /**
+     * Returns the number of records in the journal, which is compacted once it exceeds the number of unsalted hashes
+     * by the compaction factor.
+     * @return the number of journal records.
+     */
+    public long getJournalRecordCount() {
+        return journal.getRecordCount();
+    }
+
+    /**
+     * Compacts the journal to one record per unsalted hash, holding its current usage count.
+     */
+    public void compact() {
+        journal.compact(() -> {
+            final List<byte[]> records = new ArrayList<>((int) count());
+            forEachId(usedHash -> records.add(toRecord(usedHash, getUsageCount(usedHash))));
+            return records;
+        });
+    }
+
+    private void compactIfNeeded() {
+        final long recordCount = journal.getRecordCount();
+        if (recordCount >= MIN_COMPACTION_RECORDS && recordCount > compactionFactor * count()) {
+            compact();
+        }
+    }
+
+    private void replay(@NotNull final ByteBuffer record) {
+        final int usageCount = record.getInt();
+        final String usedHash = StandardCharsets.UTF_8.decode(record).toString();
+        compute(usedHash, (hash, existing) ->
+                (existing == null || existing.getUsageCount() < usageCount)
+                        ? new HashUsageCount(hash, usageCount)
+                        : existing
+        );
+    }
+
+    /** Encodes a usage count record as the usage count, followed by the unsalted hash (UTF-8). */
+    private static byte[] toRecord(@NotNull final String usedHash, int usageCount) {
+        final byte[] usedHashBytes = usedHash.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(4 + usedHashBytes.length)
+                .putInt(usageCount)
+                .put(usedHashBytes)
+                .array();
+    }
+}
@@ -0,0 +1,131 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.validation.constraints.NotNull;
+
+import info.willdspann.crypto.entities.hashing.UsedDistinctHash;
+import info.willdspann.crypto.repositories.AppendOnlyJournal;
+
+/**
+ * <p>
+ * In-memory repository of used hashes, which records every newly used hash in a local {@link AppendOnlyJournal}, so
+ * that used hashes survive restarts of deployments without a DB. </p>
+ * <p>
+ * A used hash is only reported as distinct once it has been flushed to the journal, with concurrent saves sharing
+ * flushes. On startup, the used hashes are rebuilt by replaying the journal. </p>
+ * <p>
+ * Since each used hash is journaled just once, and never superseded, compacting the journal wouldn't shrink it, so it
+ * only grows until it reaches its maximum size (at most {@link AppendOnlyJournal#MAX_SIZE}, i.e. 2 GiB, or some
+ * 15 million used hashes). From then on, saving a new used hash fails with an {@link IllegalStateException}, and
+ * leaves it unsaved, so deployments nearing that many used hashes should move to a DB-backed repository. </p>
+ */
+public class JournaledUsedDistinctHashesRepository extends UsedDistinctHashesInMemoryRepository
+        implements AutoCloseable
+{
+    private final AppendOnlyJournal journal;
+
+    /**
+     * Opens (or creates) the journal in the given file, and rebuilds the used hashes recorded in it.
+     *
+     * @param journalFile file holding the journal.
+     * @throws IOException if unable to open the journal.
+     */
+    public JournaledUsedDistinctHashesRepository(@NotNull final Path journalFile) throws IOException {
+        this(journalFile, AppendOnlyJournal.MAX_SIZE);
+    }
+
+    /**
+     * Opens (or creates) the journal in the given file, and rebuilds the used hashes recorded in it.
+     *
+     * @param journalFile file holding the journal.
+     * @param maxJournalSize number of bytes beyond which the journal won't grow, at most
+     *                       {@link AppendOnlyJournal#MAX_SIZE}.
+     * @throws IOException if unable to open the journal.
+     */
+    public JournaledUsedDistinctHashesRepository(@NotNull final Path journalFile, int maxJournalSize)
+            throws IOException
+    {
+        this.journal = new AppendOnlyJournal(journalFile,
+                Math.min(AppendOnlyJournal.DEFAULT_INITIAL_SIZE, maxJournalSize), maxJournalSize, this::replay);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if the journal is full, in which case the used hash is left unsaved.
+     */
+    @Override
+    public boolean saveUsedHash(@NotNull final UsedDistinctHash usedHash) {
+        if (!super.saveUsedHash(usedHash)) {
+            return false;
+        }
+        journal.awaitDurable(journalOrUnsave(usedHash));
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Every distinct used hash is journaled before waiting for any of them to be flushed, so that all share one
+     * flush. </p>
+     *
+     * @throws IllegalStateException if the journal fills up, in which case the used hashes not yet journaled are left
+     *                               unsaved, while those already journaled are flushed.
+     */
+    @Override
+    public Set<String> saveUsedHashes(@NotNull final Collection<UsedDistinctHash> usedHashes) {
+        final Set<String> distinctHashes = new HashSet<>();
+        long lastSequence = 0;
+        try {
+            for (UsedDistinctHash usedHash : usedHashes) {
+                if (super.saveUsedHash(usedHash)) {
+                    lastSequence = journalOrUnsave(usedHash);
+                    distinctHashes.add(usedHash.getUsedHash());
+                }
+            }
+        } finally {
+            journal.awaitDurable(lastSequence);
+        }
+
+        return distinctHashes;
+    }
+
+    @Override
+    public <S extends UsedDistinctHash> S save(S entity) {
+        saveUsedHash(entity);
+        return entity;
+    }
+
+    /**
+     * Flushes and closes the journal.
+     */
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    /** Journals the given newly saved used hash, or else unsaves it, so that it isn't reported used but lost. */
+    private long journalOrUnsave(@NotNull final UsedDistinctHash usedHash) {
+        try {
+            return journal.append(toRecord(usedHash));
+        } catch (RuntimeException re) {
+            compute(usedHash.getUsedHash(), (id, saved) -> null);
+            throw re;
+        }
+    }
+
+    private void replay(@NotNull final ByteBuffer record) {
+        super.saveUsedHash(new UsedDistinctHash(StandardCharsets.UTF_8.decode(record).toString()));
+    }
+
+    private static byte[] toRecord(@NotNull final UsedDistinctHash usedHash) {
+        return usedHash.getUsedHash().getBytes(StandardCharsets.UTF_8);
+    }
+}
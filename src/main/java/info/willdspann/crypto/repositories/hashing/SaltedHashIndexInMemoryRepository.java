@@ -0,0 +1,99 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import info.willdspann.crypto.entities.hashing.IndexedSaltedHash;
+import info.willdspann.crypto.repositories.MapInMemoryRepository;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * In-memory repository of indexed salted hashes. Unlike the JPA repository, there is no trigger to mark salted hashes
+ * buried as they are moved to the hash graveyard, so each page of indexed salted hashes is instead checked against the
+ * graveyard as it is read, and those found there are marked buried.
+ */
+public class SaltedHashIndexInMemoryRepository extends MapInMemoryRepository<IndexedSaltedHash, String>
+        implements SaltedHashIndexRepository
+{
+    private final HashGraveyardRepository graveyardRepository;
+    private final Map<String, NavigableSet<String>> saltedHashesByUsedHash = new ConcurrentHashMap<>();
+
+    /**
+     * @param graveyardRepository repository of orphaned salted hashes, checked when indexing and reading salted hashes,
+     *                            or {@code null} if none are ever orphaned.
+     */
+    public SaltedHashIndexInMemoryRepository(@Nullable final HashGraveyardRepository graveyardRepository) {
+        super(IndexedSaltedHash::getSaltedHash);
+        this.graveyardRepository = graveyardRepository;
+    }
+
+    @Override
+    public long countByUsedHash(@NotNull final String usedHash) {
+        final Set<String> saltedHashes = saltedHashesByUsedHash.get(usedHash);
+        return (saltedHashes != null) ? saltedHashes.size() : 0;
+    }
+
+    @Override
+    public List<IndexedSaltedHash> findByUsedHashAfter(@NotNull final String usedHash,
+                                                       @NotNull final String lastSaltedHash,
+                                                       int pageSize)
+    {
+        final NavigableSet<String> saltedHashes = saltedHashesByUsedHash.get(usedHash);
+        if (saltedHashes == null) {
+            return List.of();
+        }
+        final List<IndexedSaltedHash> page = saltedHashes.tailSet(lastSaltedHash, false).stream()
+                .limit(pageSize)
+                .map(this::findById)
+                .flatMap(Optional::stream)
+                .collect(toList());
+        buryOrphanedHashes(page);
+
+        return page;
+    }
+
+    @Override
+    public void indexSaltedHashes(@NotNull final String usedHash, @NotNull final Collection<String> saltedHashes) {
+        final Set<String> buriedHashes = (graveyardRepository != null)
+                ? graveyardRepository.findBuriedHashes(saltedHashes)
+                : Collections.emptySet();
+
+        for (String saltedHash : saltedHashes) {
+            if (saveIfAbsent(new IndexedSaltedHash(saltedHash, usedHash, buriedHashes.contains(saltedHash)))) {
+                saltedHashesByUsedHash.computeIfAbsent(usedHash, hash -> new ConcurrentSkipListSet<>())
+                        .add(saltedHash);
+            }
+        }
+    }
+
+    /** Marks each of the given indexed salted hashes that has since been moved to the hash graveyard as buried. */
+    private void buryOrphanedHashes(@NotNull final List<IndexedSaltedHash> indexedHashes) {
+        if (graveyardRepository == null) {
+            return;
+        }
+        final List<String> liveHashes = indexedHashes.stream()
+                .filter(indexedHash -> !indexedHash.isBuried())
+                .map(IndexedSaltedHash::getSaltedHash)
+                .collect(toList());
+        if (liveHashes.isEmpty()) {
+            return;
+        }
+        final Set<String> buriedHashes = graveyardRepository.findBuriedHashes(liveHashes);
+        for (IndexedSaltedHash indexedHash : indexedHashes) {
+            if (buriedHashes.contains(indexedHash.getSaltedHash())) {
+                indexedHash.setBuried(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import info.willdspann.crypto.entities.hashing.IndexedSaltedHash;
+
+/**
+ * JPA repository of indexed salted hashes. Salted hashes moved to the hash graveyard are marked buried by triggers
+ * on both the {@code hash_graveyard} and {@code binary_hash_graveyard} tables (see
+ * {@code sql/ddl/secure_hashing/0006.salted_hash_index.CREATE.sql}).
+ */
+@Repository
+public interface SaltedHashIndexJpaRepository
+        extends SaltedHashIndexRepository, JpaRepository<IndexedSaltedHash, String>
+{
+    int BULK_INSERT_BATCH_SIZE = 1000;
+
+    @Override
+    default void indexSaltedHashes(@NotNull final String usedHash, @NotNull final Collection<String> saltedHashes) {
+        indexSaltedHashes(Map.of(usedHash, saltedHashes));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Implemented by keyset pagination over the {@code (used_hash, salted_hash)} index, so each page is one index range
+     * scan, however deep into a value's salted hashes it starts. </p>
+     */
+    @Override
+    default List<IndexedSaltedHash> findByUsedHashAfter(@NotNull final String usedHash,
+                                                        @NotNull final String lastSaltedHash,
+                                                        int pageSize)
+    {
+        return findPageByUsedHashAfter(usedHash, lastSaltedHash, PageRequest.of(0, pageSize));
+    }
+
+    @Query("SELECT i FROM IndexedSaltedHash i " +
+           "    WHERE i.usedHash = :usedHash AND i.saltedHash > :after " +
+           "    ORDER BY i.saltedHash")
+    List<IndexedSaltedHash> findPageByUsedHashAfter(@NotNull @Param("usedHash") final String usedHash,
+                                                    @NotNull @Param("after") final String lastSaltedHash,
+                                                    @NotNull final Pageable pageable);
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Implemented as one multi-row insert per batch of up to {@value #BULK_INSERT_BATCH_SIZE} salted hashes (see
+     * {@code sql/queries/indexSaltedHashes.INSERT.sql}). </p>
+     */
+    @Override
+    @Transactional
+    default void indexSaltedHashes(@NotNull final Map<String, ? extends Collection<String>> saltedHashesByUsedHash) {
+        final List<String> saltedHashes = new ArrayList<>();
+        final List<String> usedHashes = new ArrayList<>();
+        saltedHashesByUsedHash.forEach((usedHash, valueSaltedHashes) -> valueSaltedHashes.forEach(saltedHash -> {
+            saltedHashes.add(saltedHash);
+            usedHashes.add(usedHash);
+        }));
+
+        for (int from = 0; from < saltedHashes.size(); from += BULK_INSERT_BATCH_SIZE) {
+            final int to = Math.min(from + BULK_INSERT_BATCH_SIZE, saltedHashes.size());
+            insertIndexedSaltedHashesIfAbsent(
+                    String.join(",", saltedHashes.subList(from, to)),
+                    String.join(",", usedHashes.subList(from, to))
+            );
+        }
+    }
+
+    /**
+     * Indexes each of the given salted hashes under its corresponding unsalted hash, in a single multi-row insert.
+     *
+     * @param saltedHashes comma-separated salted hashes, in the {@code salt:saltedHash} hex. encoded form.
+     * @param usedHashes comma-separated unsalted hashes, one per salted hash.
+     * @return the number of salted hashes newly indexed.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value =
+            "INSERT INTO secure_hashing.salted_hash_index (salted_hash, used_hash, buried) " +
+            "    SELECT h.salted_hash, h.used_hash, " +
+            "           EXISTS (SELECT 1 FROM secure_hashing.hash_graveyard g WHERE g.unused_hash = h.salted_hash) " +
+            "           OR EXISTS (SELECT 1 FROM secure_hashing.binary_hash_graveyard b " +
+            "                          WHERE b.unused_hash = secure_hashing.binary_salted_hash(h.salted_hash)) " +
+            "    FROM unnest(string_to_array(:saltedHashes, ','), string_to_array(:usedHashes, ',')) " +
+            "        AS h (salted_hash, used_hash) " +
+            "ON CONFLICT (salted_hash) DO NOTHING")
+    int insertIndexedSaltedHashesIfAbsent(@NotNull @Param("saltedHashes") final String saltedHashes,
+                                          @NotNull @Param("usedHashes") final String usedHashes);
+}
@@ -0,0 +1,81 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.data.repository.NoRepositoryBean;
+
+import info.willdspann.crypto.entities.hashing.IndexedSaltedHash;
+import info.willdspann.crypto.repositories.BaseRepository;
+
+@NoRepositoryBean
+public interface SaltedHashIndexRepository extends BaseRepository<IndexedSaltedHash, String> {
+
+    /**
+     * Returns the number of indexed salted hashes of the cleartext value with the given unsalted hash, including
+     * buried ones.
+     *
+     * @param usedHash unsalted hash of a cleartext value.
+     * @return the number of the cleartext value's indexed salted hashes.
+     */
+    long countByUsedHash(@NotNull final String usedHash);
+
+    /**
+     * Returns the next page of indexed salted hashes of the cleartext value with the given unsalted hash, including
+     * buried ones, in salted hash order.
+     *
+     * @param usedHash unsalted hash of a cleartext value.
+     * @param lastSaltedHash salted hash after which to start (exclusive), or {@code ""} to start from the first.
+     * @param pageSize maximum number of indexed salted hashes to return.
+     * @return the next page of the cleartext value's indexed salted hashes.
+     */
+    List<IndexedSaltedHash> findByUsedHashAfter(@NotNull final String usedHash,
+                                                @NotNull final String lastSaltedHash,
+                                                int pageSize);
+
+    /**
+     * Returns a lazy stream of every indexed salted hash of the cleartext value with the given unsalted hash,
+     * including buried ones, in salted hash order. Salted hashes are read a page at a time (see
+     * {@link #findByUsedHashAfter}), so at most one page is held in memory.
+     *
+     * @param usedHash unsalted hash of a cleartext value.
+     * @param pageSize number of indexed salted hashes to read at a time.
+     * @return a lazy stream of the cleartext value's indexed salted hashes.
+     */
+    default Stream<IndexedSaltedHash> streamByUsedHash(@NotNull final String usedHash, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive.");
+        }
+        return Stream.iterate(
+                findByUsedHashAfter(usedHash, "", pageSize),
+                page -> !page.isEmpty(),
+                page -> (page.size() < pageSize)
+                        ? List.of()
+                        : findByUsedHashAfter(usedHash, page.get(page.size() - 1).getSaltedHash(), pageSize)
+        ).flatMap(List::stream);
+    }
+
+    /**
+     * Indexes each given salted hash under its unsalted hash, marking any already in the hash graveyard as buried.
+     * Salted hashes that are already indexed are left unchanged. Implementations should override this to index the
+     * given hashes in as few round trips as possible.
+     *
+     * @param saltedHashesByUsedHash salted hashes to index, grouped by unsalted hash.
+     */
+    default void indexSaltedHashes(@NotNull final Map<String, ? extends Collection<String>> saltedHashesByUsedHash) {
+        saltedHashesByUsedHash.forEach(this::indexSaltedHashes);
+    }
+
+    /**
+     * Indexes each given salted hash under the given unsalted hash, marking any already in the hash graveyard as
+     * buried. Salted hashes that are already indexed are left unchanged.
+     *
+     * @param usedHash unsalted hash of a cleartext value.
+     * @param saltedHashes salted hashes of the cleartext value to index.
+     */
+    void indexSaltedHashes(@NotNull final String usedHash, @NotNull final Collection<String> saltedHashes);
+}
@@ -0,0 +1,124 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import info.willdspann.crypto.entities.hashing.BinaryHashId;
+import info.willdspann.crypto.entities.hashing.UsedDistinctBinaryHash;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+import static java.util.stream.Collectors.toSet;
+
+@Repository
+public interface UsedDistinctBinaryHashesJpaRepository
+        extends UsedDistinctBinaryHashesRepository, JpaRepository<UsedDistinctBinaryHash, BinaryHashId>
+{
+    int BULK_INSERT_BATCH_SIZE = 1000;
+    int SCAN_PAGE_SIZE = 10_000;
+
+    @Override
+    default boolean saveUsedHash(@NotNull final SaltedHash saltedHash) {
+        return !saveUsedHashes(Collections.singletonList(saltedHash)).isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Implemented as one multi-row insert per batch of up to {@value #BULK_INSERT_BATCH_SIZE} used hashes (see
+     * {@code sql/queries/insertUsedDistinctBinaryHashes.INSERT.sql}), each inserted in sorted order. </p>
+     */
+    @Override
+    @Transactional
+    default Set<SaltedHash> saveUsedHashes(@NotNull final Collection<SaltedHash> saltedHashes) {
+        final List<String> sortedUsedHashesHex = new ArrayList<>(new TreeSet<>(
+                saltedHashes.stream().map(saltedHash -> Hex.encodeHexString(saltedHash.toBinary())).collect(toSet())
+        ));
+        final Set<SaltedHash> distinctHashes = new HashSet<>(2 * sortedUsedHashesHex.size());
+
+        for (int from = 0; from < sortedUsedHashesHex.size(); from += BULK_INSERT_BATCH_SIZE) {
+            final List<String> batch = sortedUsedHashesHex.subList(
+                    from, Math.min(from + BULK_INSERT_BATCH_SIZE, sortedUsedHashesHex.size()));
+            for (String insertedHashHex : insertUsedHashesIfAbsent(String.join(",", batch))) {
+                try {
+                    distinctHashes.add(SaltedHash.fromBinary(Hex.decodeHex(insertedHashHex)));
+                } catch (DecoderException de) {
+                    throw new IllegalStateException("Unable to decode inserted binary hash.", de);
+                }
+            }
+        }
+        return distinctHashes;
+    }
+
+    /**
+     * Inserts each of the given used hashes that doesn't yet exist, in a single multi-row insert. Hashes are passed
+     * and returned hex. encoded, but are stored in binary form.
+     *
+     * @param usedHashesHex comma-separated used hashes, each in binary form hex. encoded.
+     * @return the used hashes that were inserted (i.e., that were distinct), each in binary form hex. encoded.
+     */
+    @Query(nativeQuery = true, value =
+            "INSERT INTO secure_hashing.used_distinct_binary_hashes (used_hash) " +
+            "    SELECT decode(unnest(string_to_array(:hashes, ',')), 'hex') " +
+            "ON CONFLICT (used_hash) DO NOTHING " +
+            "    RETURNING encode(used_hash, 'hex')")
+    List<String> insertUsedHashesIfAbsent(@NotNull @Param("hashes") final String usedHashesHex);
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Implemented by keyset pagination in used hash order, {@value #SCAN_PAGE_SIZE} used hashes per query, so that
+     * neither a long-running transaction nor the whole table in memory is needed. </p>
+     */
+    @Override
+    default void forEachUsedHash(@NotNull final Consumer<SaltedHash> consumer) {
+        String lastUsedHashHex = "";
+        List<String> page;
+        do {
+            page = findUsedHashesAfter(lastUsedHashHex, SCAN_PAGE_SIZE);
+            for (String usedHashHex : page) {
+                try {
+                    consumer.accept(SaltedHash.fromBinary(Hex.decodeHex(usedHashHex)));
+                } catch (DecoderException de) {
+                    throw new IllegalStateException("Unable to decode binary hash.", de);
+                }
+            }
+            if (!page.isEmpty()) {
+                lastUsedHashHex = page.get(page.size() - 1);
+            }
+        } while (page.size() == SCAN_PAGE_SIZE);
+    }
+
+    /**
+     * Returns a page of used hashes that sort after the given used hash, in used hash order. Hashes are passed and
+     * returned hex. encoded, but compared in binary form.
+     *
+     * @param lastUsedHashHex used hash after which to start (exclusive) in binary form hex. encoded, or {@code ""} to
+     *                        start from the first.
+     * @param pageSize maximum number of used hashes to return.
+     * @return the next page of used hashes, each in binary form hex. encoded.
+     */
+    @Query(nativeQuery = true, value =
+            "SELECT encode(used_hash, 'hex') FROM secure_hashing.used_distinct_binary_hashes " +
+            "    WHERE used_hash > decode(:after, 'hex') " +
+            "    ORDER BY used_hash " +
+            "    LIMIT :pageSize")
+    List<String> findUsedHashesAfter(@NotNull @Param("after") final String lastUsedHashHex,
+                                     @Param("pageSize") final int pageSize);
+}
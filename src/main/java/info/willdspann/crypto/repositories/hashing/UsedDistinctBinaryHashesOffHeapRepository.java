@@ -0,0 +1,90 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.StreamSupport;
+
+import javax.validation.constraints.NotNull;
+
+import info.willdspann.crypto.entities.hashing.BinaryHashId;
+import info.willdspann.crypto.entities.hashing.UsedDistinctBinaryHash;
+import info.willdspann.crypto.repositories.OffHeapFixedWidthKeySet;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * In-memory repository of used hashes in compact binary form (see {@link SaltedHash#toBinary()}), stored in an
+ * {@link OffHeapFixedWidthKeySet}. Every used hash must have the same binary width (e.g., 49 bytes for a 16-byte salt
+ * and SHA-256), and only the used hash itself is retained, so entities returned by {@link #findById(BinaryHashId)}
+ * carry the time at which they were looked up as their creation time.
+ */
+public class UsedDistinctBinaryHashesOffHeapRepository implements UsedDistinctBinaryHashesRepository {
+    /** Width of the algorithm tag, a 16-byte salt and a SHA-256 salted hash. */
+    public static final int DEFAULT_KEY_WIDTH = 1 + 16 + 32;
+
+    private final OffHeapFixedWidthKeySet usedHashes;
+
+    public UsedDistinctBinaryHashesOffHeapRepository(long maxUsedHashes) {
+        this(DEFAULT_KEY_WIDTH, maxUsedHashes);
+    }
+
+    /**
+     * @param keyWidth binary width of every used hash.
+     * @param maxUsedHashes maximum number of used hashes the repository can hold.
+     */
+    public UsedDistinctBinaryHashesOffHeapRepository(int keyWidth, long maxUsedHashes) {
+        this.usedHashes = new OffHeapFixedWidthKeySet(keyWidth, maxUsedHashes);
+    }
+
+    @Override
+    public boolean saveUsedHash(@NotNull final SaltedHash saltedHash) {
+        return usedHashes.add(saltedHash.toBinary());
+    }
+
+    @Override
+    public long count() {
+        return usedHashes.size();
+    }
+
+    @Override
+    public boolean existsById(BinaryHashId entityId) {
+        return usedHashes.contains(entityId.getHash());
+    }
+
+    @Override
+    public Optional<UsedDistinctBinaryHash> findById(BinaryHashId entityId) {
+        return existsById(entityId)
+                ? Optional.of(new UsedDistinctBinaryHash(entityId.getSaltedHash()))
+                : Optional.empty();
+    }
+
+    @Override
+    public List<UsedDistinctBinaryHash> findAllById(BinaryHashId entityId) {
+        return findById(entityId).map(Collections::singletonList).orElse(Collections.emptyList());
+    }
+
+    @Override
+    public <S extends UsedDistinctBinaryHash> S save(S entity) {
+        usedHashes.add(entity.getUsedHash());
+        return entity;
+    }
+
+    @Override
+    public <S extends UsedDistinctBinaryHash> List<S> saveAll(Iterable<S> entities) {
+        return StreamSupport.stream(entities.spliterator(), false).map(
+            this::save
+        ).collect(toList());
+    }
+
+    @Override
+    public void forEachUsedHash(@NotNull final Consumer<SaltedHash> consumer) {
+        usedHashes.forEach(usedHash -> consumer.accept(SaltedHash.fromBinary(usedHash)));
+    }
+
+    public long getOffHeapBytes() {
+        return usedHashes.getOffHeapBytes();
+    }
+}
@@ -0,0 +1,69 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.data.repository.NoRepositoryBean;
+
+import info.willdspann.crypto.entities.hashing.BinaryHashId;
+import info.willdspann.crypto.entities.hashing.UsedDistinctBinaryHash;
+import info.willdspann.crypto.repositories.BaseRepository;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+/**
+ * Repository of used salted hashes in compact binary form (see {@link SaltedHash#toBinary()}), which is the binary
+ * counterpart of {@link UsedDistinctHashesRepository}.
+ */
+@NoRepositoryBean
+public interface UsedDistinctBinaryHashesRepository extends BaseRepository<UsedDistinctBinaryHash, BinaryHashId> {
+
+    /**
+     * Saves a used hash to the {@code UsedDistinctBinaryHash} entity's backing DB table,
+     * and returns whether the given hash is distinct or a duplicate.
+     *
+     * @param saltedHash a salted hash to save to the {@code UsedDistinctBinaryHash} entity's backing DB table.
+     * @return whether the given hash is distinct or a duplicate.
+     */
+    boolean saveUsedHash(@NotNull final SaltedHash saltedHash);
+
+    /**
+     * Saves each of the given used hashes to the {@code UsedDistinctBinaryHash} entity's backing DB table, and returns
+     * the subset of them that were distinct (i.e., newly saved). Implementations should override this to save the
+     * given hashes in as few round trips as possible.
+     *
+     * @param saltedHashes salted hashes to save to the {@code UsedDistinctBinaryHash} entity's backing DB table.
+     * @return those given hashes that were distinct.
+     */
+    default Set<SaltedHash> saveUsedHashes(@NotNull final Collection<SaltedHash> saltedHashes) {
+        final Set<SaltedHash> distinctHashes = new HashSet<>();
+        for (SaltedHash saltedHash : saltedHashes) {
+            if (saveUsedHash(saltedHash)) {
+                distinctHashes.add(saltedHash);
+            }
+        }
+        return distinctHashes;
+    }
+
+    /**
+     * Returns whether the given hash has been used (i.e., whether it exists in the {@code UsedDistinctBinaryHash}
+     * entity's backing DB table).
+     *
+     * @param saltedHash a salted hash for which to check for existence.
+     * @return whether the given hash has been used.
+     */
+    default boolean hashExists(@NotNull final SaltedHash saltedHash) {
+        return existsById(BinaryHashId.of(saltedHash));
+    }
+
+    /**
+     * Passes every used hash to the given consumer, in no particular order. Used hashes saved concurrently may or may
+     * not be included. This is intended for bulk scans (e.g., to rebuild an index or filter over the used hashes).
+     *
+     * @param consumer consumer of each used hash.
+     */
+    void forEachUsedHash(@NotNull final Consumer<SaltedHash> consumer);
+}
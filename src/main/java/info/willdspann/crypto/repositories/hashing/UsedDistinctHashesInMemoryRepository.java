@@ -0,0 +1,29 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.util.function.Consumer;
+
+import javax.validation.constraints.NotNull;
+
+import org.springframework.stereotype.Repository;
+
+import info.willdspann.crypto.entities.hashing.UsedDistinctHash;
+import info.willdspann.crypto.repositories.MapInMemoryRepository;
+
+@Repository
+public class UsedDistinctHashesInMemoryRepository extends MapInMemoryRepository<UsedDistinctHash, String>
+        implements UsedDistinctHashesRepository
+{
+    public UsedDistinctHashesInMemoryRepository() {
+        super(UsedDistinctHash::getUsedHash);
+    }
+
+    @Override
+    public boolean saveUsedHash(@NotNull UsedDistinctHash usedHash) {
+        return saveIfAbsent(usedHash);
+    }
+
+    @Override
+    public void forEachUsedHash(@NotNull final Consumer<String> consumer) {
+        forEachId(consumer);
+    }
+}
@@ -1,28 +1,114 @@
 package info.willdspann.crypto.repositories.hashing;
 
-import javax.persistence.PersistenceException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
 import javax.validation.constraints.NotNull;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import info.willdspann.crypto.entities.hashing.UsedDistinctHash;
 
+import static java.util.stream.Collectors.toSet;
+
 @Repository
 public interface UsedDistinctHashesJpaRepository extends UsedDistinctHashesRepository, JpaRepository<UsedDistinctHash, String> {
+    int BULK_INSERT_BATCH_SIZE = 1000;
+    int SCAN_PAGE_SIZE = 10_000;
     Logger logger = LoggerFactory.getLogger(UsedDistinctHashesJpaRepository.class);
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Duplicates are detected via {@code ON CONFLICT DO NOTHING}, rather than by a failed (and rolled back) insert.
+     * </p>
+     */
     @Override
     default boolean saveUsedHash(@NotNull UsedDistinctHash usedHash) {
-        try {
-            save(usedHash);
-            return true;
-        } catch (PersistenceException pe) {
+        if (saveUsedHashes(Collections.singletonList(usedHash)).isEmpty()) {
             logger.warn("Unable to save duplicate used hash: {}", usedHash.getUsedHash());
             return false;
         }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Implemented as one multi-row insert per batch of up to {@value #BULK_INSERT_BATCH_SIZE} used hashes (see
+     * {@code sql/queries/insertUsedDistinctHashes.INSERT.sql}), each inserted in sorted order. </p>
+     */
+    @Override
+    @Transactional
+    default Set<String> saveUsedHashes(@NotNull final Collection<UsedDistinctHash> usedHashes) {
+        final List<String> sortedUsedHashes = new ArrayList<>(new TreeSet<>(
+                usedHashes.stream().map(UsedDistinctHash::getUsedHash).collect(toSet())
+        ));
+        final Set<String> distinctHashes = new HashSet<>(2 * sortedUsedHashes.size());
+
+        for (int from = 0; from < sortedUsedHashes.size(); from += BULK_INSERT_BATCH_SIZE) {
+            final List<String> batch = sortedUsedHashes.subList(
+                    from, Math.min(from + BULK_INSERT_BATCH_SIZE, sortedUsedHashes.size()));
+            distinctHashes.addAll(insertUsedHashesIfAbsent(String.join(",", batch)));
+        }
+        return distinctHashes;
+    }
+
+    /**
+     * Inserts each of the given used hashes that doesn't yet exist, in a single multi-row insert.
+     *
+     * @param usedHashes comma-separated used hashes, in the {@code salt:saltedHash} hex. encoded form.
+     * @return the used hashes that were inserted (i.e., that were distinct).
+     */
+    @Query(nativeQuery = true, value =
+            "INSERT INTO secure_hashing.used_distinct_hashes (used_hash) " +
+            "    SELECT unnest(string_to_array(:hashes, ',')) " +
+            "ON CONFLICT (used_hash) DO NOTHING " +
+            "    RETURNING used_hash")
+    List<String> insertUsedHashesIfAbsent(@NotNull @Param("hashes") final String usedHashes);
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Implemented by keyset pagination in used hash order, {@value #SCAN_PAGE_SIZE} used hashes per query, so that
+     * neither a long-running transaction nor the whole table in memory is needed. </p>
+     */
+    @Override
+    default void forEachUsedHash(@NotNull final Consumer<String> consumer) {
+        final Pageable firstPage = PageRequest.of(0, SCAN_PAGE_SIZE);
+        String lastUsedHash = "";
+        List<String> page;
+        do {
+            page = findUsedHashesAfter(lastUsedHash, firstPage);
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                lastUsedHash = page.get(page.size() - 1);
+            }
+        } while (page.size() == SCAN_PAGE_SIZE);
     }
+
+    /**
+     * Returns a page of used hashes that sort after the given used hash, in used hash order.
+     *
+     * @param lastUsedHash used hash after which to start (exclusive), or {@code ""} to start from the first.
+     * @param pageable page size (the page number should always be 0).
+     * @return the next page of used hashes.
+     */
+    @Query("SELECT u.usedHash FROM UsedDistinctHash u WHERE u.usedHash > :after ORDER BY u.usedHash")
+    List<String> findUsedHashesAfter(@NotNull @Param("after") final String lastUsedHash, final Pageable pageable);
 }
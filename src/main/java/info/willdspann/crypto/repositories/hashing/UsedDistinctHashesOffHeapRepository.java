@@ -0,0 +1,98 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.StreamSupport;
+
+import javax.validation.constraints.NotNull;
+
+import info.willdspann.crypto.entities.hashing.UsedDistinctHash;
+import info.willdspann.crypto.repositories.OffHeapFixedWidthKeySet;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * <p>
+ * In-memory repository of used hashes, which stores each hex. encoded used hash (as produced by
+ * {@link SaltedHash#toString()}) in its compact binary form ({@link SaltedHash#toBinary()}) in an
+ * {@link OffHeapFixedWidthKeySet}, rather than as a {@code String} and entity in a heap map (as
+ * {@link UsedDistinctHashesInMemoryRepository} does). For a 16-byte salt and SHA-256, each slot takes 56 bytes of
+ * off-heap memory (a 4-byte state and the 49-byte used hash, padded to 8 bytes), or 70 bytes per used hash at the
+ * default maximum load factor, instead of 200+ bytes of heap, so that 100M+ used hashes can be held in one JVM. </p>
+ * <p>
+ * Every used hash must have the same binary width (i.e., the same salt length and algorithm digest length), and only
+ * the used hash itself is retained, so entities returned by {@link #findById(String)} carry the time at which they
+ * were looked up as their creation time. </p>
+ */
+public class UsedDistinctHashesOffHeapRepository implements UsedDistinctHashesRepository {
+    /** Width of the algorithm tag, a 16-byte salt, and a SHA-256 salted hash. */
+    public static final int DEFAULT_KEY_WIDTH = 1 + 16 + 32;
+
+    private final OffHeapFixedWidthKeySet usedHashes;
+
+    public UsedDistinctHashesOffHeapRepository(long maxUsedHashes) {
+        this(DEFAULT_KEY_WIDTH, maxUsedHashes);
+    }
+
+    /**
+     * @param keyWidth number of bytes of every used hash's binary form.
+     * @param maxUsedHashes maximum number of used hashes the repository can hold.
+     */
+    public UsedDistinctHashesOffHeapRepository(int keyWidth, long maxUsedHashes) {
+        this.usedHashes = new OffHeapFixedWidthKeySet(keyWidth, maxUsedHashes);
+    }
+
+    @Override
+    public boolean saveUsedHash(@NotNull final UsedDistinctHash usedHash) {
+        return usedHashes.add(toKey(usedHash.getUsedHash()));
+    }
+
+    @Override
+    public long count() {
+        return usedHashes.size();
+    }
+
+    @Override
+    public boolean existsById(String entityId) {
+        return usedHashes.contains(toKey(entityId));
+    }
+
+    @Override
+    public Optional<UsedDistinctHash> findById(String entityId) {
+        return existsById(entityId) ? Optional.of(new UsedDistinctHash(entityId)) : Optional.empty();
+    }
+
+    @Override
+    public List<UsedDistinctHash> findAllById(String entityId) {
+        return findById(entityId).map(Collections::singletonList).orElse(Collections.emptyList());
+    }
+
+    @Override
+    public <S extends UsedDistinctHash> S save(S entity) {
+        saveUsedHash(entity);
+        return entity;
+    }
+
+    @Override
+    public <S extends UsedDistinctHash> List<S> saveAll(Iterable<S> entities) {
+        return StreamSupport.stream(entities.spliterator(), false).map(
+            this::save
+        ).collect(toList());
+    }
+
+    @Override
+    public void forEachUsedHash(@NotNull final Consumer<String> consumer) {
+        usedHashes.forEach(key -> consumer.accept(SaltedHash.fromBinary(key).toString()));
+    }
+
+    public long getOffHeapBytes() {
+        return usedHashes.getOffHeapBytes();
+    }
+
+    private static byte[] toKey(@NotNull final String usedHash) {
+        return SaltedHash.fromString(usedHash).toBinary();
+    }
+}
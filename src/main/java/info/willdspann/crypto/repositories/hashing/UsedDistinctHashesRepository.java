@@ -1,5 +1,10 @@
 package info.willdspann.crypto.repositories.hashing;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
 import javax.validation.constraints.NotNull;
 
 import org.springframework.data.repository.NoRepositoryBean;
@@ -19,6 +24,24 @@ public interface UsedDistinctHashesRepository extends BaseRepository<UsedDistinc
      */
     boolean saveUsedHash(@NotNull final UsedDistinctHash usedHash);
 
+    /**
+     * Saves each of the given used hashes to the {@code UsedDistinctHash} entity's backing DB table, and returns the
+     * subset of them that were distinct (i.e., newly saved). Implementations should override this to save the given
+     * hashes in as few round trips as possible.
+     *
+     * @param usedHashes salted hashes to save to the {@code UsedDistinctHash} entity's backing DB table.
+     * @return the used hash strings of those given hashes that were distinct.
+     */
+    default Set<String> saveUsedHashes(@NotNull final Collection<UsedDistinctHash> usedHashes) {
+        final Set<String> distinctHashes = new HashSet<>();
+        for (UsedDistinctHash usedHash : usedHashes) {
+            if (saveUsedHash(usedHash)) {
+                distinctHashes.add(usedHash.getUsedHash());
+            }
+        }
+        return distinctHashes;
+    }
+
     /**
      * Returns whether the given hash has been used (i.e., whether it exists in the {@code UsedDistinctHash}
      * entity's backing DB table).
@@ -29,4 +52,12 @@ public interface UsedDistinctHashesRepository extends BaseRepository<UsedDistinc
     default boolean hashExists(@NotNull final String hash) {
         return existsById(hash);
     }
+
+    /**
+     * Passes every used hash to the given consumer, in no particular order. Used hashes saved concurrently may or may
+     * not be included. This is intended for bulk scans (e.g., to rebuild an index or filter over the used hashes).
+     *
+     * @param consumer consumer of each used hash.
+     */
+    void forEachUsedHash(@NotNull final Consumer<String> consumer);
 }
@@ -0,0 +1,270 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import info.willdspann.crypto.entities.hashing.UsedDistinctHash;
+
+/**
+ * <p>
+ * Write-behind (group commit) decorator for a {@link UsedDistinctHashesRepository}. Used hashes saved from any number
+ * of threads are queued, and a single flusher thread saves them in batches via
+ * {@link UsedDistinctHashesRepository#saveUsedHashes}, each batch being flushed once it reaches
+ * {@code maxBatchSize} or once its oldest hash has waited {@code maxLatency}. Throughput therefore scales with the
+ * batch size, rather than being bounded by one DB round trip per hash. </p>
+ * <p>
+ * {@link #saveUsedHashAsync} returns a future completed with whether the hash was distinct, once its batch has been
+ * flushed, while {@link #saveUsedHash} blocks until then. If the same hash is queued more than once, only its first
+ * occurrence can be distinct. When the queue is full, callers block until there is space (i.e., backpressure). </p>
+ * <p>
+ * Reads, {@code save()} and {@code saveAll()} bypass the queue, and are delegated to the underlying repository. </p>
+ */
+public class WriteBehindUsedDistinctHashesRepository implements UsedDistinctHashesRepository, AutoCloseable {
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+    public static final Duration DEFAULT_MAX_LATENCY = Duration.ofMillis(5);
+    public static final int DEFAULT_QUEUE_CAPACITY = 100_000;
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindUsedDistinctHashesRepository.class);
+
+    private final UsedDistinctHashesRepository repository;
+    private final int maxBatchSize;
+    private final long maxLatencyNanos;
+    private final BlockingQueue<PendingHash> queue;
+    private final Thread flusher;
+    private volatile boolean closed = false;
+
+    public WriteBehindUsedDistinctHashesRepository(@NotNull final UsedDistinctHashesRepository repository) {
+        this(repository, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_LATENCY, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public WriteBehindUsedDistinctHashesRepository(@NotNull final UsedDistinctHashesRepository repository,
+                                                   int maxBatchSize,
+                                                   @NotNull final Duration maxLatency,
+                                                   int queueCapacity)
+    {
+        if (maxBatchSize <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Batch size and queue capacity must be positive.");
+        }
+        this.repository = repository;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatencyNanos = maxLatency.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        this.flusher = new Thread(this::runFlusher, "used-distinct-hashes-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Queues the given used hash to be saved in the next batch.
+     *
+     * @param usedHash a salted hash to save to the {@code UsedDistinctHash} entity's backing DB table.
+     * @return a future completed with whether the given hash is distinct, once its batch has been flushed.
+     */
+    public CompletableFuture<Boolean> saveUsedHashAsync(@NotNull final UsedDistinctHash usedHash) {
+        if (closed) {
+            throw new IllegalStateException("Unable to save used hash -- Write-behind repository has been closed.");
+        }
+        final PendingHash pending = new PendingHash(usedHash);
+        try {
+            queue.put(pending);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            pending.result.completeExceptionally(ie);
+            return pending.result;
+        }
+        // If closed meanwhile, the flusher and close() may both have finished with the queue before this hash was put,
+        // so take it back and fail it. If it's already gone, whichever of them took it completes it instead.
+        if (closed && queue.remove(pending)) {
+            pending.result.completeExceptionally(new IllegalStateException(
+                    "Unable to save used hash -- Write-behind repository has been closed."));
+        }
+        return pending.result;
+    }
+
+    @Override
+    public boolean saveUsedHash(@NotNull final UsedDistinctHash usedHash) {
+        try {
+            return saveUsedHashAsync(usedHash).join();
+        } catch (CompletionException ce) {
+            if (ce.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ce.getCause();
+            }
+            if (ce.getCause() instanceof Error) {
+                throw (Error) ce.getCause();
+            }
+            throw ce;
+        }
+    }
+
+    /**
+     * Queues each of the given used hashes, and blocks until all of them have been flushed.
+     */
+    @Override
+    public Set<String> saveUsedHashes(@NotNull final Collection<UsedDistinctHash> usedHashes) {
+        final List<CompletableFuture<Boolean>> results = new ArrayList<>(usedHashes.size());
+        for (UsedDistinctHash usedHash : usedHashes) {
+            results.add(saveUsedHashAsync(usedHash));
+        }
+
+        final Set<String> distinctHashes = new HashSet<>();
+        final Iterator<UsedDistinctHash> usedHashIter = usedHashes.iterator();
+        for (CompletableFuture<Boolean> result : results) {
+            final UsedDistinctHash usedHash = usedHashIter.next();
+            if (result.join()) {
+                distinctHashes.add(usedHash.getUsedHash());
+            }
+        }
+        return distinctHashes;
+    }
+
+    /**
+     * Stops accepting used hashes, and blocks until every queued hash has been flushed. If interrupted meanwhile, this
+     * still waits for the flush, and then restores the thread's interrupt status.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        boolean interrupted = false;
+        while (flusher.isAlive()) {
+            try {
+                flusher.join();
+            } catch (InterruptedException ie) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Fail any hash queued concurrently with closing, after the flusher's final check of the queue.
+        final List<PendingHash> stragglers = new ArrayList<>();
+        queue.drainTo(stragglers);
+        stragglers.forEach(pending -> pending.result.completeExceptionally(new IllegalStateException(
+                "Unable to save used hash -- Write-behind repository has been closed.")));
+    }
+
+    @Override
+    public long count() {
+        return repository.count();
+    }
+
+    @Override
+    public boolean existsById(String entityId) {
+        return repository.existsById(entityId);
+    }
+
+    @Override
+    public Optional<UsedDistinctHash> findById(String entityId) {
+        return repository.findById(entityId);
+    }
+
+    @Override
+    public List<UsedDistinctHash> findAllById(String entityId) {
+        return repository.findAllById(entityId);
+    }
+
+    @Override
+    public <S extends UsedDistinctHash> S save(S entity) {
+        return repository.save(entity);
+    }
+
+    @Override
+    public <S extends UsedDistinctHash> List<S> saveAll(Iterable<S> entities) {
+        return repository.saveAll(entities);
+    }
+
+    /**
+     * Enumerates the underlying repository's used hashes, which excludes any still queued.
+     */
+    @Override
+    public void forEachUsedHash(@NotNull final Consumer<String> consumer) {
+        repository.forEachUsedHash(consumer);
+    }
+
+    private void runFlusher() {
+        final List<PendingHash> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (!closed || !queue.isEmpty()) {
+                final PendingHash first = queue.poll(maxLatencyNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                final long deadline = System.nanoTime() + maxLatencyNanos;
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) == 0) {
+                        final PendingHash next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                }
+                flush(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException ie) {
+            logger.warn("Write-behind flusher interrupted -- failing {} queued used hashes.", queue.size());
+            final List<PendingHash> abandoned = new ArrayList<>(batch);
+            queue.drainTo(abandoned);
+            abandoned.forEach(pending -> pending.result.completeExceptionally(ie));
+        }
+    }
+
+    private void flush(@NotNull final List<PendingHash> batch) {
+        // Only the first occurrence of each hash in a batch can be distinct.
+        final Map<String, PendingHash> firstOccurrences = new LinkedHashMap<>(2 * batch.size());
+        final List<UsedDistinctHash> usedHashes = new ArrayList<>(batch.size());
+        for (PendingHash pending : batch) {
+            if (firstOccurrences.putIfAbsent(pending.usedHash.getUsedHash(), pending) == null) {
+                usedHashes.add(pending.usedHash);
+            }
+        }
+
+        final Set<String> distinctHashes;
+        try {
+            distinctHashes = repository.saveUsedHashes(usedHashes);
+        } catch (Throwable t) {
+            // Errors too are only failed to this batch's callers, so that the flusher keeps flushing later batches,
+            // rather than dying and leaving every later caller waiting forever.
+            logger.error("Unable to flush batch of {} used hashes.", usedHashes.size(), t);
+            batch.forEach(pending -> pending.result.completeExceptionally(t));
+            return;
+        }
+
+        for (PendingHash pending : batch) {
+            final String hash = pending.usedHash.getUsedHash();
+            pending.result.complete(firstOccurrences.get(hash) == pending && distinctHashes.contains(hash));
+        }
+    }
+
+
+    private static final class PendingHash {
+        private final UsedDistinctHash usedHash;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private PendingHash(@NotNull final UsedDistinctHash usedHash) {
+            this.usedHash = usedHash;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package info.willdspann.crypto.services;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+/**
+ * Non-blocking counterpart of {@link SecureHashingService}, whose methods return immediately with a future completed
+ * once the result is ready, so that callers don't hold a thread while repository calls are in flight.
+ */
+public interface AsyncSecureHashingService {
+
+    /**
+     * @see SecureHashingService#generateSaltedHash(String)
+     */
+    CompletableFuture<SaltedHash> generateSaltedHashAsync(@Nullable final String cleartext);
+
+    /**
+     * @see SecureHashingService#generateSaltedHashes(Iterable)
+     */
+    CompletableFuture<List<SaltedHash>> generateSaltedHashesAsync(@NotNull final Iterable<String> cleartexts);
+
+    /**
+     * @see SecureHashingService#getSaltedHashes(String)
+     */
+    CompletableFuture<Set<SaltedHash>> getSaltedHashesAsync(@Nullable final String cleartext);
+}
@@ -0,0 +1,218 @@
+package info.willdspann.crypto.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import info.willdspann.crypto.hashing.SaltedHashGenerator;
+import info.willdspann.crypto.repositories.hashing.HashGraveyardRepository;
+import info.willdspann.crypto.repositories.hashing.HashUsageCountsRepository;
+import info.willdspann.crypto.repositories.hashing.SaltedHashIndexRepository;
+import info.willdspann.crypto.repositories.hashing.UsedDistinctHashesRepository;
+import info.willdspann.crypto.services.DefaultSecureHashingService.BulkGeneration;
+import info.willdspann.crypto.util.hashing.HashingUtils;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+import static info.willdspann.crypto.hashing.ReproducibleSeedGenerator.NULL_STRING_MARKER;
+
+/**
+ * <p>
+ * Asynchronous secure hashing service, which generates distinct salted hashes like
+ * {@link DefaultSecureHashingService}, but splits each generation into stages run on two separate executors:</p>
+ * <pre>
+ *     unsalted hash (compute) -&gt; reserve salt index (I/O) -&gt; salted hash (compute) -&gt; record used hash (I/O)
+ * </pre>
+ * <p>
+ * CPU-bound hashing thus stays on a compute pool bounded by the number of cores, while blocking repository calls
+ * (e.g., JDBC/JPA) run on a separate I/O pool, so that one request's DB latency overlaps with other requests' hashing
+ * rather than idling a compute thread. </p>
+ * <p>
+ * Each stage is the corresponding step of a {@link DefaultSecureHashingService}, which this service only schedules, so
+ * both generate, record, index, and retry salted hashes alike. Lookups (e.g., {@link #getSaltedHashesAsync})
+ * interleave index or graveyard reads with regenerating salted hashes, so each is delegated as a whole to that
+ * service on the I/O pool. </p>
+ * <p>
+ * Executors passed in are owned by the caller, whereas those created by the convenience constructor are shut down by
+ * {@link #close()}. </p>
+ */
+public class DefaultAsyncSecureHashingService implements AsyncSecureHashingService, AutoCloseable {
+    public static final int DEFAULT_IO_POOL_SIZE = 32;
+
+    private final SaltedHashGenerator saltedHashGenerator;
+    private final DefaultSecureHashingService hashingService;
+    private final ExecutorService computeExecutor;
+    private final ExecutorService ioExecutor;
+    private final boolean ownsExecutors;
+
+    /**
+     * Creates a service with its own compute pool, of one thread per available processor, and I/O pool, of
+     * {@value #DEFAULT_IO_POOL_SIZE} threads, which are shut down by {@link #close()}.
+     */
+    public DefaultAsyncSecureHashingService(@NotNull final SaltedHashGenerator saltedHashGenerator,
+                                            @NotNull final HashUsageCountsRepository usageCountsRepository,
+                                            @NotNull final UsedDistinctHashesRepository usedHashesRepository,
+                                            @Nullable final HashGraveyardRepository graveyardRepository,
+                                            @Nullable final SaltedHashIndexRepository saltedHashIndexRepository)
+    {
+        this(saltedHashGenerator, usageCountsRepository, usedHashesRepository, graveyardRepository,
+                saltedHashIndexRepository, new ForkJoinPool(Runtime.getRuntime().availableProcessors()),
+                newIoExecutor(DEFAULT_IO_POOL_SIZE), true);
+    }
+
+    /**
+     * @param saltedHashGenerator generator of each value's salted hashes.
+     * @param usageCountsRepository repository of usage counts, indexed by unsalted hash.
+     * @param usedHashesRepository repository of used salted hashes.
+     * @param graveyardRepository repository of orphaned salted hashes, or {@code null} if none are ever orphaned.
+     * @param saltedHashIndexRepository repository indexing salted hashes by unsalted hash, or {@code null}.
+     * @param computeExecutor bounded executor on which to run CPU-bound hashing.
+     * @param ioExecutor executor on which to run blocking repository calls.
+     */
+    public DefaultAsyncSecureHashingService(@NotNull final SaltedHashGenerator saltedHashGenerator,
+                                            @NotNull final HashUsageCountsRepository usageCountsRepository,
+                                            @NotNull final UsedDistinctHashesRepository usedHashesRepository,
+                                            @Nullable final HashGraveyardRepository graveyardRepository,
+                                            @Nullable final SaltedHashIndexRepository saltedHashIndexRepository,
+                                            @NotNull final ExecutorService computeExecutor,
+                                            @NotNull final ExecutorService ioExecutor)
+    {
+        this(saltedHashGenerator, usageCountsRepository, usedHashesRepository, graveyardRepository,
+                saltedHashIndexRepository, computeExecutor, ioExecutor, false);
+    }
+
+    private DefaultAsyncSecureHashingService(@NotNull final SaltedHashGenerator saltedHashGenerator,
+                                             @NotNull final HashUsageCountsRepository usageCountsRepository,
+                                             @NotNull final UsedDistinctHashesRepository usedHashesRepository,
+                                             @Nullable final HashGraveyardRepository graveyardRepository,
+                                             @Nullable final SaltedHashIndexRepository saltedHashIndexRepository,
+                                             @NotNull final ExecutorService computeExecutor,
+                                             @NotNull final ExecutorService ioExecutor,
+                                             boolean ownsExecutors)
+    {
+        this.saltedHashGenerator = saltedHashGenerator;
+        this.hashingService = new DefaultSecureHashingService(saltedHashGenerator, usageCountsRepository,
+                usedHashesRepository, graveyardRepository, saltedHashIndexRepository);
+        this.computeExecutor = computeExecutor;
+        this.ioExecutor = ioExecutor;
+        this.ownsExecutors = ownsExecutors;
+    }
+
+    @Override
+    public CompletableFuture<SaltedHash> generateSaltedHashAsync(@Nullable final String cleartext) {
+        return CompletableFuture.supplyAsync(() -> new PendingValue(cleartext), computeExecutor)
+                .thenCompose(value -> generateDistinctSaltedHashAsync(value, 0));
+    }
+
+    @Override
+    public CompletableFuture<List<SaltedHash>> generateSaltedHashesAsync(@NotNull final Iterable<String> cleartexts) {
+        final List<String> cleartextList = new ArrayList<>();
+        cleartexts.forEach(cleartextList::add);
+
+        return CompletableFuture
+                .supplyAsync(() -> hashingService.new BulkGeneration(cleartextList), computeExecutor)
+                .thenApplyAsync(BulkGeneration::reserveSaltIndices, ioExecutor)
+                .thenApplyAsync(BulkGeneration::generateSaltedHashes, computeExecutor)
+                .thenApplyAsync(BulkGeneration::recordUsedHashes, ioExecutor)
+                .thenCompose(this::regenerateDuplicates);
+    }
+
+    @Override
+    public CompletableFuture<Set<SaltedHash>> getSaltedHashesAsync(@Nullable final String cleartext) {
+        return CompletableFuture.supplyAsync(() -> hashingService.getSaltedHashes(cleartext), ioExecutor);
+    }
+
+    /**
+     * Shuts down the executors, if created by this service, once already submitted stages have run. If interrupted
+     * while waiting for them, this returns early with the thread's interrupt status set.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutors) {
+            computeExecutor.shutdown();
+            ioExecutor.shutdown();
+            try {
+                computeExecutor.awaitTermination(1, TimeUnit.MINUTES);
+                ioExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Reserves the next salt index of the given value (I/O), generates its salted hash (compute), and records it as
+     * used (I/O). If that salted hash has already been used, the next salt index is reserved and tried instead.
+     */
+    private CompletableFuture<SaltedHash> generateDistinctSaltedHashAsync(@NotNull final PendingValue value,
+                                                                          int attempt)
+    {
+        if (attempt >= DefaultSecureHashingService.MAX_DUPLICATE_HASH_RETRIES) {
+            return CompletableFuture.failedFuture(DefaultSecureHashingService.distinctHashRetriesExhausted());
+        }
+        final AtomicInteger saltIndex = new AtomicInteger();
+        return CompletableFuture
+                .supplyAsync(() -> hashingService.reserveSaltIndex(value.unsaltedHash), ioExecutor)
+                .thenApplyAsync(index -> {
+                    saltIndex.set(index);
+                    return saltedHashGenerator.getNthSaltedHash(value.cleartextBytes, index);
+                }, computeExecutor)
+                .thenApplyAsync(saltedHash -> hashingService.recordUsedHash(
+                        value.unsaltedHash, saltedHash, saltIndex.get()) ? saltedHash : null, ioExecutor)
+                .thenCompose(saltedHash -> (saltedHash != null)
+                        ? CompletableFuture.completedFuture(saltedHash)
+                        : generateDistinctSaltedHashAsync(value, attempt + 1));
+    }
+
+    /** Replaces each salted hash of the generation that had already been used with a newly generated distinct one. */
+    private CompletableFuture<List<SaltedHash>> regenerateDuplicates(@NotNull final BulkGeneration generation) {
+        final List<CompletableFuture<Void>> regenerations = new ArrayList<>();
+        for (int position : generation.getDuplicatePositions()) {
+            final PendingValue value = new PendingValue(
+                    generation.getCleartextBytes(position), generation.getUnsaltedHash(position));
+            regenerations.add(generateDistinctSaltedHashAsync(value, 0)
+                    .thenAccept(saltedHash -> generation.setSaltedHash(position, saltedHash)));
+        }
+        return CompletableFuture.allOf(regenerations.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> generation.getSaltedHashes());
+    }
+
+    private static ExecutorService newIoExecutor(int poolSize) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(poolSize, task -> {
+            final Thread thread = new Thread(task, "secure-hashing-io-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    /** A cleartext value's bytes and unsalted hash (hex. encoded). */
+    private static final class PendingValue {
+        private final byte[] cleartextBytes;
+        private final String unsaltedHash;
+
+        private PendingValue(@Nullable final String cleartext) {
+            this(Objects.requireNonNullElse(cleartext, NULL_STRING_MARKER).getBytes(StandardCharsets.UTF_8));
+        }
+
+        private PendingValue(@NotNull final byte[] cleartextBytes) {
+            this(cleartextBytes, HashingUtils.unsaltedHashHex(cleartextBytes));
+        }
+
+        private PendingValue(@NotNull final byte[] cleartextBytes, @NotNull final String unsaltedHash) {
+            this.cleartextBytes = cleartextBytes;
+            this.unsaltedHash = unsaltedHash;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package info.willdspann.crypto.services;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.springframework.stereotype.Service;
+
+import info.willdspann.crypto.util.hashing.HashingUtils;
+
+/**
+ * Hashing service that generates unsalted (SHA-256) hashes, hex. encoded.
+ */
+@Service
+public class DefaultHashingService implements HashingService {
+
+    @Override
+    public String generateHash(@Nullable final String cleartext) {
+        return HashingUtils.unsaltedHashHex(cleartext);
+    }
+
+    @Override
+    public String generateIsoDateHash(@NotNull final LocalDate date) {
+        return generateHash(date.format(DateTimeFormatter.ISO_LOCAL_DATE));
+    }
+
+    @Override
+    public String generateIsoDateHash(@NotNull final Date date) {
+        return generateIsoDateHash(date.toLocalDate());
+    }
+
+    @Override
+    public List<String> generateHashes(@NotNull final Iterable<String> cleartexts) {
+        final List<String> hashes = new ArrayList<>();
+        for (String cleartext : cleartexts) {
+            hashes.add(generateHash(cleartext));
+        }
+        return hashes;
+    }
+}
@@ -0,0 +1,411 @@
+package info.willdspann.crypto.services;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import info.willdspann.crypto.entities.hashing.UsedDistinctHash;
+import info.willdspann.crypto.enums.SaltSequenceVersion;
+import info.willdspann.crypto.hashing.SaltSequenceCache;
+import info.willdspann.crypto.hashing.SaltedHashGenerator;
+import info.willdspann.crypto.repositories.hashing.HashGraveyardRepository;
+import info.willdspann.crypto.repositories.hashing.HashUsageCountsRepository;
+import info.willdspann.crypto.repositories.hashing.SaltedHashIndexRepository;
+import info.willdspann.crypto.repositories.hashing.UsedDistinctHashesRepository;
+import info.willdspann.crypto.util.hashing.HashingUtils;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+import static info.willdspann.crypto.hashing.ReproducibleSeedGenerator.NULL_STRING_MARKER;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * <p>
+ * Secure hashing service that generates a distinct salted hash for each use of a cleartext value. For each use, the
+ * cleartext value's usage count (indexed by its unsalted hash) is incremented, the salted hash at the corresponding
+ * salt index is generated, and it is recorded as used, to guarantee every salted hash is used only once. </p>
+ * <p>
+ * Bulk generation reserves salt indices for all distinct cleartext values in a single bulk call, and records used
+ * hashes in a single batch, rather than making these repository calls per cleartext. The repositories may be backed
+ * by JPA or held in memory (e.g., {@code MapInMemoryRepository}). </p>
+ * <p>
+ * If a hash graveyard repository is given, salted hashes orphaned to it are excluded when looking up a value's salted
+ * hashes (see {@link LiveSaltedHashResolver}). </p>
+ * <p>
+ * If a salted hash index repository is given, every generated salted hash is also indexed under its value's unsalted
+ * hash, so that looking up a value's live salted hashes is one indexed read, rather than regenerating each of them.
+ * Values not yet fully indexed (e.g., used before the index was introduced) are backfilled on their first lookup. </p>
+ */
+public class DefaultSecureHashingService implements SecureHashingService {
+    static final int MAX_DUPLICATE_HASH_RETRIES = 8;
+    private static final Logger logger = LoggerFactory.getLogger(DefaultSecureHashingService.class);
+
+    private final SaltedHashGenerator saltedHashGenerator;
+    private final HashUsageCountsRepository usageCountsRepository;
+    private final UsedDistinctHashesRepository usedHashesRepository;
+    private final LiveSaltedHashResolver liveSaltedHashResolver;
+    private final SaltedHashIndexRepository saltedHashIndexRepository;
+
+    /**
+     * Creates a service whose salted hash generator is seeded with the given secret seed, and caches each value's
+     * salt sequence, so that the DRBG isn't reconstructed and replayed on every call.
+     *
+     * @param secretSeed secret seed used to generate salt sequences (copied, so may be cleared by the caller).
+     * @param usageCountsRepository repository of usage counts, indexed by unsalted hash.
+     * @param usedHashesRepository repository of used salted hashes.
+     * @param graveyardRepository repository of orphaned salted hashes, or {@code null} if none are ever orphaned.
+     */
+    public DefaultSecureHashingService(@NotNull final byte[] secretSeed,
+                                       @NotNull final HashUsageCountsRepository usageCountsRepository,
+                                       @NotNull final UsedDistinctHashesRepository usedHashesRepository,
+                                       @Nullable final HashGraveyardRepository graveyardRepository)
+    {
+        this(
+                new SaltedHashGenerator(secretSeed, SaltSequenceVersion.DEFAULT_VERSION, new SaltSequenceCache()),
+                usageCountsRepository,
+                usedHashesRepository,
+                graveyardRepository
+        );
+    }
+
+    public DefaultSecureHashingService(@NotNull final byte[] secretSeed,
+                                       @NotNull final HashUsageCountsRepository usageCountsRepository,
+                                       @NotNull final UsedDistinctHashesRepository usedHashesRepository)
+    {
+        this(secretSeed, usageCountsRepository, usedHashesRepository, null);
+    }
+
+    public DefaultSecureHashingService(@NotNull final SaltedHashGenerator saltedHashGenerator,
+                                       @NotNull final HashUsageCountsRepository usageCountsRepository,
+                                       @NotNull final UsedDistinctHashesRepository usedHashesRepository,
+                                       @Nullable final HashGraveyardRepository graveyardRepository)
+    {
+        this(saltedHashGenerator, usageCountsRepository, usedHashesRepository, graveyardRepository, null);
+    }
+
+    /**
+     * @param saltedHashGenerator generator of each value's salted hashes.
+     * @param usageCountsRepository repository of usage counts, indexed by unsalted hash.
+     * @param usedHashesRepository repository of used salted hashes.
+     * @param graveyardRepository repository of orphaned salted hashes, or {@code null} if none are ever orphaned.
+     * @param saltedHashIndexRepository repository indexing salted hashes by unsalted hash, or {@code null} to
+     *                                  regenerate salted hashes on each lookup instead.
+     */
+    public DefaultSecureHashingService(@NotNull final SaltedHashGenerator saltedHashGenerator,
+                                       @NotNull final HashUsageCountsRepository usageCountsRepository,
+                                       @NotNull final UsedDistinctHashesRepository usedHashesRepository,
+                                       @Nullable final HashGraveyardRepository graveyardRepository,
+                                       @Nullable final SaltedHashIndexRepository saltedHashIndexRepository)
+    {
+        this.saltedHashGenerator = saltedHashGenerator;
+        this.usageCountsRepository = usageCountsRepository;
+        this.usedHashesRepository = usedHashesRepository;
+        this.liveSaltedHashResolver = new LiveSaltedHashResolver(saltedHashGenerator, graveyardRepository);
+        this.saltedHashIndexRepository = saltedHashIndexRepository;
+    }
+
+    public DefaultSecureHashingService(@NotNull final SaltedHashGenerator saltedHashGenerator,
+                                       @NotNull final HashUsageCountsRepository usageCountsRepository,
+                                       @NotNull final UsedDistinctHashesRepository usedHashesRepository)
+    {
+        this(saltedHashGenerator, usageCountsRepository, usedHashesRepository, null);
+    }
+
+    @Override
+    public SaltedHash generateSaltedHash(@Nullable final String cleartext) {
+        final byte[] cleartextBytes = toCleartextBytes(cleartext);
+        final String unsaltedHash = HashingUtils.unsaltedHashHex(cleartextBytes);
+
+        return generateDistinctSaltedHash(cleartextBytes, unsaltedHash);
+    }
+
+    @Override
+    public SaltedHash generateIsoDateSaltedHash(@NotNull final LocalDate date) {
+        return generateSaltedHash(date.format(DateTimeFormatter.ISO_LOCAL_DATE));
+    }
+
+    @Override
+    public SaltedHash generateIsoDateSaltedHash(@NotNull final Date date) {
+        return generateIsoDateSaltedHash(date.toLocalDate());
+    }
+
+    @Override
+    public List<SaltedHash> generateSaltedHashes(@NotNull final Iterable<String> cleartexts) {
+        final BulkGeneration generation = new BulkGeneration(cleartexts)
+                .reserveSaltIndices()
+                .generateSaltedHashes()
+                .recordUsedHashes();
+        for (int position : generation.getDuplicatePositions()) {
+            generation.setSaltedHash(position, generateDistinctSaltedHash(
+                    generation.getCleartextBytes(position), generation.getUnsaltedHash(position)));
+        }
+        return generation.getSaltedHashes();
+    }
+
+    @Override
+    public Set<SaltedHash> getSaltedHashes(@Nullable final String cleartext) {
+        return streamSaltedHashes(cleartext).collect(toSet());
+    }
+
+    @Override
+    public Stream<SaltedHash> streamSaltedHashes(@Nullable final String cleartext) {
+        final byte[] cleartextBytes = toCleartextBytes(cleartext);
+        final String unsaltedHash = HashingUtils.unsaltedHashHex(cleartextBytes);
+        final int usageCount = usageCountsRepository.getUsageCount(unsaltedHash);
+
+        if (saltedHashIndexRepository != null && usageCount > 0) {
+            return streamIndexedSaltedHashes(cleartextBytes, unsaltedHash, usageCount);
+        }
+        return liveSaltedHashResolver.resolve(cleartextBytes, usageCount);
+    }
+
+    @Override
+    public Set<SaltedHash> getIsoDateSaltedHashes(@Nullable final LocalDate date) {
+        return getSaltedHashes((date != null) ? date.format(DateTimeFormatter.ISO_LOCAL_DATE) : null);
+    }
+
+    @Override
+    public Set<SaltedHash> getIsoDateSaltedHashes(@Nullable final Date date) {
+        return getIsoDateSaltedHashes((date != null) ? date.toLocalDate() : null);
+    }
+
+    @Override
+    public List<Set<SaltedHash>> getStringsSaltedHashes(@NotNull final Iterable<String> cleartexts) {
+        final List<Set<SaltedHash>> saltedHashSets = new ArrayList<>();
+        for (String cleartext : cleartexts) {
+            saltedHashSets.add(getSaltedHashes(cleartext));
+        }
+        return saltedHashSets;
+    }
+
+    /**
+     * Reserves the next salt index of the given cleartext value, and generates and records its salted hash. If that
+     * salted hash has already been used, the next salt index is reserved and tried instead.
+     */
+    private SaltedHash generateDistinctSaltedHash(@NotNull final byte[] cleartextBytes,
+                                                  @NotNull final String unsaltedHash)
+    {
+        final int saltIndex = reserveSaltIndex(unsaltedHash);
+        return recordDistinctSaltedHash(cleartextBytes, unsaltedHash,
+                saltedHashGenerator.getNthSaltedHash(cleartextBytes, saltIndex), saltIndex);
+    }
+
+    /**
+     * Records the given salted hash of a cleartext value, at the given salt index, as used. If it has already been
+     * used, the value's next salt index is reserved, and its salted hash generated and tried instead, up to
+     * {@value #MAX_DUPLICATE_HASH_RETRIES} attempts in all.
+     *
+     * @return the recorded distinct salted hash.
+     * @throws IllegalStateException if every attempt yielded an already used salted hash.
+     */
+    SaltedHash recordDistinctSaltedHash(@NotNull final byte[] cleartextBytes,
+                                        @NotNull final String unsaltedHash,
+                                        @NotNull final SaltedHash saltedHash,
+                                        int saltIndex)
+    {
+        SaltedHash candidate = saltedHash;
+        int candidateSaltIndex = saltIndex;
+        for (int attempt = 1; !recordUsedHash(unsaltedHash, candidate, candidateSaltIndex); ++attempt) {
+            if (attempt >= MAX_DUPLICATE_HASH_RETRIES) {
+                throw distinctHashRetriesExhausted();
+            }
+            candidateSaltIndex = reserveSaltIndex(unsaltedHash);
+            candidate = saltedHashGenerator.getNthSaltedHash(cleartextBytes, candidateSaltIndex);
+        }
+        return candidate;
+    }
+
+    /**
+     * Reserves the next salt index of the cleartext value with the given unsalted hash (one stage of generating a
+     * salted hash, which the asynchronous service and the pipeline run on their I/O executor).
+     */
+    int reserveSaltIndex(@NotNull final String unsaltedHash) {
+        return usageCountsRepository.incrementAndGetUsageCount(unsaltedHash) - 1;
+    }
+
+    /**
+     * Records the given salted hash as used, and then indexes it (if indexing), returning whether it was distinct.
+     * A duplicate is logged, and should be retried at the value's next salt index.
+     */
+    boolean recordUsedHash(@NotNull final String unsaltedHash, @NotNull final SaltedHash saltedHash, int saltIndex) {
+        final boolean distinct = usedHashesRepository.saveUsedHash(new UsedDistinctHash(saltedHash.toString()));
+        if (saltedHashIndexRepository != null) {
+            // Indexed even if a duplicate, since it still occupies this value's salt index.
+            saltedHashIndexRepository.indexSaltedHashes(unsaltedHash, List.of(saltedHash.toString()));
+        }
+        if (!distinct) {
+            logger.warn("Salted hash at salt index {} has already been used -- reserving the next salt index.",
+                    saltIndex);
+        }
+        return distinct;
+    }
+
+    static IllegalStateException distinctHashRetriesExhausted() {
+        return new IllegalStateException(String.format(
+                "Unable to generate a distinct salted hash after %d attempts.", MAX_DUPLICATE_HASH_RETRIES));
+    }
+
+    /**
+     * Looks up the live salted hashes of the given cleartext value in the salted hash index, a page at a time. If
+     * fewer salted hashes are indexed than the value's usage count, the index is first backfilled with every salted
+     * hash of the value.
+     */
+    private Stream<SaltedHash> streamIndexedSaltedHashes(@NotNull final byte[] cleartextBytes,
+                                                         @NotNull final String unsaltedHash,
+                                                         int usageCount)
+    {
+        final long indexedCount = saltedHashIndexRepository.countByUsedHash(unsaltedHash);
+        if (indexedCount < usageCount) {
+            logger.debug("Backfilling salted hash index with {} salted hashes ({} indexed).", usageCount, indexedCount);
+            backfillSaltedHashIndex(cleartextBytes, unsaltedHash, usageCount);
+        }
+
+        return saltedHashIndexRepository.streamByUsedHash(unsaltedHash, LiveSaltedHashResolver.DEFAULT_BATCH_SIZE)
+                .filter(indexedHash -> !indexedHash.isBuried())
+                .map(indexedHash -> SaltedHash.fromString(
+                        indexedHash.getSaltedHash(), saltedHashGenerator.getHashAlgorithm()));
+    }
+
+    /**
+     * Indexes the salted hashes at salt indices [0, {@code usageCount}) of the given cleartext value, a batch at a
+     * time.
+     */
+    private void backfillSaltedHashIndex(@NotNull final byte[] cleartextBytes,
+                                         @NotNull final String unsaltedHash,
+                                         int usageCount)
+    {
+        final Iterator<SaltedHash> saltedHashes = saltedHashGenerator.saltedHashIterator(cleartextBytes);
+        try {
+            for (int from = 0; from < usageCount; from += LiveSaltedHashResolver.DEFAULT_BATCH_SIZE) {
+                final int batchSize = Math.min(LiveSaltedHashResolver.DEFAULT_BATCH_SIZE, usageCount - from);
+                final List<String> batch = new ArrayList<>(batchSize);
+                for (int i = 0; i < batchSize; ++i) {
+                    batch.add(saltedHashes.next().toString());
+                }
+                saltedHashIndexRepository.indexSaltedHashes(unsaltedHash, batch);
+            }
+        } finally {
+            LiveSaltedHashResolver.destroySaltedHashIterator(saltedHashes);
+        }
+    }
+
+    private static byte[] toCleartextBytes(@Nullable final String cleartext) {
+        return Objects.requireNonNullElse(cleartext, NULL_STRING_MARKER).getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * State of one bulk generation, whose stages are run in order, each returning this generation. The synchronous
+     * service runs them in turn, whereas the asynchronous service hands the generation from executor to executor
+     * (each stage happening-before the next).
+     */
+    final class BulkGeneration {
+        private final List<byte[]> cleartextBytesList = new ArrayList<>();
+        private final List<String> unsaltedHashes = new ArrayList<>();
+        private final Map<String, List<Integer>> positionsByUnsaltedHash = new LinkedHashMap<>();
+        private final SaltedHash[] saltedHashes;
+        private Map<String, Integer> usageCounts;
+        private Set<String> distinctHashes;
+
+        BulkGeneration(@NotNull final Iterable<String> cleartexts) {
+            for (String cleartext : cleartexts) {
+                final byte[] cleartextBytes = toCleartextBytes(cleartext);
+                final String unsaltedHash = HashingUtils.unsaltedHashHex(cleartextBytes);
+                positionsByUnsaltedHash.computeIfAbsent(unsaltedHash, hash -> new ArrayList<>())
+                        .add(cleartextBytesList.size());
+                cleartextBytesList.add(cleartextBytes);
+                unsaltedHashes.add(unsaltedHash);
+            }
+            this.saltedHashes = new SaltedHash[cleartextBytesList.size()];
+        }
+
+        /** Reserves a contiguous range of salt indices per distinct cleartext value, all in one bulk call (I/O). */
+        BulkGeneration reserveSaltIndices() {
+            final Map<String, Integer> deltasByUnsaltedHash = new HashMap<>(2 * positionsByUnsaltedHash.size());
+            positionsByUnsaltedHash.forEach((unsaltedHash, positions) ->
+                    deltasByUnsaltedHash.put(unsaltedHash, positions.size())
+            );
+            this.usageCounts = usageCountsRepository.addAndGetUsageCounts(deltasByUnsaltedHash);
+            return this;
+        }
+
+        /** Generates the salted hash at each reserved salt index (compute). */
+        BulkGeneration generateSaltedHashes() {
+            for (Map.Entry<String, List<Integer>> entry : positionsByUnsaltedHash.entrySet()) {
+                final List<Integer> positions = entry.getValue();
+                int saltIndex = usageCounts.get(entry.getKey()) - positions.size();
+                for (int position : positions) {
+                    saltedHashes[position] = saltedHashGenerator.getNthSaltedHash(
+                            cleartextBytesList.get(position), saltIndex++);
+                }
+            }
+            return this;
+        }
+
+        /** Records the salted hashes as used in a single batch, and then indexes them (I/O). */
+        BulkGeneration recordUsedHashes() {
+            final List<UsedDistinctHash> usedHashes = new ArrayList<>(saltedHashes.length);
+            final Map<String, List<String>> saltedHashesByUnsaltedHash = new HashMap<>(2 * usageCounts.size());
+            positionsByUnsaltedHash.forEach((unsaltedHash, positions) -> {
+                final List<String> valueSaltedHashes = new ArrayList<>(positions.size());
+                for (int position : positions) {
+                    valueSaltedHashes.add(saltedHashes[position].toString());
+                    usedHashes.add(new UsedDistinctHash(saltedHashes[position].toString()));
+                }
+                saltedHashesByUnsaltedHash.put(unsaltedHash, valueSaltedHashes);
+            });
+
+            this.distinctHashes = usedHashesRepository.saveUsedHashes(usedHashes);
+            if (saltedHashIndexRepository != null) {
+                // Indexed only once recorded as used, so that a failed save leaves no index entries behind. Should
+                // indexing fail instead, the missing entries are backfilled on the value's next lookup.
+                saltedHashIndexRepository.indexSaltedHashes(saltedHashesByUnsaltedHash);
+            }
+            return this;
+        }
+
+        /** Returns the positions of the salted hashes that had already been used, which must be replaced. */
+        List<Integer> getDuplicatePositions() {
+            final List<Integer> duplicatePositions = new ArrayList<>();
+            if (distinctHashes.size() < saltedHashes.length) {
+                for (int i = 0; i < saltedHashes.length; ++i) {
+                    if (!distinctHashes.contains(saltedHashes[i].toString())) {
+                        duplicatePositions.add(i);
+                    }
+                }
+            }
+            return duplicatePositions;
+        }
+
+        byte[] getCleartextBytes(int position) {
+            return cleartextBytesList.get(position);
+        }
+
+        String getUnsaltedHash(int position) {
+            return unsaltedHashes.get(position);
+        }
+
+        void setSaltedHash(int position, @NotNull final SaltedHash saltedHash) {
+            saltedHashes[position] = saltedHash;
+        }
+
+        List<SaltedHash> getSaltedHashes() {
+            return List.of(saltedHashes);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package info.willdspann.crypto.services;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.annotation.Nullable;
+import javax.security.auth.DestroyFailedException;
+import javax.security.auth.Destroyable;
+import javax.validation.constraints.NotNull;
+
+import info.willdspann.crypto.hashing.SaltedHashGenerator;
+import info.willdspann.crypto.repositories.hashing.HashGraveyardRepository;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * <p>
+ * Lazily resolves the live salted hashes of a cleartext value, i.e. the salted hashes at salt indices
+ * [0, {@code usageCount}) that haven't been orphaned to the hash graveyard (e.g., by an UPDATE or DELETE of the row
+ * that used them). Salted hashes are generated and checked against the graveyard a batch at a time, with one
+ * {@link HashGraveyardRepository#findBuriedHashes} call per batch, so at most one batch is held in memory. </p>
+ * <p>
+ * {@link #resolveBatches} yields each batch's live salted hashes, which suits building one {@code WHERE ... IN (...)}
+ * search predicate per batch, while {@link #resolve} yields the live salted hashes one by one. </p>
+ * <p>
+ * The generator's salted hash iterator (which holds digest state derived from the cleartext) is destroyed once the
+ * stream is exhausted or closed, so a stream that isn't fully consumed should be closed. </p>
+ */
+public class LiveSaltedHashResolver {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final SaltedHashGenerator saltedHashGenerator;
+    private final HashGraveyardRepository graveyardRepository;
+    private final int batchSize;
+
+    public LiveSaltedHashResolver(@NotNull final SaltedHashGenerator saltedHashGenerator,
+                                  @Nullable final HashGraveyardRepository graveyardRepository)
+    {
+        this(saltedHashGenerator, graveyardRepository, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param saltedHashGenerator generator of each value's salted hashes.
+     * @param graveyardRepository repository of orphaned salted hashes, or {@code null} if every salted hash is live.
+     * @param batchSize number of salted hashes generated and checked against the graveyard at a time.
+     */
+    public LiveSaltedHashResolver(@NotNull final SaltedHashGenerator saltedHashGenerator,
+                                  @Nullable final HashGraveyardRepository graveyardRepository,
+                                  int batchSize)
+    {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        this.saltedHashGenerator = saltedHashGenerator;
+        this.graveyardRepository = graveyardRepository;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns a lazy stream of the live salted hashes of the given cleartext value, in salt index order, which should
+     * be closed if not fully consumed.
+     *
+     * @param cleartextBytes cleartext value for which to resolve live salted hashes.
+     * @param usageCount number of salted hashes generated so far for the cleartext value.
+     * @return a lazy stream of live salted hashes.
+     */
+    public Stream<SaltedHash> resolve(@NotNull final byte[] cleartextBytes, int usageCount) {
+        return resolveBatches(cleartextBytes, usageCount).flatMap(List::stream);
+    }
+
+    /**
+     * Returns a lazy stream of batches of the live salted hashes of the given cleartext value, in salt index order.
+     * Each batch holds the live salted hashes among up to {@code batchSize} consecutive salt indices, so batches may
+     * be smaller than {@code batchSize}, but are never empty. The stream should be closed if not fully consumed.
+     *
+     * @param cleartextBytes cleartext value for which to resolve live salted hashes.
+     * @param usageCount number of salted hashes generated so far for the cleartext value.
+     * @return a lazy stream of non-empty batches of live salted hashes.
+     */
+    public Stream<List<SaltedHash>> resolveBatches(@NotNull final byte[] cleartextBytes, int usageCount) {
+        if (usageCount <= 0) {
+            return Stream.empty();
+        }
+        final LiveBatchIterator batches = new LiveBatchIterator(
+                saltedHashGenerator.saltedHashIterator(cleartextBytes), usageCount);
+
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(batches, Spliterator.ORDERED | Spliterator.NONNULL),
+                false
+        ).onClose(batches::destroySaltedHashes);
+    }
+
+    /**
+     * Destroys the given salted hash iterator, if destroyable (as the generator's are), wiping the digest state it
+     * holds derived from the cleartext.
+     */
+    static void destroySaltedHashIterator(@NotNull final Iterator<SaltedHash> saltedHashes) {
+        if (saltedHashes instanceof Destroyable && !((Destroyable) saltedHashes).isDestroyed()) {
+            try {
+                ((Destroyable) saltedHashes).destroy();
+            } catch (DestroyFailedException dfe) {
+                throw new IllegalStateException("Unable to destroy salted hash iterator.", dfe);
+            }
+        }
+    }
+
+
+    private final class LiveBatchIterator implements Iterator<List<SaltedHash>> {
+        private final Iterator<SaltedHash> saltedHashes;
+        private int remaining;
+        private List<SaltedHash> nextBatch;
+
+        private LiveBatchIterator(@NotNull final Iterator<SaltedHash> saltedHashes, int usageCount) {
+            this.saltedHashes = saltedHashes;
+            this.remaining = usageCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (nextBatch == null && remaining > 0) {
+                final List<SaltedHash> batch = nextLiveBatch();
+                if (!batch.isEmpty()) {
+                    nextBatch = batch;
+                }
+            }
+            return nextBatch != null;
+        }
+
+        @Override
+        public List<SaltedHash> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final List<SaltedHash> batch = nextBatch;
+            nextBatch = null;
+
+            return batch;
+        }
+
+        private List<SaltedHash> nextLiveBatch() {
+            final int size = Math.min(batchSize, remaining);
+            final List<SaltedHash> batch = new ArrayList<>(size);
+            for (int i = 0; i < size; ++i) {
+                batch.add(saltedHashes.next());
+            }
+            remaining -= size;
+            if (remaining == 0) {
+                destroySaltedHashes();
+            }
+
+            if (graveyardRepository == null) {
+                return batch;
+            }
+            final Set<String> buriedHashes = graveyardRepository.findBuriedHashes(
+                    batch.stream().map(SaltedHash::toString).collect(toList()));
+            if (buriedHashes.isEmpty()) {
+                return batch;
+            }
+            batch.removeIf(saltedHash -> buriedHashes.contains(saltedHash.toString()));
+
+            return batch;
+        }
+
+        private void destroySaltedHashes() {
+            this.remaining = 0;
+            destroySaltedHashIterator(saltedHashes);
+        }
+    }
+}
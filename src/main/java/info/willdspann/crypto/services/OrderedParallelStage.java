@@ -0,0 +1,270 @@
+package info.willdspann.crypto.services;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * <p>
+ * {@link Flow.Processor} stage, which applies a function to each item on an executor, with up to {@code parallelism}
+ * items in progress at a time, and publishes results in the same order as their items were received. </p>
+ * <p>
+ * At most {@code bufferSize} items are requested from upstream beyond those already published downstream, so the
+ * items buffered by this stage (whether waiting, in progress, or done but not yet demanded) are bounded, and a slow
+ * downstream subscriber applies backpressure all the way upstream. Only a single downstream subscriber is
+ * supported. </p>
+ */
+final class OrderedParallelStage<I, O> implements Flow.Processor<I, O> {
+    private final Function<? super I, ? extends O> function;
+    private final Executor executor;
+    private final int parallelism;
+    private final int bufferSize;
+
+    // The following are guarded by this.
+    /** Every buffered item, in the order received. */
+    private final ArrayDeque<Slot<I, O>> slots = new ArrayDeque<>();
+    /** Buffered items not yet submitted to the executor, in the order received. */
+    private final ArrayDeque<Slot<I, O>> unstarted = new ArrayDeque<>();
+    private int running;
+    private long demand;
+    private Flow.Subscription upstream;
+    private Flow.Subscriber<? super O> downstream;
+    private boolean upstreamDone;
+    private Throwable failure;
+    private boolean terminated;
+    private boolean draining;
+
+    /**
+     * @param function function to apply to each item, which must not return {@code null}.
+     * @param executor executor on which to apply the function.
+     * @param parallelism maximum number of items to which the function is being applied at a time.
+     * @param bufferSize maximum number of items received but not yet published downstream.
+     */
+    OrderedParallelStage(@NotNull final Function<? super I, ? extends O> function,
+                         @NotNull final Executor executor,
+                         int parallelism,
+                         int bufferSize)
+    {
+        if (parallelism <= 0 || bufferSize <= 0) {
+            throw new IllegalArgumentException("Stage parallelism and buffer size must be positive.");
+        }
+        this.function = function;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public void onSubscribe(@NotNull final Flow.Subscription subscription) {
+        synchronized (this) {
+            if (upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            this.upstream = subscription;
+        }
+        subscription.request(bufferSize);
+    }
+
+    @Override
+    public void onNext(@NotNull final I item) {
+        synchronized (this) {
+            final Slot<I, O> slot = new Slot<>(item);
+            slots.add(slot);
+            unstarted.add(slot);
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(@NotNull final Throwable throwable) {
+        synchronized (this) {
+            this.upstreamDone = true;
+            if (failure == null) {
+                this.failure = throwable;
+            }
+        }
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            this.upstreamDone = true;
+        }
+        drain();
+    }
+
+    @Override
+    public void subscribe(@NotNull final Flow.Subscriber<? super O> subscriber) {
+        synchronized (this) {
+            if (downstream == null) {
+                this.downstream = subscriber;
+            } else {
+                subscriber.onSubscribe(new CancelledSubscription());
+                subscriber.onError(new IllegalStateException("Only a single subscriber is supported."));
+                return;
+            }
+        }
+        subscriber.onSubscribe(new DownstreamSubscription());
+        drain();
+    }
+
+    /**
+     * Submits waiting items to the executor, and publishes done items downstream, as far as parallelism and demand
+     * allow, followed by a terminal signal once every item has been published (or on failure). Only one thread drains
+     * at a time, so that downstream signals are serial, and the draining thread keeps going until it finds nothing
+     * left to do.
+     */
+    private void drain() {
+        synchronized (this) {
+            if (draining) {
+                return;
+            }
+            this.draining = true;
+        }
+        while (true) {
+            final List<Slot<I, O>> toStart = new ArrayList<>();
+            final List<O> toPublish = new ArrayList<>();
+            final Flow.Subscriber<? super O> subscriber;
+            final Throwable error;
+            final boolean complete;
+            final Flow.Subscription upstreamSubscription;
+
+            synchronized (this) {
+                subscriber = downstream;
+                upstreamSubscription = upstream;
+                if (terminated) {
+                    slots.clear();
+                    unstarted.clear();
+                    this.draining = false;
+                    return;
+                }
+                while (running < parallelism && !unstarted.isEmpty()) {
+                    toStart.add(unstarted.poll());
+                    ++running;
+                }
+                if (subscriber != null) {
+                    while (demand > 0 && !slots.isEmpty() && slots.peek().done) {
+                        toPublish.add(slots.poll().output);
+                        --demand;
+                    }
+                }
+                error = (subscriber != null) ? failure : null;
+                complete = subscriber != null && error == null && upstreamDone && slots.isEmpty();
+                this.terminated = error != null || complete;
+                if (toStart.isEmpty() && toPublish.isEmpty() && !terminated) {
+                    this.draining = false;
+                    return;
+                }
+            }
+
+            for (Slot<I, O> slot : toStart) {
+                try {
+                    executor.execute(() -> apply(slot));
+                } catch (RejectedExecutionException ree) {
+                    fail(ree);
+                }
+            }
+            for (O output : toPublish) {
+                subscriber.onNext(output);
+            }
+            if (error != null) {
+                if (upstreamSubscription != null) {
+                    upstreamSubscription.cancel();
+                }
+                subscriber.onError(error);
+            } else if (complete) {
+                subscriber.onComplete();
+            } else if (!toPublish.isEmpty() && upstreamSubscription != null) {
+                upstreamSubscription.request(toPublish.size());
+            }
+        }
+    }
+
+    private void apply(@NotNull final Slot<I, O> slot) {
+        final O output;
+        try {
+            output = function.apply(slot.input);
+        } catch (Throwable throwable) {
+            // Errors fail the stream too, rather than leaving it waiting on this item forever. They're signaled
+            // downstream only, rather than rethrown into the executor, which may be a shared pool that this stage
+            // doesn't own (e.g., the common pool), whose worker would otherwise be killed.
+            fail(throwable);
+            return;
+        }
+        synchronized (this) {
+            slot.output = output;
+            slot.done = true;
+            --running;
+        }
+        drain();
+    }
+
+    private void fail(@NotNull final Throwable throwable) {
+        synchronized (this) {
+            --running;
+            if (failure == null) {
+                this.failure = throwable;
+            }
+        }
+        drain();
+    }
+
+
+    /** A buffered item, and its output once done. */
+    private static final class Slot<I, O> {
+        private final I input;
+        private O output;
+        private boolean done;
+
+        private Slot(@NotNull final I input) {
+            this.input = input;
+        }
+    }
+
+    private final class DownstreamSubscription implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            synchronized (OrderedParallelStage.this) {
+                if (n <= 0) {
+                    if (failure == null) {
+                        failure = new IllegalArgumentException("Requested number of items must be positive.");
+                    }
+                } else {
+                    demand = (Long.MAX_VALUE - demand < n) ? Long.MAX_VALUE : demand + n;
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            final Flow.Subscription upstreamSubscription;
+            synchronized (OrderedParallelStage.this) {
+                terminated = true;
+                upstreamSubscription = upstream;
+            }
+            if (upstreamSubscription != null) {
+                upstreamSubscription.cancel();
+            }
+            drain();
+        }
+    }
+
+    private static final class CancelledSubscription implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {}
+
+        @Override
+        public void cancel() {}
+    }
+}
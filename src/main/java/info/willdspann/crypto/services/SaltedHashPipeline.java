@@ -0,0 +1,173 @@
+package info.willdspann.crypto.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+import info.willdspann.crypto.hashing.SaltedHashGenerator;
+import info.willdspann.crypto.repositories.hashing.HashUsageCountsRepository;
+import info.willdspann.crypto.repositories.hashing.SaltedHashIndexRepository;
+import info.willdspann.crypto.repositories.hashing.UsedDistinctHashesRepository;
+import info.willdspann.crypto.util.hashing.HashingUtils;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+import static info.willdspann.crypto.hashing.ReproducibleSeedGenerator.NULL_STRING_MARKER;
+
+/**
+ * <p>
+ * Streaming counterpart of {@link SecureHashingService#generateSaltedHashes(Iterable)}, as a {@link Flow.Processor}
+ * that consumes records (e.g., CSV lines or messages) and publishes a distinct salted hash per record, in the same
+ * order. Each record passes through five stages: </p>
+ * <pre>
+ *     parse (compute) -&gt; unsalted hash (compute) -&gt; reserve salt index (I/O) -&gt; salted hash (compute)
+ *         -&gt; record used hash (I/O)
+ * </pre>
+ * <p>
+ * Each stage runs on its executor with bounded parallelism, and buffers at most {@code bufferSize} records, requesting
+ * more from the stage before it only as it publishes results to the stage after it. Memory thus stays flat however
+ * large the input, and a slow subscriber (or a slow repository) applies backpressure all the way to the publisher of
+ * records. </p>
+ * <p>
+ * Salt indices are reserved one record at a time, so when many records share a popular value, decorating the usage
+ * counts repository with a {@code BlockReservingHashUsageCountsRepository} avoids a round trip per record. </p>
+ *
+ * @param <T> type of the records from which cleartexts are parsed.
+ */
+public class SaltedHashPipeline<T> implements Flow.Processor<T, SaltedHash> {
+    public static final int DEFAULT_BUFFER_SIZE = 256;
+    public static final int DEFAULT_IO_PARALLELISM = 16;
+
+    private final SaltedHashGenerator saltedHashGenerator;
+    private final DefaultSecureHashingService hashingService;
+    private final OrderedParallelStage<T, PendingHash> parseStage;
+    private final OrderedParallelStage<PendingHash, SaltedHash> recordStage;
+
+    public SaltedHashPipeline(@NotNull final Function<? super T, String> parser,
+                              @NotNull final SaltedHashGenerator saltedHashGenerator,
+                              @NotNull final HashUsageCountsRepository usageCountsRepository,
+                              @NotNull final UsedDistinctHashesRepository usedHashesRepository,
+                              @Nullable final SaltedHashIndexRepository saltedHashIndexRepository,
+                              @NotNull final Executor computeExecutor,
+                              @NotNull final Executor ioExecutor)
+    {
+        this(parser, saltedHashGenerator, usageCountsRepository, usedHashesRepository, saltedHashIndexRepository,
+                computeExecutor, ioExecutor, DEFAULT_BUFFER_SIZE, Runtime.getRuntime().availableProcessors(),
+                DEFAULT_IO_PARALLELISM);
+    }
+
+    /**
+     * @param parser parses the cleartext of each record, which may be {@code null}.
+     * @param saltedHashGenerator generator of each value's salted hashes.
+     * @param usageCountsRepository repository of usage counts, indexed by unsalted hash.
+     * @param usedHashesRepository repository of used salted hashes.
+     * @param saltedHashIndexRepository repository indexing salted hashes by unsalted hash, or {@code null}.
+     * @param computeExecutor executor on which to run the parsing and hashing stages.
+     * @param ioExecutor executor on which to run the salt index reservation and used hash recording stages.
+     * @param bufferSize maximum number of records buffered by each stage.
+     * @param computeParallelism maximum number of records in progress at a time in each parsing or hashing stage.
+     * @param ioParallelism maximum number of records in progress at a time in each reservation or recording stage.
+     */
+    public SaltedHashPipeline(@NotNull final Function<? super T, String> parser,
+                              @NotNull final SaltedHashGenerator saltedHashGenerator,
+                              @NotNull final HashUsageCountsRepository usageCountsRepository,
+                              @NotNull final UsedDistinctHashesRepository usedHashesRepository,
+                              @Nullable final SaltedHashIndexRepository saltedHashIndexRepository,
+                              @NotNull final Executor computeExecutor,
+                              @NotNull final Executor ioExecutor,
+                              int bufferSize,
+                              int computeParallelism,
+                              int ioParallelism)
+    {
+        this.saltedHashGenerator = saltedHashGenerator;
+        this.hashingService = new DefaultSecureHashingService(saltedHashGenerator, usageCountsRepository,
+                usedHashesRepository, null, saltedHashIndexRepository);
+
+        this.parseStage = new OrderedParallelStage<>(
+                record -> new PendingHash(parser.apply(record)), computeExecutor, computeParallelism, bufferSize);
+        final OrderedParallelStage<PendingHash, PendingHash> unsaltedHashStage = new OrderedParallelStage<>(
+                PendingHash::hashUnsalted, computeExecutor, computeParallelism, bufferSize);
+        final OrderedParallelStage<PendingHash, PendingHash> reserveStage = new OrderedParallelStage<>(
+                this::reserveSaltIndex, ioExecutor, ioParallelism, bufferSize);
+        final OrderedParallelStage<PendingHash, PendingHash> saltedHashStage = new OrderedParallelStage<>(
+                this::hashSalted, computeExecutor, computeParallelism, bufferSize);
+        this.recordStage = new OrderedParallelStage<>(
+                this::recordUsedHash, ioExecutor, ioParallelism, bufferSize);
+
+        parseStage.subscribe(unsaltedHashStage);
+        unsaltedHashStage.subscribe(reserveStage);
+        reserveStage.subscribe(saltedHashStage);
+        saltedHashStage.subscribe(recordStage);
+    }
+
+    @Override
+    public void onSubscribe(@NotNull final Flow.Subscription subscription) {
+        parseStage.onSubscribe(subscription);
+    }
+
+    @Override
+    public void onNext(@NotNull final T record) {
+        parseStage.onNext(record);
+    }
+
+    @Override
+    public void onError(@NotNull final Throwable throwable) {
+        parseStage.onError(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        parseStage.onComplete();
+    }
+
+    @Override
+    public void subscribe(@NotNull final Flow.Subscriber<? super SaltedHash> subscriber) {
+        recordStage.subscribe(subscriber);
+    }
+
+    private PendingHash reserveSaltIndex(@NotNull final PendingHash pending) {
+        pending.saltIndex = hashingService.reserveSaltIndex(pending.unsaltedHash);
+        return pending;
+    }
+
+    private PendingHash hashSalted(@NotNull final PendingHash pending) {
+        pending.saltedHash = saltedHashGenerator.getNthSaltedHash(pending.cleartextBytes, pending.saltIndex);
+        return pending;
+    }
+
+    /**
+     * Records the record's salted hash as used, and indexes it (if indexing), as {@link DefaultSecureHashingService}
+     * does. If that salted hash has already been used, the next salt index is reserved and tried instead, within this
+     * stage.
+     */
+    private SaltedHash recordUsedHash(@NotNull final PendingHash pending) {
+        return hashingService.recordDistinctSaltedHash(
+                pending.cleartextBytes, pending.unsaltedHash, pending.saltedHash, pending.saltIndex);
+    }
+
+
+    /**
+     * A record's progress through the pipeline, filled in stage by stage. Each stage hands it to the next through a
+     * synchronized buffer, so its fields are safely published without being volatile.
+     */
+    private static final class PendingHash {
+        private final byte[] cleartextBytes;
+        private String unsaltedHash;
+        private int saltIndex;
+        private SaltedHash saltedHash;
+
+        private PendingHash(@Nullable final String cleartext) {
+            this.cleartextBytes = Objects.requireNonNullElse(cleartext, NULL_STRING_MARKER)
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+
+        private PendingHash hashUnsalted() {
+            this.unsaltedHash = HashingUtils.unsaltedHashHex(cleartextBytes);
+            return this;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.sql.Date;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
@@ -22,6 +23,21 @@ public interface SecureHashingService {
 
     Set<SaltedHash> getSaltedHashes(@Nullable final String cleartext);
 
+    /**
+     * Returns a lazy stream of the live (i.e., not orphaned) salted hashes of the given cleartext value, which
+     * generates and filters them in batches as the stream is consumed, rather than holding them all in memory. The
+     * stream should be closed (e.g., with try-with-resources) if not fully consumed.
+     * <p>
+     * The default implementation streams the set returned by {@link #getSaltedHashes(String)}, so isn't lazy;
+     * implementations should override it. </p>
+     *
+     * @param cleartext cleartext value for which to stream live salted hashes.
+     * @return a lazy stream of the cleartext value's live salted hashes.
+     */
+    default Stream<SaltedHash> streamSaltedHashes(@Nullable final String cleartext) {
+        return getSaltedHashes(cleartext).stream();
+    }
+
     Set<SaltedHash> getIsoDateSaltedHashes(@Nullable final LocalDate date);
 
     Set<SaltedHash> getIsoDateSaltedHashes(@Nullable final Date date);
@@ -0,0 +1,208 @@
+package info.willdspann.crypto.util;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+import javax.security.auth.Destroyable;
+import javax.validation.constraints.NotNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+
+/**
+ * <p>
+ * Holder of a secret (e.g., a secret seed) in off-heap memory, which the garbage collector never moves or copies, so
+ * that wiping it on {@link #close()} (or {@link #destroy()}) deterministically removes the only copy, unlike a
+ * {@code byte[]} whose earlier copies may linger in the heap until overwritten. </p>
+ * <p>
+ * The secret is held in its own page-aligned direct buffer (of whole pages of the platform's page size, as reported by
+ * {@code getpagesize(3)}), which is also locked into RAM with {@code mlock(2)}, if available (via JNA), so that it is
+ * never written to swap. Locking is best-effort: on platforms without
+ * {@code mlock}, or once {@code RLIMIT_MEMLOCK} is exhausted, the secret is still held off-heap, just unlocked (see
+ * {@link #isLocked()}). </p>
+ * <p>
+ * The secret is only readable through {@link #updateDigest(MessageDigest)}, which feeds it into a digest through a
+ * small scratch array that is wiped as soon as it has been fed in. (Feeding it byte by byte would leave its last byte
+ * in the digest's own one-byte scratch array.) The digest still buffers the secret's last partial block until it is
+ * finished, so callers should finish (and thereby reset) the digest straight away. Reads are thread-safe, but the
+ * owner must ensure none are in flight once it closes the holder (as {@code SaltedHashGenerator} does). </p>
+ */
+public final class OffHeapSecret implements Destroyable, AutoCloseable {
+    private static final int SCRATCH_LEN = 64;  // bytes
+    private static final Logger logger = LoggerFactory.getLogger(OffHeapSecret.class);
+    private static final int PAGE_SIZE = NativeMemoryLock.pageSize();  // bytes
+
+    private final ByteBuffer buffer;
+    private final int length;
+    private final boolean locked;
+    private volatile boolean destroyed = false;
+
+    private OffHeapSecret(@NotNull final byte[] secret) {
+        this.length = secret.length;
+        // Round up to whole pages, so that unlocking this secret never unlocks a page shared with another.
+        final int pages = Math.max(1, (length + PAGE_SIZE - 1) / PAGE_SIZE);
+        this.buffer = ByteBuffer.allocateDirect((pages + 1) * PAGE_SIZE).alignedSlice(PAGE_SIZE);
+        for (int i = 0; i < length; ++i) {
+            buffer.put(i, secret[i]);
+        }
+        this.locked = NativeMemoryLock.lock(buffer, buffer.capacity());
+    }
+
+    /**
+     * Copies the given secret off-heap. The caller remains responsible for clearing the given array (e.g., via
+     * {@link MemoryUtils#clearBuffer(byte[])}) as soon as possible.
+     *
+     * @param secret secret to copy off-heap.
+     * @return a new holder of a copy of the secret.
+     */
+    public static OffHeapSecret copyOf(@NotNull final byte[] secret) {
+        return new OffHeapSecret(secret);
+    }
+
+    /**
+     * Copies the given secret off-heap, and then clears the given array.
+     *
+     * @param secret secret to move off-heap, which is cleared.
+     * @return a new holder of the secret.
+     */
+    public static OffHeapSecret moveFrom(@NotNull final byte[] secret) {
+        try {
+            return new OffHeapSecret(secret);
+        } finally {
+            MemoryUtils.clearBuffer(secret);
+        }
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns whether the secret is locked into RAM, so that it is never swapped out.
+     * @return {@code true} if locked with {@code mlock(2)}.
+     */
+    public boolean isLocked() {
+        return locked;
+    }
+
+    /**
+     * Feeds the secret into the given digest, directly from off-heap memory.
+     *
+     * @param digest digest to update with the secret.
+     * @throws IllegalStateException if the secret has been wiped.
+     */
+    public void updateDigest(@NotNull final MessageDigest digest) {
+        if (!destroyed) {
+            final ByteBuffer secret = buffer.duplicate();
+            final byte[] scratch = new byte[Math.min(length, SCRATCH_LEN)];
+            try {
+                for (int offset = 0; offset < length; offset += scratch.length) {
+                    final int chunkLength = Math.min(scratch.length, length - offset);
+                    secret.position(offset);
+                    secret.get(scratch, 0, chunkLength);
+                    digest.update(scratch, 0, chunkLength);
+                }
+            } finally {
+                MemoryUtils.clearBuffer(scratch);
+            }
+        }
+        else {
+            throw new IllegalStateException("Unable to read secret -- Secret has been cleared with destroy().");
+        }
+    }
+
+    /**
+     * Wipes the secret by overwriting it with zero bytes, and unlocks its pages.
+     */
+    @Override
+    public synchronized void destroy() {
+        if (destroyed) {
+            return;
+        }
+        this.destroyed = true;
+        for (int i = 0; i < buffer.capacity(); ++i) {
+            buffer.put(i, (byte) 0);
+        }
+        if (locked) {
+            NativeMemoryLock.unlock(buffer, buffer.capacity());
+        }
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return destroyed;
+    }
+
+    /**
+     * Equivalent to {@link #destroy()}, so that secrets may be scoped with try-with-resources.
+     */
+    @Override
+    public void close() {
+        destroy();
+    }
+
+
+    /**
+     * Best-effort binding to {@code mlock(2)}, {@code munlock(2)} and {@code getpagesize(3)} in the C library, via
+     * JNA.
+     */
+    private static final class NativeMemoryLock {
+        /** Assumed page size if the C library can't report it, which covers the largest common (64 KiB) pages. */
+        private static final int FALLBACK_PAGE_SIZE = 1 << 16;  // bytes
+        private static final CLibrary LIBC = loadLibc();
+
+        private static int pageSize() {
+            if (LIBC != null) {
+                try {
+                    final int pageSize = LIBC.getpagesize();
+                    if (pageSize > 0) {
+                        return pageSize;
+                    }
+                } catch (LinkageError le) {
+                    logger.debug("Unable to get page size -- Assuming {} B pages.", FALLBACK_PAGE_SIZE, le);
+                }
+            }
+            return FALLBACK_PAGE_SIZE;
+        }
+
+        private static boolean lock(@NotNull final ByteBuffer directBuffer, long length) {
+            if (LIBC == null) {
+                return false;
+            }
+            try {
+                if (LIBC.mlock(Native.getDirectBufferPointer(directBuffer), new NativeLong(length)) == 0) {
+                    return true;
+                }
+                logger.debug("Unable to lock secret into RAM (errno {}) -- Holding it unlocked.",
+                        Native.getLastError());
+            } catch (LinkageError le) {
+                logger.debug("Unable to lock secret into RAM -- Holding it unlocked.", le);
+            }
+            return false;
+        }
+
+        private static void unlock(@NotNull final ByteBuffer directBuffer, long length) {
+            LIBC.munlock(Native.getDirectBufferPointer(directBuffer), new NativeLong(length));
+        }
+
+        private static CLibrary loadLibc() {
+            try {
+                return (CLibrary) Native.loadLibrary("c", CLibrary.class);
+            } catch (LinkageError le) {
+                logger.info("mlock(2) is unavailable -- Secrets will be held off-heap, but not locked into RAM.");
+                return null;
+            }
+        }
+
+        private interface CLibrary extends Library {
+            int mlock(Pointer address, NativeLong length);
+            int munlock(Pointer address, NativeLong length);
+            int getpagesize();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package info.willdspann.crypto.util.hashing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import javax.validation.constraints.NotNull;
+
+import org.apache.commons.codec.binary.Hex;
+
+import info.willdspann.crypto.enums.CryptoHashAlgorithm;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+/**
+ * <p>
+ * Digests of a cleartext value computed in a single streaming pass, from which its unsalted hash, any number of its
+ * salted hashes, and its associated seed (see {@code ReproducibleSeedGenerator}) can then be derived without reading
+ * the cleartext again. The cleartext is never held in memory as a whole, so arbitrarily large values (e.g., documents)
+ * can be hashed in constant memory. </p>
+ * <p>
+ * Since each salted hash is of the form {@code sha256( cleartext | salt )}, the SHA-256 digest state after the
+ * cleartext is retained, and cloned to derive each salted hash, where '|' represents concatenation:</p>
+ * <pre>
+ *     unsaltedHash = sha256( cleartext )
+ *     saltedHash   = sha256( cleartext | salt )
+ *     sha512Hash   = sha512( cleartext )
+ * </pre>
+ * <p>
+ * Instances are not thread-safe. </p>
+ */
+public final class CleartextDigests {
+    private final MessageDigest cleartextSha256;
+    private final byte[] unsaltedHash;
+    private final byte[] sha512Hash;
+
+    private CleartextDigests(@NotNull final MessageDigest cleartextSha256, @NotNull final MessageDigest sha512) {
+        this.cleartextSha256 = cleartextSha256;
+        this.unsaltedHash = cloneDigest(cleartextSha256).digest();
+        this.sha512Hash = sha512.digest();
+    }
+
+    /**
+     * @param cleartextBytes cleartext byte array to digest.
+     * @return the digests of the cleartext.
+     */
+    public static CleartextDigests of(@NotNull final byte[] cleartextBytes) {
+        final MessageDigest sha256 = DigestRegistry.newStandardDigest(CryptoHashAlgorithm.SHA_256);
+        final MessageDigest sha512 = DigestRegistry.newStandardDigest(CryptoHashAlgorithm.SHA_512);
+        sha256.update(cleartextBytes);
+        sha512.update(cleartextBytes);
+
+        return new CleartextDigests(sha256, sha512);
+    }
+
+    /**
+     * Digests the given stream until its end, without closing it.
+     *
+     * @param cleartext stream of the cleartext to digest.
+     * @return the digests of the cleartext.
+     * @throws IOException if unable to read from the stream.
+     */
+    public static CleartextDigests of(@NotNull final InputStream cleartext) throws IOException {
+        final MessageDigest sha256 = DigestRegistry.newStandardDigest(CryptoHashAlgorithm.SHA_256);
+        final MessageDigest sha512 = DigestRegistry.newStandardDigest(CryptoHashAlgorithm.SHA_512);
+        DigestFeeder.feed(cleartext, sha256, sha512);
+
+        return new CleartextDigests(sha256, sha512);
+    }
+
+    /**
+     * Digests the given channel until its end, without closing it.
+     *
+     * @param cleartext channel of the cleartext to digest.
+     * @return the digests of the cleartext.
+     * @throws IOException if unable to read from the channel.
+     */
+    public static CleartextDigests of(@NotNull final ReadableByteChannel cleartext) throws IOException {
+        final MessageDigest sha256 = DigestRegistry.newStandardDigest(CryptoHashAlgorithm.SHA_256);
+        final MessageDigest sha512 = DigestRegistry.newStandardDigest(CryptoHashAlgorithm.SHA_512);
+        DigestFeeder.feed(cleartext, sha256, sha512);
+
+        return new CleartextDigests(sha256, sha512);
+    }
+
+    /**
+     * Digests the remaining bytes of the given (heap or direct) buffer, advancing its position to its limit.
+     *
+     * @param cleartext buffer holding the cleartext to digest.
+     * @return the digests of the cleartext.
+     */
+    public static CleartextDigests of(@NotNull final ByteBuffer cleartext) {
+        final MessageDigest sha256 = DigestRegistry.newStandardDigest(CryptoHashAlgorithm.SHA_256);
+        final MessageDigest sha512 = DigestRegistry.newStandardDigest(CryptoHashAlgorithm.SHA_512);
+        DigestFeeder.feed(cleartext, sha256, sha512);
+
+        return new CleartextDigests(sha256, sha512);
+    }
+
+    /**
+     * Digests the contents of the given file, which is memory-mapped a region at a time rather than read.
+     *
+     * @param cleartextFile file holding the cleartext to digest.
+     * @return the digests of the cleartext.
+     * @throws IOException if unable to map the file.
+     */
+    public static CleartextDigests ofFile(@NotNull final Path cleartextFile) throws IOException {
+        final MessageDigest sha256 = DigestRegistry.newStandardDigest(CryptoHashAlgorithm.SHA_256);
+        final MessageDigest sha512 = DigestRegistry.newStandardDigest(CryptoHashAlgorithm.SHA_512);
+        DigestFeeder.feed(cleartextFile, sha256, sha512);
+
+        return new CleartextDigests(sha256, sha512);
+    }
+
+    /**
+     * @return the unsalted hash: {@code sha256( cleartext )}.
+     */
+    public byte[] getUnsaltedHash() {
+        return Arrays.copyOf(unsaltedHash, unsaltedHash.length);
+    }
+
+    public String getUnsaltedHashHex() {
+        return Hex.encodeHexString(unsaltedHash);
+    }
+
+    /**
+     * @return {@code sha512( cleartext )}, from which the cleartext's associated seed is derived.
+     */
+    public byte[] getSha512Hash() {
+        return Arrays.copyOf(sha512Hash, sha512Hash.length);
+    }
+
+    /**
+     * Derives the salted hash of the cleartext for the given salt, {@code sha256( cleartext | salt )}, by resuming
+     * from the retained SHA-256 digest state.
+     *
+     * @param saltBytes salt value to be concatenated with the cleartext prior to hash generation.
+     * @return the salted hash of the cleartext for the given salt.
+     */
+    public SaltedHash saltedHash(@NotNull final byte[] saltBytes) {
+        final MessageDigest digest = cloneDigest(cleartextSha256);
+        digest.update(saltBytes);
+
+        return SaltedHash.wrap(digest.digest(), Arrays.copyOf(saltBytes, saltBytes.length),
+                HashingUtils.DEFAULT_HASH_ALGORITHM);
+    }
+
+    static MessageDigest cloneDigest(@NotNull final MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException cnse) {
+            throw new IllegalStateException(
+                    String.format("Unable to clone %s digest state.", digest.getAlgorithm()), cnse);
+        }
+    }
+}
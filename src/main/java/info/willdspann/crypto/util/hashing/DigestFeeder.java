@@ -0,0 +1,70 @@
+package info.willdspann.crypto.util.hashing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Feeds streamed input into one or more message digests in a single pass, using a fixed-size buffer (or none, for
+ * buffers and memory-mapped files), so that input of any size is digested in constant memory.
+ */
+final class DigestFeeder {
+    static final int BUFFER_SIZE = 8192;
+    /** Size of each memory-mapped region of a file, which keeps the mapped address space bounded. */
+    static final long MAPPED_REGION_SIZE = 64L << 20;
+
+    // Enforce noninstantiability of this utility class.
+    private DigestFeeder() {}
+
+    static void feed(@NotNull final InputStream in, @NotNull final MessageDigest... digests) throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int bytesRead;
+        while ((bytesRead = in.read(buffer)) != -1) {
+            for (MessageDigest digest : digests) {
+                digest.update(buffer, 0, bytesRead);
+            }
+        }
+    }
+
+    static void feed(@NotNull final ReadableByteChannel channel,
+                     @NotNull final MessageDigest... digests) throws IOException
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        while (channel.read(buffer) != -1) {
+            buffer.flip();
+            for (MessageDigest digest : digests) {
+                digest.update(buffer.array(), buffer.arrayOffset(), buffer.limit());
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Feeds the remaining bytes of the given buffer into each digest, and advances its position to its limit.
+     */
+    static void feed(@NotNull final ByteBuffer input, @NotNull final MessageDigest... digests) {
+        for (int i = 0; i < digests.length - 1; ++i) {
+            digests[i].update(input.duplicate());
+        }
+        digests[digests.length - 1].update(input);
+    }
+
+    static void feed(@NotNull final Path file, @NotNull final MessageDigest... digests) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            for (long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+                final MappedByteBuffer region = channel.map(
+                        FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position));
+                feed(region, digests);
+            }
+        }
+    }
+}
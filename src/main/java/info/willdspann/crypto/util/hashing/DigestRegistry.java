@@ -0,0 +1,299 @@
+package info.willdspann.crypto.util.hashing;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import info.willdspann.crypto.enums.CryptoHashAlgorithm;
+
+/**
+ * <p>
+ * Registry of digest factories per {@link CryptoHashAlgorithm}, whose providers are resolved once, when this class is
+ * initialized, rather than being looked up by name on every hash (as {@code MessageDigest.getInstance()} and
+ * {@code DigestUtils} do). New digests are cloned from a prototype of the chosen provider, and
+ * {@link #threadLocalDigest} hands out a digest pooled per thread and algorithm, so small inputs are hashed without any
+ * provider lookup or allocation. </p>
+ * <p>
+ * By default, the first installed JCA provider implementing an algorithm is chosen (i.e., the JDK's, whose SHA-1 and
+ * SHA-2 digests are intrinsified on CPUs with SHA extensions), falling back to an unregistered BouncyCastle provider.
+ * If the system property {@value #SELF_BENCHMARK_PROPERTY} is {@code true}, each candidate provider is instead timed
+ * on short inputs at startup, and the fastest is chosen. </p>
+ */
+public final class DigestRegistry {
+    public static final String SELF_BENCHMARK_PROPERTY = "info.willdspann.crypto.digestRegistry.selfBenchmark";
+    private static final Logger logger = LoggerFactory.getLogger(DigestRegistry.class);
+
+    private static final Provider BOUNCY_CASTLE_PROVIDER = new BouncyCastleProvider();
+    private static final int BENCHMARK_INPUT_LENGTH = 64;  // bytes
+    private static final int BENCHMARK_ITERATIONS = 20_000;
+
+    private static final Map<CryptoHashAlgorithm, DigestFactory> FACTORIES =
+            resolveFactories(Boolean.getBoolean(SELF_BENCHMARK_PROPERTY));
+
+    /** Per-thread digests, indexed by algorithm ordinal, and created on first use. */
+    private static final ThreadLocal<MessageDigest[]> THREAD_LOCAL_DIGESTS =
+            ThreadLocal.withInitial(() -> new MessageDigest[CryptoHashAlgorithm.values().length]);
+
+    // Enforce noninstantiability of this utility class.
+    private DigestRegistry() {}
+
+    /**
+     * Returns whether a provider implementing the given algorithm was found.
+     *
+     * @param hashAlgorithm hash algorithm for which to check.
+     * @return whether digests can be created for the given algorithm.
+     */
+    public static boolean isSupported(@NotNull final CryptoHashAlgorithm hashAlgorithm) {
+        return FACTORIES.containsKey(hashAlgorithm);
+    }
+
+    /**
+     * Returns the name of the provider chosen for the given algorithm.
+     *
+     * @param hashAlgorithm hash algorithm for which to return the provider name.
+     * @return the name of the chosen provider (e.g., "SUN" or "BC").
+     * @throws NoSuchAlgorithmException if no provider implements the algorithm.
+     */
+    public static String getProviderName(@NotNull final CryptoHashAlgorithm hashAlgorithm)
+            throws NoSuchAlgorithmException
+    {
+        return factoryFor(hashAlgorithm).provider.getName();
+    }
+
+    /**
+     * Creates a new digest for the given algorithm, which the caller owns.
+     *
+     * @param hashAlgorithm hash algorithm for which to create a digest.
+     * @return a new digest for the given algorithm.
+     * @throws NoSuchAlgorithmException if no provider implements the algorithm.
+     */
+    public static MessageDigest newDigest(@NotNull final CryptoHashAlgorithm hashAlgorithm)
+            throws NoSuchAlgorithmException
+    {
+        return factoryFor(hashAlgorithm).newDigest();
+    }
+
+    /**
+     * <p>Returns this thread's pooled digest for the given algorithm, reset and ready for use. The digest must only be
+     * used by the calling thread, must not be retained, and must not be used across a call that may itself use the
+     * same algorithm's pooled digest.</p>
+     *
+     * @param hashAlgorithm hash algorithm for which to return a digest.
+     * @return this thread's digest for the given algorithm.
+     * @throws NoSuchAlgorithmException if no provider implements the algorithm.
+     */
+    public static MessageDigest threadLocalDigest(@NotNull final CryptoHashAlgorithm hashAlgorithm)
+            throws NoSuchAlgorithmException
+    {
+        final MessageDigest[] digests = THREAD_LOCAL_DIGESTS.get();
+        MessageDigest digest = digests[hashAlgorithm.ordinal()];
+        if (digest == null) {
+            digest = newDigest(hashAlgorithm);
+            digests[hashAlgorithm.ordinal()] = digest;
+        } else {
+            digest.reset();
+        }
+        return digest;
+    }
+
+    /**
+     * Returns this thread's pooled digest for an algorithm that is always available (e.g., SHA-256 and SHA-512, which
+     * every JDK implements). See {@link #threadLocalDigest}.
+     */
+    static MessageDigest threadLocalStandardDigest(@NotNull final CryptoHashAlgorithm hashAlgorithm) {
+        try {
+            return threadLocalDigest(hashAlgorithm);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    /**
+     * Creates a new digest for an algorithm that is always available (e.g., SHA-256 and SHA-512, which every JDK
+     * implements).
+     */
+    static MessageDigest newStandardDigest(@NotNull final CryptoHashAlgorithm hashAlgorithm) {
+        try {
+            return newDigest(hashAlgorithm);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    private static DigestFactory factoryFor(@NotNull final CryptoHashAlgorithm hashAlgorithm)
+            throws NoSuchAlgorithmException
+    {
+        final DigestFactory factory = FACTORIES.get(hashAlgorithm);
+        if (factory == null) {
+            throw new NoSuchAlgorithmException(
+                    String.format("Unsupported cryptographic hash algorithm: %s", hashAlgorithm.getAlgorithm())
+            );
+        }
+        return factory;
+    }
+
+    private static Map<CryptoHashAlgorithm, DigestFactory> resolveFactories(boolean selfBenchmark) {
+        final Map<CryptoHashAlgorithm, DigestFactory> factories = new EnumMap<>(CryptoHashAlgorithm.class);
+        for (CryptoHashAlgorithm hashAlgorithm : CryptoHashAlgorithm.values()) {
+            final String jcaName = jcaDigestName(hashAlgorithm);
+            if (jcaName == null) {
+                continue;
+            }
+            final List<DigestFactory> candidates = candidateFactories(jcaName);
+            if (candidates.isEmpty()) {
+                continue;
+            }
+
+            DigestFactory chosen = candidates.get(0);
+            if (selfBenchmark && candidates.size() > 1) {
+                long fastestNanos = Long.MAX_VALUE;
+                for (DigestFactory candidate : candidates) {
+                    final long nanos = benchmark(candidate);
+                    if (nanos < fastestNanos) {
+                        fastestNanos = nanos;
+                        chosen = candidate;
+                    }
+                }
+            }
+            logger.debug("Resolved {} digests to provider {}.", hashAlgorithm.getAlgorithm(), chosen.provider.getName());
+            factories.put(hashAlgorithm, chosen);
+        }
+        return factories;
+    }
+
+    /** Returns a factory per installed provider implementing the given digest, followed by BouncyCastle's. */
+    private static List<DigestFactory> candidateFactories(@NotNull final String jcaName) {
+        final List<DigestFactory> candidates = new ArrayList<>();
+        for (Provider provider : Security.getProviders()) {
+            addCandidate(candidates, jcaName, provider);
+        }
+        addCandidate(candidates, jcaName, BOUNCY_CASTLE_PROVIDER);
+
+        return candidates;
+    }
+
+    private static void addCandidate(@NotNull final List<DigestFactory> candidates,
+                                     @NotNull final String jcaName,
+                                     @NotNull final Provider provider)
+    {
+        if (provider.getService("MessageDigest", jcaName) == null) {
+            return;
+        }
+        try {
+            candidates.add(new DigestFactory(MessageDigest.getInstance(jcaName, provider)));
+        } catch (NoSuchAlgorithmException nsae) {
+            logger.debug("Provider {} advertises, but doesn't implement, {}.", provider.getName(), jcaName);
+        }
+    }
+
+    /** Returns the least time in nanoseconds taken to hash a short input repeatedly, over a few timed rounds. */
+    private static long benchmark(@NotNull final DigestFactory factory) {
+        final MessageDigest digest = factory.newDigest();
+        final byte[] input = new byte[BENCHMARK_INPUT_LENGTH];
+        long leastNanos = Long.MAX_VALUE;
+        for (int round = 0; round < 3; ++round) {
+            final long start = System.nanoTime();
+            for (int i = 0; i < BENCHMARK_ITERATIONS; ++i) {
+                digest.update(input);
+                input[0] ^= digest.digest()[0];
+            }
+            leastNanos = Math.min(leastNanos, System.nanoTime() - start);
+        }
+        return leastNanos;
+    }
+
+    /**
+     * Maps an algorithm to its JCA digest name, or {@code null} if neither the JDK nor BouncyCastle implements it
+     * (i.e., KangarooTwelve, MarsupilamiFourteen, MD6 and the original BLAKE). Tiger-128 and Tiger-160 are truncations
+     * of Tiger(-192), and SHAKE128/256 are used at twice their security strength.
+     */
+    private static String jcaDigestName(@NotNull final CryptoHashAlgorithm hashAlgorithm) {
+        switch (hashAlgorithm) {
+            case MD5:
+            case SHA_1:
+            case SHA_224:
+            case SHA_256:
+            case SHA_384:
+            case SHA_512:
+            case SHA_512_224:
+            case SHA_512_256:
+            case SHA3_224:
+            case SHA3_256:
+            case SHA3_384:
+            case SHA3_512:
+            case BLAKE2S_224:
+            case BLAKE2S_256:
+            case BLAKE2B_384:
+            case BLAKE2B_512:
+            case STREEBOG_256:
+            case STREEBOG_512:
+                return hashAlgorithm.getAlgorithm().toUpperCase();
+            case SHAKE_128:
+                return "SHAKE128-256";
+            case SHAKE_256:
+                return "SHAKE256-512";
+            case RIPEMD_128:
+            case RIPEMD_160:
+            case RIPEMD_256:
+            case RIPEMD_320:
+                return hashAlgorithm.getAlgorithm().replace("-", "");
+            case WHIRLPOOL:
+                return "WHIRLPOOL";
+            case TIGER_128:
+            case TIGER_160:
+            case TIGER_192:
+                return "TIGER";
+            default:
+                return null;
+        }
+    }
+
+
+    /**
+     * Creates digests of one provider, by cloning a prototype where the provider supports it, or else by
+     * instantiating it directly from the already-resolved provider.
+     */
+    private static final class DigestFactory {
+        private final MessageDigest prototype;
+        private final Provider provider;
+        private final boolean cloneable;
+
+        private DigestFactory(@NotNull final MessageDigest prototype) {
+            this.prototype = prototype;
+            this.provider = prototype.getProvider();
+            this.cloneable = isCloneable(prototype);
+        }
+
+        private MessageDigest newDigest() {
+            try {
+                if (cloneable) {
+                    return (MessageDigest) prototype.clone();
+                }
+                return MessageDigest.getInstance(prototype.getAlgorithm(), provider);
+            } catch (CloneNotSupportedException | NoSuchAlgorithmException e) {
+                // Unreachable, since the prototype was created from this provider, and cloning was checked.
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static boolean isCloneable(@NotNull final MessageDigest digest) {
+            try {
+                digest.clone();
+                return true;
+            } catch (CloneNotSupportedException cnse) {
+                return false;
+            }
+        }
+    }
+}
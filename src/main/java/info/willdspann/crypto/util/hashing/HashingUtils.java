@@ -1,7 +1,18 @@
 package info.willdspann.crypto.util.hashing;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.DigestException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 import javax.annotation.Nullable;
@@ -9,7 +20,6 @@ import javax.validation.constraints.NotNull;
 
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Hex;
-import org.apache.commons.codec.digest.DigestUtils;
 
 import info.willdspann.crypto.enums.CryptoHashAlgorithm;
 import info.willdspann.crypto.util.MemoryUtils;
@@ -18,6 +28,9 @@ import info.willdspann.crypto.valueobjects.SaltedHash;
 public final class HashingUtils {
     public static final CryptoHashAlgorithm DEFAULT_HASH_ALGORITHM = CryptoHashAlgorithm.SHA_256;
     static final String NULL_STRING_MARKER = "";
+    /** Per-thread scratch buffers for writing salted hashes into buffers without an accessible backing array. */
+    private static final ThreadLocal<byte[]> SALTED_HASH_SCRATCH_BUFFERS =
+            ThreadLocal.withInitial(() -> new byte[DEFAULT_HASH_ALGORITHM.getDigestLength() / 8]);
 
     // Enforce noninstantiability of this utility class.
     private HashingUtils() {}
@@ -33,6 +46,17 @@ public final class HashingUtils {
         return calculateHash(cleartextBytes, hashAlgorithm);
     }
 
+    /**
+     * Calculates the hex. encoded unsalted hash (SHA-256) of the given cleartext bytes, with this thread's pooled
+     * digest, rather than looking up a new one per call.
+     *
+     * @param cleartextBytes cleartext for which to calculate the unsalted hash.
+     * @return the hex. encoded unsalted hash of the cleartext.
+     */
+    public static String unsaltedHashHex(@NotNull final byte[] cleartextBytes) {
+        return calculateHashToHex(cleartextBytes);
+    }
+
     public static String unsaltedHashHex(@Nullable final String cleartext) {
         final byte[] cleartextBytes = Objects.requireNonNullElse(cleartext, NULL_STRING_MARKER)
                 .getBytes(StandardCharsets.UTF_8);
@@ -50,6 +74,65 @@ public final class HashingUtils {
         return calculateHashToHex(cleartextBytes, hashAlgorithm);
     }
 
+    /**
+     * Calculates the unsalted hash (SHA-256) of the cleartext read from the given stream until its end, in constant
+     * memory. The stream is not closed.
+     *
+     * @param cleartext stream of the cleartext for which to calculate the unsalted hash.
+     * @return the unsalted hash of the cleartext.
+     * @throws IOException if unable to read from the stream.
+     */
+    public static byte[] unsaltedHash(@NotNull final InputStream cleartext) throws IOException {
+        final MessageDigest digest = DigestRegistry.newStandardDigest(DEFAULT_HASH_ALGORITHM);
+        DigestFeeder.feed(cleartext, digest);
+
+        return digest.digest();
+    }
+
+    /**
+     * Calculates the unsalted hash (SHA-256) of the cleartext read from the given channel until its end, in constant
+     * memory. The channel is not closed.
+     *
+     * @param cleartext channel of the cleartext for which to calculate the unsalted hash.
+     * @return the unsalted hash of the cleartext.
+     * @throws IOException if unable to read from the channel.
+     */
+    public static byte[] unsaltedHash(@NotNull final ReadableByteChannel cleartext) throws IOException {
+        final MessageDigest digest = DigestRegistry.newStandardDigest(DEFAULT_HASH_ALGORITHM);
+        DigestFeeder.feed(cleartext, digest);
+
+        return digest.digest();
+    }
+
+    /**
+     * Calculates the unsalted hash (SHA-256) of the remaining bytes of the given (heap or direct) buffer, without
+     * copying them to the heap, and advances its position to its limit.
+     *
+     * @param cleartext buffer holding the cleartext for which to calculate the unsalted hash.
+     * @return the unsalted hash of the cleartext.
+     */
+    public static byte[] unsaltedHash(@NotNull final ByteBuffer cleartext) {
+        final MessageDigest digest = DigestRegistry.newStandardDigest(DEFAULT_HASH_ALGORITHM);
+        DigestFeeder.feed(cleartext, digest);
+
+        return digest.digest();
+    }
+
+    /**
+     * Calculates the unsalted hash (SHA-256) of the contents of the given file, which is memory-mapped a region at a
+     * time rather than read onto the heap.
+     *
+     * @param cleartextFile file holding the cleartext for which to calculate the unsalted hash.
+     * @return the unsalted hash of the cleartext.
+     * @throws IOException if unable to map the file.
+     */
+    public static byte[] unsaltedHash(@NotNull final Path cleartextFile) throws IOException {
+        final MessageDigest digest = DigestRegistry.newStandardDigest(DEFAULT_HASH_ALGORITHM);
+        DigestFeeder.feed(cleartextFile, digest);
+
+        return digest.digest();
+    }
+
     /**
      * <p>Generates a salted hash for the given cleartext and salt value.</p>
      * <p>
@@ -64,11 +147,237 @@ public final class HashingUtils {
      * @return a salted hash for the given cleartext and salt value.
      */
     public static SaltedHash saltedHash(@NotNull final byte[] cleartextBytes, @NotNull final byte[] saltBytes) {
-        final byte[] buffer = MemoryUtils.concatenateBuffers(cleartextBytes, saltBytes);
-        final byte[] saltedHash = DigestUtils.sha256(buffer);
-        MemoryUtils.clearBuffer(buffer);
+        final byte[] saltedHash = new byte[saltedHashLength()];
+        saltedHash(cleartextBytes, saltBytes, saltedHash, 0);
+
+        return SaltedHash.wrap(saltedHash, Arrays.copyOf(saltBytes, saltBytes.length), DEFAULT_HASH_ALGORITHM);
+    }
+
+    /**
+     * <p>Generates a salted hash for the given cleartext and salt value, writing it into the given output buffer at
+     * the given offset, without allocating. The cleartext and salt are fed directly into a reused per-thread digest,
+     * rather than being concatenated first, as follows.</p>
+     * <pre>
+     *     sha256( cleartext | salt )
+     * </pre>
+     *
+     * @param cleartextBytes cleartext byte array for which to generate a salted hash.
+     * @param saltBytes salt value as a byte array to be concatenated with the cleartext prior to hash generation.
+     * @param output buffer into which to write the salted hash.
+     * @param offset offset in {@code output} at which to write the salted hash.
+     * @return the number of bytes written to {@code output} (i.e., {@link #saltedHashLength()}).
+     * @throws IllegalArgumentException if {@code output} has less than {@link #saltedHashLength()} bytes of space
+     *   after {@code offset}.
+     */
+    public static int saltedHash(@NotNull final byte[] cleartextBytes,
+                                 @NotNull final byte[] saltBytes,
+                                 @NotNull final byte[] output,
+                                 int offset)
+    {
+        final MessageDigest digest = DigestRegistry.threadLocalStandardDigest(DEFAULT_HASH_ALGORITHM);
+        digest.update(cleartextBytes);
+        digest.update(saltBytes);
+        try {
+            return digest.digest(output, offset, output.length - offset);
+        } catch (DigestException de) {
+            digest.reset();
+            throw new IllegalArgumentException(
+                    String.format("Insufficient space in output buffer for a %d-byte salted hash at offset %d.",
+                            saltedHashLength(), offset),
+                    de
+            );
+        }
+    }
+
+    /**
+     * <p>Generates a salted hash for the given cleartext and salt value, writing it into the given output buffer at
+     * its current position and advancing the position past it, without allocating.</p>
+     * <pre>
+     *     sha256( cleartext | salt )
+     * </pre>
+     *
+     * @param cleartextBytes cleartext byte array for which to generate a salted hash.
+     * @param saltBytes salt value as a byte array to be concatenated with the cleartext prior to hash generation.
+     * @param output buffer (heap or direct) into which to write the salted hash.
+     * @return the number of bytes written to {@code output} (i.e., {@link #saltedHashLength()}).
+     * @throws java.nio.BufferOverflowException if {@code output} has less than {@link #saltedHashLength()} bytes
+     *   remaining.
+     */
+    public static int saltedHash(@NotNull final byte[] cleartextBytes,
+                                 @NotNull final byte[] saltBytes,
+                                 @NotNull final ByteBuffer output)
+    {
+        final int hashLength = saltedHashLength();
+        if (output.remaining() < hashLength) {
+            throw new BufferOverflowException();
+        }
+
+        if (output.hasArray()) {
+            saltedHash(cleartextBytes, saltBytes, output.array(), output.arrayOffset() + output.position());
+            output.position(output.position() + hashLength);
+        } else {
+            final byte[] scratch = SALTED_HASH_SCRATCH_BUFFERS.get();
+            saltedHash(cleartextBytes, saltBytes, scratch, 0);
+            output.put(scratch, 0, hashLength);
+            MemoryUtils.clearBuffer(scratch);
+        }
+        return hashLength;
+    }
 
-        return new SaltedHash(saltedHash, saltBytes);
+    /**
+     * <p>Generates a salted hash for the cleartext read from the given stream until its end and the given salt value,
+     * in constant memory. The stream is not closed. To derive several salted hashes (or the unsalted hash too) from a
+     * single pass over the cleartext, use {@link CleartextDigests} instead.</p>
+     * <pre>
+     *     sha256( cleartext | salt )
+     * </pre>
+     *
+     * @param cleartext stream of the cleartext for which to generate a salted hash.
+     * @param saltBytes salt value as a byte array to be concatenated with the cleartext prior to hash generation.
+     * @return a salted hash for the given cleartext and salt value.
+     * @throws IOException if unable to read from the stream.
+     */
+    public static SaltedHash saltedHash(@NotNull final InputStream cleartext,
+                                        @NotNull final byte[] saltBytes) throws IOException
+    {
+        final MessageDigest digest = DigestRegistry.newStandardDigest(DEFAULT_HASH_ALGORITHM);
+        DigestFeeder.feed(cleartext, digest);
+
+        return finishSaltedHash(digest, saltBytes);
+    }
+
+    /**
+     * <p>Generates a salted hash for the cleartext read from the given channel until its end and the given salt value,
+     * in constant memory. The channel is not closed.</p>
+     * <pre>
+     *     sha256( cleartext | salt )
+     * </pre>
+     *
+     * @param cleartext channel of the cleartext for which to generate a salted hash.
+     * @param saltBytes salt value as a byte array to be concatenated with the cleartext prior to hash generation.
+     * @return a salted hash for the given cleartext and salt value.
+     * @throws IOException if unable to read from the channel.
+     */
+    public static SaltedHash saltedHash(@NotNull final ReadableByteChannel cleartext,
+                                        @NotNull final byte[] saltBytes) throws IOException
+    {
+        final MessageDigest digest = DigestRegistry.newStandardDigest(DEFAULT_HASH_ALGORITHM);
+        DigestFeeder.feed(cleartext, digest);
+
+        return finishSaltedHash(digest, saltBytes);
+    }
+
+    /**
+     * <p>Generates a salted hash for the remaining bytes of the given (heap or direct) buffer and the given salt
+     * value, without copying them to the heap, and advances the buffer's position to its limit.</p>
+     * <pre>
+     *     sha256( cleartext | salt )
+     * </pre>
+     *
+     * @param cleartext buffer holding the cleartext for which to generate a salted hash.
+     * @param saltBytes salt value as a byte array to be concatenated with the cleartext prior to hash generation.
+     * @return a salted hash for the given cleartext and salt value.
+     */
+    public static SaltedHash saltedHash(@NotNull final ByteBuffer cleartext, @NotNull final byte[] saltBytes) {
+        final MessageDigest digest = DigestRegistry.newStandardDigest(DEFAULT_HASH_ALGORITHM);
+        DigestFeeder.feed(cleartext, digest);
+
+        return finishSaltedHash(digest, saltBytes);
+    }
+
+    /**
+     * <p>Generates a salted hash for the contents of the given file and the given salt value. The file is
+     * memory-mapped a region at a time rather than read onto the heap.</p>
+     * <pre>
+     *     sha256( cleartext | salt )
+     * </pre>
+     *
+     * @param cleartextFile file holding the cleartext for which to generate a salted hash.
+     * @param saltBytes salt value as a byte array to be concatenated with the cleartext prior to hash generation.
+     * @return a salted hash for the given cleartext and salt value.
+     * @throws IOException if unable to map the file.
+     */
+    public static SaltedHash saltedHash(@NotNull final Path cleartextFile,
+                                        @NotNull final byte[] saltBytes) throws IOException
+    {
+        final MessageDigest digest = DigestRegistry.newStandardDigest(DEFAULT_HASH_ALGORITHM);
+        DigestFeeder.feed(cleartextFile, digest);
+
+        return finishSaltedHash(digest, saltBytes);
+    }
+
+    /**
+     * <p>Generates the salted hash of the given cleartext with each of the given salt values (i.e., the same as calling
+     * {@link #saltedHash(byte[], byte[])} per salt). If {@link MultiBufferSha256#isEnabled()}, the salted hashes are
+     * generated several at a time by {@link MultiBufferSha256}. Otherwise, the cleartext is absorbed just once, into a
+     * {@link SaltedHashMidstate}, from which each salted hash is derived.</p>
+     * <pre>
+     *     sha256( cleartext | salt_i )
+     * </pre>
+     *
+     * @param cleartextBytes cleartext byte array for which to generate salted hashes.
+     * @param saltValues salt values, each to be concatenated with the cleartext prior to hash generation.
+     * @return the salted hash for each salt value, in the same order.
+     */
+    public static List<SaltedHash> saltedHashes(@NotNull final byte[] cleartextBytes,
+                                                @NotNull final List<byte[]> saltValues)
+    {
+        final List<SaltedHash> saltedHashes = new ArrayList<>(saltValues.size());
+        if (MultiBufferSha256.isEnabled()) {
+            final byte[][] hashes = MultiBufferSha256.digest(cleartextBytes, saltValues.toArray(new byte[0][]));
+            for (int i = 0; i < hashes.length; ++i) {
+                final byte[] saltBytes = saltValues.get(i);
+                saltedHashes.add(SaltedHash.wrap(
+                        hashes[i], Arrays.copyOf(saltBytes, saltBytes.length), DEFAULT_HASH_ALGORITHM));
+            }
+        } else {
+            final SaltedHashMidstate midstate = SaltedHashMidstate.of(cleartextBytes);
+            try {
+                for (byte[] saltBytes : saltValues) {
+                    saltedHashes.add(midstate.saltedHash(saltBytes));
+                }
+            } finally {
+                midstate.destroy();
+            }
+        }
+        return saltedHashes;
+    }
+
+    /**
+     * <p>Generates a salted hash for the given cleartext and salt value, using the given hash algorithm, which is
+     * recorded on the returned salted hash.</p>
+     * <pre>
+     *     hash( cleartext | salt )
+     * </pre>
+     *
+     * @param cleartextBytes cleartext byte array for which to generate a salted hash.
+     * @param saltBytes salt value as a byte array to be concatenated with the cleartext prior to hash generation.
+     * @param hashAlgorithm hash algorithm with which to generate the salted hash.
+     * @return a salted hash for the given cleartext and salt value.
+     * @throws NoSuchAlgorithmException if the given hash algorithm is not supported.
+     */
+    public static SaltedHash saltedHash(
+            @NotNull final byte[] cleartextBytes,
+            @NotNull final byte[] saltBytes,
+            @NotNull final CryptoHashAlgorithm hashAlgorithm) throws NoSuchAlgorithmException
+    {
+        if (hashAlgorithm == DEFAULT_HASH_ALGORITHM) {
+            return saltedHash(cleartextBytes, saltBytes);
+        }
+        final MessageDigest digest = DigestRegistry.threadLocalDigest(hashAlgorithm);
+        digest.update(cleartextBytes);
+        digest.update(saltBytes);
+
+        return SaltedHash.wrap(
+                finishHash(digest, hashAlgorithm), Arrays.copyOf(saltBytes, saltBytes.length), hashAlgorithm);
+    }
+
+    /**
+     * Returns the length in bytes of the salted hashes generated by this class.
+     * @return the length in bytes of a salted hash.
+     */
+    public static int saltedHashLength() {
+        return DEFAULT_HASH_ALGORITHM.getDigestLength() / 8;
     }
 
     /**
@@ -94,42 +403,56 @@ public final class HashingUtils {
         return saltedHash(cleartextBytes, saltBytes);
     }
 
-    /*
-     * TODO: Add support for the SHAKE-128/256 (SHA-3) arbitrary-length, RIPEMD-128/160/256/320, BLAKE2s-224/256,
-     *   BLAKE2b-384/512 and Whirlpool hash algorithms.
+    /**
+     * Returns the length in bytes of the hashes calculated with the given algorithm, which for arbitrary-length
+     * (SHAKE) algorithms is twice their security strength (i.e., 32 B for SHAKE128 and 64 B for SHAKE256).
+     *
+     * @param hashAlgorithm hash algorithm for which to return the hash length.
+     * @return the length in bytes of a hash calculated with the given algorithm.
      */
+    public static int hashLength(@NotNull final CryptoHashAlgorithm hashAlgorithm) {
+        switch (hashAlgorithm) {
+            case SHAKE_128:
+                return 32;
+            case SHAKE_256:
+                return 64;
+            default:
+                return hashAlgorithm.getDigestLength() / 8;
+        }
+    }
+
     private static byte[] calculateHash(
             @NotNull final byte[] cleartextBytes,
             @NotNull final CryptoHashAlgorithm hashAlgorithm) throws NoSuchAlgorithmException
     {
-        switch (hashAlgorithm) {
-            case MD5:
-                return DigestUtils.md5(cleartextBytes);
-            case SHA_1:
-                return DigestUtils.sha1(cleartextBytes);
-            case SHA_256:
-                return DigestUtils.sha256(cleartextBytes);
-            case SHA_384:
-                return DigestUtils.sha384(cleartextBytes);
-            case SHA_512:
-                return DigestUtils.sha512(cleartextBytes);
-            case SHA3_224:
-                return DigestUtils.sha3_224(cleartextBytes);
-            case SHA3_256:
-                return DigestUtils.sha3_256(cleartextBytes);
-            case SHA3_384:
-                return DigestUtils.sha3_384(cleartextBytes);
-            case SHA3_512:
-                return DigestUtils.sha3_512(cleartextBytes);
-            default:
-                throw new NoSuchAlgorithmException(
-                        String.format("Unsupported cryptographic hash algorithm: %s", hashAlgorithm.getAlgorithm())
-                );
-        }
+        final MessageDigest digest = DigestRegistry.threadLocalDigest(hashAlgorithm);
+        digest.update(cleartextBytes);
+
+        return finishHash(digest, hashAlgorithm);
+    }
+
+    /**
+     * Completes the given digest, truncating its output to the algorithm's hash length where needed (e.g., Tiger-128).
+     */
+    static byte[] finishHash(@NotNull final MessageDigest digest,
+                             @NotNull final CryptoHashAlgorithm hashAlgorithm)
+    {
+        final byte[] hash = digest.digest();
+        final int hashLength = hashLength(hashAlgorithm);
+
+        return (hash.length == hashLength) ? hash : Arrays.copyOf(hash, hashLength);
+    }
+
+    private static SaltedHash finishSaltedHash(@NotNull final MessageDigest cleartextDigest,
+                                               @NotNull final byte[] saltBytes)
+    {
+        cleartextDigest.update(saltBytes);
+        return SaltedHash.wrap(
+                cleartextDigest.digest(), Arrays.copyOf(saltBytes, saltBytes.length), DEFAULT_HASH_ALGORITHM);
     }
 
     private static byte[] calculateHash(@NotNull final byte[] cleartextBytes) {
-        return DigestUtils.sha256(cleartextBytes);
+        return DigestRegistry.threadLocalStandardDigest(DEFAULT_HASH_ALGORITHM).digest(cleartextBytes);
     }
 
     private static String calculateHashToHex(
@@ -141,6 +464,6 @@ public final class HashingUtils {
     }
 
     private static String calculateHashToHex(@NotNull final byte[] cleartextBytes) {
-        return DigestUtils.sha256Hex(cleartextBytes);
+        return Hex.encodeHexString(calculateHash(cleartextBytes));
     }
 }
@@ -0,0 +1,273 @@
+package info.willdspann.crypto.util.hashing;
+
+import java.util.Arrays;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * <p>
+ * Multi-buffer SHA-256, which hashes up to {@value #LANES} independent messages at once, one per lane. The state and
+ * message schedule of every lane are held in structure-of-arrays form (i.e., word {@code t} of lane {@code l} at index
+ * {@code t * LANES + l}), and every step of the compression function is a loop over the lanes, which the JIT compiler
+ * can unroll and auto-vectorize. This suits batches of short messages, such as the first N salted hashes of one
+ * cleartext, where a single-message digest can't overlap the compression of one message with that of the next. </p>
+ * <p>
+ * Messages of different lengths may share a batch, in which case a lane whose message has no more blocks is masked
+ * out of the state update. The digests are exactly those of {@code MessageDigest.getInstance("SHA-256")}. </p>
+ * <p>
+ * Whether this engine outperforms the JDK's SHA-256 depends on the CPU, since the JDK's is intrinsified (e.g., with
+ * SHA extensions), so {@link HashingUtils#saltedHashes} only uses it if {@link #isEnabled()}, i.e. if the system
+ * property {@value #ENABLED_PROPERTY} is {@code true}. </p>
+ */
+public final class MultiBufferSha256 {
+    public static final String ENABLED_PROPERTY = "info.willdspann.crypto.multiBufferSha256";
+    public static final int LANES = 8;
+    public static final int DIGEST_LENGTH = 32;  // bytes
+
+    private static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+    private static final int BLOCK_LENGTH = 64;  // bytes
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final int[] H0 = {
+            0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+    private static final int[] K = {
+            0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+            0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+            0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+            0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+            0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+            0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    // Enforce noninstantiability of this utility class.
+    private MultiBufferSha256() {}
+
+    /**
+     * Returns whether {@link HashingUtils#saltedHashes} should use this engine, per the system property
+     * {@value #ENABLED_PROPERTY}.
+     * @return whether multi-buffer SHA-256 is enabled.
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Calculates the SHA-256 digest of each of the given messages.
+     *
+     * @param messages messages to digest.
+     * @return the (32 B) digest of each message, in the same order.
+     */
+    public static byte[][] digest(@NotNull final byte[][] messages) {
+        final byte[][] suffixes = new byte[messages.length][];
+        Arrays.fill(suffixes, EMPTY);
+
+        return digest(messages, suffixes);
+    }
+
+    /**
+     * <p>Calculates the SHA-256 digest of the given prefix concatenated with each of the given suffixes, without
+     * concatenating them in memory first, as follows (e.g., with a cleartext prefix and salt suffixes):</p>
+     * <pre>
+     *     sha256( prefix | suffix_i )
+     * </pre>
+     *
+     * @param prefix message prefix common to every message.
+     * @param suffixes message suffix of each message.
+     * @return the (32 B) digest of each message, in the same order as the suffixes.
+     */
+    public static byte[][] digest(@NotNull final byte[] prefix, @NotNull final byte[][] suffixes) {
+        final byte[][] prefixes = new byte[suffixes.length][];
+        Arrays.fill(prefixes, prefix);
+
+        return digest(prefixes, suffixes);
+    }
+
+    private static byte[][] digest(@NotNull final byte[][] prefixes, @NotNull final byte[][] suffixes) {
+        final byte[][] digests = new byte[prefixes.length][];
+        final LaneState lanes = new LaneState();
+        for (int from = 0; from < prefixes.length; from += LANES) {
+            lanes.digestGroup(prefixes, suffixes, from, Math.min(LANES, prefixes.length - from), digests);
+        }
+        lanes.wipe();
+
+        return digests;
+    }
+
+    private static int blockCount(long messageLength) {
+        // Message, then the 0x80 pad byte, then the 8-byte bit length, rounded up to whole blocks.
+        return (int) ((messageLength + 9 + BLOCK_LENGTH - 1) / BLOCK_LENGTH);
+    }
+
+
+    /** Structure-of-arrays state and scratch space for one group of lanes, reused across groups. */
+    private static final class LaneState {
+        private final int[] state = new int[8 * LANES];
+        private final int[] schedule = new int[64 * LANES];
+        private final int[] a = new int[LANES];
+        private final int[] b = new int[LANES];
+        private final int[] c = new int[LANES];
+        private final int[] d = new int[LANES];
+        private final int[] e = new int[LANES];
+        private final int[] f = new int[LANES];
+        private final int[] g = new int[LANES];
+        private final int[] h = new int[LANES];
+        private final int[] blockCounts = new int[LANES];
+        private final byte[] block = new byte[BLOCK_LENGTH];
+
+        private void digestGroup(@NotNull final byte[][] prefixes,
+                                 @NotNull final byte[][] suffixes,
+                                 int from,
+                                 int count,
+                                 @NotNull final byte[][] digests)
+        {
+            int maxBlocks = 0;
+            for (int l = 0; l < LANES; ++l) {
+                blockCounts[l] = (l < count)
+                        ? blockCount((long) prefixes[from + l].length + suffixes[from + l].length)
+                        : 0;
+                maxBlocks = Math.max(maxBlocks, blockCounts[l]);
+                for (int i = 0; i < 8; ++i) {
+                    state[i * LANES + l] = H0[i];
+                }
+            }
+
+            for (int blockIndex = 0; blockIndex < maxBlocks; ++blockIndex) {
+                for (int l = 0; l < LANES; ++l) {
+                    if (blockIndex < blockCounts[l]) {
+                        loadBlock(prefixes[from + l], suffixes[from + l], blockIndex, blockCounts[l], l);
+                    } else {
+                        for (int t = 0; t < 16; ++t) {
+                            schedule[t * LANES + l] = 0;
+                        }
+                    }
+                }
+                compress(blockIndex);
+            }
+
+            for (int l = 0; l < count; ++l) {
+                final byte[] digest = new byte[DIGEST_LENGTH];
+                for (int i = 0; i < 8; ++i) {
+                    final int word = state[i * LANES + l];
+                    digest[4 * i] = (byte) (word >>> 24);
+                    digest[4 * i + 1] = (byte) (word >>> 16);
+                    digest[4 * i + 2] = (byte) (word >>> 8);
+                    digest[4 * i + 3] = (byte) word;
+                }
+                digests[from + l] = digest;
+            }
+        }
+
+        /** Loads block {@code blockIndex} of the padded message {@code prefix | suffix} into lane {@code l}. */
+        private void loadBlock(@NotNull final byte[] prefix,
+                               @NotNull final byte[] suffix,
+                               int blockIndex,
+                               int blockCount,
+                               int l)
+        {
+            final long messageLength = (long) prefix.length + suffix.length;
+            final int offset = blockIndex * BLOCK_LENGTH;
+
+            Arrays.fill(block, (byte) 0);
+            if (offset < prefix.length) {
+                System.arraycopy(prefix, offset, block, 0, Math.min(BLOCK_LENGTH, prefix.length - offset));
+            }
+            final int suffixStart = Math.max(offset, prefix.length);
+            final int suffixEnd = (int) Math.min(offset + BLOCK_LENGTH, messageLength);
+            if (suffixStart < suffixEnd) {
+                System.arraycopy(suffix, suffixStart - prefix.length, block, suffixStart - offset,
+                        suffixEnd - suffixStart);
+            }
+            final long remaining = messageLength - offset;
+            if (remaining >= 0 && remaining < BLOCK_LENGTH) {
+                block[(int) remaining] = (byte) 0x80;
+            }
+            if (blockIndex == blockCount - 1) {
+                final long bitLength = messageLength * 8;
+                for (int i = 0; i < 8; ++i) {
+                    block[BLOCK_LENGTH - 1 - i] = (byte) (bitLength >>> (8 * i));
+                }
+            }
+
+            for (int t = 0; t < 16; ++t) {
+                schedule[t * LANES + l] = ((block[4 * t] & 0xFF) << 24)
+                        | ((block[4 * t + 1] & 0xFF) << 16)
+                        | ((block[4 * t + 2] & 0xFF) << 8)
+                        | (block[4 * t + 3] & 0xFF);
+            }
+        }
+
+        /** Runs the compression function over every lane, then adds it into the state of each still-active lane. */
+        private void compress(int blockIndex) {
+            for (int t = 16; t < 64; ++t) {
+                final int base = t * LANES;
+                for (int l = 0; l < LANES; ++l) {
+                    final int w2 = schedule[base - 2 * LANES + l];
+                    final int w15 = schedule[base - 15 * LANES + l];
+                    final int s1 = Integer.rotateRight(w2, 17) ^ Integer.rotateRight(w2, 19) ^ (w2 >>> 10);
+                    final int s0 = Integer.rotateRight(w15, 7) ^ Integer.rotateRight(w15, 18) ^ (w15 >>> 3);
+                    schedule[base + l] = s1 + schedule[base - 7 * LANES + l] + s0 + schedule[base - 16 * LANES + l];
+                }
+            }
+
+            System.arraycopy(state, 0, a, 0, LANES);
+            System.arraycopy(state, LANES, b, 0, LANES);
+            System.arraycopy(state, 2 * LANES, c, 0, LANES);
+            System.arraycopy(state, 3 * LANES, d, 0, LANES);
+            System.arraycopy(state, 4 * LANES, e, 0, LANES);
+            System.arraycopy(state, 5 * LANES, f, 0, LANES);
+            System.arraycopy(state, 6 * LANES, g, 0, LANES);
+            System.arraycopy(state, 7 * LANES, h, 0, LANES);
+
+            for (int t = 0; t < 64; ++t) {
+                final int k = K[t];
+                final int base = t * LANES;
+                for (int l = 0; l < LANES; ++l) {
+                    final int el = e[l];
+                    final int al = a[l];
+                    final int sigma1 = Integer.rotateRight(el, 6) ^ Integer.rotateRight(el, 11)
+                            ^ Integer.rotateRight(el, 25);
+                    final int ch = (el & f[l]) ^ (~el & g[l]);
+                    final int t1 = h[l] + sigma1 + ch + k + schedule[base + l];
+                    final int sigma0 = Integer.rotateRight(al, 2) ^ Integer.rotateRight(al, 13)
+                            ^ Integer.rotateRight(al, 22);
+                    final int maj = (al & b[l]) ^ (al & c[l]) ^ (b[l] & c[l]);
+
+                    h[l] = g[l];
+                    g[l] = f[l];
+                    f[l] = el;
+                    e[l] = d[l] + t1;
+                    d[l] = c[l];
+                    c[l] = b[l];
+                    b[l] = al;
+                    a[l] = t1 + sigma0 + maj;
+                }
+            }
+
+            for (int l = 0; l < LANES; ++l) {
+                if (blockIndex < blockCounts[l]) {
+                    state[l] += a[l];
+                    state[LANES + l] += b[l];
+                    state[2 * LANES + l] += c[l];
+                    state[3 * LANES + l] += d[l];
+                    state[4 * LANES + l] += e[l];
+                    state[5 * LANES + l] += f[l];
+                    state[6 * LANES + l] += g[l];
+                    state[7 * LANES + l] += h[l];
+                }
+            }
+        }
+
+        /** Clears every trace of the messages (e.g., sensitive cleartexts) from the scratch space. */
+        private void wipe() {
+            Arrays.fill(state, 0);
+            Arrays.fill(schedule, 0);
+            for (int[] workingVariable : new int[][] { a, b, c, d, e, f, g, h }) {
+                Arrays.fill(workingVariable, 0);
+            }
+            Arrays.fill(block, (byte) 0);
+        }
+    }
+}
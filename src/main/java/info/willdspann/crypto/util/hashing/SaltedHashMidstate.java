@@ -0,0 +1,115 @@
+package info.willdspann.crypto.util.hashing;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import javax.security.auth.Destroyable;
+import javax.validation.constraints.NotNull;
+
+import info.willdspann.crypto.enums.CryptoHashAlgorithm;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+/**
+ * <p>
+ * Digest state (midstate) after absorbing a cleartext value, from which any number of its salted hashes are derived
+ * by cloning the midstate and absorbing only the salt, where '|' represents concatenation:</p>
+ * <pre>
+ *     saltedHash_i = hash( cleartext | salt_i )
+ * </pre>
+ * <p>
+ * Every full block of the cleartext is thus compressed once, rather than once per salt, which saves most of the work
+ * for long cleartexts (e.g., addresses and free-text fields) with high usage counts. Since the midstate is derived
+ * from the sensitive cleartext, it is wiped by {@link #destroy()}, after which no more salted hashes may be derived.
+ * </p>
+ * <p>
+ * Note that the midstate is an ordinary on-heap {@link MessageDigest}, which buffers the last
+ * {@code length mod blockSize} cleartext bytes until more input arrives, and (for SHA-2) keeps the message schedule of
+ * the last block it compressed. For short values (e.g., IDs, dates and SSNs), that is the entire cleartext, held on the
+ * heap for the midstate's lifetime, where the garbage collector may copy it before {@link #destroy()} wipes it. Keep
+ * midstates short-lived, and destroy them as soon as their salted hashes have been derived. </p>
+ * <p>
+ * {@link #saltedHash(byte[])} may be called concurrently, but not concurrently with {@link #destroy()}. </p>
+ */
+public final class SaltedHashMidstate implements Destroyable {
+    private final MessageDigest midstate;
+    private final CryptoHashAlgorithm hashAlgorithm;
+    private volatile boolean destroyed = false;
+
+    private SaltedHashMidstate(@NotNull final MessageDigest midstate,
+                               @NotNull final CryptoHashAlgorithm hashAlgorithm)
+    {
+        this.midstate = midstate;
+        this.hashAlgorithm = hashAlgorithm;
+    }
+
+    /**
+     * Absorbs the given cleartext into a SHA-256 midstate.
+     *
+     * @param cleartextBytes cleartext value for which to derive salted hashes.
+     * @return the SHA-256 midstate of the cleartext.
+     */
+    public static SaltedHashMidstate of(@NotNull final byte[] cleartextBytes) {
+        final MessageDigest digest = DigestRegistry.newStandardDigest(HashingUtils.DEFAULT_HASH_ALGORITHM);
+        digest.update(cleartextBytes);
+
+        return new SaltedHashMidstate(digest, HashingUtils.DEFAULT_HASH_ALGORITHM);
+    }
+
+    /**
+     * Absorbs the given cleartext into a midstate of the given hash algorithm.
+     *
+     * @param cleartextBytes cleartext value for which to derive salted hashes.
+     * @param hashAlgorithm hash algorithm with which to derive salted hashes.
+     * @return the midstate of the cleartext.
+     * @throws NoSuchAlgorithmException if the given hash algorithm is not supported.
+     */
+    public static SaltedHashMidstate of(@NotNull final byte[] cleartextBytes,
+                                        @NotNull final CryptoHashAlgorithm hashAlgorithm)
+            throws NoSuchAlgorithmException
+    {
+        final MessageDigest digest = DigestRegistry.newDigest(hashAlgorithm);
+        digest.update(cleartextBytes);
+
+        return new SaltedHashMidstate(digest, hashAlgorithm);
+    }
+
+    public CryptoHashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    /**
+     * Derives the salted hash of the cleartext for the given salt, {@code hash( cleartext | salt )}.
+     *
+     * @param saltBytes salt value to be concatenated with the cleartext prior to hash generation.
+     * @return the salted hash of the cleartext for the given salt.
+     * @throws IllegalStateException if this midstate has been wiped with {@link #destroy()}.
+     */
+    public SaltedHash saltedHash(@NotNull final byte[] saltBytes) {
+        if (destroyed) {
+            throw new IllegalStateException(
+                    "Unable to create salted hash -- Cleartext midstate has been cleared with destroy()."
+            );
+        }
+        final MessageDigest digest = CleartextDigests.cloneDigest(midstate);
+        digest.update(saltBytes);
+
+        return SaltedHash.wrap(HashingUtils.finishHash(digest, hashAlgorithm),
+                Arrays.copyOf(saltBytes, saltBytes.length), hashAlgorithm);
+    }
+
+    /**
+     * Wipes the midstate, by resetting the digest, which overwrites both its chaining state and any buffered
+     * cleartext bytes.
+     */
+    @Override
+    public void destroy() {
+        this.destroyed = true;
+        midstate.reset();
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return destroyed;
+    }
+}
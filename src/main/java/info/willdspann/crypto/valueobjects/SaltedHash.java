@@ -12,9 +12,16 @@ import info.willdspann.crypto.enums.CryptoHashAlgorithm;
 
 /**
  * Value object representing a salted hash and its associated salt value.
+ * <p>
+ * Its hex. encoded form (see {@link #toString()}) is {@code salt:saltedHash} for SHA-256, the default algorithm, as
+ * persisted before the algorithm became selectable, and {@code algorithmTag:salt:saltedHash} for any other
+ * algorithm, so that the same salt and digest bytes under two algorithms never share a persisted form. For a 16-byte
+ * salt, this is at most {@value #MAX_STRING_LENGTH} characters (for a 512-bit digest). </p>
  */
 public final class SaltedHash {
     public static final CryptoHashAlgorithm DEFAULT_HASH_ALGORITHM = CryptoHashAlgorithm.SHA_256;
+    /** Length of the hex. encoded form of a 16-byte salt and a 512-bit digest (the longest fixed-length digest). */
+    public static final int MAX_STRING_LENGTH = 2 + 1 + 2 * 16 + 1 + 2 * (512 / 8);
 
     private final byte[] hash;
     private final byte[] salt;
@@ -44,6 +51,31 @@ public final class SaltedHash {
         this(saltedHashHex, saltHex, DEFAULT_HASH_ALGORITHM);
     }
 
+    private SaltedHash(@NotNull final CryptoHashAlgorithm hashAlgorithm,
+                       @NotNull final byte[] saltedHashBytes,
+                       @NotNull final byte[] saltBytes)
+    {
+        this.hash = saltedHashBytes;
+        this.salt = saltBytes;
+        this.hashAlgorithm = hashAlgorithm;
+    }
+
+    /**
+     * Creates a salted hash that takes ownership of the given byte arrays, rather than making defensive copies of
+     * them. The caller must not modify either array afterwards.
+     *
+     * @param saltedHashBytes salted hash bytes, to be owned by the returned instance.
+     * @param saltBytes salt bytes, to be owned by the returned instance.
+     * @param hashAlgorithm hash algorithm used to generate the salted hash.
+     * @return a salted hash backed by the given byte arrays.
+     */
+    public static SaltedHash wrap(@NotNull final byte[] saltedHashBytes,
+                                  @NotNull final byte[] saltBytes,
+                                  @NotNull final CryptoHashAlgorithm hashAlgorithm)
+    {
+        return new SaltedHash(hashAlgorithm, saltedHashBytes, saltBytes);
+    }
+
     public byte[] getSaltedHash() {
         return Arrays.copyOf(hash, hash.length);
     }
@@ -64,6 +96,119 @@ public final class SaltedHash {
         return hashAlgorithm;
     }
 
+    /**
+     * <p>Returns the compact binary form of this salted hash, where '|' represents concatenation.</p>
+     * <pre>
+     *     algorithmTag (1 B) | salt | saltedHash
+     * </pre>
+     * <p>For a 16-byte salt and SHA-256 this is 49 bytes, versus the 97 characters of the hex. encoded
+     * {@link #toString()} form.</p>
+     *
+     * @return the compact binary form of this salted hash.
+     */
+    public byte[] toBinary() {
+        final byte[] binary = new byte[1 + salt.length + hash.length];
+        binary[0] = (byte) hashAlgorithm.getTag();
+        System.arraycopy(salt, 0, binary, 1, salt.length);
+        System.arraycopy(hash, 0, binary, 1 + salt.length, hash.length);
+
+        return binary;
+    }
+
+    /**
+     * Parses a salted hash from its compact binary form (see {@link #toBinary()}). The salt length is inferred from
+     * the algorithm's digest length, so the algorithm must have a fixed-length digest.
+     *
+     * @param binary compact binary form of a salted hash.
+     * @return the salted hash represented by the given binary form.
+     * @throws IllegalArgumentException if the binary form is malformed, or its algorithm has no fixed digest length.
+     */
+    public static SaltedHash fromBinary(@NotNull final byte[] binary) {
+        if (binary.length < 1) {
+            throw new IllegalArgumentException("Binary salted hash is empty.");
+        }
+        final CryptoHashAlgorithm hashAlgorithm = CryptoHashAlgorithm.fromTag(binary[0] & 0xFF);
+        if (hashAlgorithm.getDigestLength() == CryptoHashAlgorithm.CUSTOM_LENGTH) {
+            throw new IllegalArgumentException(String.format(
+                    "Unable to parse binary salted hash with variable-length algorithm: %s",
+                    hashAlgorithm.getAlgorithm()));
+        }
+        final int hashLength = hashAlgorithm.getDigestLength() / 8;
+        final int saltLength = binary.length - 1 - hashLength;
+        if (saltLength < 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Binary salted hash is too short (%d B) for a %s digest.",
+                    binary.length, hashAlgorithm.getAlgorithm()));
+        }
+
+        return new SaltedHash(
+                hashAlgorithm,
+                Arrays.copyOfRange(binary, 1 + saltLength, binary.length),
+                Arrays.copyOfRange(binary, 1, 1 + saltLength)
+        );
+    }
+
+    /**
+     * Parses a salted hash from its hex. encoded form (see {@link #toString()}), i.e. {@code salt:saltedHash} for
+     * SHA-256, or {@code algorithmTag:salt:saltedHash} for any other algorithm.
+     *
+     * @param saltedHashString hex. encoded salted hash.
+     * @return the salted hash represented by the given string.
+     * @throws IllegalArgumentException if the string is malformed, or tagged with an unknown algorithm.
+     */
+    public static SaltedHash fromString(@NotNull final String saltedHashString) {
+        final String[] parts = saltedHashString.split(":", -1);
+        if (parts.length == 2) {
+            return fromHex(DEFAULT_HASH_ALGORITHM, parts[0], parts[1], saltedHashString);
+        }
+        if (parts.length == 3 && parts[0].length() == 2) {
+            final CryptoHashAlgorithm hashAlgorithm;
+            try {
+                hashAlgorithm = CryptoHashAlgorithm.fromTag(Integer.parseInt(parts[0], 16));
+            } catch (NumberFormatException nfe) {
+                throw new IllegalArgumentException(String.format("Malformed salted hash: %s", saltedHashString), nfe);
+            }
+            // The default algorithm is never tagged, so that each salted hash has a single persisted form.
+            if (hashAlgorithm != DEFAULT_HASH_ALGORITHM) {
+                return fromHex(hashAlgorithm, parts[1], parts[2], saltedHashString);
+            }
+        }
+        throw new IllegalArgumentException(String.format("Malformed salted hash: %s", saltedHashString));
+    }
+
+    /**
+     * Parses a salted hash from its hex. encoded form (see {@link #fromString(String)}), checking that it was
+     * generated with the expected hash algorithm.
+     *
+     * @param saltedHashString hex. encoded salted hash.
+     * @param hashAlgorithm hash algorithm expected to have generated the salted hash.
+     * @return the salted hash represented by the given string.
+     * @throws IllegalArgumentException if the string is malformed, or encodes a different algorithm.
+     */
+    public static SaltedHash fromString(@NotNull final String saltedHashString,
+                                        @NotNull final CryptoHashAlgorithm hashAlgorithm)
+    {
+        final SaltedHash saltedHash = fromString(saltedHashString);
+        if (saltedHash.hashAlgorithm != hashAlgorithm) {
+            throw new IllegalArgumentException(String.format(
+                    "Salted hash was generated with %s, rather than %s: %s",
+                    saltedHash.hashAlgorithm.getAlgorithm(), hashAlgorithm.getAlgorithm(), saltedHashString));
+        }
+        return saltedHash;
+    }
+
+    private static SaltedHash fromHex(@NotNull final CryptoHashAlgorithm hashAlgorithm,
+                                      @NotNull final String saltHex,
+                                      @NotNull final String saltedHashHex,
+                                      @NotNull final String saltedHashString)
+    {
+        try {
+            return new SaltedHash(hashAlgorithm, Hex.decodeHex(saltedHashHex), Hex.decodeHex(saltHex));
+        } catch (DecoderException de) {
+            throw new IllegalArgumentException(String.format("Malformed salted hash: %s", saltedHashString), de);
+        }
+    }
+
     @Override
     public int hashCode() {
         int result = Objects.hash(hashAlgorithm);
@@ -78,13 +223,24 @@ public final class SaltedHash {
             return true;
         if (obj instanceof SaltedHash) {
             SaltedHash that = (SaltedHash) obj;
-            return Arrays.equals(this.hash, that.hash) && Arrays.equals(this.salt, that.salt);
+            return this.hashAlgorithm == that.hashAlgorithm
+                    && Arrays.equals(this.hash, that.hash)
+                    && Arrays.equals(this.salt, that.salt);
         }
         return false;
     }
 
+    /**
+     * Returns the hex. encoded form of this salted hash, {@code salt:saltedHash}, prefixed by the algorithm's tag as
+     * two hex. digits (i.e., {@code algorithmTag:salt:saltedHash}) unless the algorithm is the default, SHA-256.
+     *
+     * @return the hex. encoded form of this salted hash, as persisted.
+     */
     @Override
     public String toString() {
-        return String.format("%s:%s", getSaltHex(), getSaltedHashHex());
+        if (hashAlgorithm == DEFAULT_HASH_ALGORITHM) {
+            return String.format("%s:%s", getSaltHex(), getSaltedHashHex());
+        }
+        return String.format("%02x:%s:%s", hashAlgorithm.getTag(), getSaltHex(), getSaltedHashHex());
     }
 }
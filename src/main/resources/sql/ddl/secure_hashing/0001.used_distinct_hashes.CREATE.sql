@@ -4,7 +4,8 @@
 --
 CREATE TABLE IF NOT EXISTS secure_hashing.used_distinct_hashes
 (
-    used_hash       varchar(97)     NOT NULL, -- salted SHA-256 hash hex. encoded [salt:saltedHash]
+    used_hash       varchar(255)    NOT NULL, -- salted hash hex. encoded [salt:saltedHash], or
+                                              -- [algorithmTag:salt:saltedHash] if not SHA-256
     created_at      timestamp       NOT NULL    DEFAULT now(),
     CONSTRAINT used_distinct_hashes_pk  PRIMARY KEY (used_hash)
 );
@@ -4,7 +4,8 @@
 -- for a given sensitive value (e.g., e-mail address or DOB).
 --
 CREATE TABLE IF NOT EXISTS secure_hashing.hash_graveyard (
-    unused_hash       varchar(97)         NOT NULL, -- salted hash (SHA-256) orphaned due to UPDATE or DELETE.
+    unused_hash       varchar(255)        NOT NULL, -- salted hash (as in used_distinct_hashes.used_hash) orphaned
+                                                    -- due to UPDATE or DELETE.
     created_at          timestamp           NOT NULL    DEFAULT now(),
     CONSTRAINT hash_graveyard_pk    PRIMARY KEY (unused_hash)
 );
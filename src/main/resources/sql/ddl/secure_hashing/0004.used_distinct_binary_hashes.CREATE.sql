@@ -0,0 +1,12 @@
+--
+-- Table for tracking generated salted hashes in compact binary form, to help ensure every salted hash is used only
+-- once (to maintain indistinguishability). This replaces the hex. encoded used_distinct_hashes table, roughly halving
+-- the size of each row and of the primary-key index.
+--
+CREATE TABLE IF NOT EXISTS secure_hashing.used_distinct_binary_hashes
+(
+    used_hash       bytea           NOT NULL, -- salted hash [algorithmTag (1 B) | salt | saltedHash], 49 B for SHA-256
+    created_at      timestamp       NOT NULL    DEFAULT now(),
+    CONSTRAINT used_distinct_binary_hashes_pk           PRIMARY KEY (used_hash),
+    CONSTRAINT used_distinct_binary_hashes_length_ck    CHECK (octet_length(used_hash) BETWEEN 2 AND 129)
+);
@@ -0,0 +1,10 @@
+--
+-- Table for tracking salted hashes, in compact binary form, that have been "orphaned" due to an UPDATE or DELETE
+-- operation. This replaces the hex. encoded hash_graveyard table.
+--
+CREATE TABLE IF NOT EXISTS secure_hashing.binary_hash_graveyard (
+    unused_hash         bytea               NOT NULL, -- salted hash [algorithmTag (1 B) | salt | saltedHash]
+    created_at          timestamp           NOT NULL    DEFAULT now(),
+    CONSTRAINT binary_hash_graveyard_pk         PRIMARY KEY (unused_hash),
+    CONSTRAINT binary_hash_graveyard_length_ck  CHECK (octet_length(unused_hash) BETWEEN 2 AND 129)
+);
@@ -0,0 +1,69 @@
+--
+-- Materialized index from each sensitive value's unsalted hash (as in hash_usage_counts.used_hash) to its salted
+-- hashes, so that looking up a value's live salted hashes is one indexed read, rather than regenerating (and
+-- re-hashing) every salted hash up to its usage count. A salted hash is marked buried, rather than deleted, once it
+-- is moved to the hash_graveyard (or to the binary_hash_graveyard), so that a value's row count still matches its usage
+-- count once fully indexed.
+--
+CREATE TABLE IF NOT EXISTS secure_hashing.salted_hash_index
+(
+    salted_hash     varchar(255)    NOT NULL, -- salted hash, as in used_distinct_hashes.used_hash
+    used_hash       varchar(64)     NOT NULL, -- unsalted (SHA-256) hash, as in hash_usage_counts.used_hash
+    buried          boolean         NOT NULL    DEFAULT false,
+    created_at      timestamp       NOT NULL    DEFAULT now(),
+    CONSTRAINT salted_hash_index_pk     PRIMARY KEY (salted_hash)
+);
+
+-- Covers paging through a value's salted hashes in salted hash order (keyset pagination), as well as counting them.
+CREATE INDEX IF NOT EXISTS salted_hash_index_used_hash_idx
+    ON secure_hashing.salted_hash_index (used_hash, salted_hash);
+
+--
+-- Converts a hex. encoded salted hash [salt:saltedHash], or [algorithmTag:salt:saltedHash] for any algorithm other than
+-- SHA-256 (whose algorithm tag is 5), to its compact binary form [algorithmTag | salt | saltedHash], as in the
+-- binary_hash_graveyard (see sql/migrations/secure_hashing/0001.hex_to_binary_hashes.MIGRATE.sql).
+--
+CREATE OR REPLACE FUNCTION secure_hashing.binary_salted_hash(salted_hash varchar) RETURNS bytea AS $$
+    SELECT CASE WHEN salted_hash LIKE '__:%'
+                THEN decode(replace(salted_hash, ':', ''), 'hex')
+                ELSE decode('05', 'hex') || decode(replace(salted_hash, ':', ''), 'hex')
+           END;
+$$ LANGUAGE sql IMMUTABLE STRICT;
+
+-- Covers marking salted hashes buried as they are moved to the binary_hash_graveyard.
+CREATE INDEX IF NOT EXISTS salted_hash_index_binary_salted_hash_idx
+    ON secure_hashing.salted_hash_index (secure_hashing.binary_salted_hash(salted_hash));
+
+--
+-- Marks each salted hash moved to the hash_graveyard as buried in the index.
+--
+CREATE OR REPLACE FUNCTION secure_hashing.bury_indexed_salted_hash() RETURNS trigger AS $$
+BEGIN
+    UPDATE secure_hashing.salted_hash_index
+        SET buried = true
+        WHERE salted_hash = NEW.unused_hash;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS hash_graveyard_bury_indexed_salted_hash ON secure_hashing.hash_graveyard;
+CREATE TRIGGER hash_graveyard_bury_indexed_salted_hash
+    AFTER INSERT ON secure_hashing.hash_graveyard
+    FOR EACH ROW EXECUTE PROCEDURE secure_hashing.bury_indexed_salted_hash();
+
+--
+-- Marks each salted hash moved to the binary_hash_graveyard as buried in the index.
+--
+CREATE OR REPLACE FUNCTION secure_hashing.bury_indexed_binary_salted_hash() RETURNS trigger AS $$
+BEGIN
+    UPDATE secure_hashing.salted_hash_index
+        SET buried = true
+        WHERE secure_hashing.binary_salted_hash(salted_hash) = NEW.unused_hash;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS binary_hash_graveyard_bury_indexed_salted_hash ON secure_hashing.binary_hash_graveyard;
+CREATE TRIGGER binary_hash_graveyard_bury_indexed_salted_hash
+    AFTER INSERT ON secure_hashing.binary_hash_graveyard
+    FOR EACH ROW EXECUTE PROCEDURE secure_hashing.bury_indexed_binary_salted_hash();
@@ -0,0 +1,39 @@
+--
+-- Migrates hex. encoded salted hashes [salt:saltedHash] from the used_distinct_hashes and hash_graveyard tables into
+-- their compact binary counterparts [algorithmTag | salt | saltedHash]. Untagged salted hashes were generated with
+-- SHA-256, whose algorithm tag is 5 (see CryptoHashAlgorithm), whereas those of any other algorithm are prefixed by
+-- its tag [algorithmTag:salt:saltedHash], so decode to their binary form once the colons are removed. This is
+-- idempotent, so it may be re-run (e.g., to pick up rows written by instances not yet upgraded) before the hex.
+-- encoded tables are dropped.
+--
+BEGIN;
+
+INSERT INTO secure_hashing.used_distinct_binary_hashes
+    (used_hash, created_at)
+    SELECT CASE WHEN used_hash LIKE '__:%'
+                THEN decode(replace(used_hash, ':', ''), 'hex')
+                ELSE decode('05', 'hex') || decode(replace(used_hash, ':', ''), 'hex')
+           END,
+           created_at
+    FROM secure_hashing.used_distinct_hashes
+        WHERE length(used_hash) = 97 OR used_hash LIKE '__:%'
+ON CONFLICT (used_hash) DO NOTHING
+;
+
+INSERT INTO secure_hashing.binary_hash_graveyard
+    (unused_hash, created_at)
+    SELECT CASE WHEN unused_hash LIKE '__:%'
+                THEN decode(replace(unused_hash, ':', ''), 'hex')
+                ELSE decode('05', 'hex') || decode(replace(unused_hash, ':', ''), 'hex')
+           END,
+           created_at
+    FROM secure_hashing.hash_graveyard
+        WHERE length(unused_hash) = 97 OR unused_hash LIKE '__:%'
+ON CONFLICT (unused_hash) DO NOTHING
+;
+
+COMMIT;
+
+-- Once every instance writes binary hashes only, and the row counts have been verified:
+-- DROP TABLE secure_hashing.used_distinct_hashes;
+-- DROP TABLE secure_hashing.hash_graveyard;
@@ -0,0 +1,18 @@
+--
+-- Widens the hex. encoded salted hash columns from 97 characters (a 16-byte salt and a SHA-256 digest) to 255, to
+-- hold salted hashes of any other algorithm, which are prefixed by the algorithm's tag [algorithmTag:salt:saltedHash]
+-- (e.g., 164 characters for a 16-byte salt and a 512-bit digest). Widening a varchar column only updates the catalog,
+-- so the tables aren't rewritten.
+--
+BEGIN;
+
+ALTER TABLE secure_hashing.used_distinct_hashes
+    ALTER COLUMN used_hash TYPE varchar(255);
+
+ALTER TABLE secure_hashing.hash_graveyard
+    ALTER COLUMN unused_hash TYPE varchar(255);
+
+ALTER TABLE IF EXISTS secure_hashing.salted_hash_index
+    ALTER COLUMN salted_hash TYPE varchar(255);
+
+COMMIT;
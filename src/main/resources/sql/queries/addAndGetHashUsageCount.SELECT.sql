@@ -0,0 +1,13 @@
+--
+-- Adds :delta to the hash usage count for a cleartext value given its unsalted hash, returning the new count.
+-- If no entry yet exists for this unsalted hash, then a new entry with a count of :delta is inserted. The salt
+-- indices reserved by this call are [new count - :delta, new count).
+--
+INSERT INTO secure_hashing.hash_usage_counts AS counts
+    (used_hash, usage_count)
+    VALUES (:hash, :delta)
+ON CONFLICT (used_hash) DO
+    UPDATE SET (usage_count, last_updated_at) =
+        (counts.usage_count + EXCLUDED.usage_count, now())
+    RETURNING usage_count
+;
@@ -0,0 +1,15 @@
+--
+-- Adds each delta to the hash usage count of its corresponding unsalted hash, in a single multi-row upsert, returning
+-- each unsalted hash's new count. Entries are inserted for unsalted hashes that don't yet exist. The unsalted hashes
+-- and deltas are each given as a comma-separated list (:hashes and :deltas), and must not contain duplicate hashes,
+-- since a single upsert can't update the same row twice. Passing hashes in sorted order avoids deadlocks between
+-- concurrent batches.
+--
+INSERT INTO secure_hashing.hash_usage_counts AS counts
+    (used_hash, usage_count)
+    SELECT * FROM unnest(string_to_array(:hashes, ','), CAST(string_to_array(:deltas, ',') AS int[]))
+ON CONFLICT (used_hash) DO
+    UPDATE SET (usage_count, last_updated_at) =
+        (counts.usage_count + EXCLUDED.usage_count, now())
+    RETURNING used_hash, usage_count
+;
@@ -1,15 +1,13 @@
 --
 -- Increments the hash usage count for a cleartext value given its unsalted hash, returning the new count.
--- If no entry yet exists for this unsalted hash, then a new entry with a count of 1 is inserted.
+-- If no entry yet exists for this unsalted hash, then a new entry with a count of 1 is inserted. The conflicting row
+-- is already locked by the upsert itself, so it is updated in place rather than re-selected FOR UPDATE.
 --
-INSERT INTO secure_hashing.hash_usage_counts
+INSERT INTO secure_hashing.hash_usage_counts AS counts
     (used_hash)
     VALUES (:hash)
 ON CONFLICT (used_hash) DO
     UPDATE SET (usage_count, last_updated_at) =
-        (SELECT usage_count + 1, now()
-         FROM secure_hashing.hash_usage_counts
-            WHERE used_hash = :hash
-         FOR UPDATE)
+        (counts.usage_count + 1, now())
     RETURNING usage_count
 ;
@@ -0,0 +1,15 @@
+--
+-- Indexes each of the given salted hashes under its corresponding unsalted hash, in a single multi-row insert. Salted
+-- hashes already in the hash_graveyard (or, in binary form, the binary_hash_graveyard) are indexed as buried, and
+-- those already indexed are left unchanged. The salted hashes and unsalted hashes are each given as a comma-separated
+-- list (:saltedHashes and :usedHashes).
+--
+INSERT INTO secure_hashing.salted_hash_index
+    (salted_hash, used_hash, buried)
+    SELECT h.salted_hash, h.used_hash,
+           EXISTS (SELECT 1 FROM secure_hashing.hash_graveyard g WHERE g.unused_hash = h.salted_hash)
+           OR EXISTS (SELECT 1 FROM secure_hashing.binary_hash_graveyard b
+                          WHERE b.unused_hash = secure_hashing.binary_salted_hash(h.salted_hash))
+    FROM unnest(string_to_array(:saltedHashes, ','), string_to_array(:usedHashes, ',')) AS h (salted_hash, used_hash)
+ON CONFLICT (salted_hash) DO NOTHING
+;
@@ -0,0 +1,11 @@
+--
+-- Inserts each of the given used (salted) hashes in binary form that doesn't yet exist, in a single multi-row insert,
+-- returning those that were inserted (i.e., that were distinct). The used hashes are given as a comma-separated list
+-- (:hashes), each hex. encoded, and are returned hex. encoded.
+--
+INSERT INTO secure_hashing.used_distinct_binary_hashes
+    (used_hash)
+    SELECT decode(unnest(string_to_array(:hashes, ',')), 'hex')
+ON CONFLICT (used_hash) DO NOTHING
+    RETURNING encode(used_hash, 'hex')
+;
@@ -0,0 +1,11 @@
+--
+-- Inserts each of the given used (salted) hashes that doesn't yet exist, in a single multi-row insert, returning
+-- those that were inserted (i.e., that were distinct). The used hashes are given as a comma-separated list (:hashes),
+-- each in the salt:saltedHash hex. encoded form.
+--
+INSERT INTO secure_hashing.used_distinct_hashes
+    (used_hash)
+    SELECT unnest(string_to_array(:hashes, ','))
+ON CONFLICT (used_hash) DO NOTHING
+    RETURNING used_hash
+;
@@ -0,0 +1,35 @@
+package info.willdspann.crypto.enums;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class CryptoHashAlgorithmTest {
+
+    @Test
+    public void everyTagIsDistinctAndRoundTrips() {
+        final Set<Integer> tags = new HashSet<>();
+        for (CryptoHashAlgorithm algorithm : CryptoHashAlgorithm.values()) {
+            assertThat(algorithm.getTag() >= 1 && algorithm.getTag() <= 255, is(true));
+            assertThat(tags.add(algorithm.getTag()), is(true));
+            assertThat(CryptoHashAlgorithm.fromTag(algorithm.getTag()), is(algorithm));
+        }
+    }
+
+    @Test
+    public void tagsArePersistedValues() {
+        // Tags are persisted in binary hashes (and the hex-to-binary migration), so must never change.
+        assertThat(CryptoHashAlgorithm.SHA_256.getTag(), is(5));
+        assertThat(CryptoHashAlgorithm.BLAKE2B_512.getTag(), is(29));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void unknownTagIsRejected() {
+        CryptoHashAlgorithm.fromTag(0);
+    }
+}
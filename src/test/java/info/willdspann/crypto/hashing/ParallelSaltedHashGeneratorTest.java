@@ -0,0 +1,127 @@
+package info.willdspann.crypto.hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class ParallelSaltedHashGeneratorTest {
+    private static final int BATCH_SIZE = 4;
+    private static final int MAX_IN_FLIGHT_BATCHES = 2;
+
+    private SaltedHashGenerator saltedHashGenerator;
+    private ForkJoinPool pool;
+    private ParallelSaltedHashGenerator parallelGenerator;
+
+    @BeforeClass
+    public void init() {
+        final byte[] secretSeed = new byte[SaltedHashGenerator.DEFAULT_SEED_LEN];
+        new SecureRandom().nextBytes(secretSeed);
+        this.saltedHashGenerator = new SaltedHashGenerator(secretSeed);
+        this.pool = new ForkJoinPool(4);
+        this.parallelGenerator = new ParallelSaltedHashGenerator(
+                saltedHashGenerator, pool, BATCH_SIZE, MAX_IN_FLIGHT_BATCHES);
+    }
+
+    @AfterClass
+    public void close() {
+        pool.shutdown();
+        saltedHashGenerator.destroy();
+    }
+
+    /** Input sizes around the batch size, split points, and the in-flight bound of the iterator variant. */
+    @DataProvider
+    public Object[][] cleartextCounts() {
+        return new Object[][] {
+                {0}, {1}, {BATCH_SIZE - 1}, {BATCH_SIZE}, {BATCH_SIZE + 1}, {2 * BATCH_SIZE + 1},
+                {BATCH_SIZE * MAX_IN_FLIGHT_BATCHES}, {BATCH_SIZE * MAX_IN_FLIGHT_BATCHES + 1}, {100}
+        };
+    }
+
+    @Test(dataProvider = "cleartextCounts")
+    public void nthSaltedHashesMatchSequentialGeneration(int cleartextCount) {
+        final List<byte[]> cleartexts = cleartexts(cleartextCount);
+
+        final List<SaltedHash> saltedHashes = parallelGenerator.getNthSaltedHashes(cleartexts, 3);
+
+        assertThat(saltedHashes.size(), is(cleartextCount));
+        for (int i = 0; i < cleartextCount; ++i) {
+            assertThat(saltedHashes.get(i), equalTo(saltedHashGenerator.getNthSaltedHash(cleartexts.get(i), 3)));
+        }
+    }
+
+    @Test(dataProvider = "cleartextCounts")
+    public void perCleartextSaltIndicesMatchSequentialGeneration(int cleartextCount) {
+        final List<byte[]> cleartexts = cleartexts(cleartextCount);
+        final int[] saltIndices = new int[cleartextCount];
+        for (int i = 0; i < cleartextCount; ++i) {
+            saltIndices[i] = i % 5;
+        }
+
+        final List<SaltedHash> saltedHashes = parallelGenerator.getNthSaltedHashes(cleartexts, saltIndices);
+
+        assertThat(saltedHashes.size(), is(cleartextCount));
+        for (int i = 0; i < cleartextCount; ++i) {
+            assertThat(saltedHashes.get(i),
+                    equalTo(saltedHashGenerator.getNthSaltedHash(cleartexts.get(i), saltIndices[i])));
+        }
+    }
+
+    @Test(dataProvider = "cleartextCounts")
+    public void saltedHashSetsMatchSequentialGeneration(int cleartextCount) {
+        final List<byte[]> cleartexts = cleartexts(cleartextCount);
+        final int[] counts = new int[cleartextCount];
+        for (int i = 0; i < cleartextCount; ++i) {
+            counts[i] = 1 + i % 3;
+        }
+
+        final List<Set<SaltedHash>> saltedHashSets = parallelGenerator.getSaltedHashes(cleartexts, counts);
+
+        assertThat(saltedHashSets.size(), is(cleartextCount));
+        for (int i = 0; i < cleartextCount; ++i) {
+            assertThat(saltedHashSets.get(i),
+                    equalTo(saltedHashGenerator.getSaltedHashes(cleartexts.get(i), counts[i])));
+        }
+    }
+
+    @Test(dataProvider = "cleartextCounts")
+    public void iteratedCleartextsAreDeliveredInOrder(int cleartextCount) {
+        final List<byte[]> cleartexts = cleartexts(cleartextCount);
+        final List<SaltedHash> delivered = new ArrayList<>();
+
+        final long generatedCount = parallelGenerator.generateNthSaltedHashes(cleartexts.iterator(), 2, delivered::add);
+
+        assertThat(generatedCount, is((long) cleartextCount));
+        assertThat(delivered.size(), is(cleartextCount));
+        for (int i = 0; i < cleartextCount; ++i) {
+            assertThat(delivered.get(i), equalTo(saltedHashGenerator.getNthSaltedHash(cleartexts.get(i), 2)));
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void mismatchedSaltIndicesAreRejected() {
+        parallelGenerator.getNthSaltedHashes(cleartexts(3), new int[2]);
+    }
+
+    private static List<byte[]> cleartexts(int count) {
+        final List<byte[]> cleartexts = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            cleartexts.add(("value" + i).getBytes(StandardCharsets.UTF_8));
+        }
+        return cleartexts;
+    }
+}
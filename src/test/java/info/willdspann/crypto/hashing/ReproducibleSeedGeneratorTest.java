@@ -0,0 +1,40 @@
+package info.willdspann.crypto.hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.testng.annotations.Test;
+
+import info.willdspann.crypto.util.OffHeapSecret;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class ReproducibleSeedGeneratorTest {
+    private static final byte[] ASSOCIATED_VALUE = "spamandeggs".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void innerHashIsClearedAfterSeedGeneration() {
+        final byte[] secretSeed = new byte[64];
+        new SecureRandom().nextBytes(secretSeed);
+        final byte[] expected = DigestUtils.sha512(concat(DigestUtils.sha512(ASSOCIATED_VALUE), secretSeed));
+
+        assertThat(ReproducibleSeedGenerator.generateSeedForValue(ASSOCIATED_VALUE, secretSeed), equalTo(expected));
+        assertThat(ReproducibleSeedGenerator.INNER_HASH_SCRATCH_BUFFERS.get(), equalTo(new byte[64]));
+
+        try (OffHeapSecret offHeapSeed = OffHeapSecret.copyOf(secretSeed)) {
+            assertThat(ReproducibleSeedGenerator.generateSeedForValue(ASSOCIATED_VALUE, offHeapSeed),
+                    equalTo(expected));
+            assertThat(ReproducibleSeedGenerator.INNER_HASH_SCRATCH_BUFFERS.get(), equalTo(new byte[64]));
+        }
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        final byte[] joined = new byte[first.length + second.length];
+        System.arraycopy(first, 0, joined, 0, first.length);
+        System.arraycopy(second, 0, joined, first.length, second.length);
+        return joined;
+    }
+}
@@ -0,0 +1,104 @@
+package info.willdspann.crypto.hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import info.willdspann.crypto.enums.SaltSequenceVersion;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class SaltSequenceCacheTest {
+    private static final SaltSequenceVersion VERSION = SaltSequenceVersion.V1_HASH_DRBG;
+    private static final byte[] SPAM_SEED = seed("spam");
+    private static final byte[] EGGS_SEED = seed("eggs");
+    private static final byte[] HAM_SEED = seed("ham");
+
+    @Test
+    public void leastRecentlyUsedSequenceIsEvictedBeyondMaxSequences() {
+        final SaltSequenceCache cache = new SaltSequenceCache(2, 16, Duration.ofDays(1));
+
+        cache.getSalt(SPAM_SEED, VERSION, 0);
+        cache.getSalt(EGGS_SEED, VERSION, 0);
+        cache.getSalt(SPAM_SEED, VERSION, 1);
+        cache.getSalt(HAM_SEED, VERSION, 0);
+
+        // "eggs" was the least recently used, so it alone was evicted.
+        assertThat(cache.size(), is(2));
+        assertThat(cache.getEvictionCount(), is(1L));
+        assertThat(cache.retainedBuffers(EGGS_SEED, VERSION).isEmpty(), is(true));
+        assertThat(cache.retainedBuffers(SPAM_SEED, VERSION).isEmpty(), is(false));
+        assertThat(cache.retainedBuffers(HAM_SEED, VERSION).isEmpty(), is(false));
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat(cache.getMissCount(), is(3L));
+
+        // An evicted sequence is regenerated from the start on its next lookup.
+        assertThat(cache.getSalt(EGGS_SEED, VERSION, 2), equalTo(nthSalt(EGGS_SEED, 2)));
+        assertThat(cache.getMissCount(), is(4L));
+        assertThat(cache.getEvictionCount(), is(2L));
+    }
+
+    @Test
+    public void idleSequencesAreEvicted() throws InterruptedException {
+        final SaltSequenceCache cache = new SaltSequenceCache(16, 16, Duration.ofMillis(1));
+
+        cache.getSalt(SPAM_SEED, VERSION, 0);
+        Thread.sleep(10);
+        cache.evictIdle();
+        assertThat(cache.size(), is(0));
+        assertThat(cache.getEvictionCount(), is(1L));
+
+        // Lookups also evict idle sequences as they go.
+        cache.getSalt(EGGS_SEED, VERSION, 0);
+        Thread.sleep(10);
+        cache.getSalt(HAM_SEED, VERSION, 0);
+        assertThat(cache.size(), is(1));
+        assertThat(cache.getEvictionCount(), is(2L));
+        assertThat(cache.retainedBuffers(EGGS_SEED, VERSION).isEmpty(), is(true));
+    }
+
+    @Test
+    public void evictedSequencesHaveSeedAndSaltsCleared() {
+        final SaltSequenceCache cache = new SaltSequenceCache(1, 16, Duration.ofDays(1));
+
+        final byte[] salt = cache.getSalt(SPAM_SEED, VERSION, 3);
+        final List<byte[]> spamBuffers = cache.retainedBuffers(SPAM_SEED, VERSION);
+        assertThat(spamBuffers.size(), is(1 + 4));
+        assertThat(spamBuffers.get(0), equalTo(SPAM_SEED));
+        assertThat(spamBuffers.get(4), equalTo(salt));
+
+        cache.getSalt(EGGS_SEED, VERSION, 0);
+        for (byte[] buffer : spamBuffers) {
+            assertThat(buffer, equalTo(new byte[buffer.length]));
+        }
+        // The caller's seed and salt copy are left untouched.
+        assertThat(SPAM_SEED, equalTo(seed("spam")));
+        assertThat(salt, equalTo(nthSalt(SPAM_SEED, 3)));
+
+        final List<byte[]> eggsBuffers = cache.retainedBuffers(EGGS_SEED, VERSION);
+        cache.clear();
+        for (byte[] buffer : eggsBuffers) {
+            assertThat(buffer, equalTo(new byte[buffer.length]));
+        }
+        assertThat(cache.size(), is(0));
+    }
+
+    private static byte[] seed(String associatedValue) {
+        return ReproducibleSeedGenerator.generateSeedForValue(
+                associatedValue.getBytes(StandardCharsets.UTF_8), "secret".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] nthSalt(byte[] associatedSeed, int saltIndex) {
+        final Iterator<byte[]> salts = ReproducibleSaltGenerator.newSaltIterator(associatedSeed, VERSION);
+        for (int i = 0; i < saltIndex; ++i) {
+            salts.next();
+        }
+        return salts.next();
+    }
+}
@@ -0,0 +1,83 @@
+package info.willdspann.crypto.hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class SaltedHashGeneratorRegistryTest {
+    private static final byte[] CLEARTEXT = "spamandeggs".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void rotationKeepsPreviousSeedForLookupsUntilRetired() {
+        final SaltedHashGeneratorRegistry registry = new SaltedHashGeneratorRegistry();
+        final SaltedHashGenerator first = new SaltedHashGenerator(randomSeed());
+        final SaltedHashGenerator second = new SaltedHashGenerator(randomSeed());
+        registry.register("seed-1", first);
+        final SaltedHash firstHash = registry.getCurrent().getNthSaltedHash(CLEARTEXT, 0);
+
+        registry.rotate("seed-2", second);
+
+        assertThat(registry.getCurrentSeedId(), is("seed-2"));
+        assertThat(registry.getCurrent(), sameInstance(second));
+        assertThat(registry.getCurrent().getNthSaltedHash(CLEARTEXT, 0), not(equalTo(firstHash)));
+        assertThat(registry.get("seed-1").orElseThrow().getNthSaltedHash(CLEARTEXT, 0), equalTo(firstHash));
+
+        registry.retire("seed-1");
+
+        assertThat(registry.get("seed-1").isPresent(), is(false));
+        assertThat(first.isDestroyed(), is(true));
+        assertThat(second.isDestroyed(), is(false));
+    }
+
+    @Test
+    public void destroyDuringConcurrentHashingNeverCorruptsSaltedHashes() throws Exception {
+        final SaltedHashGenerator generator = new SaltedHashGenerator(randomSeed());
+        final SaltedHash expected = generator.getNthSaltedHash(CLEARTEXT, 3);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; ++t) {
+            futures.add(executor.submit(() -> {
+                int hashed = 0;
+                try {
+                    while (true) {
+                        // Each salted hash completes with the intact secret seed, or fails fast once destroyed.
+                        assertThat(generator.getNthSaltedHash(CLEARTEXT, 3), equalTo(expected));
+                        ++hashed;
+                    }
+                } catch (IllegalStateException ise) {
+                    return hashed;
+                }
+            }));
+        }
+        Thread.sleep(50);
+        generator.destroy();
+
+        for (Future<Integer> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+        assertThat(generator.isDestroyed(), is(true));
+    }
+
+    private static byte[] randomSeed() {
+        final byte[] seed = new byte[SaltedHashGenerator.DEFAULT_SEED_LEN];
+        new SecureRandom().nextBytes(seed);
+        return seed;
+    }
+}
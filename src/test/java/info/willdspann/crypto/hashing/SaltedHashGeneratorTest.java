@@ -16,10 +16,17 @@ import org.slf4j.LoggerFactory;
 
 //import org.springframework.data.util.StreamUtils;
 
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.prng.BasicEntropySourceProvider;
+import org.bouncycastle.crypto.prng.EntropySource;
+import org.bouncycastle.crypto.prng.FixedSecureRandom;
+import org.bouncycastle.crypto.prng.drbg.CTRSP800DRBG;
 import org.springframework.data.util.StreamUtils;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import info.willdspann.crypto.enums.SaltSequenceVersion;
+import info.willdspann.crypto.util.hashing.CleartextDigests;
 import info.willdspann.crypto.util.hashing.HashingUtils;
 import info.willdspann.crypto.valueobjects.SaltedHash;
 
@@ -93,9 +100,107 @@ public class SaltedHashGeneratorTest {
         assertThat(reproducedSaltedHashes, equalTo(saltedHashes));
     }
 
+    @Test
+    public void nthCounterModeSaltedHashMatchesIteratedSequence() {
+        final SaltedHashGenerator hashGen = new SaltedHashGenerator(
+                Arrays.copyOf(this.secureSeed, secureSeed.length), SaltSequenceVersion.V2_COUNTER_HMAC);
+        final byte[] providedStringBytes = "spamandeggs".getBytes(StandardCharsets.UTF_8);
+
+        final List<SaltedHash> iteratedSaltedHashes = streamFromIterator(hashGen.saltedHashIterator(providedStringBytes))
+                .limit(5)
+                .collect(toList());
+
+        for (int i = 0; i < iteratedSaltedHashes.size(); ++i) {
+            final SaltedHash nthSaltedHash = hashGen.getNthSaltedHash(providedStringBytes, i);
+
+            assertThat(nthSaltedHash.getSalt().length, is(SALT_LEN));
+            assertThat(nthSaltedHash, equalTo(iteratedSaltedHashes.get(i)));
+        }
+        assertThat(iteratedSaltedHashes.stream().distinct().count(), is((long) iteratedSaltedHashes.size()));
+    }
+
+    @Test
+    public void saltSequenceVersionsAreDistinct() {
+        final byte[] providedStringBytes = "spamandeggs".getBytes(StandardCharsets.UTF_8);
+        final SaltedHash drbgSaltedHash = new SaltedHashGenerator(Arrays.copyOf(this.secureSeed, secureSeed.length))
+                .getNthSaltedHash(providedStringBytes, 0);
+        final SaltedHash counterSaltedHash = new SaltedHashGenerator(
+                Arrays.copyOf(this.secureSeed, secureSeed.length), SaltSequenceVersion.V2_COUNTER_HMAC
+        ).getNthSaltedHash(providedStringBytes, 0);
+
+        assertThat(counterSaltedHash.equals(drbgSaltedHash), is(false));
+    }
+
+    @Test
+    public void drbgSaltSequencesReplayAcrossRequestBoundaries() {
+        final byte[] providedStringBytes = "spamandeggs".getBytes(StandardCharsets.UTF_8);
+        for (SaltSequenceVersion version : new SaltSequenceVersion[] {
+                SaltSequenceVersion.V3_HMAC_DRBG, SaltSequenceVersion.V4_CTR_DRBG }) {
+            final SaltedHashGenerator hashGen = new SaltedHashGenerator(
+                    Arrays.copyOf(this.secureSeed, secureSeed.length), version);
+            final List<SaltedHash> iteratedSaltedHashes =
+                    streamFromIterator(hashGen.saltedHashIterator(providedStringBytes))
+                            .limit(20)
+                            .collect(toList());
+
+            // Salt index 17 is the second salt of the second DRBG request.
+            assertThat(hashGen.getNthSaltedHash(providedStringBytes, 17), equalTo(iteratedSaltedHashes.get(17)));
+            assertThat(iteratedSaltedHashes.stream().distinct().count(), is((long) iteratedSaltedHashes.size()));
+        }
+    }
+
+    @Test
+    public void jceAesCtrDrbgMatchesBouncyCastleAesEngine() {
+        final byte[] jceOutput = new byte[64];
+        final byte[] bcOutput = new byte[64];
+        new CTRSP800DRBG(new JceAesBlockCipher(), 256, 256, fixedEntropy(), null, new byte[16])
+                .generate(jceOutput, null, false);
+        new CTRSP800DRBG(new AESEngine(), 256, 256, fixedEntropy(), null, new byte[16])
+                .generate(bcOutput, null, false);
+
+        assertThat(jceOutput, equalTo(bcOutput));
+    }
+
+    @Test
+    public void cachedSaltedHashesMatchUncached() {
+        final SaltSequenceCache cache = new SaltSequenceCache();
+        final SaltedHashGenerator cachedHashGen = new SaltedHashGenerator(
+                Arrays.copyOf(this.secureSeed, secureSeed.length), SaltSequenceVersion.DEFAULT_VERSION, cache);
+        final SaltedHashGenerator hashGen = new SaltedHashGenerator(Arrays.copyOf(this.secureSeed, secureSeed.length));
+        final byte[] providedStringBytes = "spamandeggs".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(cachedHashGen.getNthSaltedHash(providedStringBytes, 3),
+                equalTo(hashGen.getNthSaltedHash(providedStringBytes, 3)));
+        assertThat(cachedHashGen.getNthSaltedHash(providedStringBytes, 1),
+                equalTo(hashGen.getNthSaltedHash(providedStringBytes, 1)));
+        assertThat(cachedHashGen.getSaltedHashes(providedStringBytes, 5),
+                equalTo(hashGen.getSaltedHashes(providedStringBytes, 5)));
+        assertThat(cache.getMissCount(), is(1L));
+        assertThat(cache.getHitCount(), is(2L));
+    }
+
     private <T> Stream<T> streamFromIterator(Iterator<T> iterator) {
         return StreamSupport.stream(
                 Spliterators.spliterator(iterator, Integer.MAX_VALUE, Spliterator.ORDERED),
                 false);
     }
+
+    private static EntropySource fixedEntropy() {
+        final byte[] entropy = new byte[32];
+        Arrays.fill(entropy, (byte) 0x5A);
+
+        return new BasicEntropySourceProvider(new FixedSecureRandom(entropy), false).get(256);
+    }
+
+    @Test
+    public void saltedHashFromDigestsMatchesSaltedHashFromBytes() {
+        final byte[] providedStringBytes = "spamandeggs".getBytes(StandardCharsets.UTF_8);
+        final CleartextDigests digests = CleartextDigests.of(providedStringBytes);
+
+        for (SaltSequenceVersion version : SaltSequenceVersion.values()) {
+            final SaltedHashGenerator hashGen = new SaltedHashGenerator(
+                    Arrays.copyOf(this.secureSeed, secureSeed.length), version);
+            assertThat(hashGen.getNthSaltedHash(digests, 3), equalTo(hashGen.getNthSaltedHash(providedStringBytes, 3)));
+        }
+    }
 }
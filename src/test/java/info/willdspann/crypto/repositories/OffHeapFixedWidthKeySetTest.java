@@ -0,0 +1,139 @@
+package info.willdspann.crypto.repositories;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.testng.annotations.Test;
+
+import info.willdspann.crypto.repositories.hashing.UsedDistinctHashesOffHeapRepository;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class OffHeapFixedWidthKeySetTest {
+    private static final int KEY_WIDTH = 32;
+
+    @Test
+    public void addIsInsertIfAbsent() {
+        final OffHeapFixedWidthKeySet keySet = new OffHeapFixedWidthKeySet(KEY_WIDTH, 1_000);
+
+        for (int i = 0; i < 1_000; ++i) {
+            assertThat(keySet.add(key(i)), is(true));
+        }
+        for (int i = 0; i < 1_000; ++i) {
+            assertThat(keySet.add(key(i)), is(false));
+            assertThat(keySet.contains(key(i)), is(true));
+        }
+        assertThat(keySet.contains(key(1_000)), is(false));
+        assertThat(keySet.size(), is(1_000L));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void addBeyondMaxKeysIsRejected() {
+        final OffHeapFixedWidthKeySet keySet = new OffHeapFixedWidthKeySet(KEY_WIDTH, 10);
+
+        for (int i = 0; i <= 10; ++i) {
+            keySet.add(key(i));
+        }
+    }
+
+    @Test
+    public void concurrentAddsOfSameKeysSucceedExactlyOnce() throws Exception {
+        final int keyCount = 20_000;
+        final int threadCount = 4;
+        final OffHeapFixedWidthKeySet keySet = new OffHeapFixedWidthKeySet(KEY_WIDTH, keyCount);
+        final AtomicInteger addedCount = new AtomicInteger();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threadCount; ++t) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < keyCount; ++i) {
+                        if (keySet.add(key(i))) {
+                            addedCount.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(addedCount.get(), is(keyCount));
+        assertThat(keySet.size(), is((long) keyCount));
+    }
+
+    @Test
+    public void racingAddsOfSameKeyIntoLastCapacityNeverReportFull() throws Exception {
+        final int threadCount = 4;
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            for (int round = 0; round < 200; ++round) {
+                final OffHeapFixedWidthKeySet keySet = new OffHeapFixedWidthKeySet(KEY_WIDTH, 1);
+                final byte[] key = key(round);
+                final CountDownLatch start = new CountDownLatch(1);
+                final List<Future<Boolean>> futures = new ArrayList<>();
+                for (int t = 0; t < threadCount; ++t) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        return keySet.add(key);
+                    }));
+                }
+                start.countDown();
+
+                int addedCount = 0;
+                for (Future<Boolean> future : futures) {
+                    if (future.get()) {
+                        ++addedCount;
+                    }
+                }
+                assertThat(addedCount, is(1));
+                assertThat(keySet.size(), is(1L));
+                assertThat(keySet.contains(key), is(true));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void rejectedAddLeavesSetUsable() {
+        final OffHeapFixedWidthKeySet keySet = new OffHeapFixedWidthKeySet(KEY_WIDTH, 1);
+        keySet.add(key(0));
+
+        try {
+            keySet.add(key(1));
+            throw new AssertionError("Expected the set to be full.");
+        } catch (IllegalStateException expected) {
+            // The rejected key's slot is released.
+        }
+        assertThat(keySet.contains(key(1)), is(false));
+        assertThat(keySet.add(key(0)), is(false));
+        assertThat(keySet.size(), is(1L));
+    }
+
+    private static byte[] key(int i) {
+        return DigestUtils.sha256(ByteBuffer.allocate(Integer.BYTES).putInt(i).array());
+    }
+
+    @Test
+    public void usedHashSlotsTakeFiftySixBytes() {
+        final OffHeapFixedWidthKeySet keySet =
+                new OffHeapFixedWidthKeySet(UsedDistinctHashesOffHeapRepository.DEFAULT_KEY_WIDTH, 1_000);
+
+        // 1,250 slots at the default maximum load factor of 0.8, so 70 bytes per key.
+        assertThat(keySet.getOffHeapBytes(), is(1_250L * 56));
+    }
+}
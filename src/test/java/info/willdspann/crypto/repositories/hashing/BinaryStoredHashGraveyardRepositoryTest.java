@@ -0,0 +1,109 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.testng.annotations.Test;
+
+import info.willdspann.crypto.entities.hashing.BinaryHashId;
+import info.willdspann.crypto.entities.hashing.UnusedBinaryHash;
+import info.willdspann.crypto.entities.hashing.UnusedHash;
+import info.willdspann.crypto.enums.CryptoHashAlgorithm;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class BinaryStoredHashGraveyardRepositoryTest {
+    private static final SecureRandom random = new SecureRandom();
+
+    @Test
+    public void buriedHashesAreFoundInOneBatchedCall() {
+        final List<Integer> batchSizes = new ArrayList<>();
+        final BinaryHashGraveyardInMemoryRepository binaryRepository = new BinaryHashGraveyardInMemoryRepository() {
+            @Override
+            public boolean existsById(BinaryHashId entityId) {
+                throw new AssertionError("Expected buried hashes to be found in a batch.");
+            }
+
+            @Override
+            public List<byte[]> findBuried(Collection<byte[]> hashes) {
+                batchSizes.add(hashes.size());
+                return hashes.stream()
+                        .filter(hash -> super.existsById(new BinaryHashId(hash)))
+                        .collect(Collectors.toList());
+            }
+        };
+        final BinaryStoredHashGraveyardRepository repository =
+                new BinaryStoredHashGraveyardRepository(binaryRepository);
+        final SaltedHash spam = randomSaltedHash(CryptoHashAlgorithm.SHA_256);
+        final SaltedHash eggs = randomSaltedHash(CryptoHashAlgorithm.SHA_512);
+        final SaltedHash ham = randomSaltedHash(CryptoHashAlgorithm.SHA_256);
+        binaryRepository.save(new UnusedBinaryHash(spam));
+        repository.save(new UnusedHash(eggs.toString()));
+
+        assertThat(repository.findBuriedHashes(List.of(spam.toString(), eggs.toString(), ham.toString())),
+                equalTo(Set.of(spam.toString(), eggs.toString())));
+        assertThat(batchSizes, equalTo(List.of(3)));
+    }
+
+    @Test
+    public void jpaRepositoryFindsBuriedHashesInBatches() {
+        final int batchSize = BinaryHashGraveyardJpaRepository.IN_PREDICATE_BATCH_SIZE;
+        final BinaryHashGraveyardInMemoryRepository table = new BinaryHashGraveyardInMemoryRepository();
+        final List<Integer> queriedBatchSizes = new ArrayList<>();
+        final BinaryHashGraveyardJpaRepository repository = (BinaryHashGraveyardJpaRepository) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] {BinaryHashGraveyardJpaRepository.class},
+                (proxy, method, args) -> {
+                    if (method.isDefault()) {
+                        return invokeDefault(proxy, method, args);
+                    }
+                    if (method.getName().equals("findBuriedIn")) {
+                        @SuppressWarnings("unchecked")
+                        final Collection<byte[]> hashes = (Collection<byte[]>) args[0];
+                        queriedBatchSizes.add(hashes.size());
+                        return hashes.stream()
+                                .filter(hash -> table.existsById(new BinaryHashId(hash)))
+                                .collect(Collectors.toList());
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        final List<byte[]> hashes = new ArrayList<>();
+        for (int i = 0; i < 2 * batchSize + 1; ++i) {
+            hashes.add(randomSaltedHash(CryptoHashAlgorithm.SHA_256).toBinary());
+        }
+        table.save(new UnusedBinaryHash(SaltedHash.fromBinary(hashes.get(0))));
+        table.save(new UnusedBinaryHash(SaltedHash.fromBinary(hashes.get(2 * batchSize))));
+
+        final List<byte[]> buried = repository.findBuried(hashes);
+
+        assertThat(queriedBatchSizes, equalTo(List.of(batchSize, batchSize, 1)));
+        assertThat(buried.stream().map(BinaryHashId::new).collect(Collectors.toSet()),
+                equalTo(Set.of(new BinaryHashId(hashes.get(0)), new BinaryHashId(hashes.get(2 * batchSize)))));
+    }
+
+    private static SaltedHash randomSaltedHash(CryptoHashAlgorithm hashAlgorithm) {
+        final byte[] salt = new byte[16];
+        final byte[] hash = new byte[hashAlgorithm.getDigestLength()];
+        random.nextBytes(salt);
+        random.nextBytes(hash);
+        return new SaltedHash(hash, salt, hashAlgorithm);
+    }
+
+    private static Object invokeDefault(Object proxy, Method method, Object[] args) throws Throwable {
+        return MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup())
+                .unreflectSpecial(method, method.getDeclaringClass())
+                .bindTo(proxy)
+                .invokeWithArguments(args);
+    }
+}
@@ -0,0 +1,65 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.security.SecureRandom;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import info.willdspann.crypto.entities.hashing.BinaryHashId;
+import info.willdspann.crypto.entities.hashing.UsedDistinctHash;
+import info.willdspann.crypto.enums.CryptoHashAlgorithm;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class BinaryStoredUsedDistinctHashesRepositoryTest {
+    private static final SecureRandom random = new SecureRandom();
+
+    @Test
+    public void binaryHashIdsAreComparedByContent() {
+        final SaltedHash saltedHash = randomSaltedHash();
+
+        assertThat(BinaryHashId.of(saltedHash), equalTo(new BinaryHashId(saltedHash.toBinary())));
+        assertThat(BinaryHashId.of(saltedHash).hashCode(), is(new BinaryHashId(saltedHash.toBinary()).hashCode()));
+        assertThat(BinaryHashId.of(saltedHash).getSaltedHash(), equalTo(saltedHash));
+    }
+
+    @Test
+    public void usedHashesAreStoredInBinaryForm() {
+        final UsedDistinctBinaryHashesOffHeapRepository binaryRepository =
+                new UsedDistinctBinaryHashesOffHeapRepository(100);
+        final BinaryStoredUsedDistinctHashesRepository repository =
+                new BinaryStoredUsedDistinctHashesRepository(binaryRepository);
+        final SaltedHash spam = randomSaltedHash();
+        final SaltedHash eggs = randomSaltedHash();
+
+        assertThat(repository.saveUsedHash(new UsedDistinctHash(spam.toString())), is(true));
+        assertThat(repository.saveUsedHash(new UsedDistinctHash(spam.toString())), is(false));
+        assertThat(repository.saveUsedHashes(List.of(
+                new UsedDistinctHash(spam.toString()), new UsedDistinctHash(eggs.toString()))),
+                equalTo(Set.of(eggs.toString())));
+
+        assertThat(binaryRepository.hashExists(spam), is(true));
+        assertThat(repository.hashExists(eggs.toString()), is(true));
+        assertThat(repository.findById(spam.toString()).map(UsedDistinctHash::getUsedHash).orElse(null),
+                equalTo(spam.toString()));
+        assertThat(repository.count(), is(2L));
+
+        final Set<String> enumerated = new HashSet<>();
+        repository.forEachUsedHash(enumerated::add);
+        assertThat(enumerated, equalTo(Set.of(spam.toString(), eggs.toString())));
+    }
+
+    private static SaltedHash randomSaltedHash() {
+        final byte[] salt = new byte[16];
+        final byte[] hash = new byte[32];
+        random.nextBytes(salt);
+        random.nextBytes(hash);
+        return new SaltedHash(hash, salt, CryptoHashAlgorithm.SHA_256);
+    }
+}
@@ -0,0 +1,123 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.testng.annotations.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class BlockReservingHashUsageCountsRepositoryTest {
+    private static final String USED_HASH = DigestUtils.sha256Hex("spamandeggs");
+
+    @Test
+    public void nodesSharingRepositoryNeverReuseIndices() throws Exception {
+        final HashUsageCountsInMemoryRepository repository = new HashUsageCountsInMemoryRepository();
+        final Set<Integer> indices = ConcurrentHashMap.newKeySet();
+        final ExecutorService threads = Executors.newFixedThreadPool(4);
+
+        try (BlockReservingHashUsageCountsRepository node1 = newNode(repository);
+             BlockReservingHashUsageCountsRepository node2 = newNode(repository)) {
+            final List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 4; ++t) {
+                final BlockReservingHashUsageCountsRepository node = (t % 2 == 0) ? node1 : node2;
+                results.add(threads.submit(() -> {
+                    for (int i = 0; i < 1_000; ++i) {
+                        final int delta = 1 + i % 3;
+                        final int usageCount = node.addAndGetUsageCount(USED_HASH, delta);
+                        for (int index = usageCount - delta; index < usageCount; ++index) {
+                            assertThat(indices.add(index), is(true));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+
+            assertThat(indices.size(), is(4 * (334 + 333 * 2 + 333 * 3)));
+            assertThat(node1.getBlockReservationCount() + node2.getBlockReservationCount() < 200, is(true));
+            assertThat(repository.getUsageCount(USED_HASH) >= indices.size(), is(true));
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    @Test
+    public void usageCountExcludesIndicesNotHandedOut() {
+        final HashUsageCountsInMemoryRepository repository = new HashUsageCountsInMemoryRepository();
+        try (BlockReservingHashUsageCountsRepository node1 = newNode(repository);
+             BlockReservingHashUsageCountsRepository node2 = newNode(repository)) {
+            assertThat(node1.addAndGetUsageCount(USED_HASH, 60), is(60));
+            node1.flush();
+            assertThat(repository.getUsageCount(USED_HASH), is(128));
+            assertThat(node1.getUsageCount(USED_HASH), is(60));
+
+            // Once another node reserves a block above this node's, this node's unused indices are included.
+            assertThat(node2.addAndGetUsageCount(USED_HASH, 1), is(129));
+            assertThat(node2.getUsageCount(USED_HASH), is(129));
+            assertThat(node1.getUsageCount(USED_HASH), is(192));
+        }
+    }
+
+    @Test
+    public void flushReservesNextBlockAhead() {
+        final HashUsageCountsInMemoryRepository repository = new HashUsageCountsInMemoryRepository();
+        try (BlockReservingHashUsageCountsRepository node = newNode(repository)) {
+            assertThat(node.addAndGetUsageCount(USED_HASH, 60), is(60));
+            node.flush();
+            assertThat(repository.getUsageCount(USED_HASH), is(128));
+
+            // The rest of the first block, then the block reserved ahead, without further round trips.
+            assertThat(node.addAndGetUsageCount(USED_HASH, 4), is(64));
+            assertThat(node.addAndGetUsageCount(USED_HASH, 1), is(65));
+            assertThat(node.getBlockReservationCount(), is(2L));
+        }
+    }
+
+    @Test
+    public void errorInBackgroundReservationDoesNotStopLaterRuns() throws InterruptedException {
+        final AtomicBoolean failNextReservation = new AtomicBoolean(true);
+        final HashUsageCountsInMemoryRepository repository = new HashUsageCountsInMemoryRepository() {
+            @Override
+            public Map<String, Integer> addAndGetUsageCounts(Map<String, Integer> deltasByUsedHash) {
+                if (failNextReservation.compareAndSet(true, false)) {
+                    throw new AssertionError("Simulated failure reserving the next blocks.");
+                }
+                return super.addAndGetUsageCounts(deltasByUsedHash);
+            }
+        };
+        try (BlockReservingHashUsageCountsRepository node = new BlockReservingHashUsageCountsRepository(
+                repository, 64, Duration.ofMillis(10), Duration.ofDays(1)))
+        {
+            assertThat(node.addAndGetUsageCount(USED_HASH, 60), is(60));
+
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (node.getBlockReservationCount() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(failNextReservation.get(), is(false));
+            assertThat(node.getBlockReservationCount(), is(2L));
+            assertThat(repository.getUsageCount(USED_HASH), is(128));
+        }
+    }
+
+    private static BlockReservingHashUsageCountsRepository newNode(
+            final HashUsageCountsRepository repository)
+    {
+        // Flush only when called, so that tests control when blocks are reserved ahead.
+        return new BlockReservingHashUsageCountsRepository(repository, 64, Duration.ofDays(1), Duration.ofDays(1));
+    }
+}
@@ -0,0 +1,122 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.testng.annotations.Test;
+
+import info.willdspann.crypto.entities.hashing.UsedDistinctHash;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class BloomFilteredUsedDistinctHashesRepositoryTest {
+
+    @Test
+    public void savedHashesExistAndMissesSkipRepository() {
+        final UsedDistinctHashesInMemoryRepository repository = new UsedDistinctHashesInMemoryRepository();
+        repository.saveUsedHash(new UsedDistinctHash(usedHash(0)));
+        final BloomFilteredUsedDistinctHashesRepository filtered =
+                BloomFilteredUsedDistinctHashesRepository.rebuild(repository, 0.01);
+
+        assertThat(filtered.saveUsedHash(new UsedDistinctHash(usedHash(1))), is(true));
+        assertThat(filtered.hashExists(usedHash(0)), is(true));
+        assertThat(filtered.hashExists(usedHash(1)), is(true));
+        for (int i = 2; i < 1_002; ++i) {
+            assertThat(filtered.hashExists(usedHash(i)), is(false));
+        }
+
+        assertThat(filtered.getTruePositiveCount(), is(2L));
+        assertThat(filtered.getDefiniteMissCount() + filtered.getFalsePositiveCount(), is(1_000L));
+        assertThat(filtered.getObservedFalsePositiveRate() < 0.05, is(true));
+    }
+
+    @Test
+    public void persistedFilterIsReloadedOnlyWhileUpToDate() throws Exception {
+        final UsedDistinctHashesInMemoryRepository repository = new UsedDistinctHashesInMemoryRepository();
+        final BloomFilteredUsedDistinctHashesRepository filtered =
+                BloomFilteredUsedDistinctHashesRepository.rebuild(repository, 0.01);
+        for (int i = 0; i < 100; ++i) {
+            filtered.saveUsedHash(new UsedDistinctHash(usedHash(i)));
+        }
+        final Path filterFile = Files.createTempFile("used-hashes", ".bloom");
+        try {
+            filtered.persist(filterFile);
+
+            final BloomFilteredUsedDistinctHashesRepository reloaded =
+                    BloomFilteredUsedDistinctHashesRepository.load(repository, filterFile, 0.01);
+            for (int i = 0; i < 100; ++i) {
+                assertThat(reloaded.hashExists(usedHash(i)), is(true));
+            }
+
+            // Saved around the persisted filter, so it must be rebuilt rather than reloaded.
+            repository.saveUsedHash(new UsedDistinctHash(usedHash(100)));
+            final BloomFilteredUsedDistinctHashesRepository rebuilt =
+                    BloomFilteredUsedDistinctHashesRepository.load(repository, filterFile, 0.01);
+            assertThat(rebuilt.hashExists(usedHash(100)), is(true));
+        } finally {
+            Files.deleteIfExists(filterFile);
+        }
+    }
+
+    @Test
+    public void persistedFilterIsReloadedDespiteFailedSaves() throws Exception {
+        final String unsavable = usedHash(-1);
+        final UsedDistinctHashesInMemoryRepository repository = new UsedDistinctHashesInMemoryRepository() {
+            @Override
+            public boolean saveUsedHash(UsedDistinctHash usedHash) {
+                if (usedHash.getUsedHash().equals(unsavable)) {
+                    throw new IllegalStateException("Simulated failure to save used hash.");
+                }
+                return super.saveUsedHash(usedHash);
+            }
+        };
+        final BloomFilteredUsedDistinctHashesRepository filtered =
+                BloomFilteredUsedDistinctHashesRepository.rebuild(repository, 0.01);
+        for (int i = 0; i < 100; ++i) {
+            filtered.saveUsedHash(new UsedDistinctHash(usedHash(i)));
+            filtered.saveUsedHash(new UsedDistinctHash(usedHash(i)));
+        }
+        try {
+            filtered.saveUsedHash(new UsedDistinctHash(unsavable));
+            throw new AssertionError("Expected the save to fail.");
+        } catch (IllegalStateException expected) {
+            // The hash was put into the filter before the save failed.
+        }
+        final Path filterFile = Files.createTempFile("used-hashes", ".bloom");
+        try {
+            filtered.persist(filterFile);
+
+            final BloomFilteredUsedDistinctHashesRepository reloaded =
+                    BloomFilteredUsedDistinctHashesRepository.load(repository, filterFile, 0.01);
+
+            // Only the persisted filter (not a rebuilt one) holds the hash whose save failed.
+            assertThat(reloaded.hashExists(unsavable), is(false));
+            assertThat(reloaded.getFalsePositiveCount(), is(1L));
+        } finally {
+            Files.deleteIfExists(filterFile);
+        }
+    }
+
+    @Test
+    public void filterIsRebuiltFromOffHeapRepository() {
+        final UsedDistinctHashesOffHeapRepository repository = new UsedDistinctHashesOffHeapRepository(1_000);
+        for (int i = 0; i < 100; ++i) {
+            repository.saveUsedHash(new UsedDistinctHash(usedHash(i)));
+        }
+
+        final BloomFilteredUsedDistinctHashesRepository filtered =
+                BloomFilteredUsedDistinctHashesRepository.rebuild(repository, 0.01);
+
+        for (int i = 0; i < 100; ++i) {
+            assertThat(filtered.hashExists(usedHash(i)), is(true));
+        }
+        assertThat(filtered.getTruePositiveCount(), is(100L));
+    }
+
+    private static String usedHash(int i) {
+        return DigestUtils.md5Hex(Integer.toString(i)) + ":" + DigestUtils.sha256Hex(Integer.toString(i));
+    }
+}
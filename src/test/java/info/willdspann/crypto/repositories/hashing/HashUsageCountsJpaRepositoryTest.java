@@ -0,0 +1,148 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.data.jpa.repository.Query;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests the batching of bulk usage count updates into multi-row upserts. With no PostgreSQL instance to run against,
+ * the upsert itself is emulated, with the semantics of {@code unnest(string_to_array(...))} over its arguments.
+ */
+@Test
+public class HashUsageCountsJpaRepositoryTest {
+    private HashUsageCountsInMemoryRepository table;
+    private List<List<String>> upsertedBatches;
+    private HashUsageCountsJpaRepository repository;
+
+    @BeforeMethod
+    public void init() {
+        this.table = new HashUsageCountsInMemoryRepository();
+        this.upsertedBatches = new ArrayList<>();
+        this.repository = (HashUsageCountsJpaRepository) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] {HashUsageCountsJpaRepository.class},
+                (proxy, method, args) -> {
+                    if (method.isDefault()) {
+                        return invokeDefault(proxy, method, args);
+                    }
+                    switch (method.getName()) {
+                        case "bulkAddAndGetUsageCounts":
+                            return emulateBulkUpsert((String) args[0], (String) args[1]);
+                        case "addAndGetUsageCount":
+                            return table.addAndGetUsageCount((String) args[0], (Integer) args[1]);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    @Test
+    public void deltasAreAddedToExistingAndNewCounts() {
+        final String spam = DigestUtils.sha256Hex("spam");
+        final String eggs = DigestUtils.sha256Hex("eggs");
+        table.addAndGetUsageCount(spam, 5);
+
+        final Map<String, Integer> usageCounts = repository.addAndGetUsageCounts(Map.of(spam, 2, eggs, 3));
+
+        assertThat(usageCounts, equalTo(Map.of(spam, 7, eggs, 3)));
+        assertThat(upsertedBatches.size(), is(1));
+    }
+
+    @Test
+    public void duplicateIncrementsAreCollapsedIntoOneRow() {
+        final String spam = DigestUtils.sha256Hex("spam");
+        final String eggs = DigestUtils.sha256Hex("eggs");
+
+        final Map<String, Integer> usageCounts = repository.incrementAndGetUsageCounts(
+                List.of(spam, eggs, spam, spam));
+
+        assertThat(usageCounts, equalTo(Map.of(spam, 3, eggs, 1)));
+        assertThat(upsertedBatches, equalTo(List.of(List.of(
+                (spam.compareTo(eggs) < 0) ? spam : eggs, (spam.compareTo(eggs) < 0) ? eggs : spam))));
+    }
+
+    @Test
+    public void largeUpdatesAreSplitIntoSortedBatches() {
+        final int batchSize = HashUsageCountsJpaRepository.BULK_UPSERT_BATCH_SIZE;
+        final List<String> usedHashes = new ArrayList<>();
+        for (int i = 0; i < 2 * batchSize + 1; ++i) {
+            usedHashes.add(DigestUtils.sha256Hex("value" + i));
+        }
+        usedHashes.add(usedHashes.get(0));
+
+        final Map<String, Integer> usageCounts = repository.incrementAndGetUsageCounts(usedHashes);
+
+        assertThat(usageCounts.size(), is(2 * batchSize + 1));
+        assertThat(usageCounts.get(usedHashes.get(0)), is(2));
+        assertThat(usageCounts.get(usedHashes.get(1)), is(1));
+        assertThat(upsertedBatches.stream().map(List::size).collect(Collectors.toList()),
+                equalTo(List.of(batchSize, batchSize, 1)));
+        final List<String> upserted = upsertedBatches.stream().flatMap(List::stream).collect(Collectors.toList());
+        assertThat(upserted, equalTo(upserted.stream().sorted().collect(Collectors.toList())));
+    }
+
+    @Test
+    public void bulkUpsertQueryMatchesDocumentedQuery() throws Exception {
+        final Query query = HashUsageCountsJpaRepository.class
+                .getMethod("bulkAddAndGetUsageCounts", String.class, String.class)
+                .getAnnotation(Query.class);
+
+        assertThat(query.nativeQuery(), is(true));
+        assertThat(normalize(query.value()),
+                equalTo(normalize(readQuery("/sql/queries/addAndGetHashUsageCounts.SELECT.sql"))));
+    }
+
+    /** Emulates the multi-row upsert, which fails (as PostgreSQL would) if an unsalted hash appears twice. */
+    private List<Object[]> emulateBulkUpsert(String usedHashes, String deltas) {
+        final List<String> hashes = Arrays.asList(usedHashes.split(","));
+        final String[] deltaValues = deltas.split(",");
+        assertThat(deltaValues.length, is(hashes.size()));
+        assertThat(hashes.stream().distinct().count(), is((long) hashes.size()));
+        upsertedBatches.add(hashes);
+
+        final Map<String, Integer> newCounts = new HashMap<>();
+        for (int i = 0; i < hashes.size(); ++i) {
+            newCounts.put(hashes.get(i), table.addAndGetUsageCount(hashes.get(i), Integer.parseInt(deltaValues[i])));
+        }
+        return newCounts.entrySet().stream()
+                .map(entry -> new Object[] {entry.getKey(), entry.getValue()})
+                .collect(Collectors.toList());
+    }
+
+    private static Object invokeDefault(Object proxy, Method method, Object[] args) throws Throwable {
+        return MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup())
+                .unreflectSpecial(method, method.getDeclaringClass())
+                .bindTo(proxy)
+                .invokeWithArguments(args);
+    }
+
+    private static String readQuery(String resource) throws IOException {
+        try (InputStream in = HashUsageCountsJpaRepositoryTest.class.getResourceAsStream(resource)) {
+            return Arrays.stream(new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n"))
+                    .filter(line -> !line.startsWith("--"))
+                    .collect(Collectors.joining(" "));
+        }
+    }
+
+    private static String normalize(String sql) {
+        return sql.replaceAll("\\s+", " ").replaceAll("\\s*;\\s*$", "").trim();
+    }
+}
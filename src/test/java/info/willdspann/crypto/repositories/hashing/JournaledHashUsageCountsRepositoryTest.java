@@ -0,0 +1,48 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.testng.annotations.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class JournaledHashUsageCountsRepositoryTest {
+
+    @Test
+    public void usageCountsSurviveReopeningAndCompaction() throws Exception {
+        final Path journalFile = Files.createTempFile("hash-usage-counts", ".journal");
+        try (JournaledHashUsageCountsRepository repository = new JournaledHashUsageCountsRepository(journalFile)) {
+            for (int i = 0; i < 10; ++i) {
+                repository.incrementAndGetUsageCount(unsaltedHash(0));
+            }
+            repository.addAndGetUsageCounts(Map.of(unsaltedHash(0), 5, unsaltedHash(1), 3));
+        }
+
+        try (JournaledHashUsageCountsRepository repository = new JournaledHashUsageCountsRepository(journalFile)) {
+            assertThat(repository.getUsageCount(unsaltedHash(0)), is(15));
+            assertThat(repository.getUsageCount(unsaltedHash(1)), is(3));
+            assertThat(repository.getJournalRecordCount(), is(12L));
+
+            repository.compact();
+            assertThat(repository.getJournalRecordCount(), is(2L));
+            assertThat(repository.incrementAndGetUsageCount(unsaltedHash(1)), is(4));
+        }
+
+        try (JournaledHashUsageCountsRepository repository = new JournaledHashUsageCountsRepository(journalFile)) {
+            assertThat(repository.getUsageCount(unsaltedHash(0)), is(15));
+            assertThat(repository.getUsageCount(unsaltedHash(1)), is(4));
+            assertThat(repository.getJournalRecordCount(), is(3L));
+        } finally {
+            Files.deleteIfExists(journalFile);
+        }
+    }
+
+    private static String unsaltedHash(int i) {
+        return DigestUtils.sha256Hex("value" + i);
+    }
+}
@@ -0,0 +1,101 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.testng.annotations.Test;
+
+import info.willdspann.crypto.entities.hashing.UsedDistinctHash;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class JournaledUsedDistinctHashesRepositoryTest {
+
+    @Test
+    public void usedHashesSurviveReopeningWithTornRecordDropped() throws Exception {
+        final Path journalFile = Files.createTempFile("used-hashes", ".journal");
+        try (JournaledUsedDistinctHashesRepository repository = open(journalFile)) {
+            assertThat(repository.saveUsedHash(new UsedDistinctHash(usedHash(0))), is(true));
+            assertThat(
+                    repository.saveUsedHashes(List.of(
+                            new UsedDistinctHash(usedHash(0)), new UsedDistinctHash(usedHash(1)))),
+                    equalTo(Set.of(usedHash(1)))
+            );
+        }
+        // Simulate a crash mid-append: a record length was written, but its CRC and contents weren't.
+        final long journalEnd = 2L * (8 + usedHash(0).length());
+        try (RandomAccessFile raf = new RandomAccessFile(journalFile.toFile(), "rw")) {
+            raf.seek(journalEnd);
+            raf.writeInt(64);
+        }
+
+        try (JournaledUsedDistinctHashesRepository repository = open(journalFile)) {
+            assertThat(repository.count(), is(2L));
+            assertThat(repository.hashExists(usedHash(1)), is(true));
+            assertThat(repository.saveUsedHash(new UsedDistinctHash(usedHash(1))), is(false));
+            assertThat(repository.saveUsedHash(new UsedDistinctHash(usedHash(2))), is(true));
+        }
+
+        try (JournaledUsedDistinctHashesRepository repository = open(journalFile)) {
+            assertThat(repository.count(), is(3L));
+            assertThat(repository.hashExists(usedHash(2)), is(true));
+        } finally {
+            Files.deleteIfExists(journalFile);
+        }
+    }
+
+    @Test
+    public void fullJournalLeavesNewUsedHashesUnsaved() throws Exception {
+        final Path journalFile = Files.createTempFile("used-hashes", ".journal");
+        // Room for two records, plus the zero length that marks the end of the records.
+        final int maxJournalSize = 2 * (8 + usedHash(0).length()) + 8;
+        try (JournaledUsedDistinctHashesRepository repository = open(journalFile, maxJournalSize)) {
+            assertThat(repository.saveUsedHash(new UsedDistinctHash(usedHash(0))), is(true));
+            try {
+                repository.saveUsedHashes(List.of(
+                        new UsedDistinctHash(usedHash(1)), new UsedDistinctHash(usedHash(2))));
+                throw new AssertionError("Expected the journal to be full.");
+            } catch (IllegalStateException expected) {
+                // The used hash journaled before the journal filled up is kept.
+            }
+            assertThat(repository.hashExists(usedHash(1)), is(true));
+            assertThat(repository.hashExists(usedHash(2)), is(false));
+            try {
+                repository.saveUsedHash(new UsedDistinctHash(usedHash(2)));
+                throw new AssertionError("Expected the journal to be full.");
+            } catch (IllegalStateException expected) {
+                // Still full.
+            }
+            assertThat(repository.count(), is(2L));
+        }
+
+        try (JournaledUsedDistinctHashesRepository repository = open(journalFile, maxJournalSize)) {
+            assertThat(repository.count(), is(2L));
+            assertThat(repository.hashExists(usedHash(2)), is(false));
+        } finally {
+            Files.deleteIfExists(journalFile);
+        }
+    }
+
+    private static JournaledUsedDistinctHashesRepository open(Path journalFile, int maxJournalSize)
+            throws IOException
+    {
+        return new JournaledUsedDistinctHashesRepository(journalFile, maxJournalSize);
+    }
+
+    private static JournaledUsedDistinctHashesRepository open(Path journalFile) throws IOException {
+        return new JournaledUsedDistinctHashesRepository(journalFile);
+    }
+
+    private static String usedHash(int i) {
+        return DigestUtils.sha256Hex("salt" + i) + ":" + DigestUtils.sha256Hex("hash" + i);
+    }
+}
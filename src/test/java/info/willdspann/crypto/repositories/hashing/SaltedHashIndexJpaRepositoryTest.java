@@ -0,0 +1,172 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import info.willdspann.crypto.entities.hashing.IndexedSaltedHash;
+import info.willdspann.crypto.entities.hashing.UnusedHash;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests the batching of salted hash indexing into multi-row inserts, and the paging through a value's indexed salted
+ * hashes. With no PostgreSQL instance to run against, the insert and page queries are emulated over an in-memory
+ * index, and the hash_graveyard trigger by burying salted hashes explicitly.
+ */
+@Test
+public class SaltedHashIndexJpaRepositoryTest {
+    private HashGraveyardInMemoryRepository graveyard;
+    private SaltedHashIndexInMemoryRepository table;
+    private List<Integer> insertedBatchSizes;
+    private List<Integer> requestedPageSizes;
+    private SaltedHashIndexJpaRepository repository;
+
+    @BeforeMethod
+    public void init() {
+        this.graveyard = new HashGraveyardInMemoryRepository();
+        this.table = new SaltedHashIndexInMemoryRepository(graveyard);
+        this.insertedBatchSizes = new ArrayList<>();
+        this.requestedPageSizes = new ArrayList<>();
+        this.repository = (SaltedHashIndexJpaRepository) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] {SaltedHashIndexJpaRepository.class},
+                (proxy, method, args) -> {
+                    if (method.isDefault()) {
+                        return invokeDefault(proxy, method, args);
+                    }
+                    switch (method.getName()) {
+                        case "insertIndexedSaltedHashesIfAbsent":
+                            return emulateBulkInsert((String) args[0], (String) args[1]);
+                        case "findPageByUsedHashAfter":
+                            final Pageable pageable = (Pageable) args[2];
+                            assertThat(pageable.getPageNumber(), is(0));
+                            requestedPageSizes.add(pageable.getPageSize());
+                            return table.findByUsedHashAfter((String) args[0], (String) args[1],
+                                    pageable.getPageSize());
+                        case "countByUsedHash":
+                            return table.countByUsedHash((String) args[0]);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    @Test
+    public void saltedHashesAreIndexedUnderTheirOwnUsedHash() {
+        final String spam = DigestUtils.sha256Hex("spam");
+        final String eggs = DigestUtils.sha256Hex("eggs");
+        final String buried = saltedHash("eggs", 1);
+        graveyard.save(new UnusedHash(buried));
+
+        repository.indexSaltedHashes(Map.of(
+                spam, List.of(saltedHash("spam", 0), saltedHash("spam", 1)),
+                eggs, List.of(saltedHash("eggs", 0), buried)
+        ));
+        repository.indexSaltedHashes(spam, List.of(saltedHash("spam", 0)));
+
+        assertThat(table.countByUsedHash(spam), is(2L));
+        assertThat(table.countByUsedHash(eggs), is(2L));
+        assertThat(table.findById(saltedHash("spam", 1)).get().getUsedHash(), equalTo(spam));
+        assertThat(table.findById(buried).get().isBuried(), is(true));
+        assertThat(table.findById(saltedHash("eggs", 0)).get().isBuried(), is(false));
+    }
+
+    @Test
+    public void largeIndexingIsSplitIntoBatches() {
+        final int batchSize = SaltedHashIndexJpaRepository.BULK_INSERT_BATCH_SIZE;
+        final String spam = DigestUtils.sha256Hex("spam");
+        final List<String> saltedHashes = new ArrayList<>();
+        for (int i = 0; i < 2 * batchSize + 1; ++i) {
+            saltedHashes.add(saltedHash("spam", i));
+        }
+
+        repository.indexSaltedHashes(spam, saltedHashes);
+
+        assertThat(insertedBatchSizes, equalTo(List.of(batchSize, batchSize, 1)));
+        assertThat(table.countByUsedHash(spam), is((long) saltedHashes.size()));
+    }
+
+    @Test
+    public void indexedSaltedHashesAreStreamedAPageAtATime() {
+        final String spam = DigestUtils.sha256Hex("spam");
+        final List<String> saltedHashes = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            saltedHashes.add(saltedHash("spam", i));
+        }
+        repository.indexSaltedHashes(spam, saltedHashes);
+        repository.indexSaltedHashes(DigestUtils.sha256Hex("eggs"), List.of(saltedHash("eggs", 0)));
+
+        final List<String> streamed = repository.streamByUsedHash(spam, 4)
+                .map(IndexedSaltedHash::getSaltedHash)
+                .collect(Collectors.toList());
+
+        assertThat(streamed, equalTo(saltedHashes.stream().sorted().collect(Collectors.toList())));
+        // Pages of 4, 4, and 2, the last of which is short, so no further page is read.
+        assertThat(requestedPageSizes, equalTo(List.of(4, 4, 4)));
+    }
+
+    @Test
+    public void bulkInsertQueryMatchesDocumentedQuery() throws Exception {
+        final Query query = SaltedHashIndexJpaRepository.class
+                .getMethod("insertIndexedSaltedHashesIfAbsent", String.class, String.class)
+                .getAnnotation(Query.class);
+
+        assertThat(query.nativeQuery(), is(true));
+        assertThat(normalize(query.value()),
+                equalTo(normalize(readQuery("/sql/queries/indexSaltedHashes.INSERT.sql"))));
+    }
+
+    /** Emulates the multi-row insert, which pairs the i-th salted hash with the i-th unsalted hash. */
+    private int emulateBulkInsert(String saltedHashes, String usedHashes) {
+        final String[] salted = saltedHashes.split(",");
+        final String[] used = usedHashes.split(",");
+        assertThat(used.length, is(salted.length));
+        insertedBatchSizes.add(salted.length);
+
+        final long before = table.count();
+        for (int i = 0; i < salted.length; ++i) {
+            table.indexSaltedHashes(used[i], List.of(salted[i]));
+        }
+        return (int) (table.count() - before);
+    }
+
+    private static String saltedHash(String cleartext, int saltIndex) {
+        return DigestUtils.sha256Hex("salt" + saltIndex) + ":" + DigestUtils.sha256Hex(cleartext + saltIndex);
+    }
+
+    private static Object invokeDefault(Object proxy, Method method, Object[] args) throws Throwable {
+        return MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup())
+                .unreflectSpecial(method, method.getDeclaringClass())
+                .bindTo(proxy)
+                .invokeWithArguments(args);
+    }
+
+    private static String readQuery(String resource) throws IOException {
+        try (InputStream in = SaltedHashIndexJpaRepositoryTest.class.getResourceAsStream(resource)) {
+            return Arrays.stream(new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n"))
+                    .filter(line -> !line.startsWith("--"))
+                    .collect(Collectors.joining(" "));
+        }
+    }
+
+    private static String normalize(String sql) {
+        return sql.replaceAll("\\s+", " ").replaceAll("\\s*;\\s*$", "").trim();
+    }
+}
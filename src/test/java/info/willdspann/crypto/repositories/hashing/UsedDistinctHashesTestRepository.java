@@ -1,5 +1,7 @@
 package info.willdspann.crypto.repositories.hashing;
 
+import java.util.function.Consumer;
+
 import javax.validation.constraints.NotNull;
 
 import org.springframework.stereotype.Repository;
@@ -19,4 +21,9 @@ public class UsedDistinctHashesTestRepository extends MapInMemoryRepository<Used
     public boolean saveUsedHash(@NotNull UsedDistinctHash usedHash) {
         return saveIfAbsent(usedHash);
     }
+
+    @Override
+    public void forEachUsedHash(@NotNull final Consumer<String> consumer) {
+        forEachId(consumer);
+    }
 }
@@ -0,0 +1,150 @@
+package info.willdspann.crypto.repositories.hashing;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.testng.annotations.Test;
+
+import info.willdspann.crypto.entities.hashing.UsedDistinctHash;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class WriteBehindUsedDistinctHashesRepositoryTest {
+
+    @Test
+    public void onlyFirstOccurrenceOfHashIsDistinct() {
+        final UsedDistinctHashesTestRepository repository = new UsedDistinctHashesTestRepository();
+        repository.saveUsedHash(usedHash("saved"));
+
+        try (WriteBehindUsedDistinctHashesRepository writeBehind = new WriteBehindUsedDistinctHashesRepository(
+                repository, 100, Duration.ofMillis(50), 100)) {
+            final CompletableFuture<Boolean> first = writeBehind.saveUsedHashAsync(usedHash("spam"));
+            final CompletableFuture<Boolean> second = writeBehind.saveUsedHashAsync(usedHash("spam"));
+            final CompletableFuture<Boolean> saved = writeBehind.saveUsedHashAsync(usedHash("saved"));
+
+            assertThat(first.join(), is(true));
+            assertThat(second.join(), is(false));
+            assertThat(saved.join(), is(false));
+            assertThat(writeBehind.saveUsedHash(usedHash("spam")), is(false));
+            assertThat(writeBehind.saveUsedHashes(List.of(usedHash("eggs"), usedHash("spam"), usedHash("eggs"))),
+                    equalTo(Set.of(hash("eggs"))));
+        }
+        assertThat(repository.count(), is(3L));
+    }
+
+    @Test
+    public void closeFlushesQueuedHashes() {
+        final UsedDistinctHashesTestRepository repository = new UsedDistinctHashesTestRepository();
+        final List<CompletableFuture<Boolean>> results = new ArrayList<>();
+
+        final WriteBehindUsedDistinctHashesRepository writeBehind = new WriteBehindUsedDistinctHashesRepository(
+                repository, 1000, Duration.ofMillis(100), 1000);
+        for (int i = 0; i < 500; ++i) {
+            results.add(writeBehind.saveUsedHashAsync(usedHash("value" + i)));
+        }
+        writeBehind.close();
+
+        for (CompletableFuture<Boolean> result : results) {
+            assertThat(result.isDone(), is(true));
+            assertThat(result.join(), is(true));
+        }
+        assertThat(repository.count(), is(500L));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void closedRepositoryRejectsHashes() {
+        final WriteBehindUsedDistinctHashesRepository writeBehind = new WriteBehindUsedDistinctHashesRepository(
+                new UsedDistinctHashesTestRepository());
+        writeBehind.close();
+
+        writeBehind.saveUsedHashAsync(usedHash("spam"));
+    }
+
+    @Test
+    public void fullQueueBlocksCallers() throws Exception {
+        final CountDownLatch flushStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFlush = new CountDownLatch(1);
+        final UsedDistinctHashesTestRepository repository = new UsedDistinctHashesTestRepository() {
+            @Override
+            public Set<String> saveUsedHashes(Collection<UsedDistinctHash> usedHashes) {
+                flushStarted.countDown();
+                try {
+                    releaseFlush.await();
+                } catch (InterruptedException ie) {
+                    throw new IllegalStateException(ie);
+                }
+                return super.saveUsedHashes(usedHashes);
+            }
+        };
+
+        try (WriteBehindUsedDistinctHashesRepository writeBehind = new WriteBehindUsedDistinctHashesRepository(
+                repository, 1, Duration.ofMillis(1), 2)) {
+            final CompletableFuture<Boolean> flushing = writeBehind.saveUsedHashAsync(usedHash("value0"));
+            assertThat(flushStarted.await(1, TimeUnit.MINUTES), is(true));
+            writeBehind.saveUsedHashAsync(usedHash("value1"));
+            writeBehind.saveUsedHashAsync(usedHash("value2"));
+
+            final Thread blockedCaller = new Thread(() -> writeBehind.saveUsedHashAsync(usedHash("value3")));
+            blockedCaller.start();
+            waitUntilBlocked(blockedCaller);
+            assertThat(flushing.isDone(), is(false));
+
+            releaseFlush.countDown();
+            blockedCaller.join(TimeUnit.MINUTES.toMillis(1));
+            assertThat(blockedCaller.isAlive(), is(false));
+            assertThat(flushing.join(), is(true));
+        }
+        assertThat(repository.count(), is(4L));
+    }
+
+    @Test
+    public void errorInFlushFailsOnlyItsBatch() {
+        final UsedDistinctHashesTestRepository repository = new UsedDistinctHashesTestRepository() {
+            @Override
+            public Set<String> saveUsedHashes(Collection<UsedDistinctHash> usedHashes) {
+                if (usedHashes.stream().anyMatch(usedHash -> usedHash.getUsedHash().equals(hash("fatal")))) {
+                    throw new AssertionError("Simulated error.");
+                }
+                return super.saveUsedHashes(usedHashes);
+            }
+        };
+
+        try (WriteBehindUsedDistinctHashesRepository writeBehind = new WriteBehindUsedDistinctHashesRepository(
+                repository, 1, Duration.ofMillis(1), 10)) {
+            try {
+                writeBehind.saveUsedHash(usedHash("fatal"));
+                throw new IllegalStateException("Expected the flush to fail.");
+            } catch (AssertionError expected) {
+                // The flusher carries on with later batches.
+            }
+            assertThat(writeBehind.saveUsedHash(usedHash("spam")), is(true));
+        }
+        assertThat(repository.count(), is(1L));
+    }
+
+    private static void waitUntilBlocked(Thread thread) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        while (thread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(thread.getState(), is(Thread.State.WAITING));
+    }
+
+    private static UsedDistinctHash usedHash(String value) {
+        return new UsedDistinctHash(hash(value));
+    }
+
+    private static String hash(String value) {
+        return DigestUtils.sha256Hex(value);
+    }
+}
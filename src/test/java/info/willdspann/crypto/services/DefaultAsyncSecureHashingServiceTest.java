@@ -0,0 +1,152 @@
+package info.willdspann.crypto.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.validation.constraints.NotNull;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import info.willdspann.crypto.entities.hashing.UsedDistinctHash;
+import info.willdspann.crypto.hashing.SaltedHashGenerator;
+import info.willdspann.crypto.repositories.hashing.HashUsageCountsInMemoryRepository;
+import info.willdspann.crypto.repositories.hashing.UsedDistinctHashesTestRepository;
+import info.willdspann.crypto.util.hashing.HashingUtils;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+import static java.util.stream.Collectors.toSet;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class DefaultAsyncSecureHashingServiceTest {
+    private HashUsageCountsInMemoryRepository usageCountsRepository;
+    private UsedDistinctHashesTestRepository usedHashesRepository;
+    private SaltedHashGenerator saltedHashGenerator;
+    private DefaultAsyncSecureHashingService hashingService;
+
+    @BeforeMethod
+    public void init() {
+        final byte[] secretSeed = new byte[64];
+        new SecureRandom().nextBytes(secretSeed);
+
+        this.usageCountsRepository = new HashUsageCountsInMemoryRepository();
+        this.usedHashesRepository = new UsedDistinctHashesTestRepository();
+        this.saltedHashGenerator = new SaltedHashGenerator(secretSeed);
+        this.hashingService = new DefaultAsyncSecureHashingService(
+                saltedHashGenerator, usageCountsRepository, usedHashesRepository, null, null);
+    }
+
+    @AfterMethod
+    public void close() {
+        hashingService.close();
+    }
+
+    @Test
+    public void concurrentGenerationsOfValueGetDistinctRecordedSaltedHashes() {
+        final List<CompletableFuture<SaltedHash>> futures = List.of(
+                hashingService.generateSaltedHashAsync("spamandeggs"),
+                hashingService.generateSaltedHashAsync("spamandeggs"),
+                hashingService.generateSaltedHashAsync("spamandeggs")
+        );
+        final Set<SaltedHash> saltedHashes = futures.stream().map(CompletableFuture::join).collect(toSet());
+
+        assertThat(saltedHashes.size(), is(3));
+        assertThat(usageCountsRepository.getUsageCount(HashingUtils.unsaltedHashHex("spamandeggs")), is(3));
+        assertThat(usedHashesRepository.count(), is(3L));
+        assertThat(hashingService.getSaltedHashesAsync("spamandeggs").join(), equalTo(saltedHashes));
+    }
+
+    @Test
+    public void bulkGeneratedSaltedHashesMatchLookups() {
+        hashingService.generateSaltedHashAsync("eggs").join();
+        final List<SaltedHash> saltedHashes =
+                hashingService.generateSaltedHashesAsync(List.of("spam", "eggs", "spam")).join();
+
+        assertThat(saltedHashes.size(), is(3));
+        assertThat(usedHashesRepository.count(), is(4L));
+        assertThat(hashingService.getSaltedHashesAsync("spam").join(),
+                equalTo(Set.of(saltedHashes.get(0), saltedHashes.get(2))));
+        assertThat(hashingService.getSaltedHashesAsync("eggs").join().contains(saltedHashes.get(1)), is(true));
+    }
+
+    @Test
+    public void duplicateSaltedHashesAreRetriedWithNextSaltIndex() {
+        final DuplicateReportingRepository duplicatesRepository = new DuplicateReportingRepository(2);
+        final DefaultAsyncSecureHashingService retryingService = new DefaultAsyncSecureHashingService(
+                saltedHashGenerator, usageCountsRepository, duplicatesRepository, null, null);
+        try {
+            final SaltedHash saltedHash = retryingService.generateSaltedHashAsync("spam").join();
+
+            // The first two salt indices were reported as duplicates, so the third was used.
+            assertThat(saltedHash, equalTo(saltedHashGenerator.getNthSaltedHash(bytes("spam"), 2)));
+            assertThat(usageCountsRepository.getUsageCount(HashingUtils.unsaltedHashHex("spam")), is(3));
+            assertThat(duplicatesRepository.hashExists(saltedHash.toString()), is(true));
+
+            duplicatesRepository.reportDuplicates(1);
+            final List<SaltedHash> saltedHashes =
+                    retryingService.generateSaltedHashesAsync(List.of("eggs", "ham")).join();
+            assertThat(saltedHashes.size(), is(2));
+            for (SaltedHash bulkSaltedHash : saltedHashes) {
+                assertThat(duplicatesRepository.hashExists(bulkSaltedHash.toString()), is(true));
+            }
+            assertThat(usageCountsRepository.getUsageCount(HashingUtils.unsaltedHashHex("eggs"))
+                    + usageCountsRepository.getUsageCount(HashingUtils.unsaltedHashHex("ham")), is(3));
+        } finally {
+            retryingService.close();
+        }
+    }
+
+    @Test
+    public void exhaustingDuplicateRetriesFailsGeneration() {
+        final DuplicateReportingRepository duplicatesRepository = new DuplicateReportingRepository(Integer.MAX_VALUE);
+        final DefaultAsyncSecureHashingService retryingService = new DefaultAsyncSecureHashingService(
+                saltedHashGenerator, usageCountsRepository, duplicatesRepository, null, null);
+        try {
+            retryingService.generateSaltedHashAsync("spam").join();
+            throw new AssertionError("Expected generation to fail once retries were exhausted.");
+        } catch (CompletionException ce) {
+            assertThat(ce.getCause(), instanceOf(IllegalStateException.class));
+            assertThat(usageCountsRepository.getUsageCount(HashingUtils.unsaltedHashHex("spam")),
+                    is(DefaultSecureHashingService.MAX_DUPLICATE_HASH_RETRIES));
+            assertThat(duplicatesRepository.count(), is(0L));
+        } finally {
+            retryingService.close();
+        }
+    }
+
+    private static byte[] bytes(String cleartext) {
+        return cleartext.getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    /** Reports the next so many used hashes as duplicates, without saving them. */
+    private static final class DuplicateReportingRepository extends UsedDistinctHashesTestRepository {
+        private final AtomicInteger duplicatesToReport;
+
+        private DuplicateReportingRepository(int duplicatesToReport) {
+            this.duplicatesToReport = new AtomicInteger(duplicatesToReport);
+        }
+
+        private void reportDuplicates(int duplicates) {
+            duplicatesToReport.set(duplicates);
+        }
+
+        @Override
+        public boolean saveUsedHash(@NotNull UsedDistinctHash usedHash) {
+            if (duplicatesToReport.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+                return false;
+            }
+            return super.saveUsedHash(usedHash);
+        }
+    }
+}
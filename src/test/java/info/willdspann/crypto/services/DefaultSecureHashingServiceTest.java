@@ -0,0 +1,206 @@
+package info.willdspann.crypto.services;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import javax.security.auth.Destroyable;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import info.willdspann.crypto.entities.hashing.UnusedBinaryHash;
+import info.willdspann.crypto.entities.hashing.UnusedHash;
+import info.willdspann.crypto.entities.hashing.UsedDistinctHash;
+import info.willdspann.crypto.hashing.SaltedHashGenerator;
+import info.willdspann.crypto.repositories.hashing.BinaryHashGraveyardInMemoryRepository;
+import info.willdspann.crypto.repositories.hashing.BinaryStoredHashGraveyardRepository;
+import info.willdspann.crypto.repositories.hashing.BlockReservingHashUsageCountsRepository;
+import info.willdspann.crypto.repositories.hashing.HashGraveyardInMemoryRepository;
+import info.willdspann.crypto.repositories.hashing.HashUsageCountsInMemoryRepository;
+import info.willdspann.crypto.repositories.hashing.SaltedHashIndexInMemoryRepository;
+import info.willdspann.crypto.repositories.hashing.UsedDistinctHashesTestRepository;
+import info.willdspann.crypto.util.hashing.HashingUtils;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class DefaultSecureHashingServiceTest {
+    private HashUsageCountsInMemoryRepository usageCountsRepository;
+    private UsedDistinctHashesTestRepository usedHashesRepository;
+    private HashGraveyardInMemoryRepository graveyardRepository;
+    private SaltedHashGenerator saltedHashGenerator;
+    private DefaultSecureHashingService hashingService;
+
+    @BeforeMethod
+    public void init() {
+        final byte[] secretSeed = new byte[64];
+        new SecureRandom().nextBytes(secretSeed);
+
+        this.usageCountsRepository = new HashUsageCountsInMemoryRepository();
+        this.usedHashesRepository = new UsedDistinctHashesTestRepository();
+        this.graveyardRepository = new HashGraveyardInMemoryRepository();
+        this.saltedHashGenerator = new SaltedHashGenerator(secretSeed);
+        this.hashingService = new DefaultSecureHashingService(
+                saltedHashGenerator, usageCountsRepository, usedHashesRepository, graveyardRepository);
+    }
+
+    @Test
+    public void eachUseOfValueGetsDistinctRecordedSaltedHash() {
+        final SaltedHash first = hashingService.generateSaltedHash("spamandeggs");
+        final SaltedHash second = hashingService.generateSaltedHash("spamandeggs");
+
+        assertThat(second, not(equalTo(first)));
+        assertThat(usageCountsRepository.getUsageCount(HashingUtils.unsaltedHashHex("spamandeggs")), is(2));
+        assertThat(usedHashesRepository.hashExists(first.toString()), is(true));
+        assertThat(usedHashesRepository.hashExists(second.toString()), is(true));
+        assertThat(hashingService.getSaltedHashes("spamandeggs"), equalTo(Set.of(first, second)));
+    }
+
+    @Test
+    public void bulkGeneratedSaltedHashesMatchSingleValueLookups() {
+        hashingService.generateSaltedHash("eggs");
+        final List<SaltedHash> saltedHashes = hashingService.generateSaltedHashes(List.of("spam", "eggs", "spam"));
+
+        assertThat(saltedHashes.size(), is(3));
+        assertThat(saltedHashes.get(0), not(equalTo(saltedHashes.get(2))));
+        assertThat(usedHashesRepository.count(), is(4L));
+        assertThat(hashingService.getSaltedHashes("spam"), equalTo(Set.of(saltedHashes.get(0), saltedHashes.get(2))));
+        assertThat(hashingService.getSaltedHashes("eggs").contains(saltedHashes.get(1)), is(true));
+        assertThat(hashingService.getSaltedHashes("ham").isEmpty(), is(true));
+    }
+
+    @Test
+    public void orphanedSaltedHashesAreExcludedFromLookups() {
+        final List<SaltedHash> saltedHashes = hashingService.generateSaltedHashes(List.of("spam", "spam", "spam"));
+        graveyardRepository.save(new UnusedHash(saltedHashes.get(1).toString()));
+
+        assertThat(
+                hashingService.streamSaltedHashes("spam").collect(toList()),
+                equalTo(List.of(saltedHashes.get(0), saltedHashes.get(2)))
+        );
+    }
+
+    @Test
+    public void indexedLookupsAreBackfilledAndExcludeBuriedHashes() {
+        final SaltedHash unindexed = hashingService.generateSaltedHash("spam");
+        final SaltedHashIndexInMemoryRepository indexRepository =
+                new SaltedHashIndexInMemoryRepository(graveyardRepository);
+        final DefaultSecureHashingService indexedService = new DefaultSecureHashingService(
+                saltedHashGenerator, usageCountsRepository, usedHashesRepository, graveyardRepository, indexRepository);
+
+        final SaltedHash indexed = indexedService.generateSaltedHash("spam");
+        assertThat(indexedService.getSaltedHashes("spam"), equalTo(Set.of(unindexed, indexed)));
+        assertThat(indexRepository.count(), is(2L));
+
+        graveyardRepository.save(new UnusedHash(unindexed.toString()));
+        assertThat(indexedService.getSaltedHashes("spam"), equalTo(Set.of(indexed)));
+    }
+
+    @Test
+    public void indexedLookupsExcludeHashesBuriedInBinaryGraveyard() {
+        final BinaryHashGraveyardInMemoryRepository binaryGraveyard = new BinaryHashGraveyardInMemoryRepository();
+        final BinaryStoredHashGraveyardRepository binaryStoredGraveyard =
+                new BinaryStoredHashGraveyardRepository(binaryGraveyard);
+        final SaltedHashIndexInMemoryRepository indexRepository =
+                new SaltedHashIndexInMemoryRepository(binaryStoredGraveyard);
+        final DefaultSecureHashingService indexedService = new DefaultSecureHashingService(
+                saltedHashGenerator, usageCountsRepository, usedHashesRepository, binaryStoredGraveyard,
+                indexRepository);
+
+        final List<SaltedHash> saltedHashes = indexedService.generateSaltedHashes(List.of("spam", "spam", "spam"));
+        assertThat(indexRepository.count(), is(3L));
+        binaryGraveyard.save(new UnusedBinaryHash(saltedHashes.get(1)));
+
+        assertThat(indexedService.getSaltedHashes("spam"), equalTo(Set.of(saltedHashes.get(0), saltedHashes.get(2))));
+        assertThat(indexRepository.findById(saltedHashes.get(1).toString()).get().isBuried(), is(true));
+    }
+
+    @Test
+    public void indexedLookupsSpanSeveralPages() {
+        final SaltedHashIndexInMemoryRepository indexRepository =
+                new SaltedHashIndexInMemoryRepository(graveyardRepository);
+        final DefaultSecureHashingService indexedService = new DefaultSecureHashingService(
+                saltedHashGenerator, usageCountsRepository, usedHashesRepository, graveyardRepository, indexRepository);
+        final int uses = LiveSaltedHashResolver.DEFAULT_BATCH_SIZE + 1;
+
+        final List<SaltedHash> saltedHashes = indexedService.generateSaltedHashes(Collections.nCopies(uses, "spam"));
+
+        assertThat(indexedService.getSaltedHashes("spam"), equalTo(new HashSet<>(saltedHashes)));
+    }
+
+    @Test
+    public void backfillDestroysSaltedHashIterator() {
+        final List<Destroyable> createdIterators = new ArrayList<>();
+        final byte[] secretSeed = new byte[64];
+        new SecureRandom().nextBytes(secretSeed);
+        // Records each salted hash iterator created, to check that it is destroyed.
+        final SaltedHashGenerator recordingGenerator = new SaltedHashGenerator(secretSeed) {
+            @Override
+            public Iterator<SaltedHash> saltedHashIterator(byte[] cleartextBytes) {
+                final Iterator<SaltedHash> iterator = super.saltedHashIterator(cleartextBytes);
+                createdIterators.add((Destroyable) iterator);
+                return iterator;
+            }
+        };
+        new DefaultSecureHashingService(recordingGenerator, usageCountsRepository, usedHashesRepository)
+                .generateSaltedHashes(List.of("spam", "spam"));
+        final DefaultSecureHashingService indexedService = new DefaultSecureHashingService(
+                recordingGenerator, usageCountsRepository, usedHashesRepository, graveyardRepository,
+                new SaltedHashIndexInMemoryRepository(graveyardRepository));
+
+        assertThat(indexedService.getSaltedHashes("spam").size(), is(2));
+        assertThat(createdIterators.size(), is(1));
+        assertThat(createdIterators.get(0).isDestroyed(), is(true));
+    }
+
+    @Test
+    public void failedSaveLeavesNoIndexEntries() {
+        final UsedDistinctHashesTestRepository failingRepository = new UsedDistinctHashesTestRepository() {
+            @Override
+            public Set<String> saveUsedHashes(Collection<UsedDistinctHash> usedHashes) {
+                throw new IllegalStateException("Unable to save used hashes.");
+            }
+        };
+        final SaltedHashIndexInMemoryRepository indexRepository =
+                new SaltedHashIndexInMemoryRepository(graveyardRepository);
+        final DefaultSecureHashingService indexedService = new DefaultSecureHashingService(
+                saltedHashGenerator, usageCountsRepository, failingRepository, graveyardRepository, indexRepository);
+
+        try {
+            indexedService.generateSaltedHashes(List.of("spam", "eggs"));
+            throw new AssertionError("Expected saving used hashes to fail.");
+        } catch (IllegalStateException ise) {
+            assertThat(indexRepository.count(), is(0L));
+        }
+    }
+
+    @Test
+    public void indexedLookupsIgnoreBlockReservedIndicesNotHandedOut() {
+        final SaltedHashIndexInMemoryRepository indexRepository =
+                new SaltedHashIndexInMemoryRepository(graveyardRepository);
+        try (BlockReservingHashUsageCountsRepository blockReserving = new BlockReservingHashUsageCountsRepository(
+                usageCountsRepository, 64, Duration.ofDays(1), Duration.ofDays(1))) {
+            final DefaultSecureHashingService indexedService = new DefaultSecureHashingService(
+                    saltedHashGenerator, blockReserving, usedHashesRepository, graveyardRepository, indexRepository);
+            final SaltedHash first = indexedService.generateSaltedHash("spam");
+            final SaltedHash second = indexedService.generateSaltedHash("spam");
+
+            assertThat(usageCountsRepository.getUsageCount(HashingUtils.unsaltedHashHex("spam")), is(64));
+            assertThat(indexedService.getSaltedHashes("spam"), equalTo(Set.of(first, second)));
+            // Not backfilled with the rest of the block.
+            assertThat(indexRepository.count(), is(2L));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package info.willdspann.crypto.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.security.auth.Destroyable;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import info.willdspann.crypto.entities.hashing.UnusedHash;
+import info.willdspann.crypto.hashing.SaltedHashGenerator;
+import info.willdspann.crypto.repositories.hashing.HashGraveyardInMemoryRepository;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class LiveSaltedHashResolverTest {
+    private static final byte[] CLEARTEXT = "spamandeggs".getBytes(StandardCharsets.UTF_8);
+
+    private final List<Destroyable> createdIterators = new ArrayList<>();
+    private SaltedHashGenerator saltedHashGenerator;
+    private HashGraveyardInMemoryRepository graveyardRepository;
+    private LiveSaltedHashResolver resolver;
+
+    @BeforeMethod
+    public void init() {
+        final byte[] secretSeed = new byte[64];
+        new SecureRandom().nextBytes(secretSeed);
+        createdIterators.clear();
+        // Records each salted hash iterator created, to check that it is destroyed.
+        this.saltedHashGenerator = new SaltedHashGenerator(secretSeed) {
+            @Override
+            public Iterator<SaltedHash> saltedHashIterator(byte[] cleartextBytes) {
+                final Iterator<SaltedHash> iterator = super.saltedHashIterator(cleartextBytes);
+                createdIterators.add((Destroyable) iterator);
+                return iterator;
+            }
+        };
+        this.graveyardRepository = new HashGraveyardInMemoryRepository();
+        this.resolver = new LiveSaltedHashResolver(saltedHashGenerator, graveyardRepository, 4);
+    }
+
+    @Test
+    public void liveSaltedHashesAreResolvedInOrder() {
+        graveyardRepository.save(new UnusedHash(saltedHashGenerator.getNthSaltedHash(CLEARTEXT, 5).toString()));
+
+        final List<SaltedHash> live = resolver.resolve(CLEARTEXT, 10).collect(toList());
+
+        assertThat(live.size(), is(9));
+        assertThat(live.get(4), equalTo(saltedHashGenerator.getNthSaltedHash(CLEARTEXT, 4)));
+        assertThat(live.get(5), equalTo(saltedHashGenerator.getNthSaltedHash(CLEARTEXT, 6)));
+    }
+
+    @Test
+    public void iteratorIsDestroyedOnceExhausted() {
+        resolver.resolve(CLEARTEXT, 10).forEach(saltedHash -> { });
+
+        assertThat(createdIterators.size(), is(1));
+        assertThat(createdIterators.get(0).isDestroyed(), is(true));
+    }
+
+    @Test
+    public void iteratorIsDestroyedWhenPartlyConsumedStreamIsClosed() {
+        try (Stream<SaltedHash> live = resolver.resolve(CLEARTEXT, 10)) {
+            assertThat(live.findFirst().isPresent(), is(true));
+            assertThat(createdIterators.get(0).isDestroyed(), is(false));
+        }
+
+        assertThat(createdIterators.get(0).isDestroyed(), is(true));
+    }
+}
@@ -0,0 +1,241 @@
+package info.willdspann.crypto.services;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import info.willdspann.crypto.hashing.SaltedHashGenerator;
+import info.willdspann.crypto.repositories.hashing.HashUsageCountsInMemoryRepository;
+import info.willdspann.crypto.repositories.hashing.UsedDistinctHashesTestRepository;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+@Test
+public class SaltedHashPipelineTest {
+    private HashUsageCountsInMemoryRepository usageCountsRepository;
+    private UsedDistinctHashesTestRepository usedHashesRepository;
+    private DefaultSecureHashingService hashingService;
+    private SaltedHashPipeline<String> pipeline;
+    private ExecutorService ioExecutor;
+
+    @BeforeMethod
+    public void init() {
+        final byte[] secretSeed = new byte[64];
+        new SecureRandom().nextBytes(secretSeed);
+        final SaltedHashGenerator saltedHashGenerator = new SaltedHashGenerator(secretSeed);
+
+        this.usageCountsRepository = new HashUsageCountsInMemoryRepository();
+        this.usedHashesRepository = new UsedDistinctHashesTestRepository();
+        this.hashingService = new DefaultSecureHashingService(
+                saltedHashGenerator, usageCountsRepository, usedHashesRepository);
+        this.ioExecutor = Executors.newFixedThreadPool(4);
+        // Parse the cleartext from CSV-like "id,cleartext" records.
+        this.pipeline = new SaltedHashPipeline<>(SaltedHashPipelineTest::parseCleartext, saltedHashGenerator,
+                usageCountsRepository, usedHashesRepository, null, ForkJoinPool.commonPool(), ioExecutor, 4, 2, 3);
+    }
+
+    @AfterMethod
+    public void close() throws InterruptedException {
+        ioExecutor.shutdown();
+        ioExecutor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    @Test
+    public void streamedRecordsGetDistinctSaltedHashesInOrder() {
+        final CollectingSubscriber subscriber = new CollectingSubscriber();
+        pipeline.subscribe(subscriber);
+        try (SubmissionPublisher<String> publisher = new SubmissionPublisher<>(ForkJoinPool.commonPool(), 2)) {
+            publisher.subscribe(pipeline);
+            for (int i = 0; i < 200; ++i) {
+                publisher.submit(i + ",value" + (i % 3));
+            }
+        }
+        final List<SaltedHash> saltedHashes = subscriber.result.join();
+
+        assertThat(saltedHashes.size(), is(200));
+        assertThat(new HashSet<>(saltedHashes).size(), is(200));
+        assertThat(usedHashesRepository.count(), is(200L));
+        for (int i = 0; i < 200; ++i) {
+            assertThat(hashingService.getSaltedHashes("value" + (i % 3)).contains(saltedHashes.get(i)), is(true));
+        }
+    }
+
+    @Test
+    public void parseFailureIsSignaledDownstream() {
+        final CollectingSubscriber subscriber = new CollectingSubscriber();
+        pipeline.subscribe(subscriber);
+        try (SubmissionPublisher<String> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(pipeline);
+            publisher.submit("1,spam");
+            publisher.submit("malformed");
+            publisher.submit("3,eggs");
+        }
+        try {
+            subscriber.result.join();
+            throw new AssertionError("Expected the pipeline to fail.");
+        } catch (CompletionException ce) {
+            assertThat(ce.getCause(), instanceOf(IllegalArgumentException.class));
+        }
+    }
+
+    @Test
+    public void errorInStageIsSignaledDownstream() {
+        final SaltedHashPipeline<String> failingPipeline = new SaltedHashPipeline<>(
+                record -> {
+                    if (record.equals("fatal")) {
+                        throw new AssertionError("Unable to parse record.");
+                    }
+                    return parseCleartext(record);
+                },
+                new SaltedHashGenerator(new byte[64]), usageCountsRepository, usedHashesRepository, null,
+                ForkJoinPool.commonPool(), ioExecutor, 4, 2, 3);
+        final CollectingSubscriber subscriber = new CollectingSubscriber();
+        failingPipeline.subscribe(subscriber);
+        try (SubmissionPublisher<String> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(failingPipeline);
+            publisher.submit("1,spam");
+            publisher.submit("fatal");
+            publisher.submit("3,eggs");
+        }
+        try {
+            subscriber.result.get(10, TimeUnit.SECONDS);
+            throw new AssertionError("Expected the pipeline to fail.");
+        } catch (ExecutionException ee) {
+            assertThat(ee.getCause(), instanceOf(AssertionError.class));
+        } catch (InterruptedException | TimeoutException e) {
+            throw new AssertionError("Expected the pipeline to fail rather than hang.", e);
+        }
+    }
+
+    @Test
+    public void stalledSubscriberBoundsRecordsRequestedFromSource() throws InterruptedException {
+        final int bufferSize = 4;
+        final int stages = 5;
+        final StalledSubscriber subscriber = new StalledSubscriber();
+        pipeline.subscribe(subscriber);
+        final EndlessSource source = new EndlessSource();
+        try {
+            source.subscribe(pipeline);
+
+            // Wait until the stages have filled their buffers, and stopped requesting more records.
+            final long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+            long lastRequested = -1;
+            while (source.requested.get() != lastRequested && System.nanoTime() < deadline) {
+                lastRequested = source.requested.get();
+                Thread.sleep(200);
+            }
+
+            assertThat(subscriber.received.get(), is(1));
+            // Each stage buffers at most bufferSize records, besides the one the subscriber has taken.
+            assertThat(source.requested.get(), lessThanOrEqualTo((long) stages * bufferSize + 1));
+        } finally {
+            source.emitter.shutdownNow();
+        }
+    }
+
+    private static String parseCleartext(String record) {
+        final int comma = record.indexOf(',');
+        if (comma < 0) {
+            throw new IllegalArgumentException("Malformed record: " + record);
+        }
+        return record.substring(comma + 1);
+    }
+
+
+    /** Endless source of records, emitted asynchronously as they are requested. */
+    private static final class EndlessSource implements Flow.Publisher<String> {
+        private final AtomicLong requested = new AtomicLong();
+        private final ExecutorService emitter = Executors.newSingleThreadExecutor();
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super String> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                private long next = 0;
+
+                @Override
+                public void request(long n) {
+                    requested.addAndGet(n);
+                    emitter.execute(() -> {
+                        for (long i = 0; i < n; ++i) {
+                            subscriber.onNext(next + ",value" + (next++ % 3));
+                        }
+                    });
+                }
+
+                @Override
+                public void cancel() {}
+            });
+        }
+    }
+
+    /** Takes a single salted hash, and then never requests another. */
+    private static final class StalledSubscriber implements Flow.Subscriber<SaltedHash> {
+        private final AtomicInteger received = new AtomicInteger();
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(SaltedHash saltedHash) {
+            received.incrementAndGet();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {}
+
+        @Override
+        public void onComplete() {}
+    }
+
+    /** Collects published salted hashes, requesting one at a time, as a slow subscriber would. */
+    private static final class CollectingSubscriber implements Flow.Subscriber<SaltedHash> {
+        private final List<SaltedHash> saltedHashes = new ArrayList<>();
+        private final CompletableFuture<List<SaltedHash>> result = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(SaltedHash saltedHash) {
+            saltedHashes.add(saltedHash);
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(saltedHashes);
+        }
+    }
+}
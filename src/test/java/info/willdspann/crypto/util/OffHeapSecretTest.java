@@ -0,0 +1,56 @@
+package info.willdspann.crypto.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+import info.willdspann.crypto.hashing.ReproducibleSeedGenerator;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class OffHeapSecretTest {
+    private static final byte[] ASSOCIATED_VALUE = "spamandeggs".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void offHeapSeedDerivesSameAssociatedSeedAsHeapSeed() {
+        final byte[] secretSeed = new byte[64];
+        new SecureRandom().nextBytes(secretSeed);
+        final byte[] expected = ReproducibleSeedGenerator.generateSeedForValue(ASSOCIATED_VALUE, secretSeed);
+
+        try (OffHeapSecret offHeapSeed = OffHeapSecret.moveFrom(secretSeed)) {
+            assertThat(Arrays.equals(secretSeed, new byte[64]), is(true));
+            assertThat(offHeapSeed.length(), is(64));
+            assertThat(ReproducibleSeedGenerator.generateSeedForValue(ASSOCIATED_VALUE, offHeapSeed),
+                    equalTo(expected));
+        }
+    }
+
+    @Test
+    public void secretSpanningSeveralScratchChunksIsDigestedWhole() throws Exception {
+        final byte[] secret = new byte[200];
+        new SecureRandom().nextBytes(secret);
+        final MessageDigest expected = MessageDigest.getInstance("SHA-512");
+        expected.update(secret);
+
+        try (OffHeapSecret offHeapSecret = OffHeapSecret.copyOf(secret)) {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-512");
+            offHeapSecret.updateDigest(digest);
+            assertThat(digest.digest(), equalTo(expected.digest()));
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void closedSecretCannotBeRead() {
+        final OffHeapSecret secret = OffHeapSecret.copyOf(new byte[] { 1, 2, 3 });
+        secret.close();
+
+        assertThat(secret.isDestroyed(), is(true));
+        ReproducibleSeedGenerator.generateSeedForValue(ASSOCIATED_VALUE, secret);
+    }
+}
@@ -0,0 +1,42 @@
+package info.willdspann.crypto.util.hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.testng.annotations.Test;
+
+import info.willdspann.crypto.enums.CryptoHashAlgorithm;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class DigestRegistryTest {
+    private static final byte[] CLEARTEXT = "spamandeggs".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void threadLocalDigestIsPooledAndReset() throws NoSuchAlgorithmException {
+        final MessageDigest digest = DigestRegistry.threadLocalDigest(CryptoHashAlgorithm.SHA_256);
+        digest.update(CLEARTEXT);
+
+        final MessageDigest pooled = DigestRegistry.threadLocalDigest(CryptoHashAlgorithm.SHA_256);
+        assertThat(pooled, sameInstance(digest));
+        assertThat(pooled.digest(CLEARTEXT), equalTo(DigestUtils.sha256(CLEARTEXT)));
+
+        final MessageDigest newDigest = DigestRegistry.newDigest(CryptoHashAlgorithm.SHA_256);
+        assertThat(newDigest, not(sameInstance(pooled)));
+        assertThat(newDigest.digest(CLEARTEXT), equalTo(DigestUtils.sha256(CLEARTEXT)));
+    }
+
+    @Test
+    public void providersResolvedForImplementedAlgorithmsOnly() throws NoSuchAlgorithmException {
+        assertThat(DigestRegistry.getProviderName(CryptoHashAlgorithm.SHA_256), is("SUN"));
+        assertThat(DigestRegistry.getProviderName(CryptoHashAlgorithm.BLAKE2B_512), is("BC"));
+        assertThat(DigestRegistry.isSupported(CryptoHashAlgorithm.KANGAROO_TWELVE), is(false));
+    }
+}
@@ -0,0 +1,137 @@
+package info.willdspann.crypto.util.hashing;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.testng.annotations.Test;
+
+import info.willdspann.crypto.enums.CryptoHashAlgorithm;
+import info.willdspann.crypto.util.MemoryUtils;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class HashingUtilsTest {
+    private static final byte[] CLEARTEXT = "spamandeggs".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SALT = DigestUtils.md5("salt");
+    private static final byte[] EXPECTED_SALTED_HASH =
+            DigestUtils.sha256(MemoryUtils.concatenateBuffers(CLEARTEXT, SALT));
+
+    @Test
+    public void saltedHashIsHashOfCleartextAndSaltConcatenated() {
+        final SaltedHash saltedHash = HashingUtils.saltedHash(CLEARTEXT, SALT);
+
+        assertThat(saltedHash.getSaltedHash(), equalTo(EXPECTED_SALTED_HASH));
+        assertThat(saltedHash.getSalt(), equalTo(SALT));
+    }
+
+    @Test
+    public void unsaltedHashSupportsBouncyCastleAlgorithms() throws NoSuchAlgorithmException {
+        final byte[] blake2b = HashingUtils.unsaltedHash("abc".getBytes(StandardCharsets.US_ASCII),
+                CryptoHashAlgorithm.BLAKE2B_512);
+        assertThat(blake2b.length, is(64));
+        assertThat(Hex.encodeHexString(blake2b).substring(0, 32), is("ba80a53f981c4d0d6a2797b69f12f6e9"));
+
+        for (CryptoHashAlgorithm hashAlgorithm : new CryptoHashAlgorithm[] {
+                CryptoHashAlgorithm.SHA_512_256, CryptoHashAlgorithm.BLAKE2S_256, CryptoHashAlgorithm.RIPEMD_160,
+                CryptoHashAlgorithm.WHIRLPOOL, CryptoHashAlgorithm.TIGER_128, CryptoHashAlgorithm.STREEBOG_256,
+                CryptoHashAlgorithm.SHAKE_256 }) {
+            assertThat(HashingUtils.unsaltedHash(CLEARTEXT, hashAlgorithm).length,
+                    is(HashingUtils.hashLength(hashAlgorithm)));
+        }
+    }
+
+    @Test
+    public void saltedHashRecordsItsAlgorithm() throws NoSuchAlgorithmException {
+        final SaltedHash blake2bHash = HashingUtils.saltedHash(CLEARTEXT, SALT, CryptoHashAlgorithm.BLAKE2B_512);
+
+        assertThat(blake2bHash.getHashAlgorithm(), is(CryptoHashAlgorithm.BLAKE2B_512));
+        assertThat(blake2bHash.getSaltedHash(), equalTo(HashingUtils.unsaltedHash(
+                MemoryUtils.concatenateBuffers(CLEARTEXT, SALT), CryptoHashAlgorithm.BLAKE2B_512)));
+        assertThat(HashingUtils.saltedHash(CLEARTEXT, SALT, CryptoHashAlgorithm.SHA_256),
+                equalTo(HashingUtils.saltedHash(CLEARTEXT, SALT)));
+
+        // Same hash and salt bytes, but a different algorithm.
+        final SaltedHash relabeled = SaltedHash.wrap(
+                blake2bHash.getSaltedHash(), blake2bHash.getSalt(), CryptoHashAlgorithm.SHA3_512);
+        assertThat(relabeled, not(equalTo(blake2bHash)));
+    }
+
+    @Test(expectedExceptions = NoSuchAlgorithmException.class)
+    public void unsaltedHashRejectsUnimplementedAlgorithm() throws NoSuchAlgorithmException {
+        HashingUtils.unsaltedHash(CLEARTEXT, CryptoHashAlgorithm.KANGAROO_TWELVE);
+    }
+
+    @Test
+    public void saltedHashIntoArrayWritesAtOffset() {
+        final int offset = 7;
+        final byte[] output = new byte[offset + HashingUtils.saltedHashLength() + 3];
+
+        final int written = HashingUtils.saltedHash(CLEARTEXT, SALT, output, offset);
+
+        assertThat(written, is(HashingUtils.saltedHashLength()));
+        assertThat(Arrays.copyOfRange(output, offset, offset + written), equalTo(EXPECTED_SALTED_HASH));
+        assertThat(output[offset - 1], is((byte) 0));
+        assertThat(output[offset + written], is((byte) 0));
+    }
+
+    @Test
+    public void saltedHashIntoDirectBufferAdvancesPosition() {
+        final ByteBuffer output = ByteBuffer.allocateDirect(2 * HashingUtils.saltedHashLength());
+        output.position(HashingUtils.saltedHashLength());
+
+        HashingUtils.saltedHash(CLEARTEXT, SALT, output);
+
+        assertThat(output.position(), is(output.capacity()));
+        final byte[] written = new byte[HashingUtils.saltedHashLength()];
+        output.position(HashingUtils.saltedHashLength());
+        output.get(written);
+        assertThat(written, equalTo(EXPECTED_SALTED_HASH));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void saltedHashIntoUndersizedArrayIsRejected() {
+        HashingUtils.saltedHash(CLEARTEXT, SALT, new byte[HashingUtils.saltedHashLength()], 1);
+    }
+
+    @Test
+    public void streamedHashesMatchMaterializedHashes() throws Exception {
+        final byte[] largeCleartext = new byte[3 * 8192 + 17];
+        Arrays.fill(largeCleartext, (byte) 'x');
+        final SaltedHash expected = HashingUtils.saltedHash(largeCleartext, SALT);
+        final ByteBuffer directCleartext = ByteBuffer.allocateDirect(largeCleartext.length).put(largeCleartext).flip();
+
+        assertThat(HashingUtils.saltedHash(new ByteArrayInputStream(largeCleartext), SALT), equalTo(expected));
+        assertThat(HashingUtils.saltedHash(
+                Channels.newChannel(new ByteArrayInputStream(largeCleartext)), SALT), equalTo(expected));
+        assertThat(HashingUtils.saltedHash(directCleartext, SALT), equalTo(expected));
+        assertThat(HashingUtils.unsaltedHash(new ByteArrayInputStream(largeCleartext)),
+                equalTo(DigestUtils.sha256(largeCleartext)));
+
+        final Path cleartextFile = Files.createTempFile("cleartext", ".bin");
+        try {
+            Files.write(cleartextFile, largeCleartext);
+            assertThat(HashingUtils.saltedHash(cleartextFile, SALT), equalTo(expected));
+
+            final CleartextDigests digests = CleartextDigests.ofFile(cleartextFile);
+            assertThat(digests.getUnsaltedHash(), equalTo(DigestUtils.sha256(largeCleartext)));
+            assertThat(digests.getSha512Hash(), equalTo(DigestUtils.sha512(largeCleartext)));
+            assertThat(digests.saltedHash(SALT), equalTo(expected));
+            assertThat(digests.saltedHash(CLEARTEXT), equalTo(HashingUtils.saltedHash(largeCleartext, CLEARTEXT)));
+        } finally {
+            Files.deleteIfExists(cleartextFile);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package info.willdspann.crypto.util.hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.testng.annotations.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class MultiBufferSha256Test {
+
+    @Test
+    public void digestsMatchSha256AcrossPaddingBoundaries() {
+        // Lengths 0-199 span one to four blocks, including the 55/56-byte and 64-byte padding boundaries, and lanes of
+        // different block counts share each group.
+        final Random random = new Random(42);
+        final byte[][] messages = new byte[200][];
+        for (int i = 0; i < messages.length; ++i) {
+            messages[i] = new byte[i];
+            random.nextBytes(messages[i]);
+        }
+
+        final byte[][] digests = MultiBufferSha256.digest(messages);
+        for (int i = 0; i < messages.length; ++i) {
+            assertThat(digests[i], equalTo(DigestUtils.sha256(messages[i])));
+        }
+    }
+
+    @Test
+    public void prefixedDigestsMatchSaltedHashes() {
+        final byte[] cleartext = "1600 Pennsylvania Avenue NW, Washington, DC 20500, United States of America"
+                .getBytes(StandardCharsets.UTF_8);
+        final byte[][] salts = new byte[11][];
+        for (int i = 0; i < salts.length; ++i) {
+            salts[i] = DigestUtils.md5("salt" + i);
+        }
+
+        final byte[][] digests = MultiBufferSha256.digest(cleartext, salts);
+        for (int i = 0; i < salts.length; ++i) {
+            assertThat(digests[i], equalTo(HashingUtils.saltedHash(cleartext, salts[i]).getSaltedHash()));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package info.willdspann.crypto.util.hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.testng.annotations.Test;
+
+import info.willdspann.crypto.enums.CryptoHashAlgorithm;
+import info.willdspann.crypto.valueobjects.SaltedHash;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class SaltedHashMidstateTest {
+    // Longer than one SHA-256 block, so that the midstate holds both compressed blocks and buffered bytes.
+    private static final byte[] CLEARTEXT = ("1600 Pennsylvania Avenue NW, Washington, DC 20500, "
+            + "United States of America").getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void midstateSaltedHashesMatchSaltedHashes() throws NoSuchAlgorithmException {
+        final SaltedHashMidstate sha256Midstate = SaltedHashMidstate.of(CLEARTEXT);
+        final SaltedHashMidstate blake2bMidstate = SaltedHashMidstate.of(CLEARTEXT, CryptoHashAlgorithm.BLAKE2B_512);
+
+        for (int i = 0; i < 5; ++i) {
+            final byte[] salt = DigestUtils.md5("salt" + i);
+            assertThat(sha256Midstate.saltedHash(salt), equalTo(HashingUtils.saltedHash(CLEARTEXT, salt)));
+            assertThat(blake2bMidstate.saltedHash(salt),
+                    equalTo(HashingUtils.saltedHash(CLEARTEXT, salt, CryptoHashAlgorithm.BLAKE2B_512)));
+        }
+    }
+
+    @Test
+    public void bulkSaltedHashesMatchSaltedHashes() {
+        final List<byte[]> salts = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            salts.add(DigestUtils.md5("salt" + i));
+        }
+
+        // Unless multi-buffer SHA-256 is enabled, these are derived from a single midstate.
+        final List<SaltedHash> saltedHashes = HashingUtils.saltedHashes(CLEARTEXT, salts);
+        assertThat(saltedHashes.size(), is(salts.size()));
+        for (int i = 0; i < salts.size(); ++i) {
+            assertThat(saltedHashes.get(i), equalTo(HashingUtils.saltedHash(CLEARTEXT, salts.get(i))));
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void destroyedMidstateRefusesSaltedHashes() {
+        final SaltedHashMidstate midstate = SaltedHashMidstate.of(CLEARTEXT);
+        midstate.destroy();
+
+        assertThat(midstate.isDestroyed(), is(true));
+        midstate.saltedHash(DigestUtils.md5("salt"));
+    }
+}
@@ -0,0 +1,119 @@
+package info.willdspann.crypto.valueobjects;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import info.willdspann.crypto.enums.CryptoHashAlgorithm;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@Test
+public class SaltedHashTest {
+    private static final int SALT_LEN = 16;
+    private static final SecureRandom random = new SecureRandom();
+
+    @DataProvider
+    public Object[][] fixedLengthAlgorithms() {
+        return Arrays.stream(CryptoHashAlgorithm.values())
+                .filter(algorithm -> algorithm.getDigestLength() != CryptoHashAlgorithm.CUSTOM_LENGTH)
+                .map(algorithm -> new Object[] {algorithm})
+                .toArray(Object[][]::new);
+    }
+
+    @Test(dataProvider = "fixedLengthAlgorithms")
+    public void binaryFormRoundTrips(CryptoHashAlgorithm algorithm) {
+        final SaltedHash saltedHash = randomSaltedHash(algorithm);
+
+        final byte[] binary = saltedHash.toBinary();
+
+        assertThat(binary.length, is(1 + SALT_LEN + algorithm.getDigestLength() / 8));
+        assertThat(binary[0] & 0xFF, is(algorithm.getTag()));
+        assertThat(SaltedHash.fromBinary(binary), equalTo(saltedHash));
+    }
+
+    @Test(dataProvider = "fixedLengthAlgorithms")
+    public void stringFormRoundTrips(CryptoHashAlgorithm algorithm) {
+        final SaltedHash saltedHash = randomSaltedHash(algorithm);
+
+        assertThat(SaltedHash.fromString(saltedHash.toString(), algorithm), equalTo(saltedHash));
+        assertThat(SaltedHash.fromString(saltedHash.toString()), equalTo(saltedHash));
+        // Fits the hex. encoded salted hash columns (see sql/ddl/secure_hashing).
+        assertThat(saltedHash.toString().length() <= SaltedHash.MAX_STRING_LENGTH, is(true));
+        assertThat(SaltedHash.MAX_STRING_LENGTH <= 255, is(true));
+    }
+
+    @Test
+    public void onlyNonDefaultAlgorithmsAreTaggedInStringForm() {
+        final SaltedHash sha256 = randomSaltedHash(CryptoHashAlgorithm.SHA_256);
+        final SaltedHash sha3 = randomSaltedHash(CryptoHashAlgorithm.SHA3_512);
+
+        assertThat(sha256.toString(), equalTo(sha256.getSaltHex() + ":" + sha256.getSaltedHashHex()));
+        assertThat(sha3.toString(), equalTo("0d:" + sha3.getSaltHex() + ":" + sha3.getSaltedHashHex()));
+        assertThat(sha3.toString().length(), is(SaltedHash.MAX_STRING_LENGTH));
+    }
+
+    @Test
+    public void equalityIncludesAlgorithm() {
+        final SaltedHash sha3 = randomSaltedHash(CryptoHashAlgorithm.SHA3_256);
+        final SaltedHash blake2s = SaltedHash.wrap(
+                sha3.getSaltedHash(), sha3.getSalt(), CryptoHashAlgorithm.BLAKE2S_256);
+
+        assertThat(blake2s, not(equalTo(sha3)));
+        assertThat(Arrays.equals(blake2s.toBinary(), sha3.toBinary()), is(false));
+        assertThat(blake2s.toString(), not(equalTo(sha3.toString())));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void emptyBinaryFormIsRejected() {
+        SaltedHash.fromBinary(new byte[0]);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void truncatedBinaryFormIsRejected() {
+        final byte[] binary = randomSaltedHash(CryptoHashAlgorithm.SHA_256).toBinary();
+
+        SaltedHash.fromBinary(Arrays.copyOf(binary, 1 + 31));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void variableLengthAlgorithmIsRejected() {
+        final byte[] binary = randomSaltedHash(CryptoHashAlgorithm.SHA_256).toBinary();
+        binary[0] = (byte) CryptoHashAlgorithm.SHAKE_256.getTag();
+
+        SaltedHash.fromBinary(binary);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void malformedStringFormIsRejected() {
+        SaltedHash.fromString("not-a-salted-hash", CryptoHashAlgorithm.SHA_256);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void mismatchedAlgorithmIsRejected() {
+        SaltedHash.fromString(randomSaltedHash(CryptoHashAlgorithm.WHIRLPOOL).toString(), CryptoHashAlgorithm.SHA_256);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void taggedDefaultAlgorithmIsRejected() {
+        SaltedHash.fromString("05:" + randomSaltedHash(CryptoHashAlgorithm.SHA_256));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void unknownAlgorithmTagIsRejected() {
+        SaltedHash.fromString("ff:" + randomSaltedHash(CryptoHashAlgorithm.SHA_256));
+    }
+
+    private static SaltedHash randomSaltedHash(CryptoHashAlgorithm algorithm) {
+        final byte[] salt = new byte[SALT_LEN];
+        final byte[] hash = new byte[algorithm.getDigestLength() / 8];
+        random.nextBytes(salt);
+        random.nextBytes(hash);
+        return new SaltedHash(hash, salt, algorithm);
+    }
+}